@@ -22,6 +22,7 @@ import automata.sfa.SFA;
 import ltlconverter.LTLConverter;
 import logic.ltl.LTLFormula;
 import theory.bdd.BDD;
+import theory.bdd.BDDFactoryPool;
 import theory.bddalgebra.BDDSolver;
 import java.util.List;
 
@@ -36,20 +37,24 @@ public class SFABDDLearning {
 		for (LTLNode ltl : nodes) {
 			Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 			BDDSolver bdds = pair.first;
-			LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
-			SAFA<BDD, BDD> safa = tot.getSAFA(bdds);
-			SFA<BDD,BDD> model, target = SAFA.getReverseSFA(safa, bdds).determinize(bdds).minimize(bdds).mkTotal(bdds);
+			try {
+				LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
+				SAFA<BDD, BDD> safa = tot.getSAFA(bdds);
+				SFA<BDD,BDD> model, target = SAFA.getReverseSFA(safa, bdds).determinize(bdds).minimize(bdds).mkTotal(bdds);
 
-			BDDAlgebraLearnerFactory balf = new BDDAlgebraLearnerFactory(bdds.factory);
-			SFAMembershipOracle<BDD, BDD> memb = new SFAMembershipOracle<>(target, bdds);
-			SFAEquivalenceOracle<BDD, BDD> equiv = new SFAEquivalenceOracle<>(target, bdds);
-			SFAAlgebraLearner<BDD, BDD> learner = new SFAAlgebraLearner<>(memb, bdds, balf);
+				BDDAlgebraLearnerFactory balf = new BDDAlgebraLearnerFactory(bdds.factory);
+				SFAMembershipOracle<BDD, BDD> memb = new SFAMembershipOracle<>(target, bdds);
+				SFAEquivalenceOracle<BDD, BDD> equiv = new SFAEquivalenceOracle<>(target, bdds);
+				SFAAlgebraLearner<BDD, BDD> learner = new SFAAlgebraLearner<>(memb, bdds, balf);
 
-			model = learner.getModelFinal(equiv);
+				model = learner.getModelFinal(equiv);
 
-			outLine = String.format("%d %d %d %d ", model.stateCount(), model.getTransitionCount(), memb.getDistinctQueries(), equiv.getDistinctCeNum());
-			outLine += String.format("%d %d %d %d\n", equiv.getCachedCeNum(), learner.getNumCEGuardUpdates(), learner.getNumDetCE(), learner.getNumCompCE());
-			writer.write(outLine);			
+				outLine = String.format("%d %d %d %d ", model.stateCount(), model.getTransitionCount(), memb.getDistinctQueries(), equiv.getDistinctCeNum());
+				outLine += String.format("%d %d %d %d\n", equiv.getCachedCeNum(), learner.getNumCEGuardUpdates(), learner.getNumDetCE(), learner.getNumCompCE());
+				writer.write(outLine);			
+			} finally {
+				BDDFactoryPool.getShared().release(bdds.factory);
+			}
 		}
 	    	writer.close();
 	    	return;
@@ -42,6 +42,7 @@ import logic.ltl.Until;
 import logic.ltl.WeakUntil;
 import java.lang.UnsupportedOperationException;
 import theory.bdd.BDD;
+import theory.bdd.BDDFactoryPool;
 import theory.bddalgebra.BDDSolver;
 import utilities.Pair;
 
@@ -49,14 +50,24 @@ public class LTLConverter {
 	public static int formulaCounter = 0;
 	public static String tail;
 
+	// The factory of the returned solver is leased from the shared pool and
+	// belongs to the caller, who must give it back with
+	// BDDFactoryPool.getShared().release(solver.factory) once the formula and
+	// its BDDs are no longer used. If the conversion fails it is given back
+	// here.
 	public static Pair<BDDSolver, LTLFormula<BDD, BDD>> getLTLBDD(FormulaNode phi) {
 		Set<String> atoms = phi.returnLeafNodes();
 		HashMap<String, Integer> atomToInt = new HashMap<String, Integer>();
 		for (String atom : atoms)
 			atomToInt.put(atom, atomToInt.size());
-		BDDSolver bdds = new BDDSolver(atomToInt.size());
-		return new Pair<BDDSolver, LTLFormula<BDD, BDD>>(bdds,
-				getLTLBDD(phi, atomToInt, bdds, new HashMap<String, LTLFormula<BDD, BDD>>()));
+		BDDSolver bdds = new BDDSolver(BDDFactoryPool.getShared().lease(), atomToInt.size());
+		try {
+			return new Pair<BDDSolver, LTLFormula<BDD, BDD>>(bdds,
+					getLTLBDD(phi, atomToInt, bdds, new HashMap<String, LTLFormula<BDD, BDD>>()));
+		} catch (RuntimeException | Error e) {
+			BDDFactoryPool.getShared().release(bdds.factory);
+			throw e;
+		}
 	}
 
 	public static LTLFormula<BDD, BDD> getLTLBDD(FormulaNode phi, HashMap<String, Integer> atomToInt, BDDSolver bdds,
@@ -1,10 +1,8 @@
 package regexconverter;
 
 
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
@@ -14,12 +12,10 @@ import RegexParser.CharNode;
 import RegexParser.CharacterClassNode;
 import RegexParser.ConcatenationNode;
 import RegexParser.DotNode;
-import RegexParser.EscapedCharNode;
 import RegexParser.FormulaNode;
 import RegexParser.IntervalNode;
 import RegexParser.MetaCharNode;
 import RegexParser.ModifierNode;
-import RegexParser.NormalCharNode;
 import RegexParser.NotCharacterClassNode;
 import RegexParser.OptionalNode;
 import RegexParser.PlusNode;
@@ -28,284 +24,310 @@ import RegexParser.RepetitionNode;
 import RegexParser.StarNode;
 import RegexParser.UnionNode;
 import automata.sfa.SFA;
+import automata.sfa.SFABuilder;
+import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
-import automata.sfa.SFAMove;
+import automata.sfa.SymbolicRegex;
+import automata.sfa.SymbolicRegexFactory;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
 
 public class RegexConverter {
 
+	/**
+	 * Compiles <code>phi</code> to an epsilon-free SFA whose states are the
+	 * partial derivatives of <code>phi</code>
+	 */
 	public static SFA<CharPred, Character> toSFA(FormulaNode phi, UnaryCharIntervalSolver unarySolver)
 			throws TimeoutException {
-		SFA<CharPred, Character> outputSFA = null;
+		SymbolicRegexFactory<CharPred, Character> factory = new SymbolicRegexFactory<CharPred, Character>(unarySolver);
+		return factory.toSFA(toRegex(phi, factory, unarySolver));
+	}
 
-		if (phi instanceof UnionNode) {
-			// get left SFA and right SFA, union them
+	/**
+	 * Builds the SFA of <code>phi</code> by adding the Thompson fragment of
+	 * every node to a single {@link SFABuilder}, the SFA has epsilon moves
+	 */
+	public static SFA<CharPred, Character> toThompsonSFA(FormulaNode phi, UnaryCharIntervalSolver unarySolver)
+			throws TimeoutException {
+		SFABuilder<CharPred, Character> builder = new SFABuilder<CharPred, Character>(0, unarySolver);
+		int[] fragment = toFragment(phi, builder, unarySolver);
+		builder.addTransition(new SFAEpsilon<CharPred, Character>(0, fragment[0]));
+		builder.addFinalState(fragment[1]);
+		return builder.build();
+	}
 
-			UnionNode cphi = (UnionNode) phi;
-			SFA<CharPred, Character> left = toSFA(cphi.getMyRegex1(), unarySolver);
-			SFA<CharPred, Character> right = toSFA(cphi.getMyRegex2(), unarySolver);
-			outputSFA = SFA.union(left, right, unarySolver);
+	/**
+	 * @return the hash-consed term of <code>phi</code> in <code>factory</code>
+	 */
+	public static SymbolicRegex<CharPred> toRegex(FormulaNode phi, SymbolicRegexFactory<CharPred, Character> factory,
+			UnaryCharIntervalSolver unarySolver) {
 
-			return outputSFA;
+		if (phi instanceof UnionNode) {
+			UnionNode cphi = (UnionNode) phi;
+			return factory.union(toRegex(cphi.getMyRegex1(), factory, unarySolver),
+					toRegex(cphi.getMyRegex2(), factory, unarySolver));
 
 		} else if (phi instanceof ConcatenationNode) {
-			// get the first SFA in concatenation list, then for every following
-			// SFA, iteratively concatenate them
-
 			ConcatenationNode cphi = (ConcatenationNode) phi;
-			List<RegexNode> concateList = cphi.getList();
-			Iterator<RegexNode> it = concateList.iterator();
-			//initialize SFA to empty SFA
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			outputSFA = SFA.MkSFA(transitions, 0, Arrays.asList(0), unarySolver);
-			while (it.hasNext()) {
-				SFA<CharPred, Character> followingSFA = toSFA(it.next(), unarySolver);
-				outputSFA = SFA.concatenate(outputSFA, followingSFA, unarySolver);
-			}
-			return outputSFA;
-
-		} else if (phi instanceof DotNode) {
-			// make a SFA that has a transition which accepts TRUE
-			Collection<SFAMove<CharPred, Character>> transitionsA = new LinkedList<SFAMove<CharPred, Character>>();
-			transitionsA.add(new SFAInputMove<CharPred, Character>(0, 1, unarySolver.True()));
-			return SFA.MkSFA(transitionsA, 0, Arrays.asList(1), unarySolver);
+			List<SymbolicRegex<CharPred>> regexes = new ArrayList<SymbolicRegex<CharPred>>();
+			for (RegexNode node : cphi.getList())
+				regexes.add(toRegex(node, factory, unarySolver));
+			return factory.concat(regexes);
 
 		} else if (phi instanceof AnchorNode) {
+			// missing anchors match any prefix or suffix
 			AnchorNode cphi = (AnchorNode) phi;
-			outputSFA = toSFA(cphi.getMyRegex1(), unarySolver);
-			if(!cphi.hasStartAnchor()){
-				// put startAnchor SFA to the front of the following SFA
-				outputSFA = SFA.concatenate(SFA.getFullSFA(unarySolver), outputSFA, unarySolver) ;
-			}
-			if(!cphi.hasEndAnchor()){
-				// for end anchor, create a SFA that has state 0 that goes to state 1 with every input and add self-loop for state 1
-				outputSFA = SFA.concatenate(outputSFA, SFA.getFullSFA(unarySolver), unarySolver);
-			}
-			
+			SymbolicRegex<CharPred> any = factory.star(factory.predicate(unarySolver.True()));
+			SymbolicRegex<CharPred> regex = toRegex(cphi.getMyRegex1(), factory, unarySolver);
+			if (!cphi.hasStartAnchor())
+				regex = factory.concat(any, regex);
+			if (!cphi.hasEndAnchor())
+				regex = factory.concat(regex, any);
+			return regex;
+
 		} else if (phi instanceof StarNode) {
-			// use existing SFA.star() method
 			StarNode cphi = (StarNode) phi;
-			SFA<CharPred, Character> tempSFA = toSFA(cphi.getMyRegex1(), unarySolver);
-			outputSFA = SFA.star(tempSFA, unarySolver);
+			return factory.star(toRegex(cphi.getMyRegex1(), factory, unarySolver));
 
 		} else if (phi instanceof PlusNode) {
 			// expr+ = expr concatenate with expr*
 			PlusNode cphi = (PlusNode) phi;
-			SFA<CharPred, Character> tempSFA = toSFA(cphi.getMyRegex1(), unarySolver);
-			outputSFA = SFA.concatenate(tempSFA, SFA.star(tempSFA, unarySolver), unarySolver);
+			SymbolicRegex<CharPred> regex = toRegex(cphi.getMyRegex1(), factory, unarySolver);
+			return factory.concat(regex, factory.star(regex));
 
 		} else if (phi instanceof OptionalNode) {
 			OptionalNode cphi = (OptionalNode) phi;
-			SFA<CharPred, Character> tempSFA = toSFA(cphi.getMyRegex1(), unarySolver);
-			
-			// build an SFA that only accepts the empty string
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			outputSFA = SFA.union(tempSFA, SFA.MkSFA(transitions,0, Arrays.asList(0), unarySolver), unarySolver);
-
-		} else if (phi instanceof NormalCharNode) {
-			// make a SFA that has a transition which accepts this char
-			NormalCharNode cphi = (NormalCharNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred(cphi.getChar())));
-			return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-
-		} else if (phi instanceof EscapedCharNode) {
-			// make a SFA that has a transition which accepts the char after the
-			// backslash
-			EscapedCharNode cphi = (EscapedCharNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred(cphi.getChar())));
-			return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-
-		} else if (phi instanceof MetaCharNode) {
-			MetaCharNode cphi = (MetaCharNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			char meta = cphi.getChar();
-			if (meta == 't') {
-				// CharPred \t
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\t', '\t')));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'n') {
-				// CharPred \n
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\n', '\n')));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'r') {
-				// CharPred \r
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\r', '\r')));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'f') {
-				// CharPred \f
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\f', '\f')));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'b') {
-				// don't know how to do word boundary
-				throw new UnsupportedOperationException();
-			} else if (meta == 'B') {
-				// don't know how to do word boundary
-				throw new UnsupportedOperationException();
-			} else if (meta == 'd') {
-				// use existing NUM
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, StdCharPred.NUM));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'D') {
-				// MkNot(NUM)
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, unarySolver.MkNot(StdCharPred.NUM)));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 's') {
-				// use existing SPACES
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, StdCharPred.SPACES));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'S') {
-				// MkNot(SPACES)
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, unarySolver.MkNot(StdCharPred.SPACES)));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-
-			} else if (meta == 'v') {
-				// predicate= new CharPred('\v', '\v');
-				// this meta can be seen in the regexlib but it seems java
-				// does not support this
-				throw new UnsupportedOperationException();
-			} else if (meta == 'w') {
-				// use existing WORD
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, StdCharPred.WORD));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-			} else if (meta == 'W') {
-				// MkNot(WORD)
-				transitions.add(new SFAInputMove<CharPred, Character>(0, 1, unarySolver.MkNot(StdCharPred.WORD)));
-				return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
+			return factory.optional(toRegex(cphi.getMyRegex1(), factory, unarySolver));
+
+		} else if (phi instanceof RepetitionNode) {
+			// R{3,} = RRR(R)* and R{1,3} = R(R(R)?)?, the copies of R are shared
+			RepetitionNode cphi = (RepetitionNode) phi;
+			SymbolicRegex<CharPred> body = toRegex(cphi.getMyRegex1(), factory, unarySolver);
+			SymbolicRegex<CharPred> tail = factory.epsilon();
+			if (cphi.getMode().equals("minToInfinite"))
+				tail = factory.star(body);
+			else if (!cphi.getMode().equals("min")) // minToMax
+				for (int i = cphi.getMin(); i < cphi.getMax(); i++)
+					tail = factory.optional(factory.concat(body, tail));
+			for (int i = 0; i < cphi.getMin(); i++)
+				tail = factory.concat(body, tail);
+			return tail;
+
+		} else if (phi instanceof ModifierNode) {
+			throw new UnsupportedOperationException();
+		} else if (phi instanceof DotNode || phi instanceof CharNode || phi instanceof CharacterClassNode
+				|| phi instanceof NotCharacterClassNode) {
+			return factory.predicate(getCharPred(phi, unarySolver));
+		} else {
+			System.err.println("Wrong instance of phi, program will quit");
+			System.exit(-1);
+			return null;
+		}
+	}
+
+	// Adds to builder the moves of phi between a new start state and a new end
+	// state, and returns {start, end}. Moves are only ever added into start and
+	// out of end, so every fragment keeps its language when combined
+	private static int[] toFragment(FormulaNode phi, SFABuilder<CharPred, Character> builder,
+			UnaryCharIntervalSolver unarySolver) throws TimeoutException {
+
+		if (phi instanceof UnionNode) {
+			// epsilon moves into the left and right fragments and out of them
+			UnionNode cphi = (UnionNode) phi;
+			int[] left = toFragment(cphi.getMyRegex1(), builder, unarySolver);
+			int[] right = toFragment(cphi.getMyRegex2(), builder, unarySolver);
+			int[] fragment = newFragment(builder);
+			epsilon(builder, fragment[0], left[0]);
+			epsilon(builder, fragment[0], right[0]);
+			epsilon(builder, left[1], fragment[1]);
+			epsilon(builder, right[1], fragment[1]);
+			return fragment;
+
+		} else if (phi instanceof ConcatenationNode) {
+			// chain the fragments in the concatenation list with epsilon moves,
+			// an empty list accepts the empty string
+			ConcatenationNode cphi = (ConcatenationNode) phi;
+			int start = builder.newState();
+			int end = start;
+			for (RegexNode node : cphi.getList()) {
+				int[] following = toFragment(node, builder, unarySolver);
+				epsilon(builder, end, following[0]);
+				end = following[1];
 			}
+			return new int[] { start, end };
 
-		} else if (phi instanceof CharacterClassNode) {
-			// MkOr each interval then MkSFA from the final CharPred
-			CharacterClassNode cphi = (CharacterClassNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			List<IntervalNode> intervalList = cphi.getIntervals();
-			Iterator<IntervalNode> it = intervalList.iterator();
-			CharPred predicate = unarySolver.False();
-			if (it.hasNext()) {
-				predicate = getCharPred(it.next(), unarySolver);
-				while (it.hasNext()) {
-					CharPred temp = getCharPred(it.next(), unarySolver);
-					predicate = unarySolver.MkOr(predicate, temp);
-				}
+		} else if (phi instanceof AnchorNode) {
+			AnchorNode cphi = (AnchorNode) phi;
+			int[] fragment = toFragment(cphi.getMyRegex1(), builder, unarySolver);
+			if (!cphi.hasStartAnchor()) {
+				// any prefix: a new start state with a self-loop on every input
+				int start = builder.newState();
+				builder.addTransition(new SFAInputMove<CharPred, Character>(start, start, unarySolver.True()));
+				epsilon(builder, start, fragment[0]);
+				fragment = new int[] { start, fragment[1] };
 			}
-			transitions.add(new SFAInputMove<CharPred, Character>(0, 1, predicate));
-			return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
-
-		} else if (phi instanceof NotCharacterClassNode) {
-			// MkOr each interval then MkNot the final result of the CharPred,
-			// then MkSFA from that final CharPred
-			NotCharacterClassNode cphi = (NotCharacterClassNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-			List<IntervalNode> intervalList = cphi.getIntervals();
-			Iterator<IntervalNode> it = intervalList.iterator();
-			CharPred predicate = unarySolver.False();
-			if (it.hasNext()) {
-				predicate = getCharPred(it.next(), unarySolver);
-				while (it.hasNext()) {
-					CharPred temp = getCharPred(it.next(), unarySolver);
-					predicate = unarySolver.MkOr(predicate, temp);
-				}
+			if (!cphi.hasEndAnchor()) {
+				// any suffix: a new end state with a self-loop on every input
+				int end = builder.newState();
+				builder.addTransition(new SFAInputMove<CharPred, Character>(end, end, unarySolver.True()));
+				epsilon(builder, fragment[1], end);
+				fragment = new int[] { fragment[0], end };
 			}
-			predicate = unarySolver.MkNot(predicate);
-			transitions.add(new SFAInputMove<CharPred, Character>(0, 1, predicate));
-			return SFA.MkSFA(transitions, 0, Arrays.asList(1), unarySolver);
+			return fragment;
+
+		} else if (phi instanceof StarNode) {
+			StarNode cphi = (StarNode) phi;
+			return star(builder, toFragment(cphi.getMyRegex1(), builder, unarySolver));
+
+		} else if (phi instanceof PlusNode) {
+			// expr+ = expr with a move back to its start
+			PlusNode cphi = (PlusNode) phi;
+			int[] body = toFragment(cphi.getMyRegex1(), builder, unarySolver);
+			int[] fragment = newFragment(builder);
+			epsilon(builder, fragment[0], body[0]);
+			epsilon(builder, body[1], body[0]);
+			epsilon(builder, body[1], fragment[1]);
+			return fragment;
+
+		} else if (phi instanceof OptionalNode) {
+			OptionalNode cphi = (OptionalNode) phi;
+			return optional(builder, toFragment(cphi.getMyRegex1(), builder, unarySolver));
+
+		} else if (phi instanceof DotNode || phi instanceof CharNode || phi instanceof CharacterClassNode
+				|| phi instanceof NotCharacterClassNode) {
+			return predicate(builder, getCharPred(phi, unarySolver));
 
 		} else if (phi instanceof RepetitionNode) {
+			// every copy of the body is built again from the regex, e.g.
+			// R{3,} = RRR(R)* and R{1,3} = R(R)?(R)?
 			RepetitionNode cphi = (RepetitionNode) phi;
-			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
-            SFA<CharPred, Character> shortSFA = SFA.MkSFA(transitions, 0, Arrays.asList(0), unarySolver);
-			outputSFA = shortSFA;
-			SFA<CharPred, Character> bodySFA = toSFA(cphi.getMyRegex1(), unarySolver);
-			for (int i = 0; i < cphi.getMin(); i++) { //now we looped min times
-				outputSFA = SFA.concatenate(outputSFA, bodySFA, unarySolver);
+			int start = builder.newState();
+			int end = start;
+			for (int i = 0; i < cphi.getMin(); i++) { // now we looped min times
+				int[] body = toFragment(cphi.getMyRegex1(), builder, unarySolver);
+				epsilon(builder, end, body[0]);
+				end = body[1];
 			}
-			
-			if (cphi.getMode().equals("min")) {
-				//already looped min times
-				return outputSFA;
-				
-			} else if (cphi.getMode().equals("minToInfinite")) {
-				// concatenate with a star, e.g. R{3,} = RRR(R)*
-				return SFA.concatenate(outputSFA, SFA.star(bodySFA, unarySolver), unarySolver);
-				
-			} else if (cphi.getMax() == cphi.getMin()) { // minToMax
-				return outputSFA;
-			} else {
-				SFA<CharPred, Character> unions = bodySFA;
-				for(int i = cphi.getMin() + 1; i < cphi.getMax(); i++){
-					unions = SFA.union(unions, shortSFA, unarySolver);
-					unions = SFA.concatenate(bodySFA, unions, unarySolver);
+
+			if (cphi.getMode().equals("minToInfinite")) {
+				int[] body = star(builder, toFragment(cphi.getMyRegex1(), builder, unarySolver));
+				epsilon(builder, end, body[0]);
+				end = body[1];
+			} else if (!cphi.getMode().equals("min")) { // minToMax
+				for (int i = cphi.getMin(); i < cphi.getMax(); i++) {
+					int[] body = optional(builder, toFragment(cphi.getMyRegex1(), builder, unarySolver));
+					epsilon(builder, end, body[0]);
+					end = body[1];
 				}
-				unions = SFA.union(unions, SFA.MkSFA(transitions,0, Arrays.asList(0), unarySolver), unarySolver);
-				return SFA.concatenate(outputSFA, unions, unarySolver);
 			}
-			
-		}else if (phi instanceof ModifierNode) {
+			return new int[] { start, end };
+
+		} else if (phi instanceof ModifierNode) {
 			throw new UnsupportedOperationException();
-		}else {
+		} else {
 			System.err.println("Wrong instance of phi, program will quit");
 			System.exit(-1);
+			return null;
 		}
+	}
 
-		return outputSFA;
+	private static int[] newFragment(SFABuilder<CharPred, Character> builder) {
+		return new int[] { builder.newState(), builder.newState() };
+	}
 
+	// A move on predicate between two new states
+	private static int[] predicate(SFABuilder<CharPred, Character> builder, CharPred predicate)
+			throws TimeoutException {
+		int[] fragment = newFragment(builder);
+		builder.addTransition(new SFAInputMove<CharPred, Character>(fragment[0], fragment[1], predicate));
+		return fragment;
 	}
 
-	private static CharPred getCharPred(IntervalNode node, UnaryCharIntervalSolver unarySolver) {
-		CharPred predicate = null;
-		if (node.getMode().equals("single")) {
-			CharNode single = node.getChar1();
-			if (single instanceof NormalCharNode) {
-				predicate = new CharPred(single.getChar());
-			} else if (single instanceof MetaCharNode) {
-				char meta = single.getChar();
-				if (meta == 't') {
-					predicate = new CharPred('\t', '\t');
-				} else if (meta == 'n') {
-					predicate = new CharPred('\n', '\n');
-				} else if (meta == 'r') {
-					predicate = new CharPred('\r', '\r');
-				} else if (meta == 'f') {
-					predicate = new CharPred('\f', '\f');
-				} else if (meta == 'b') {
-					// don't know how to do word boundary
-					throw new UnsupportedOperationException();
-				} else if (meta == 'B') {
-					// don't know how to do word boundary
-					throw new UnsupportedOperationException();
-				} else if (meta == 'd') {
-					predicate = StdCharPred.NUM;
-				} else if (meta == 'D') {
-					predicate = unarySolver.MkNot(StdCharPred.NUM);
-				} else if (meta == 's') {
-					predicate = StdCharPred.SPACES;
-				} else if (meta == 'S') {
-					predicate = unarySolver.MkNot(StdCharPred.SPACES);
-				} else if (meta == 'v') {
-					// predicate= new CharPred('\v', '\v');
-					// this meta can be seen in the regexlib but it seems java
-					// does not support this
-					throw new UnsupportedOperationException();
-				} else if (meta == 'w') {
-					predicate = StdCharPred.WORD;
-				} else if (meta == 'W') {
-					// not sure how to take complement, there should be more
-					predicate = unarySolver.MkNot(StdCharPred.WORD);
-				}
+	private static int[] star(SFABuilder<CharPred, Character> builder, int[] body) throws TimeoutException {
+		int[] fragment = optional(builder, body);
+		epsilon(builder, body[1], body[0]);
+		return fragment;
+	}
 
-			} else { // EscapedCharNode
-				// getChar() method returns the char after the backslash
-				// TODO: not sure if backslash is needed
-				predicate = new CharPred(single.getChar());
-			}
+	private static int[] optional(SFABuilder<CharPred, Character> builder, int[] body) throws TimeoutException {
+		int[] fragment = newFragment(builder);
+		epsilon(builder, fragment[0], body[0]);
+		epsilon(builder, body[1], fragment[1]);
+		epsilon(builder, fragment[0], fragment[1]);
+		return fragment;
+	}
+
+	private static void epsilon(SFABuilder<CharPred, Character> builder, int from, int to) throws TimeoutException {
+		builder.addTransition(new SFAEpsilon<CharPred, Character>(from, to));
+	}
+
+	// The predicate of a node matching one character
+	private static CharPred getCharPred(FormulaNode phi, UnaryCharIntervalSolver unarySolver) {
+		if (phi instanceof DotNode) {
+			return unarySolver.True();
+		} else if (phi instanceof CharNode) {
+			return getCharPred((CharNode) phi, unarySolver);
+		} else if (phi instanceof CharacterClassNode) {
+			// MkOr each interval
+			return getCharPred(((CharacterClassNode) phi).getIntervals(), unarySolver);
 		} else {
-			predicate = new CharPred(node.getChar1().getChar(), node.getChar2().getChar());
+			// MkOr each interval then MkNot the final result
+			return unarySolver.MkNot(getCharPred(((NotCharacterClassNode) phi).getIntervals(), unarySolver));
 		}
+	}
 
+	// MkOr each interval, False if there are none
+	private static CharPred getCharPred(List<IntervalNode> intervalList, UnaryCharIntervalSolver unarySolver) {
+		CharPred predicate = unarySolver.False();
+		Iterator<IntervalNode> it = intervalList.iterator();
+		if (it.hasNext()) {
+			predicate = getCharPred(it.next(), unarySolver);
+			while (it.hasNext())
+				predicate = unarySolver.MkOr(predicate, getCharPred(it.next(), unarySolver));
+		}
 		return predicate;
 	}
 
+	private static CharPred getCharPred(IntervalNode node, UnaryCharIntervalSolver unarySolver) {
+		if (node.getMode().equals("single"))
+			return getCharPred(node.getChar1(), unarySolver);
+		return new CharPred(node.getChar1().getChar(), node.getChar2().getChar());
+	}
+
+	private static CharPred getCharPred(CharNode single, UnaryCharIntervalSolver unarySolver) {
+		if (single instanceof MetaCharNode) {
+			char meta = single.getChar();
+			if (meta == 't') {
+				return new CharPred('\t', '\t');
+			} else if (meta == 'n') {
+				return new CharPred('\n', '\n');
+			} else if (meta == 'r') {
+				return new CharPred('\r', '\r');
+			} else if (meta == 'f') {
+				return new CharPred('\f', '\f');
+			} else if (meta == 'd') {
+				return StdCharPred.NUM;
+			} else if (meta == 'D') {
+				return unarySolver.MkNot(StdCharPred.NUM);
+			} else if (meta == 's') {
+				return StdCharPred.SPACES;
+			} else if (meta == 'S') {
+				return unarySolver.MkNot(StdCharPred.SPACES);
+			} else if (meta == 'w') {
+				return StdCharPred.WORD;
+			} else if (meta == 'W') {
+				// not sure how to take complement, there should be more
+				return unarySolver.MkNot(StdCharPred.WORD);
+			}
+			// don't know how to do word boundaries (b, B), and \v can be seen
+			// in the regexlib but it seems java does not support it
+			throw new UnsupportedOperationException();
+		}
+		// NormalCharNode, or EscapedCharNode whose getChar() method returns
+		// the char after the backslash
+		return new CharPred(single.getChar());
+	}
+
 }
@@ -0,0 +1,118 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.MinimizationAlgorithm;
+import automata.sfa.SFA;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+/**
+ * Compares the minimization algorithms of {@link SFA} on the automata built by
+ * {@link SFAprovider} from the regexlib corpus. The automata are grouped by
+ * the size of their determinization, so the results show which algorithm
+ * works best for each shape.
+ *
+ * Run from the benchmarks folder with
+ * <code>java utilities.MinimizationBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MinimizationBenchmark {
+
+	@Param({ "STANDARD", "INDEXED_HOPCROFT", "MOORE", "BRZOZOWSKI" })
+	public MinimizationAlgorithm algorithm;
+
+	// automata whose determinization has SMALL: at most 16 states, MEDIUM: at
+	// most 128 states, LARGE: more than 128 states
+	@Param({ "SMALL", "MEDIUM", "LARGE" })
+	public String shape;
+
+	@Param("src/main/java/regexconverter/regexlib-SFA.txt")
+	public String corpus;
+
+	// maximum number of regexes read from the corpus
+	@Param("500")
+	public int maxRegexes;
+
+	// time available to determinize an automaton, slower ones are skipped
+	@Param("1000")
+	public long timeout;
+
+	private UnaryCharIntervalSolver solver;
+	private List<SFA<CharPred, Character>> automata;
+
+	@Setup
+	public void setup() throws IOException {
+		solver = new UnaryCharIntervalSolver();
+		automata = new ArrayList<SFA<CharPred, Character>>();
+
+		List<String> regexes = new ArrayList<String>();
+		try (BufferedReader br = new BufferedReader(new FileReader(corpus))) {
+			String line;
+			while ((line = br.readLine()) != null && regexes.size() < maxRegexes)
+				regexes.add(line);
+		}
+
+		for (String regex : regexes) {
+			SFA<CharPred, Character> sfa;
+			try {
+				sfa = new SFAprovider(regex, solver).getSFA();
+				if (sfa == null)
+					continue;
+				int size = sfa.determinize(solver, timeout).stateCount();
+				if (shapeOf(size).equals(shape))
+					automata.add(sfa);
+			} catch (TimeoutException | RuntimeException e) {
+				// regexes that cannot be parsed or determinized are skipped
+			}
+		}
+		System.out.println(shape + ": " + automata.size() + " automata");
+	}
+
+	@Benchmark
+	public void minimize(Blackhole bh) throws TimeoutException {
+		for (SFA<CharPred, Character> sfa : automata)
+			bh.consume(sfa.minimize(solver, algorithm));
+	}
+
+	private static String shapeOf(int size) {
+		if (size <= 16)
+			return "SMALL";
+		if (size <= 128)
+			return "MEDIUM";
+		return "LARGE";
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(MinimizationBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -35,6 +35,7 @@ public class RunConjuncEquivalenceExp {
 	private static long solverTimeSAFA;
 	private static long subTimeSAFA;
 	private static long totalTimeSFA;
+	private static long totalTimeCongruence;
 	private static int safa1Size = 0;
 	private static int safa2Size = 0;
 	private static int sfa1Size = 0;
@@ -123,7 +124,7 @@ public class RunConjuncEquivalenceExp {
 
 
 		equivalence2to3
-				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   SFA-SAFAfull"
+				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   Congruencetime   SFA-SAFAfull"
 						+ "\n");
 		generate2to3(timeOut);
 		equivalence2to3.close();
@@ -168,7 +169,7 @@ public class RunConjuncEquivalenceExp {
 
 
 		equivalence3to4
-				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   SFA-SAFAfull"
+				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   Congruencetime   SFA-SAFAfull"
 						+ "\n");
 		generate3to4(timeOut);
 		equivalence3to4.close();
@@ -216,7 +217,7 @@ public class RunConjuncEquivalenceExp {
 
 
 		equivalence4to5
-				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   SFA-SAFAfull"
+				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   Congruencetime   SFA-SAFAfull"
 						+ "\n");
 		generate4to5(timeOut);
 		equivalence4to5.close();
@@ -235,17 +236,17 @@ public class RunConjuncEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence2to3.print(possiblePair + "=" + str + "   ");
 			equivalence2to3.print(safa1Size + "   " + safa2Size + "   " + sfa1Size + "   " + sfa2Size + "   ");
 			long sfaMinussafa = totalTimeSFA - fullTimeSAFA;
 			equivalence2to3.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   " + totalTimeSFA
-					+ "   " + sfaMinussafa + "\n");
+					+ "   " + totalTimeCongruence + "   " + sfaMinussafa + "\n");
 			System.out.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   " + totalTimeSFA
-					+ "   " + sfaMinussafa + "\n");
+					+ "   " + totalTimeCongruence + "   " + sfaMinussafa + "\n");
 
 		}
 
@@ -264,15 +265,15 @@ public class RunConjuncEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence3to4.print(possiblePair + "=" + str + "   ");
 			equivalence3to4.print(safa1Size + "   " + safa2Size + "   " + sfa1Size + "   " + sfa2Size + "   ");
 			long sfaMinussafa = totalTimeSFA - fullTimeSAFA;
 			equivalence3to4.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   " + totalTimeSFA
-					+ "   " + sfaMinussafa + "\n");
+					+ "   " + totalTimeCongruence + "   " + sfaMinussafa + "\n");
 
 		}
 
@@ -292,15 +293,15 @@ public class RunConjuncEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence4to5.print(possiblePair + "=" + str + "   ");
 			equivalence4to5.print(safa1Size + "   " + safa2Size + "   " + sfa1Size + "   " + sfa2Size + "   ");
 			long sfaMinussafa = totalTimeSFA - fullTimeSAFA;
 			equivalence4to5.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   " + totalTimeSFA
-					+ "   " + sfaMinussafa + "\n");
+					+ "   " + totalTimeCongruence + "   " + sfaMinussafa + "\n");
 
 		}
 
@@ -351,6 +352,9 @@ public class RunConjuncEquivalenceExp {
 		if (totalTimeSFA > timeOut) {
 			totalTimeSFA = timeOut;
 		}
+		if (totalTimeCongruence > timeOut) {
+			totalTimeCongruence = timeOut;
+		}
 
 	}
 
@@ -382,16 +386,20 @@ public class RunConjuncEquivalenceExp {
 			subTimeSAFA = timeOut;
 		}
 
+		SFA<CharPred, Character> tempLeftSFA = null;
+		SFA<CharPred, Character> tempRightSFA = null;
+		long intersectTimeSFA = timeOut;
 		try {
 			long totalTimeLeft = timeOut;
 			long startDate = System.currentTimeMillis();
-			SFA<CharPred, Character> tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
+			tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
 			long endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
 			startDate = System.currentTimeMillis();
-			SFA<CharPred, Character> tempRightSFA = IntersectedSFA(sfaRHS, totalTimeLeft);
+			tempRightSFA = IntersectedSFA(sfaRHS, totalTimeLeft);
 			endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
+			intersectTimeSFA = timeOut - totalTimeLeft;
 			startDate = System.currentTimeMillis();
 			tempLeftSFA.isHopcroftKarpEquivalentTo(tempRightSFA, solver, totalTimeLeft);
 			endDate = System.currentTimeMillis();
@@ -403,6 +411,18 @@ public class RunConjuncEquivalenceExp {
 
 		}
 
+		// the intersections are shared, only the equivalence check is run again
+		try {
+			long totalTimeLeft = timeOut - intersectTimeSFA;
+			long startDate = System.currentTimeMillis();
+			tempLeftSFA.isCongruenceEquivalentTo(tempRightSFA, solver, totalTimeLeft);
+			long endDate = System.currentTimeMillis();
+			totalTimeLeft -= endDate - startDate;
+			totalTimeCongruence = timeOut - totalTimeLeft;
+		} catch (Exception e) {
+			totalTimeCongruence = timeOut;
+		}
+
 	}
 
 	private static Triple<SAFA<CharPred, Character>, PositiveBooleanExpression, PositiveBooleanExpression> IntersectedSAFA(
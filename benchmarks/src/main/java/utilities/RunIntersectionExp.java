@@ -6,6 +6,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
 import java.math.*;
@@ -231,44 +232,24 @@ public class RunIntersectionExp {
 
 	/**
 	 *
-	 * This method finds the intersected SFA from an ArrayList of SFAs
+	 * This method checks whether the SFAs of an ArrayList intersect, exploring
+	 * their product lazily
 	 *
 	 * @param sfaList
 	 * @param timeOut
-	 * @return intersected SFA, or null if timeout on emptiness check or there
-	 *         is no intersection
+	 * @return a word in the intersection, or null if timeout on emptiness
+	 *         check or there is no intersection
 	 */
-	private static SFA<CharPred, Character> IntersectedSFA(ArrayList<SFA<CharPred, Character>> sfaList, long timeOut) {
-		SFA<CharPred, Character> result = null;
+	private static List<Character> SFAIntersectionWitness(ArrayList<SFA<CharPred, Character>> sfaList,
+			long timeOut) {
 		if (sfaList.size() < 2) {
 			return null;
 		}
-		if (sfaList.size() == 2) {
-			try {
-				result = sfaList.get(0).intersectionWith(sfaList.get(1), solver, timeOut);
-				if (!result.isEmpty()) {
-					return result;
-				}
-				return null;
-			} catch (Exception e) {
-				return null;
-			}
-
-		} else {
-			try {
-				result = sfaList.get(0).intersectionWith(sfaList.get(1), solver, timeOut);
-				for (int i = 2; i < sfaList.size(); i++) {
-					result = result.intersectionWith(sfaList.get(i), solver, timeOut);
-				}
-				if (!result.isEmpty()) {
-					return result;
-				}
-				return null;
-			} catch (Exception e) {
-				return null;
-			}
+		try {
+			return SFA.getIntersectionWitness(sfaList, solver, timeOut);
+		} catch (Exception e) {
+			return null;
 		}
-
 	}
 
 	/**
@@ -370,10 +351,10 @@ public class RunIntersectionExp {
 				tempSFA.add(sfa1);
 				tempSFA.add(sfa2);
 				long startDate = System.currentTimeMillis();
-				SFA<CharPred, Character> intersectedSFA = IntersectedSFA(tempSFA, timeOut);
+				List<Character> sfaWitness = SFAIntersectionWitness(tempSFA, timeOut);
 				long endDate = System.currentTimeMillis();
 				long totalTimeSFA = endDate - startDate;
-				if (intersectedSFA == null) {
+				if (sfaWitness == null) {
 					totalTimeSFA = timeOut;
 				}
 				if (totalTimeSFA > timeOut) {
@@ -381,7 +362,7 @@ public class RunIntersectionExp {
 				}
 
 				boolean hasIntersection = false;
-				if (intersectedSAFA != null || intersectedSFA != null) {
+				if (intersectedSAFA != null || sfaWitness != null) {
 					counter++;
 					hasIntersection = true;
 					pairResult.println(m + ";" + n);
@@ -469,12 +450,12 @@ public class RunIntersectionExp {
 					tempSFA.add(sfa2);
 					tempSFA.add(sfa3);
 					long startDate = System.currentTimeMillis();
-					SFA<CharPred, Character> intersectedSFA = IntersectedSFA(tempSFA, timeOut);
+					List<Character> sfaWitness = SFAIntersectionWitness(tempSFA, timeOut);
 					long endDate = System.currentTimeMillis();
 					long totalTimeSFA = endDate - startDate;
 
 					boolean hasIntersection = false;
-					if (intersectedSAFA != null || intersectedSFA != null) {
+					if (intersectedSAFA != null || sfaWitness != null) {
 						counter++;
 						hasIntersection = true;
 						tripleResult.println(i + ";" + j + ";" + k);
@@ -502,7 +483,7 @@ public class RunIntersectionExp {
 
 						resultOfEmptiness3.print(sizeSum + "   " + sizeMult + "   ");
 
-						if (intersectedSFA == null) {
+						if (sfaWitness == null) {
 							totalTimeSFA = timeOut;
 						}
 						if (totalTimeSFA > timeOut) {
@@ -574,12 +555,12 @@ public class RunIntersectionExp {
 					intersectedSFAlist.add(lastSFA);
 
 					long startDatetemp = System.currentTimeMillis();
-					SFA<CharPred, Character> intersectedSFA = IntersectedSFA(intersectedSFAlist, timeOut);
+					List<Character> sfaWitness = SFAIntersectionWitness(intersectedSFAlist, timeOut);
 					long endDatetemp = System.currentTimeMillis();
 					long totalTimeSFA = endDatetemp - startDatetemp;
 
 					boolean hasIntersection = false;
-					if (intersectedSAFA != null || intersectedSFA != null) {
+					if (intersectedSAFA != null || sfaWitness != null) {
 						counter++;
 						hasIntersection = true;
 						quadraResult.println(i + ";" + i2 + ";" + j + ";" + k);
@@ -612,7 +593,7 @@ public class RunIntersectionExp {
 						// Integer.toString(size1).length()+Integer.toString(size2).length()+Integer.toString(size3).length()-1;
 						resultOfEmptiness4.print(sizeSum + "   " + sizeMult + "   ");
 
-						if (intersectedSFA == null) {
+						if (sfaWitness == null) {
 							totalTimeSFA = timeOut;
 						}
 						if (totalTimeSFA > timeOut) {
@@ -693,12 +674,12 @@ public class RunIntersectionExp {
 					intersectedSFAlist.add(lastSFA);
 
 					long startDatetemp = System.currentTimeMillis();
-					SFA<CharPred, Character> intersectedSFA = IntersectedSFA(intersectedSFAlist, timeOut);
+					List<Character> sfaWitness = SFAIntersectionWitness(intersectedSFAlist, timeOut);
 					long endDatetemp = System.currentTimeMillis();
 					long totalTimeSFA = endDatetemp - startDatetemp;
 
 					boolean hasIntersection = false;
-					if (intersectedSAFA != null || intersectedSFA != null) {
+					if (intersectedSAFA != null || sfaWitness != null) {
 						counter++;
 						hasIntersection = true;
 						pentaResult.println(i + ";" + i2 + ";" + i3 + ";" + j + ";" + k);
@@ -730,7 +711,7 @@ public class RunIntersectionExp {
 						// Integer.toString(size1).length()+Integer.toString(size2).length()+Integer.toString(size3).length()-1;
 						resultOfEmptiness5.print(sizeSum + "   " + sizeMult + "   ");
 
-						if (intersectedSFA == null) {
+						if (sfaWitness == null) {
 							totalTimeSFA = timeOut;
 						}
 						if (totalTimeSFA > timeOut) {
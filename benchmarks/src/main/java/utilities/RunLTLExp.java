@@ -14,12 +14,12 @@ import LTLparser.LTLNode;
 import LTLparser.LTLParserProvider;
 import automata.safa.BooleanExpressionFactory;
 import automata.safa.SAFA;
-import automata.safa.booleanexpression.BDDExpression;
 import automata.safa.booleanexpression.BDDExpressionFactory;
 import automata.safa.booleanexpression.PositiveBooleanExpression;
 import ltlconverter.LTLConverter;
 import logic.ltl.LTLFormula;
 import theory.bdd.BDD;
+import theory.bdd.BDDFactoryPool;
 import theory.bddalgebra.BDDSolver;
 import utilities.Pair;
 import utilities.Timers;
@@ -80,71 +80,76 @@ public class RunLTLExp {
 								Timers.setTimeout(Long.MAX_VALUE);
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
-								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
-								SAFA<BDD, BDD> safa = tot.getSAFA(bdds);
-								// safa = safa.getUnaryPathSAFA(bdds);
-
-								fw.append(pair.second.getSize() + ", ");
-
-								boolean result = true;
-								boolean to1 = false;
-								boolean to2 = false;
-
 								try {
-									if (useBDDs) {
-										BooleanExpressionFactory<BDDExpression> bef = new BDDExpressionFactory(
-												safa.stateCount() + 1);
-										result = SAFA.isEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds, bef, timeout)
-												.getFirst();
+									LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
+									SAFA<BDD, BDD> safa = tot.getSAFA(bdds);
+									// safa = safa.getUnaryPathSAFA(bdds);
 
-									} else {
-										result = SAFA.isEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds,
-												SAFA.getBooleanExpressionFactory(), timeout).getFirst();
-									}
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-								} catch (TimeoutException toe) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								}catch (NullPointerException np) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								}
+									fw.append(pair.second.getSize() + ", ");
+
+									boolean result = true;
+									boolean to1 = false;
+									boolean to2 = false;
 
-								if (!skipRev) {
-									long startTime2 = System.currentTimeMillis();
 									try {
-										boolean result2 = SAFA.areReverseEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds,
-												timeout);
-										if (!to1 && result != result2)
-											throw new IllegalArgumentException("bug");
-										fw.append(System.currentTimeMillis() - startTime2 + ", ");
-										System.out.print(System.currentTimeMillis() - startTime2 + ", ");
+										if (useBDDs) {
+											try (BDDExpressionFactory bef = new BDDExpressionFactory(
+													safa.stateCount() + 1)) {
+												result = SAFA.isEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds, bef, timeout)
+														.getFirst();
+											}
+
+										} else {
+											result = SAFA.isEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds,
+													SAFA.getBooleanExpressionFactory(), timeout).getFirst();
+										}
+										fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
+										System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
 									} catch (TimeoutException toe) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
 									}catch (NullPointerException np) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
 									}
 
-									if (!(to1 && to2)) {
-										fw.append(result + "");
-										System.out.print(result);
-									} else {
-										fw.append("TO");
-										System.out.print("TO");
+									if (!skipRev) {
+										long startTime2 = System.currentTimeMillis();
+										try {
+											boolean result2 = SAFA.areReverseEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds,
+													timeout);
+											if (!to1 && result != result2)
+												throw new IllegalArgumentException("bug");
+											fw.append(System.currentTimeMillis() - startTime2 + ", ");
+											System.out.print(System.currentTimeMillis() - startTime2 + ", ");
+										} catch (TimeoutException toe) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										}catch (NullPointerException np) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										}
+
+										if (!(to1 && to2)) {
+											fw.append(result + "");
+											System.out.print(result);
+										} else {
+											fw.append("TO");
+											System.out.print("TO");
+										}
 									}
-								}
 
-								fw.append("\n");
-								System.out.println();
+									fw.append("\n");
+									System.out.println();
+								} finally {
+									BDDFactoryPool.getShared().release(bdds.factory);
+								}
 							}
 							counter++;
 						}
@@ -190,82 +195,87 @@ public class RunLTLExp {
 								Timers.setTimeout(Long.MAX_VALUE);
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
-								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
-
-								SAFA<BDD, BDD> safa1 = null;
-								SAFA<BDD, BDD> safa2 = null;
-								safa1 = tot.getSAFA(bdds);
-
-								ArrayList<Integer> states = new ArrayList<>(safa1.getStates());
+								try {
+									LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
 
-								BooleanExpressionFactory<PositiveBooleanExpression> boolexpr = SAFA
-										.getBooleanExpressionFactory();
-								safa2 = SAFA.MkSAFA(safa1.getInputMoves(),
-										boolexpr.MkAnd(safa1.getInitialState(),
-												boolexpr.MkState(states.get(r.nextInt(states.size())))),
-										safa1.getFinalStates(), bdds);
+									SAFA<BDD, BDD> safa1 = null;
+									SAFA<BDD, BDD> safa2 = null;
+									safa1 = tot.getSAFA(bdds);
 
-								fw.append(pair.second.getSize() + ", ");
+									ArrayList<Integer> states = new ArrayList<>(safa1.getStates());
 
-								boolean result = true;
-								boolean to1 = false;
-								boolean to2 = false;
+									BooleanExpressionFactory<PositiveBooleanExpression> boolexpr = SAFA
+											.getBooleanExpressionFactory();
+									safa2 = SAFA.MkSAFA(safa1.getInputMoves(),
+											boolexpr.MkAnd(safa1.getInitialState(),
+													boolexpr.MkState(states.get(r.nextInt(states.size())))),
+											safa1.getFinalStates(), bdds);
 
-								try {
-									if (useBDDs) {
-										BooleanExpressionFactory<BDDExpression> bef = new BDDExpressionFactory(
-												safa1.stateCount() + safa2.stateCount());
-										result = SAFA.isEquivalent(safa1, safa2, bdds, bef, timeout).getFirst();
+									fw.append(pair.second.getSize() + ", ");
 
-									} else {
-										result = SAFA.isEquivalent(safa1, safa2, bdds,
-												SAFA.getBooleanExpressionFactory(), timeout).getFirst();
-									}
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-								} catch (TimeoutException toe) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								} catch (NullPointerException np) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								}
+									boolean result = true;
+									boolean to1 = false;
+									boolean to2 = false;
 
-								if (!skipRev) {
-									long startTime2 = System.currentTimeMillis();
-									boolean result2 = true;
 									try {
-										result2 = SAFA.areReverseEquivalent(safa1, safa2, bdds, timeout);
-										fw.append(System.currentTimeMillis() - startTime2 + ", ");
-										System.out.print(System.currentTimeMillis() - startTime2 + ", ");
-										if (!to1 && result != result2)
-											throw new IllegalArgumentException("bug");
+										if (useBDDs) {
+											try (BDDExpressionFactory bef = new BDDExpressionFactory(
+													safa1.stateCount() + safa2.stateCount())) {
+												result = SAFA.isEquivalent(safa1, safa2, bdds, bef, timeout).getFirst();
+											}
+
+										} else {
+											result = SAFA.isEquivalent(safa1, safa2, bdds,
+													SAFA.getBooleanExpressionFactory(), timeout).getFirst();
+										}
+										fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
+										System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
 									} catch (TimeoutException toe) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
 									} catch (NullPointerException np) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
 									}
 
-								}
+									if (!skipRev) {
+										long startTime2 = System.currentTimeMillis();
+										boolean result2 = true;
+										try {
+											result2 = SAFA.areReverseEquivalent(safa1, safa2, bdds, timeout);
+											fw.append(System.currentTimeMillis() - startTime2 + ", ");
+											System.out.print(System.currentTimeMillis() - startTime2 + ", ");
+											if (!to1 && result != result2)
+												throw new IllegalArgumentException("bug");
+										} catch (TimeoutException toe) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										} catch (NullPointerException np) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										}
 
-								if (!(to1 && to2)) {
-									fw.append(result + "");
-									System.out.print(result);
-								} else {
-									fw.append("TO");
-									System.out.print("TO");
-								}
+									}
 
-								fw.append("\n");
-								System.out.println();
+									if (!(to1 && to2)) {
+										fw.append(result + "");
+										System.out.print(result);
+									} else {
+										fw.append("TO");
+										System.out.print("TO");
+									}
+
+									fw.append("\n");
+									System.out.println();
+								} finally {
+									BDDFactoryPool.getShared().release(bdds.factory);
+								}
 							}
 							counter++;
 						}
@@ -309,70 +319,75 @@ public class RunLTLExp {
 								Timers.setTimeout(Long.MAX_VALUE);
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
-								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
-								SAFA<BDD, BDD> safa = null;
-								safa = tot.getSAFA(bdds);
-
-								fw.append(pair.second.getSize() + ", ");
-
-								boolean result = true;
-								boolean to1 = false;
-								boolean to2 = false;
-
 								try {
-									if (useBDDs) {
-										BooleanExpressionFactory<BDDExpression> bef = new BDDExpressionFactory(
-												safa.stateCount() + safa.stateCount());
-										result = SAFA.isEquivalent(safa, safa, bdds, bef, timeout).getFirst();
+									LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
+									SAFA<BDD, BDD> safa = null;
+									safa = tot.getSAFA(bdds);
 
-									} else {
-										result = SAFA.isEquivalent(safa, safa, bdds, SAFA.getBooleanExpressionFactory(),
-												timeout).getFirst();
-									}
+									fw.append(pair.second.getSize() + ", ");
 
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-								} catch (TimeoutException toe) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								}catch (NullPointerException np) {
-									to1 = true;
-									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
-									System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
-								}
+									boolean result = true;
+									boolean to1 = false;
+									boolean to2 = false;
 
-								if (!skipRev) {
-									long startTime2 = System.currentTimeMillis();
 									try {
-										result = SAFA.areReverseEquivalent(safa, safa, bdds, timeout);
-										fw.append(System.currentTimeMillis() - startTime2 + ", ");
-										System.out.print(System.currentTimeMillis() - startTime2 + ", ");
-										if (!result)
-											throw new IllegalArgumentException("bug");
+										if (useBDDs) {
+											try (BDDExpressionFactory bef = new BDDExpressionFactory(
+													safa.stateCount() + safa.stateCount())) {
+												result = SAFA.isEquivalent(safa, safa, bdds, bef, timeout).getFirst();
+											}
+
+										} else {
+											result = SAFA.isEquivalent(safa, safa, bdds, SAFA.getBooleanExpressionFactory(),
+													timeout).getFirst();
+										}
+
+										fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
+										System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
+												+ Timers.getSubsumption() + ", ");
 									} catch (TimeoutException toe) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
-									} catch (NullPointerException np) {
-										fw.append(timeout + ", ");
-										System.out.print(timeout + ", ");
-										to2 = true;
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
+									}catch (NullPointerException np) {
+										to1 = true;
+										fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
+										System.out.print(timeout + ", " + timeout + ", " + timeout + ", ");
 									}
 
-									if (!(to1 && to2)) {
-										fw.append(result + "");
-										System.out.print(result);
-									} else {
-										fw.append("TO");
-										System.out.print("TO");
+									if (!skipRev) {
+										long startTime2 = System.currentTimeMillis();
+										try {
+											result = SAFA.areReverseEquivalent(safa, safa, bdds, timeout);
+											fw.append(System.currentTimeMillis() - startTime2 + ", ");
+											System.out.print(System.currentTimeMillis() - startTime2 + ", ");
+											if (!result)
+												throw new IllegalArgumentException("bug");
+										} catch (TimeoutException toe) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										} catch (NullPointerException np) {
+											fw.append(timeout + ", ");
+											System.out.print(timeout + ", ");
+											to2 = true;
+										}
+
+										if (!(to1 && to2)) {
+											fw.append(result + "");
+											System.out.print(result);
+										} else {
+											fw.append("TO");
+											System.out.print("TO");
+										}
 									}
-								}
 
-								fw.append("\n");
-								System.out.println();
+									fw.append("\n");
+									System.out.println();
+								} finally {
+									BDDFactoryPool.getShared().release(bdds.factory);
+								}
 							}
 							counter++;
 						}
@@ -40,6 +40,7 @@ public class RunSelfEquivalenceExp {
 	private static long solverTimeSAFA;
 	private static long subTimeSAFA;
 	private static long totalTimeSFA;
+	private static long totalTimeCongruence;
 	private static long exploredStatesSAFA;
 	private static long exploredStatesSFA;
 	private static long successfulSubsumptionsSAFA;
@@ -116,7 +117,7 @@ public class RunSelfEquivalenceExp {
 			e.printStackTrace();
 		}
 		equivalence2to3
-				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   SFA-SAFAfull"
+				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   Congruencetime   SFA-SAFAfull"
 						+ "\n");
 		generate2to3(timeOut);
 		equivalence2to3.close();
@@ -153,7 +154,7 @@ public class RunSelfEquivalenceExp {
 		}
 
 		equivalence3to4
-				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   SFA-SAFAfull"
+				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   SFAtime   Congruencetime   SFA-SAFAfull"
 						+ "\n");
 		generate3to4(timeOut);
 		equivalence3to4.close();
@@ -191,7 +192,7 @@ public class RunSelfEquivalenceExp {
 
 		equivalence4to5
 				.print("name   |SAFA1|   |SAFA2|   |SFA1|   |SFA2|   FullTime   SolverTime   subsTime   exploredStatesSAFA   "
-						+ "successfulSubs   SFAtime   exploredStatesSFA   SFA-SAFAfull"
+						+ "successfulSubs   SFAtime   Congruencetime   exploredStatesSFA   SFA-SAFAfull"
 						+ "\n");
 		generate4to5(timeOut);
 		equivalence4to5.close();
@@ -210,8 +211,8 @@ public class RunSelfEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence2to3.print(possiblePair + "=" + str + "   ");
@@ -220,11 +221,13 @@ public class RunSelfEquivalenceExp {
 			equivalence2to3.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 			System.out.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 		}
@@ -244,8 +247,8 @@ public class RunSelfEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence3to4.print(possiblePair + "=" + str + "   ");
@@ -254,11 +257,13 @@ public class RunSelfEquivalenceExp {
 			equivalence3to4.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 			System.out.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 
@@ -280,8 +285,8 @@ public class RunSelfEquivalenceExp {
 
 			System.out.println("Building " + possiblePair + "=" + str);
 			equivalentTest(splited, timeOut);
-			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut){
-				System.out.println("Both timeout");
+			if(fullTimeSAFA == timeOut && totalTimeSFA == timeOut && totalTimeCongruence == timeOut){
+				System.out.println("All timeout");
 				continue;
 			}
 			equivalence4to5.print(possiblePair + "=" + str + "   ");
@@ -290,11 +295,13 @@ public class RunSelfEquivalenceExp {
 			equivalence4to5.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 			System.out.print(fullTimeSAFA + "   " + solverTimeSAFA + "   " + subTimeSAFA + "   "
 					+ exploredStatesSAFA + "   " + successfulSubsumptionsSAFA + "   "
 					+ totalTimeSFA+ "   "
+					+ totalTimeCongruence+ "   "
 					+ exploredStatesSFA+ "   "
 					+ sfaMinussafa + "\n");
 		}
@@ -346,6 +353,9 @@ public class RunSelfEquivalenceExp {
 		if (totalTimeSFA > timeOut) {
 			totalTimeSFA = timeOut;
 		}
+		if (totalTimeCongruence > timeOut) {
+			totalTimeCongruence = timeOut;
+		}
 
 	}
 
@@ -386,16 +396,20 @@ public class RunSelfEquivalenceExp {
 			successfulSubsumptionsSAFA = -1;
 		}
 
+		SFA<CharPred, Character> tempLeftSFA = null;
+		SFA<CharPred, Character> tempRightSFA = null;
+		long intersectTimeSFA = timeOut;
 		try {
 			long totalTimeLeft = timeOut;
 			long startDate = System.currentTimeMillis();
-			SFA<CharPred, Character> tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
+			tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
 			long endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
 			startDate = System.currentTimeMillis();
-			SFA<CharPred, Character> tempRightSFA = IntersectedSFA(sfaRHS, totalTimeLeft);
+			tempRightSFA = IntersectedSFA(sfaRHS, totalTimeLeft);
 			endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
+			intersectTimeSFA = timeOut - totalTimeLeft;
 			startDate = System.currentTimeMillis();
 			tempLeftSFA.isHopcroftKarpEquivalentTo(tempRightSFA, solver, totalTimeLeft);
 			endDate = System.currentTimeMillis();
@@ -407,6 +421,18 @@ public class RunSelfEquivalenceExp {
 			exploredStatesSFA = -1;
 		}
 
+		// the intersections are shared, only the equivalence check is run again
+		try {
+			long totalTimeLeft = timeOut - intersectTimeSFA;
+			long startDate = System.currentTimeMillis();
+			tempLeftSFA.isCongruenceEquivalentTo(tempRightSFA, solver, totalTimeLeft);
+			long endDate = System.currentTimeMillis();
+			totalTimeLeft -= endDate - startDate;
+			totalTimeCongruence = timeOut - totalTimeLeft;
+		} catch (Exception e) {
+			totalTimeCongruence = timeOut;
+		}
+
 	}
 
 	private static Triple<SAFA<CharPred, Character>, PositiveBooleanExpression, PositiveBooleanExpression> IntersectedSAFA(
@@ -6,11 +6,9 @@
  */
 package automata;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -18,6 +16,7 @@ import java.util.Map;
 
 import org.sat4j.specs.TimeoutException;
 
+import automata.io.AutomatonExporter;
 import theory.BooleanAlgebra;
 
 /**
@@ -53,28 +52,8 @@ public abstract class Automaton<P, S> {
 	 */
 	public boolean createDotFile(String name, String path) {
 		try {
-			FileWriter fw = new FileWriter(path + name + (name.endsWith(".dot") ? "" : ".dot"));
-			fw.write("digraph " + name + "{\n rankdir=LR;\n");
-			for (Integer state : getStates()) {
-
-				fw.write(state + "[label=" + state);
-				if (getFinalStates().contains(state))
-					fw.write(",peripheries=2");
-
-				fw.write("]\n");
-				if (isInitialState(state))
-					fw.write("XX" + state + " [color=white, label=\"\"]");
-			}
-
-			fw.write("XX" + getInitialState() + " -> " + getInitialState() + "\n");
-
-			for (Integer state : getStates()) {
-				for (Move<P, S> t : getMovesFrom(state))
-					fw.write(t.toDotString());
-			}
-
-			fw.write("}");
-			fw.close();
+			new AutomatonExporter(AutomatonExporter.Format.DOT).export(this, name,
+					new File(path + name + (name.endsWith(".dot") ? "" : ".dot")));
 		} catch (IOException e) {
 			System.out.println(e);
 			return false;
@@ -88,76 +67,56 @@ public abstract class Automaton<P, S> {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		String s = "";
-		s = "Automaton: " + getMoves().size() + " transitions, " + getStates().size() + " states" + "\n";
-		s += "Transitions \n";
-		for (Move<P, S> t : getMoves())
-			s = s + t + "\n";
+		StringBuilder s = new StringBuilder();
+		Collection<Move<P, S>> moves = getMoves();
+		s.append("Automaton: " + moves.size() + " transitions, " + getStates().size() + " states" + "\n");
+		s.append("Transitions \n");
+		for (Move<P, S> t : moves)
+			s.append(t).append("\n");
 
-		s += "Initial State \n";
-		s = s + getInitialState() + "\n";
+		s.append("Initial State \n");
+		s.append(getInitialState()).append("\n");
 
-		s += "Final States \n";
+		s.append("Final States \n");
 		for (Integer fs : getFinalStates())
-			s = s + fs + "\n";
-		return s;
+			s.append(fs).append("\n");
+		return s.toString();
 	}
 
 	/**
-	 * Returns a sequence in the input domain that is accepted by the automaton
+	 * Returns the <code>howMany</code> shortest sequences in the input domain
+	 * that are accepted by the automaton, fewer if the language is smaller
 	 * 
-	 * @return a list in the domain language, null if empty
+	 * @return a set of lists in the domain language, null if empty
 	 * @throws TimeoutException 
 	 */
 	public HashSet<List<S>> getWitnesses(BooleanAlgebra<P, S> ba, int howMany) throws TimeoutException {
+		return getWitnesses(ba, howMany, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the <code>howMany</code> shortest sequences in the input domain
+	 * of length at most <code>maxLength</code> that are accepted by the
+	 * automaton
+	 * 
+	 * @return a set of lists in the domain language, null if there are none
+	 * @throws TimeoutException 
+	 */
+	public HashSet<List<S>> getWitnesses(BooleanAlgebra<P, S> ba, int howMany, int maxLength)
+			throws TimeoutException {
 		if (isEmpty)
 			return null;
 
-		Map<Integer, HashSet<List<S>>> witMap = new HashMap<>();
-		for (Integer state : getFinalStates()) {
-			HashSet<List<S>> s = new HashSet<>();
-			s.add(new LinkedList<>());
-			witMap.put(state, s);
-		}
-
-		boolean somethingChanged = true;
-		while (somethingChanged && (witMap.get(getInitialState()) == null
-				|| witMap.get(getInitialState()).size() < howMany)) {
-			somethingChanged = false;
-
-			for (Move<P, S> move : getMoves()) {
-				HashSet<List<S>> prevStrings = new HashSet<>();
-
-				if (!witMap.containsKey(move.from)) {
-					witMap.put(move.from, prevStrings);
-				} else {
-					prevStrings = witMap.get(move.from);
-				}
-
-				int size = prevStrings.size();
-				if (witMap.containsKey(move.to)) {
-					HashSet<List<S>> newStrings = new HashSet<List<S>>();
-					for (List<S> str : witMap.get(move.to)) {
-						if (!move.isEpsilonTransition()) {
-							LinkedList<S> newStr = new LinkedList<S>(str);
-							S wit = move.getWitness(ba);
-							newStr.addFirst(wit);
-							newStrings.add(newStr);
-						} else {
-							newStrings.add(str);
-						}
-					}
-					prevStrings.addAll(newStrings);
-					if (prevStrings.size() > size)
-						somethingChanged = true;
-				}
-			}
-		}
-		return witMap.get(getInitialState());
+		HashSet<List<S>> witnesses = new HashSet<List<S>>();
+		WitnessGenerator<P, S> generator = new WitnessGenerator<P, S>(this, ba, 0, maxLength);
+		for (List<S> witness; witnesses.size() < howMany && (witness = generator.next()) != null;)
+			witnesses.add(witness);
+		return witnesses.isEmpty() ? null : witnesses;
 	}
 
 	/**
-	 * Returns a sequence in the input domain that is accepted by the automaton
+	 * Returns a shortest sequence in the input domain that is accepted by the
+	 * automaton
 	 * 
 	 * @return a list in the domain language, null if empty
 	 * @throws TimeoutException 
@@ -166,38 +125,7 @@ public abstract class Automaton<P, S> {
 		if (isEmpty)
 			return null;
 
-		Map<Integer, LinkedList<S>> witMap = new HashMap<Integer, LinkedList<S>>();
-		for (Integer state : getFinalStates())
-			witMap.put(state, new LinkedList<S>());
-
-		HashSet<Integer> reachedStates = new HashSet<Integer>(getFinalStates());
-		HashSet<Integer> barreer = new HashSet<Integer>(getFinalStates());
-
-		while (!barreer.isEmpty()) {
-
-			ArrayList<Move<P, S>> moves = new ArrayList<Move<P, S>>(getMovesTo(barreer));
-
-			barreer = new HashSet<Integer>();
-			for (Move<P, S> move : moves) {
-				if (!reachedStates.contains(move.from)) {
-					barreer.add(move.from);
-					reachedStates.add(move.from);
-				}
-				LinkedList<S> newWit = new LinkedList<S>(witMap.get(move.to));
-				if (!move.isEpsilonTransition()) {
-					newWit.addFirst(move.getWitness(ba));
-				}
-				if (!witMap.containsKey(move.from))
-					witMap.put(move.from, newWit);
-				else {
-					LinkedList<S> oldWit = witMap.get(move.from);
-					if (oldWit.size() > newWit.size())
-						witMap.put(move.from, newWit);
-				}
-			}
-
-		}
-		return witMap.get(getInitialState());
+		return new WitnessGenerator<P, S>(this, ba).next();
 	}
 
 	/**
@@ -59,4 +59,12 @@ public abstract class Move<P, S> {
 	 */
 	public abstract String toDotString();
 
+	/**
+	 * @return the label of the move in exported graphs, empty for epsilon
+	 *         transitions
+	 */
+	public String toLabel() {
+		return isEpsilonTransition() ? "" : toString();
+	}
+
 }
@@ -0,0 +1,183 @@
+package automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Streams the words accepted by an automaton in order of length. The distance
+ * of every state from a final state is computed once with a backward BFS, then
+ * words are enumerated best-first with that distance as an exact heuristic, so
+ * that they are popped in order of length as in the k-shortest paths algorithm
+ * of Eppstein. The search runs over the subset view of the automaton: a word
+ * is expanded once, together with the set of states it reaches, and every
+ * extension adds a distinct symbol, so no two searched words are equal and no
+ * set of returned words is kept. Words are stored as parent pointers sharing
+ * their prefixes and are only expanded when popped, so memory grows with the
+ * number of prefixes explored up to the length of the last word returned, not
+ * with the ambiguity of the automaton. The symbols tried after a word are the
+ * witnesses of the moves leaving its states.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class WitnessGenerator<P, S> {
+
+	// A word, symbol is its last symbol and states the states it reaches that
+	// can still reach a final state
+	private static final class Node<S> {
+		final Collection<Integer> states;
+		final S symbol;
+		final Node<S> parent;
+		final int length;
+		final int priority;
+		final long order;
+
+		Node(Collection<Integer> states, S symbol, Node<S> parent, int length, int priority, long order) {
+			this.states = states;
+			this.symbol = symbol;
+			this.parent = parent;
+			this.length = length;
+			this.priority = priority;
+			this.order = order;
+		}
+	}
+
+	private final Automaton<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final int minLength;
+	private final int maxLength;
+
+	// length of the shortest word accepted from each state, missing for
+	// states that cannot reach a final state
+	private final Map<Integer, Integer> distance = new HashMap<Integer, Integer>();
+	private final PriorityQueue<Node<S>> toVisit;
+	private long created;
+
+	/**
+	 * Enumerates all the words accepted by <code>aut</code>
+	 */
+	public WitnessGenerator(Automaton<P, S> aut, BooleanAlgebra<P, S> ba) {
+		this(aut, ba, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Enumerates the words accepted by <code>aut</code> with length between
+	 * <code>minLength</code> and <code>maxLength</code> (included)
+	 */
+	public WitnessGenerator(Automaton<P, S> aut, BooleanAlgebra<P, S> ba, int minLength, int maxLength) {
+		this.aut = aut;
+		this.ba = ba;
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		this.toVisit = new PriorityQueue<Node<S>>(11, new Comparator<Node<S>>() {
+			@Override
+			public int compare(Node<S> n1, Node<S> n2) {
+				if (n1.priority != n2.priority)
+					return Integer.compare(n1.priority, n2.priority);
+				return Long.compare(n1.order, n2.order);
+			}
+		});
+
+		computeDistances();
+		add(aut.getEpsClosure(aut.getInitialState(), ba), null, null, 0);
+	}
+
+	/**
+	 * @return the next accepted word, no shorter than the ones returned before,
+	 *         null if there are no more words
+	 * @throws TimeoutException
+	 */
+	public List<S> next() throws TimeoutException {
+		while (!toVisit.isEmpty()) {
+			Node<S> curr = toVisit.poll();
+			expand(curr);
+			if (curr.length >= minLength && aut.isFinalConfiguration(curr.states))
+				return witness(curr);
+		}
+		return null;
+	}
+
+	// Adds the extensions of curr by one symbol that can still reach a final
+	// state within maxLength
+	private void expand(Node<S> curr) throws TimeoutException {
+		if (curr.length >= maxLength)
+			return;
+		Set<S> symbols = new LinkedHashSet<S>();
+		for (Move<P, S> move : aut.getMovesFrom(curr.states))
+			if (!move.isEpsilonTransition()) {
+				S symbol = move.getWitness(ba);
+				if (symbol != null)
+					symbols.add(symbol);
+			}
+		for (S symbol : symbols)
+			add(aut.getEpsClosure(aut.getNextState(curr.states, symbol, ba), ba), symbol, curr, curr.length + 1);
+	}
+
+	// Adds the word reaching states if some of them can reach a final state
+	// within maxLength
+	private void add(Collection<Integer> states, S symbol, Node<S> parent, int length) {
+		Collection<Integer> live = new ArrayList<Integer>(states.size());
+		int dist = Integer.MAX_VALUE;
+		for (Integer state : states) {
+			Integer d = distance.get(state);
+			if (d != null) {
+				live.add(state);
+				dist = Math.min(dist, d);
+			}
+		}
+		if (!live.isEmpty() && (long) length + dist <= maxLength)
+			toVisit.add(new Node<S>(live, symbol, parent, length, length + dist, created++));
+	}
+
+	private List<S> witness(Node<S> word) {
+		LinkedList<S> witness = new LinkedList<S>();
+		for (Node<S> n = word; n.parent != null; n = n.parent)
+			witness.addFirst(n.symbol);
+		return witness;
+	}
+
+	// Backward BFS from the final states, epsilon moves are explored first
+	// since they do not increase the distance
+	private void computeDistances() {
+		ArrayDeque<Integer> frontier = new ArrayDeque<Integer>();
+		for (Integer state : aut.getFinalStates()) {
+			distance.put(state, 0);
+			frontier.add(state);
+		}
+
+		HashSet<Integer> done = new HashSet<Integer>();
+		while (!frontier.isEmpty()) {
+			Integer state = frontier.pollFirst();
+			if (!done.add(state))
+				continue;
+			int dist = distance.get(state);
+			for (Move<P, S> move : aut.getMovesTo(state)) {
+				int newDist = move.isEpsilonTransition() ? dist : dist + 1;
+				Integer oldDist = distance.get(move.from);
+				if (oldDist == null || newDist < oldDist) {
+					distance.put(move.from, newDist);
+					if (move.isEpsilonTransition())
+						frontier.addFirst(move.from);
+					else
+						frontier.addLast(move.from);
+				}
+			}
+		}
+	}
+}
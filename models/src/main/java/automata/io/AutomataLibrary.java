@@ -0,0 +1,202 @@
+package automata.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.AutomataException;
+import automata.safa.SAFA;
+import automata.sfa.SFA;
+import automata.svpa.SVPA;
+import theory.BooleanAlgebra;
+
+/**
+ * A file of named automata in the format of {@link AutomataSerializer},
+ * preceded by an index of names, offsets and lengths. Opening a library maps
+ * the file in memory and only reads the index, every automaton is decoded
+ * when it is requested, so large libraries are opened in constant time.
+ * Libraries are limited to 2GB, the size of a {@link ByteBuffer}.
+ */
+public class AutomataLibrary {
+
+	private static final int LIBRARY_MAGIC = 0x4155544C;
+
+	private final ByteBuffer buffer;
+	// offset and length in buffer of each automaton
+	private final Map<String, int[]> index;
+
+	private AutomataLibrary(ByteBuffer buffer, Map<String, int[]> index) {
+		this.buffer = buffer;
+		this.index = index;
+	}
+
+	/**
+	 * Opens the library in <code>file</code> by mapping it in memory
+	 *
+	 * @throws AutomataException
+	 *             if the file is not a library
+	 */
+	public static AutomataLibrary open(File file) throws IOException, AutomataException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Opens the library stored in <code>buffer</code>
+	 *
+	 * @throws AutomataException
+	 *             if the buffer does not contain a library
+	 */
+	public static AutomataLibrary wrap(ByteBuffer buffer) throws AutomataException {
+		ByteBuffer in = buffer.duplicate();
+		try {
+			AutomataSerializer.readMagic(in, LIBRARY_MAGIC);
+			int size = in.getInt();
+			if (size < 0 || size > in.remaining())
+				throw new AutomataException("Invalid number of automata " + size);
+
+			Map<String, int[]> index = new LinkedHashMap<String, int[]>();
+			for (int i = 0; i < size; i++) {
+				int nameLength = in.getInt();
+				if (nameLength < 0 || nameLength > in.remaining())
+					throw new AutomataException("Invalid name length " + nameLength);
+				byte[] name = new byte[nameLength];
+				in.get(name);
+				int offset = in.getInt();
+				int length = in.getInt();
+				if (offset < 0 || length < 0 || offset > buffer.limit() - length)
+					throw new AutomataException("Invalid offset " + offset);
+				index.put(new String(name, StandardCharsets.UTF_8), new int[] { offset, length });
+			}
+			return new AutomataLibrary(buffer, index);
+		} catch (BufferUnderflowException e) {
+			throw new AutomataException("Unexpected end of input", e);
+		}
+	}
+
+	/**
+	 * @return the names of the automata in the library
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	/**
+	 * @return the bytes of the automaton <code>name</code>, null if it is not
+	 *         in the library
+	 */
+	public ByteBuffer getBytes(String name) {
+		int[] entry = index.get(name);
+		if (entry == null)
+			return null;
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.position(entry[0]);
+		bytes.limit(entry[0] + entry[1]);
+		return bytes.slice();
+	}
+
+	/**
+	 * @return the SFA <code>name</code>, null if it is not in the library
+	 * @throws AutomataException
+	 *             if <code>name</code> is not an SFA
+	 * @throws TimeoutException
+	 */
+	public <P, S> SFA<P, S> getSFA(String name, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		ByteBuffer bytes = getBytes(name);
+		return bytes == null ? null : AutomataSerializer.readSFA(bytes, codec, ba);
+	}
+
+	/**
+	 * @return the SAFA <code>name</code>, null if it is not in the library
+	 * @throws AutomataException
+	 *             if <code>name</code> is not a SAFA
+	 * @throws TimeoutException
+	 */
+	public <P, S> SAFA<P, S> getSAFA(String name, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		ByteBuffer bytes = getBytes(name);
+		return bytes == null ? null : AutomataSerializer.readSAFA(bytes, codec, ba);
+	}
+
+	/**
+	 * @return the SVPA <code>name</code>, null if it is not in the library
+	 * @throws AutomataException
+	 *             if <code>name</code> is not an SVPA
+	 * @throws TimeoutException
+	 */
+	public <P, S> SVPA<P, S> getSVPA(String name, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		ByteBuffer bytes = getBytes(name);
+		return bytes == null ? null : AutomataSerializer.readSVPA(bytes, codec, ba);
+	}
+
+	/**
+	 * Collects named automata and writes them as a library
+	 */
+	public static class Builder {
+
+		private final Map<String, byte[]> automata = new LinkedHashMap<String, byte[]>();
+
+		public <P, S> Builder addSFA(String name, SFA<P, S> aut, GuardCodec<P> codec) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			AutomataSerializer.writeSFA(aut, codec, bytes);
+			automata.put(name, bytes.toByteArray());
+			return this;
+		}
+
+		public <P, S> Builder addSAFA(String name, SAFA<P, S> aut, GuardCodec<P> codec) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			AutomataSerializer.writeSAFA(aut, codec, bytes);
+			automata.put(name, bytes.toByteArray());
+			return this;
+		}
+
+		public <P, S> Builder addSVPA(String name, SVPA<P, S> aut, GuardCodec<P> codec) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			AutomataSerializer.writeSVPA(aut, codec, bytes);
+			automata.put(name, bytes.toByteArray());
+			return this;
+		}
+
+		/**
+		 * Writes the library to <code>out</code>
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			// the automata start after the header and the index
+			int offset = 4 + 2 + 4;
+			for (String name : automata.keySet())
+				offset += 4 + name.getBytes(StandardCharsets.UTF_8).length + 4 + 4;
+
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(LIBRARY_MAGIC);
+			data.writeShort(AutomataSerializer.VERSION);
+			data.writeInt(automata.size());
+			for (Map.Entry<String, byte[]> entry : automata.entrySet()) {
+				byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				data.writeInt(name.length);
+				data.write(name);
+				data.writeInt(offset);
+				data.writeInt(entry.getValue().length);
+				offset += entry.getValue().length;
+			}
+			for (byte[] aut : automata.values())
+				data.write(aut);
+			data.flush();
+		}
+	}
+}
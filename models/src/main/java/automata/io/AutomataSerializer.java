@@ -0,0 +1,505 @@
+package automata.io;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.AutomataException;
+import automata.safa.BooleanExpression;
+import automata.safa.BooleanExpressionFactory;
+import automata.safa.LatticeMorphism;
+import automata.safa.SAFA;
+import automata.safa.SAFAInputMove;
+import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import automata.svpa.Call;
+import automata.svpa.Internal;
+import automata.svpa.Return;
+import automata.svpa.ReturnBS;
+import automata.svpa.SVPA;
+import automata.svpa.SVPAEpsilon;
+import automata.svpa.SVPAMove;
+import theory.BooleanAlgebra;
+
+/**
+ * Versioned binary format for SFAs, SAFAs and SVPAs. States are renumbered
+ * densely from 0 in increasing order, the distinct guards are stored once in a
+ * table encoded by a {@link GuardCodec}, and moves refer to guards by their
+ * index in the table. Every automaton starts with a magic number, the version
+ * of the format and the kind of automaton. Automata are read from a
+ * {@link ByteBuffer}, which can be a memory mapped file (see
+ * {@link AutomataLibrary}).
+ */
+public class AutomataSerializer {
+
+	static final int MAGIC = 0x41555442;
+	static final short VERSION = 1;
+
+	private static final byte SFA_KIND = 1;
+	private static final byte SAFA_KIND = 2;
+	private static final byte SVPA_KIND = 3;
+
+	// move tags of SVPAs, SFAs only use the first two
+	private static final byte INPUT = 0;
+	private static final byte EPSILON = 1;
+	private static final byte CALL = 2;
+	private static final byte RETURN = 3;
+	private static final byte RETURN_BS = 4;
+
+	// tags of the prefix encoding of SAFA expressions, states are >= 0
+	private static final int AND = -1;
+	private static final int OR = -2;
+	private static final int TRUE = -3;
+	private static final int FALSE = -4;
+
+	private AutomataSerializer() {
+	}
+
+	// ------------------------------------------------------
+	// SFA
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>
+	 */
+	public static <P, S> void writeSFA(SFA<P, S> aut, GuardCodec<P> codec, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		writeHeader(data, SFA_KIND);
+
+		Map<Integer, Integer> ids = denseIds(aut.getStates());
+		Map<P, Integer> guards = new LinkedHashMap<P, Integer>();
+		for (SFAInputMove<P, S> move : aut.getInputMovesFrom(aut.getStates()))
+			guardId(move.guard, guards);
+
+		data.writeInt(ids.size());
+		data.writeInt(ids.get(aut.getInitialState()));
+		writeStates(aut.getFinalStates(), ids, data);
+		writeGuards(guards, codec, data);
+
+		Collection<SFAMove<P, S>> moves = aut.getTransitions();
+		data.writeInt(moves.size());
+		for (SFAMove<P, S> move : moves) {
+			data.writeByte(move.isEpsilonTransition() ? EPSILON : INPUT);
+			data.writeInt(ids.get(move.from));
+			data.writeInt(ids.get(move.to));
+			if (!move.isEpsilonTransition())
+				data.writeInt(guards.get(((SFAInputMove<P, S>) move).guard));
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads an SFA written by {@link #writeSFA} from the current position of
+	 * <code>in</code>
+	 *
+	 * @throws AutomataException
+	 *             if the bytes do not encode an SFA
+	 * @throws TimeoutException
+	 */
+	public static <P, S> SFA<P, S> readSFA(ByteBuffer in, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		try {
+			readHeader(in, SFA_KIND);
+			int stateCount = readCount(in);
+			int initialState = readState(in, stateCount);
+			List<Integer> finalStates = readStates(in, stateCount);
+			List<P> guards = readGuards(in, codec);
+
+			int moveCount = readCount(in);
+			List<SFAMove<P, S>> moves = new ArrayList<SFAMove<P, S>>(moveCount);
+			for (int i = 0; i < moveCount; i++) {
+				byte tag = in.get();
+				int from = readState(in, stateCount);
+				int to = readState(in, stateCount);
+				if (tag == EPSILON)
+					moves.add(new SFAEpsilon<P, S>(from, to));
+				else if (tag == INPUT)
+					moves.add(new SFAInputMove<P, S>(from, to, readGuard(in, guards)));
+				else
+					throw new AutomataException("Invalid move tag " + tag);
+			}
+			return SFA.MkSFA(moves, initialState, finalStates, ba, false, false);
+		} catch (BufferUnderflowException e) {
+			throw new AutomataException("Unexpected end of input", e);
+		}
+	}
+
+	// ------------------------------------------------------
+	// SAFA
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>
+	 */
+	public static <P, S> void writeSAFA(SAFA<P, S> aut, GuardCodec<P> codec, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		writeHeader(data, SAFA_KIND);
+
+		Map<Integer, Integer> ids = denseIds(aut.getStates());
+		Map<P, Integer> guards = new LinkedHashMap<P, Integer>();
+		Collection<SAFAInputMove<P, S>> moves = aut.getInputMoves();
+		for (SAFAInputMove<P, S> move : moves)
+			guardId(move.guard, guards);
+
+		data.writeInt(ids.size());
+		writeExpression(aut.getInitialState(), ids, data);
+		writeStates(aut.getFinalStates(), ids, data);
+		writeGuards(guards, codec, data);
+
+		data.writeInt(moves.size());
+		for (SAFAInputMove<P, S> move : moves) {
+			data.writeInt(ids.get(move.from));
+			data.writeInt(guards.get(move.guard));
+			writeExpression(move.to, ids, data);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a SAFA written by {@link #writeSAFA} from the current position of
+	 * <code>in</code>
+	 *
+	 * @throws AutomataException
+	 *             if the bytes do not encode a SAFA
+	 * @throws TimeoutException
+	 */
+	public static <P, S> SAFA<P, S> readSAFA(ByteBuffer in, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		try {
+			readHeader(in, SAFA_KIND);
+			BooleanExpressionFactory<PositiveBooleanExpression> factory = SAFA.getBooleanExpressionFactory();
+			int stateCount = readCount(in);
+			PositiveBooleanExpression initialState = readExpression(in, stateCount, factory);
+			List<Integer> finalStates = readStates(in, stateCount);
+			List<P> guards = readGuards(in, codec);
+
+			int moveCount = readCount(in);
+			List<SAFAInputMove<P, S>> moves = new ArrayList<SAFAInputMove<P, S>>(moveCount);
+			for (int i = 0; i < moveCount; i++) {
+				int from = readState(in, stateCount);
+				P guard = readGuard(in, guards);
+				moves.add(new SAFAInputMove<P, S>(from, readExpression(in, stateCount, factory), guard));
+			}
+			return SAFA.MkSAFA(moves, initialState, finalStates, ba, false, false, false);
+		} catch (BufferUnderflowException e) {
+			throw new AutomataException("Unexpected end of input", e);
+		}
+	}
+
+	// ------------------------------------------------------
+	// SVPA
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>, stack states are written
+	 * as they are
+	 */
+	public static <P, S> void writeSVPA(SVPA<P, S> aut, GuardCodec<P> codec, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		writeHeader(data, SVPA_KIND);
+
+		Map<Integer, Integer> ids = denseIds(aut.getStates());
+		Map<P, Integer> guards = new LinkedHashMap<P, Integer>();
+		Collection<SVPAMove<P, S>> moves = aut.getMoves();
+		for (SVPAMove<P, S> move : moves)
+			if (guardOf(move) != null)
+				guardId(guardOf(move), guards);
+
+		data.writeInt(ids.size());
+		writeStates(aut.getInitialStates(), ids, data);
+		writeStates(aut.getFinalStates(), ids, data);
+		writeGuards(guards, codec, data);
+
+		data.writeInt(moves.size());
+		for (SVPAMove<P, S> move : moves) {
+			byte tag = tagOf(move);
+			data.writeByte(tag);
+			data.writeInt(ids.get(move.from));
+			data.writeInt(ids.get(move.to));
+			if (tag == CALL)
+				data.writeInt(((Call<P, S>) move).getStackState());
+			else if (tag == RETURN)
+				data.writeInt(((Return<P, S>) move).getStackState());
+			if (tag != EPSILON)
+				data.writeInt(guards.get(guardOf(move)));
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads an SVPA written by {@link #writeSVPA} from the current position of
+	 * <code>in</code>
+	 *
+	 * @throws AutomataException
+	 *             if the bytes do not encode an SVPA
+	 * @throws TimeoutException
+	 */
+	public static <P, S> SVPA<P, S> readSVPA(ByteBuffer in, GuardCodec<P> codec, BooleanAlgebra<P, S> ba)
+			throws AutomataException, TimeoutException {
+		try {
+			readHeader(in, SVPA_KIND);
+			int stateCount = readCount(in);
+			List<Integer> initialStates = readStates(in, stateCount);
+			List<Integer> finalStates = readStates(in, stateCount);
+			List<P> guards = readGuards(in, codec);
+
+			int moveCount = readCount(in);
+			List<SVPAMove<P, S>> moves = new ArrayList<SVPAMove<P, S>>(moveCount);
+			for (int i = 0; i < moveCount; i++) {
+				byte tag = in.get();
+				int from = readState(in, stateCount);
+				int to = readState(in, stateCount);
+				switch (tag) {
+				case INPUT:
+					moves.add(new Internal<P, S>(from, to, readGuard(in, guards)));
+					break;
+				case EPSILON:
+					moves.add(new SVPAEpsilon<P, S>(from, to));
+					break;
+				case CALL:
+					int pushed = in.getInt();
+					moves.add(new Call<P, S>(from, to, pushed, readGuard(in, guards)));
+					break;
+				case RETURN:
+					int popped = in.getInt();
+					moves.add(new Return<P, S>(from, to, popped, readGuard(in, guards)));
+					break;
+				case RETURN_BS:
+					moves.add(new ReturnBS<P, S>(from, to, readGuard(in, guards)));
+					break;
+				default:
+					throw new AutomataException("Invalid move tag " + tag);
+				}
+			}
+			return SVPA.MkSVPA(moves, initialStates, finalStates, ba);
+		} catch (BufferUnderflowException e) {
+			throw new AutomataException("Unexpected end of input", e);
+		}
+	}
+
+	private static <P, S> byte tagOf(SVPAMove<P, S> move) {
+		if (move instanceof Internal)
+			return INPUT;
+		if (move instanceof Call)
+			return CALL;
+		if (move instanceof Return)
+			return RETURN;
+		if (move instanceof ReturnBS)
+			return RETURN_BS;
+		return EPSILON;
+	}
+
+	private static <P, S> P guardOf(SVPAMove<P, S> move) {
+		if (move instanceof Internal)
+			return ((Internal<P, S>) move).getGuard();
+		if (move instanceof Call)
+			return ((Call<P, S>) move).getGuard();
+		if (move instanceof Return)
+			return ((Return<P, S>) move).getGuard();
+		if (move instanceof ReturnBS)
+			return ((ReturnBS<P, S>) move).getGuard();
+		return null;
+	}
+
+	// ------------------------------------------------------
+	// Auxiliary functions
+	// ------------------------------------------------------
+
+	static void readMagic(ByteBuffer in, int magic) throws AutomataException {
+		if (in.getInt() != magic)
+			throw new AutomataException("Not an automaton file");
+		short version = in.getShort();
+		if (version < 1 || version > VERSION)
+			throw new AutomataException("Unsupported format version " + version);
+	}
+
+	private static void writeHeader(DataOutput out, byte kind) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeByte(kind);
+	}
+
+	private static void readHeader(ByteBuffer in, byte kind) throws AutomataException {
+		readMagic(in, MAGIC);
+		byte found = in.get();
+		if (found != kind)
+			throw new AutomataException("Expected automaton of kind " + kind + " but found " + found);
+	}
+
+	private static Map<Integer, Integer> denseIds(Collection<Integer> states) {
+		Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		for (Integer state : new TreeSet<Integer>(states))
+			ids.put(state, ids.size());
+		return ids;
+	}
+
+	private static <P> int guardId(P guard, Map<P, Integer> guards) {
+		Integer id = guards.get(guard);
+		if (id == null) {
+			id = guards.size();
+			guards.put(guard, id);
+		}
+		return id;
+	}
+
+	private static void writeStates(Collection<Integer> states, Map<Integer, Integer> ids, DataOutput out)
+			throws IOException {
+		out.writeInt(states.size());
+		for (Integer state : states)
+			out.writeInt(ids.get(state));
+	}
+
+	private static List<Integer> readStates(ByteBuffer in, int stateCount) throws AutomataException {
+		int size = readCount(in);
+		List<Integer> states = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			states.add(readState(in, stateCount));
+		return states;
+	}
+
+	private static <P> void writeGuards(Map<P, Integer> guards, GuardCodec<P> codec, DataOutput out)
+			throws IOException {
+		out.writeInt(guards.size());
+		for (P guard : guards.keySet())
+			codec.write(guard, out);
+	}
+
+	private static <P> List<P> readGuards(ByteBuffer in, GuardCodec<P> codec) throws AutomataException {
+		int size = readCount(in);
+		List<P> guards = new ArrayList<P>(size);
+		for (int i = 0; i < size; i++)
+			guards.add(codec.read(in));
+		return guards;
+	}
+
+	private static <P> P readGuard(ByteBuffer in, List<P> guards) throws AutomataException {
+		int id = in.getInt();
+		if (id < 0 || id >= guards.size())
+			throw new AutomataException("Invalid guard " + id);
+		return guards.get(id);
+	}
+
+	private static int readCount(ByteBuffer in) throws AutomataException {
+		int count = in.getInt();
+		if (count < 0 || count > in.remaining())
+			throw new AutomataException("Invalid count " + count);
+		return count;
+	}
+
+	private static int readState(ByteBuffer in, int stateCount) throws AutomataException {
+		int state = in.getInt();
+		if (state < 0 || state >= stateCount)
+			throw new AutomataException("Invalid state " + state);
+		return state;
+	}
+
+	// Writes the prefix encoding of expr, which is first mapped to a tree of
+	// codes and then written in one pass
+	private static void writeExpression(BooleanExpression expr, final Map<Integer, Integer> ids, DataOutput out)
+			throws IOException {
+		Code code = expr.apply(new LatticeMorphism<BooleanExpression, Code>() {
+			public Code MkAnd(Code left, Code right) {
+				return new Code(AND, left, right);
+			}
+
+			public Code MkOr(Code left, Code right) {
+				return new Code(OR, left, right);
+			}
+
+			public Code True() {
+				return new Code(TRUE, null, null);
+			}
+
+			public Code False() {
+				return new Code(FALSE, null, null);
+			}
+
+			public Code apply(int state) {
+				return new Code(ids.get(state), null, null);
+			}
+
+			public Code apply(BooleanExpression phi) {
+				return phi.apply(this);
+			}
+		});
+		out.writeInt(code.size);
+		ArrayDeque<Code> toWrite = new ArrayDeque<Code>();
+		toWrite.push(code);
+		while (!toWrite.isEmpty()) {
+			Code curr = toWrite.pop();
+			out.writeInt(curr.tag);
+			if (curr.right != null)
+				toWrite.push(curr.right);
+			if (curr.left != null)
+				toWrite.push(curr.left);
+		}
+	}
+
+	// A subexpression, size is the length of its prefix encoding
+	private static final class Code {
+		final int tag;
+		final Code left;
+		final Code right;
+		final int size;
+
+		Code(int tag, Code left, Code right) {
+			this.tag = tag;
+			this.left = left;
+			this.right = right;
+			this.size = 1 + (left == null ? 0 : left.size) + (right == null ? 0 : right.size);
+		}
+	}
+
+	private static PositiveBooleanExpression readExpression(ByteBuffer in, int stateCount,
+			BooleanExpressionFactory<PositiveBooleanExpression> factory) throws AutomataException {
+		int size = readCount(in);
+		int[] code = new int[size];
+		for (int i = 0; i < size; i++)
+			code[i] = in.getInt();
+		int[] next = new int[1];
+		PositiveBooleanExpression expr = decodeExpression(code, next, stateCount, factory);
+		if (next[0] != size)
+			throw new AutomataException("Invalid expression");
+		return expr;
+	}
+
+	// Decodes the expression starting at next[0] and moves next[0] after it
+	private static PositiveBooleanExpression decodeExpression(int[] code, int[] next, int stateCount,
+			BooleanExpressionFactory<PositiveBooleanExpression> factory) throws AutomataException {
+		if (next[0] >= code.length)
+			throw new AutomataException("Invalid expression");
+		int tag = code[next[0]++];
+		switch (tag) {
+		case AND:
+			PositiveBooleanExpression left = decodeExpression(code, next, stateCount, factory);
+			return factory.MkAnd(left, decodeExpression(code, next, stateCount, factory));
+		case OR:
+			PositiveBooleanExpression first = decodeExpression(code, next, stateCount, factory);
+			return factory.MkOr(first, decodeExpression(code, next, stateCount, factory));
+		case TRUE:
+			return factory.True();
+		case FALSE:
+			return factory.False();
+		default:
+			if (tag < 0 || tag >= stateCount)
+				throw new AutomataException("Invalid state " + tag);
+			return factory.MkState(tag);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package automata.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import automata.Automaton;
+import automata.Move;
+
+/**
+ * Writes automata as DOT, JSON or GraphML through a buffered writer. States
+ * and moves are written as they are enumerated, so no description of the
+ * whole automaton is built in memory. Large automata can be truncated to the
+ * first states reached in breadth-first order from the initial state and to
+ * a maximum number of moves, in which case only the selected states are kept
+ * in memory and the output is marked as truncated.
+ */
+public class AutomatonExporter {
+
+	/**
+	 * The supported output formats
+	 */
+	public enum Format {
+		DOT, JSON, GRAPHML
+	}
+
+	private final Format format;
+	private int maxStates = Integer.MAX_VALUE;
+	private int maxMoves = Integer.MAX_VALUE;
+
+	public AutomatonExporter(Format format) {
+		this.format = format;
+	}
+
+	/**
+	 * Only exports the first <code>maxStates</code> states reached from the
+	 * initial state, and the moves between them
+	 */
+	public AutomatonExporter limitStates(int maxStates) {
+		checkArgument(maxStates > 0, "maxStates must be positive");
+		this.maxStates = maxStates;
+		return this;
+	}
+
+	/**
+	 * Only exports the first <code>maxMoves</code> moves
+	 */
+	public AutomatonExporter limitMoves(int maxMoves) {
+		checkArgument(maxMoves >= 0, "maxMoves must be non-negative");
+		this.maxMoves = maxMoves;
+		return this;
+	}
+
+	/**
+	 * Writes <code>aut</code> to <code>file</code>
+	 */
+	public <P, S> void export(Automaton<P, S> aut, String name, File file) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			export(aut, name, out);
+		}
+	}
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code> in UTF-8, without closing it
+	 */
+	public <P, S> void export(Automaton<P, S> aut, String name, OutputStream out) throws IOException {
+		export(aut, name, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>, without closing it
+	 */
+	public <P, S> void export(Automaton<P, S> aut, String name, Writer out) throws IOException {
+		Writer w = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+
+		Collection<Integer> states = aut.getStates();
+		Set<Integer> selected = null;
+		if (maxStates < states.size()) {
+			selected = selectStates(aut);
+			states = selected;
+		}
+		boolean truncated = selected != null;
+
+		switch (format) {
+		case DOT:
+			w.write("digraph " + name + "{\n rankdir=LR;\n");
+			break;
+		case JSON:
+			w.write("{\"name\":" + jsonString(name) + ",\"initial\":" + aut.getInitialState() + ",\"states\":[");
+			break;
+		case GRAPHML:
+			w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+					+ " <key id=\"final\" for=\"node\" attr.name=\"final\" attr.type=\"boolean\"/>\n"
+					+ " <key id=\"initial\" for=\"node\" attr.name=\"initial\" attr.type=\"boolean\"/>\n"
+					+ " <key id=\"label\" for=\"edge\" attr.name=\"label\" attr.type=\"string\"/>\n"
+					+ " <graph id=" + xmlString(name) + " edgedefault=\"directed\">\n");
+			break;
+		}
+
+		boolean first = true;
+		for (Integer state : states) {
+			writeState(aut, state, first, w);
+			first = false;
+		}
+
+		if (format == Format.DOT)
+			w.write("XX" + aut.getInitialState() + " -> " + aut.getInitialState() + "\n");
+		else if (format == Format.JSON)
+			w.write("],\"moves\":[");
+
+		int moves = 0;
+		first = true;
+		exportMoves: for (Integer state : states)
+			for (Move<P, S> move : aut.getMovesFrom(state)) {
+				if (selected != null && !selected.contains(move.to))
+					continue;
+				if (moves == maxMoves) {
+					truncated = true;
+					break exportMoves;
+				}
+				writeMove(move, first, w);
+				first = false;
+				moves++;
+			}
+
+		switch (format) {
+		case DOT:
+			if (truncated)
+				w.write("// truncated\n");
+			w.write("}");
+			break;
+		case JSON:
+			w.write("],\"truncated\":" + truncated + "}");
+			break;
+		case GRAPHML:
+			if (truncated)
+				w.write(" <!-- truncated -->\n");
+			w.write(" </graph>\n</graphml>\n");
+			break;
+		}
+		w.flush();
+	}
+
+	private <P, S> void writeState(Automaton<P, S> aut, Integer state, boolean first, Writer w)
+			throws IOException {
+		boolean isFinal = aut.isFinalState(state);
+		boolean isInitial = aut.isInitialState(state);
+		switch (format) {
+		case DOT:
+			w.write(state + "[label=" + state + (isFinal ? ",peripheries=2" : "") + "]\n");
+			if (isInitial)
+				w.write("XX" + state + " [color=white, label=\"\"]");
+			break;
+		case JSON:
+			w.write((first ? "" : ",") + "{\"id\":" + state + ",\"final\":" + isFinal + "}");
+			break;
+		case GRAPHML:
+			w.write("  <node id=\"" + state + "\"><data key=\"final\">" + isFinal
+					+ "</data><data key=\"initial\">" + isInitial + "</data></node>\n");
+			break;
+		}
+	}
+
+	private <P, S> void writeMove(Move<P, S> move, boolean first, Writer w) throws IOException {
+		switch (format) {
+		case DOT:
+			w.write(move.toDotString());
+			break;
+		case JSON:
+			w.write((first ? "" : ",") + "{\"from\":" + move.from + ",\"to\":" + move.to + ",\"epsilon\":"
+					+ move.isEpsilonTransition() + ",\"label\":" + jsonString(move.toLabel()) + "}");
+			break;
+		case GRAPHML:
+			w.write("  <edge source=\"" + move.from + "\" target=\"" + move.to + "\"><data key=\"label\">"
+					+ xmlText(move.toLabel()) + "</data></edge>\n");
+			break;
+		}
+	}
+
+	// The first maxStates states in breadth-first order from the initial state
+	private <P, S> Set<Integer> selectStates(Automaton<P, S> aut) {
+		Set<Integer> selected = new LinkedHashSet<Integer>();
+		ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+		selected.add(aut.getInitialState());
+		toVisit.add(aut.getInitialState());
+		while (!toVisit.isEmpty() && selected.size() < maxStates)
+			for (Move<P, S> move : aut.getMovesFrom(toVisit.poll()))
+				if (selected.size() < maxStates && selected.add(move.to))
+					toVisit.add(move.to);
+		return selected;
+	}
+
+	private static String jsonString(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String xmlText(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				// characters not allowed in XML 1.0 are replaced
+				if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c >= 0xFFFE)
+					sb.append('\uFFFD');
+				else
+					sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String xmlString(String s) {
+		return "\"" + xmlText(s) + "\"";
+	}
+}
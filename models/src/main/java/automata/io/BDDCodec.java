@@ -0,0 +1,109 @@
+package automata.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import automata.AutomataException;
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+
+/**
+ * Encodes a {@link BDD} as the list of its nodes, children first. Nodes 0
+ * and 1 are the constants and every other node is stored as its variable and
+ * the indices of its low and high children, so shared subgraphs are written
+ * once. Guards are read into the factory given at construction, which must
+ * have at least as many variables as the one they were written from.
+ */
+public class BDDCodec implements GuardCodec<BDD> {
+
+	private final BDDFactory factory;
+
+	public BDDCodec(BDDFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public void write(BDD guard, DataOutput out) throws IOException {
+		// the nodes are references of their own, freed once they are written
+		Map<BDD, Integer> ids = new HashMap<BDD, Integer>();
+		List<BDD> nodes = new ArrayList<BDD>();
+		try {
+			int root = number(guard.id(), ids, nodes);
+
+			out.writeInt(nodes.size());
+			for (BDD node : nodes) {
+				out.writeInt(node.var());
+				out.writeInt(idOf(node.low(), ids));
+				out.writeInt(idOf(node.high(), ids));
+			}
+			out.writeInt(root);
+		} finally {
+			for (BDD node : nodes)
+				node.free();
+		}
+	}
+
+	// Numbers the nodes of bdd after its children, from 2 on. The reference
+	// bdd is kept in nodes if it is a new node, and freed otherwise.
+	private int number(BDD bdd, Map<BDD, Integer> ids, List<BDD> nodes) {
+		if (bdd.isZero() || bdd.isOne() || ids.containsKey(bdd))
+			return idOf(bdd, ids);
+
+		// low and high add references to the children
+		number(bdd.low(), ids, nodes);
+		number(bdd.high(), ids, nodes);
+		nodes.add(bdd);
+		int id = nodes.size() + 1;
+		ids.put(bdd, id);
+		return id;
+	}
+
+	// Number of a node that is already numbered, whose reference is freed
+	private static int idOf(BDD bdd, Map<BDD, Integer> ids) {
+		try {
+			if (bdd.isZero())
+				return 0;
+			if (bdd.isOne())
+				return 1;
+			return ids.get(bdd);
+		} finally {
+			bdd.free();
+		}
+	}
+
+	@Override
+	public BDD read(ByteBuffer in) throws AutomataException {
+		int size = in.getInt();
+		if (size < 0 || size > in.remaining() / 12)
+			throw new AutomataException("Invalid number of BDD nodes " + size);
+
+		BDD[] built = new BDD[size + 2];
+		int root = -1;
+		try {
+			built[0] = factory.zero();
+			built[1] = factory.one();
+			for (int i = 2; i < built.length; i++) {
+				int var = in.getInt();
+				int low = in.getInt();
+				int high = in.getInt();
+				if (var < 0 || var >= factory.varNum() || low < 0 || low >= i || high < 0 || high >= i)
+					throw new AutomataException("Invalid BDD node " + var + " " + low + " " + high);
+				built[i] = factory.ithVar(var).ite(built[high], built[low]);
+			}
+			root = in.getInt();
+			if (root < 0 || root >= built.length)
+				throw new AutomataException("Invalid BDD root " + root);
+			return built[root];
+		} finally {
+			// only the root is kept referenced
+			for (int i = 0; i < built.length; i++)
+				if (i != root && built[i] != null)
+					built[i].free();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package automata.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import com.google.common.collect.ImmutableList;
+
+import automata.AutomataException;
+import theory.characters.CharPred;
+
+/**
+ * Encodes a {@link CharPred} as its return flag followed by the number of its
+ * intervals and their extremes
+ */
+public class CharPredCodec implements GuardCodec<CharPred> {
+
+	@Override
+	public void write(CharPred guard, DataOutput out) throws IOException {
+		out.writeBoolean(guard.isReturn());
+		out.writeInt(guard.intervals.size());
+		for (ImmutablePair<Character, Character> interval : guard.intervals) {
+			out.writeChar(interval.left);
+			out.writeChar(interval.right);
+		}
+	}
+
+	@Override
+	public CharPred read(ByteBuffer in) throws AutomataException {
+		boolean isReturn = in.get() != 0;
+		int size = in.getInt();
+		if (size < 0 || size > in.remaining() / 4)
+			throw new AutomataException("Invalid number of intervals " + size);
+
+		ImmutableList.Builder<ImmutablePair<Character, Character>> intervals = ImmutableList.builder();
+		for (int i = 0; i < size; i++) {
+			char left = in.getChar();
+			char right = in.getChar();
+			if (left > right)
+				throw new AutomataException("Invalid interval " + (int) left + "-" + (int) right);
+			intervals.add(ImmutablePair.of(left, right));
+		}
+		return new CharPred(intervals.build(), isReturn);
+	}
+}
@@ -0,0 +1,31 @@
+package automata.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import automata.AutomataException;
+
+/**
+ * Binary encoding of the predicates of a Boolean algebra, used to store the
+ * guards of automata. A guard written with {@link #write} must be read back
+ * by {@link #read} consuming exactly the bytes that were written.
+ *
+ * @param <P>
+ *            type of the predicates
+ */
+public interface GuardCodec<P> {
+
+	/**
+	 * Writes <code>guard</code> to <code>out</code>
+	 */
+	public void write(P guard, DataOutput out) throws IOException;
+
+	/**
+	 * Reads a guard from the current position of <code>in</code>
+	 *
+	 * @throws AutomataException
+	 *             if the bytes do not encode a guard
+	 */
+	public P read(ByteBuffer in) throws AutomataException;
+}
@@ -0,0 +1,61 @@
+package automata.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import automata.AutomataException;
+import theory.characters.BinaryCharPred;
+import theory.characters.CharPred;
+import theory.characters.ICharPred;
+import utilities.Pair;
+
+/**
+ * Encodes the unary and binary character predicates used by SVPAs, a tag
+ * tells the two apart and the intervals are encoded by {@link CharPredCodec}
+ */
+public class ICharPredCodec implements GuardCodec<ICharPred> {
+
+	private static final byte UNARY = 0;
+	private static final byte BINARY = 1;
+
+	private final CharPredCodec charPredCodec = new CharPredCodec();
+
+	@Override
+	public void write(ICharPred guard, DataOutput out) throws IOException {
+		if (guard instanceof CharPred) {
+			out.writeByte(UNARY);
+			charPredCodec.write((CharPred) guard, out);
+		} else {
+			BinaryCharPred binary = (BinaryCharPred) guard;
+			out.writeByte(BINARY);
+			charPredCodec.write(binary.equals, out);
+			out.writeInt(binary.notEqual.size());
+			for (Pair<CharPred, CharPred> pair : binary.notEqual) {
+				charPredCodec.write(pair.first, out);
+				charPredCodec.write(pair.second, out);
+			}
+		}
+	}
+
+	@Override
+	public ICharPred read(ByteBuffer in) throws AutomataException {
+		byte tag = in.get();
+		if (tag == UNARY)
+			return charPredCodec.read(in);
+		if (tag != BINARY)
+			throw new AutomataException("Invalid predicate tag " + tag);
+
+		CharPred equals = charPredCodec.read(in);
+		int size = in.getInt();
+		if (size < 0 || size > in.remaining())
+			throw new AutomataException("Invalid number of pairs " + size);
+		ArrayList<Pair<CharPred, CharPred>> notEqual = new ArrayList<Pair<CharPred, CharPred>>(size);
+		for (int i = 0; i < size; i++) {
+			CharPred first = charPredCodec.read(in);
+			notEqual.add(new Pair<CharPred, CharPred>(first, charPredCodec.read(in)));
+		}
+		return new BinaryCharPred(equals, notEqual);
+	}
+}
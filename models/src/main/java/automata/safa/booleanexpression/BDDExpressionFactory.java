@@ -1,15 +1,38 @@
 package automata.safa.booleanexpression;
 
 import automata.safa.BooleanExpressionFactory;
+import theory.bdd.BDDFactoryPool;
 import theory.bddalgebra.BDDSolver;
 
-public class BDDExpressionFactory extends BooleanExpressionFactory<BDDExpression> {
+public class BDDExpressionFactory extends BooleanExpressionFactory<BDDExpression> implements AutoCloseable {
 
 	private BDDSolver solver;
-	
+	private final BDDFactoryPool pool;
+
+	/**
+	 * Expressions over a BDD factory leased from the shared pool, given back
+	 * by {@link #close()}
+	 */
 	public BDDExpressionFactory(int num) {
+		this(num, BDDFactoryPool.getShared());
+	}
+
+	public BDDExpressionFactory(int num, BDDFactoryPool pool) {
 		super();
-		this.solver = new BDDSolver(num);
+		this.pool = pool;
+		this.solver = new BDDSolver(pool.lease(), num);
+	}
+
+	/**
+	 * Gives the BDD factory back to its pool, after which the expressions of
+	 * this factory must not be used
+	 */
+	@Override
+	public void close() {
+		if (solver != null) {
+			pool.release(solver.factory);
+			solver = null;
+		}
 	}
 
 	@Override
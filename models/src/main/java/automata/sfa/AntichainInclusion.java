@@ -0,0 +1,234 @@
+package automata.sfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * Language inclusion between nondeterministic SFAs with antichains (De Wulf et
+ * al., CAV06). The product of the included automaton with the subset
+ * construction of the including one is explored without determinizing: a
+ * pair (p,P) is only explored if no pair (p,P') with P' contained in P was
+ * reached before, since every word rejected from P is also rejected from P'.
+ * With simulation pruning (Abdulla et al., TACAS10) the states of P simulated
+ * by other states of P are dropped, and containment is replaced by the
+ * simulation preorder.
+ */
+class AntichainInclusion<A, B> {
+
+	// A reached pair (state, macro), with the guard of the move from its
+	// parent
+	private static final class Node<A> {
+		final int state;
+		final BitSet macro;
+		final int parent;
+		final A guard;
+		boolean subsumed;
+
+		Node(int state, BitSet macro, int parent, A guard) {
+			this.state = state;
+			this.macro = macro;
+			this.parent = parent;
+			this.guard = guard;
+		}
+	}
+
+	private final CompactSFA<A, B> big;
+	private final CompactSFA<A, B> small;
+	private final BooleanAlgebra<A, B> ba;
+	private final long startTime;
+	private final long timeout;
+
+	// sim[q] are the states of big simulating q, null without simulation
+	private BitSet[] sim;
+
+	private final List<Node<A>> nodes = new ArrayList<Node<A>>();
+	// for every state of small, the indices of the minimal reached pairs
+	private final List<List<Integer>> antichain = new ArrayList<List<Integer>>();
+	private final ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+
+	private AntichainInclusion(CompactSFA<A, B> big, CompactSFA<A, B> small, BooleanAlgebra<A, B> ba,
+			long timeout) {
+		this.big = big;
+		this.small = small;
+		this.ba = ba;
+		this.startTime = System.currentTimeMillis();
+		this.timeout = timeout;
+		for (int p = 0; p < small.stateCount(); p++)
+			antichain.add(new ArrayList<Integer>());
+	}
+
+	/**
+	 * @return a word accepted by <code>small</code> and not by
+	 *         <code>big</code>, <code>null</code> if the language of
+	 *         <code>small</code> is included in the one of <code>big</code>
+	 * @throws TimeoutException
+	 */
+	static <A, B> List<B> counterexample(SFA<A, B> big, SFA<A, B> small, BooleanAlgebra<A, B> ba,
+			boolean useSimulation, long timeout) throws TimeoutException {
+		if (small.isEmpty())
+			return null;
+		CompactSFA<A, B> bigCompact = (big.isEpsilonFree() ? big : big.removeEpsilonMoves(ba)).compact();
+		CompactSFA<A, B> smallCompact = (small.isEpsilonFree() ? small : small.removeEpsilonMoves(ba)).compact();
+		AntichainInclusion<A, B> inclusion = new AntichainInclusion<A, B>(bigCompact, smallCompact, ba, timeout);
+		if (useSimulation)
+			inclusion.computeSimulation();
+		return inclusion.explore();
+	}
+
+	private List<B> explore() throws TimeoutException {
+		BitSet initial = new BitSet();
+		initial.set(big.getInitialState());
+		int bad = add(small.getInitialState(), initial, -1, null);
+
+		while (bad < 0 && !toVisit.isEmpty()) {
+			int next = toVisit.poll();
+			if (!nodes.get(next).subsumed)
+				bad = expand(next);
+		}
+		if (bad < 0)
+			return null;
+
+		LinkedList<B> witness = new LinkedList<B>();
+		for (Node<A> node = nodes.get(bad); node.parent >= 0; node = nodes.get(node.parent))
+			witness.addFirst(ba.generateWitness(node.guard));
+		return witness;
+	}
+
+	// Adds the successors of the pair n, returns the index of a pair
+	// rejecting a word of small if one is found, -1 otherwise
+	private int expand(int n) throws TimeoutException {
+		Node<A> node = nodes.get(n);
+
+		// the moves of big leaving the macro state, split in minterms
+		ArrayList<Integer> moves = new ArrayList<Integer>();
+		ArrayList<A> guards = new ArrayList<A>();
+		for (int q = node.macro.nextSetBit(0); q >= 0; q = node.macro.nextSetBit(q + 1))
+			for (int m = big.moveStart(q); m < big.moveEnd(q); m++) {
+				moves.add(m);
+				guards.add(big.getGuard(m));
+			}
+		Collection<Pair<A, ArrayList<Integer>>> minterms = ba.GetMinterms(guards,
+				timeout - (System.currentTimeMillis() - startTime));
+
+		for (int m = small.moveStart(node.state); m < small.moveEnd(node.state); m++)
+			for (Pair<A, ArrayList<Integer>> minterm : minterms) {
+				if (System.currentTimeMillis() - startTime > timeout)
+					throw new TimeoutException();
+
+				A guard = ba.MkAnd(small.getGuard(m), minterm.first);
+				if (!ba.IsSatisfiable(guard))
+					continue;
+				BitSet macro = new BitSet();
+				for (int i = 0; i < moves.size(); i++)
+					if (minterm.second.get(i) == 1)
+						macro.set(big.getTarget(moves.get(i)));
+				int bad = add(small.getTarget(m), macro, n, guard);
+				if (bad >= 0)
+					return bad;
+			}
+		return -1;
+	}
+
+	// Adds the pair (state, macro) unless it is subsumed by a reached pair,
+	// returns its index if it rejects a word of small and -1 otherwise
+	private int add(int state, BitSet macro, int parent, A guard) {
+		if (sim != null)
+			prune(macro);
+
+		List<Integer> minimal = antichain.get(state);
+		for (int i : minimal)
+			if (subsumes(nodes.get(i).macro, macro))
+				return -1;
+		for (Iterator<Integer> it = minimal.iterator(); it.hasNext();) {
+			Node<A> other = nodes.get(it.next());
+			if (subsumes(macro, other.macro)) {
+				other.subsumed = true;
+				it.remove();
+			}
+		}
+
+		nodes.add(new Node<A>(state, macro, parent, guard));
+		int n = nodes.size() - 1;
+		minimal.add(n);
+		toVisit.add(n);
+
+		if (!small.isFinalState(state))
+			return -1;
+		for (int q = macro.nextSetBit(0); q >= 0; q = macro.nextSetBit(q + 1))
+			if (big.isFinalState(q))
+				return -1;
+		return n;
+	}
+
+	// true if every word accepted from macro is accepted from other, that is
+	// if every state of macro is in other or simulated by one of its states
+	private boolean subsumes(BitSet macro, BitSet other) {
+		for (int q = macro.nextSetBit(0); q >= 0; q = macro.nextSetBit(q + 1))
+			if (sim == null ? !other.get(q) : !sim[q].intersects(other))
+				return false;
+		return true;
+	}
+
+	// Removes from macro the states simulated by another state of macro
+	private void prune(BitSet macro) {
+		for (int q = macro.nextSetBit(0); q >= 0; q = macro.nextSetBit(q + 1))
+			for (int r = sim[q].nextSetBit(0); r >= 0; r = sim[q].nextSetBit(r + 1))
+				// if q and r simulate each other the smaller one is kept
+				if (r != q && macro.get(r) && (!sim[r].get(q) || r < q)) {
+					macro.clear(q);
+					break;
+				}
+	}
+
+	// Computes the largest forward simulation of big: r simulates q if r is
+	// final when q is, and every move of q is matched by moves of r with the
+	// same labels into states simulating its target
+	private void computeSimulation() throws TimeoutException {
+		int n = big.stateCount();
+		sim = new BitSet[n];
+		for (int q = 0; q < n; q++) {
+			sim[q] = new BitSet(n);
+			for (int r = 0; r < n; r++)
+				if (!big.isFinalState(q) || big.isFinalState(r))
+					sim[q].set(r);
+		}
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int q = 0; q < n; q++)
+				for (int r = sim[q].nextSetBit(0); r >= 0; r = sim[q].nextSetBit(r + 1)) {
+					if (System.currentTimeMillis() - startTime > timeout)
+						throw new TimeoutException();
+					if (r != q && !simulates(r, q)) {
+						sim[q].clear(r);
+						changed = true;
+					}
+				}
+		}
+	}
+
+	// true if every move of q is matched by r in the current relation
+	private boolean simulates(int r, int q) throws TimeoutException {
+		for (int m = big.moveStart(q); m < big.moveEnd(q); m++) {
+			BitSet targets = sim[big.getTarget(m)];
+			A matched = ba.False();
+			for (int k = big.moveStart(r); k < big.moveEnd(r); k++)
+				if (targets.get(big.getTarget(k)))
+					matched = ba.MkOr(matched, big.getGuard(k));
+			if (ba.IsSatisfiable(ba.MkAnd(big.getGuard(m), ba.MkNot(matched))))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,250 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * A bit-parallel simulator for nondeterministic SFAs. The states are renamed
+ * to 0..n-1 and a configuration is a bitset stored in a <code>long[]</code>.
+ * The guards are split into minterm classes and, for every class, the
+ * successors of each group of 8 states are precomputed for all the 256 subsets
+ * of the group, so a step costs a few word operations per group instead of
+ * one set operation per move.
+ */
+public class BitNFA<P, S> {
+
+	// maximum number of longs used by the group tables of all classes, above
+	// this the successors of every state are stored separately
+	private static final int MAX_TABLE_WORDS = 1 << 22;
+	// maximum number of memoized symbol classes
+	private static final int MAX_MEMO_SIZE = 1 << 12;
+
+	private final BooleanAlgebra<P, S> ba;
+	private final int stateCount;
+	private final int words;
+	// original state to dense id
+	private final Map<Integer, Integer> stateId;
+	// true if the states are the ones of the SFA without epsilon moves built
+	// from the simulated one, rather than its own
+	private final boolean renumbered;
+	private final List<P> classes;
+	// succ[c][q] are the successors of q on class c
+	private final int[][][] succ;
+	// groupSucc[c][(g * 256 + v) * words ..] are the successors on class c of
+	// the subset v of the states 8g..8g+7, null if the tables are too large
+	private final long[][] groupSucc;
+	private final long[] finalStates;
+	private final long[] initialConf;
+	private final Map<S, Integer> classMemo = new HashMap<S, Integer>();
+
+	/**
+	 * Prepares the simulation of <code>aut</code>, removing its epsilon
+	 * moves if necessary
+	 *
+	 * @throws TimeoutException
+	 */
+	public BitNFA(SFA<P, S> aut, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		this.ba = checkNotNull(ba);
+		renumbered = !checkNotNull(aut).isEpsilonFree();
+		SFA<P, S> autChecked = renumbered ? aut.removeEpsilonMoves(ba) : aut;
+
+		stateId = new HashMap<Integer, Integer>();
+		for (Integer st : autChecked.getStates())
+			stateId.put(st, stateId.size());
+		stateCount = stateId.size();
+		words = Math.max(1, (stateCount + 63) >>> 6);
+
+		// classes are the minterms of all the guards
+		List<SFAInputMove<P, S>> moves = new ArrayList<SFAInputMove<P, S>>(
+				autChecked.getInputMovesFrom(autChecked.getStates()));
+		ArrayList<P> guards = new ArrayList<P>();
+		for (SFAInputMove<P, S> move : moves)
+			guards.add(move.guard);
+		classes = new ArrayList<P>();
+		List<ArrayList<Integer>> classBits = new ArrayList<ArrayList<Integer>>();
+		for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(guards, Long.MAX_VALUE)) {
+			classes.add(minterm.first);
+			classBits.add(minterm.second);
+		}
+
+		succ = new int[classes.size()][][];
+		for (int c = 0; c < classes.size(); c++) {
+			List<List<Integer>> targets = new ArrayList<List<Integer>>();
+			for (int q = 0; q < stateCount; q++)
+				targets.add(new ArrayList<Integer>());
+			for (int m = 0; m < moves.size(); m++)
+				if (classBits.get(c).get(m) == 1) {
+					SFAInputMove<P, S> move = moves.get(m);
+					targets.get(stateId.get(move.from)).add(stateId.get(move.to));
+				}
+			succ[c] = new int[stateCount][];
+			for (int q = 0; q < stateCount; q++) {
+				succ[c][q] = new int[targets.get(q).size()];
+				for (int i = 0; i < succ[c][q].length; i++)
+					succ[c][q][i] = targets.get(q).get(i);
+			}
+		}
+
+		int groups = (stateCount + 7) >>> 3;
+		if ((long) classes.size() * groups * 256 * words <= MAX_TABLE_WORDS) {
+			groupSucc = new long[classes.size()][];
+			for (int c = 0; c < classes.size(); c++)
+				groupSucc[c] = buildGroupTable(succ[c], groups);
+		} else
+			groupSucc = null;
+
+		finalStates = new long[words];
+		for (Integer st : autChecked.getFinalStates())
+			set(finalStates, 0, stateId.get(st));
+		initialConf = new long[words];
+		set(initialConf, 0, stateId.get(autChecked.getInitialState()));
+	}
+
+	/**
+	 * @return true if <code>input</code> is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(List<S> input) throws TimeoutException {
+		return accepts(initialConf.clone(), input);
+	}
+
+	/**
+	 * @return true if <code>input</code> is accepted starting from the
+	 *         states in <code>conf</code>, which are states of the simulated
+	 *         SFA
+	 * @throws IllegalArgumentException
+	 *             if <code>conf</code> contains a state that is not a state of
+	 *             the SFA
+	 * @throws IllegalStateException
+	 *             if the SFA has epsilon moves, since removing them renames
+	 *             its states
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(Collection<Integer> conf, List<S> input) throws TimeoutException {
+		checkState(!renumbered, "the states of an SFA with epsilon moves are renamed");
+		long[] bits = new long[words];
+		for (Integer st : conf) {
+			Integer id = stateId.get(st);
+			checkArgument(id != null, "%s is not a state of the SFA", st);
+			set(bits, 0, id);
+		}
+		return accepts(bits, input);
+	}
+
+	/**
+	 * @return number of states of the simulated automaton
+	 */
+	public int stateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return number of minterm classes of the guards
+	 */
+	public int classCount() {
+		return classes.size();
+	}
+
+	// ------------------------------------------------------
+	// Auxiliary functions
+	// ------------------------------------------------------
+
+	private boolean accepts(long[] conf, List<S> input) throws TimeoutException {
+		long[] next = new long[words];
+		for (S el : input) {
+			int c = classOf(el);
+			if (groupSucc != null)
+				stepByGroups(groupSucc[c], conf, next);
+			else
+				stepByStates(succ[c], conf, next);
+
+			long any = 0;
+			for (int w = 0; w < words; w++)
+				any |= next[w];
+			if (any == 0)
+				return false;
+
+			long[] tmp = conf;
+			conf = next;
+			next = tmp;
+		}
+		for (int w = 0; w < words; w++)
+			if ((conf[w] & finalStates[w]) != 0)
+				return true;
+		return false;
+	}
+
+	private void stepByGroups(long[] table, long[] conf, long[] next) {
+		Arrays.fill(next, 0);
+		for (int w = 0; w < words; w++) {
+			long bits = conf[w];
+			for (int g = w << 3; bits != 0; g++, bits >>>= 8) {
+				int v = (int) bits & 0xFF;
+				if (v != 0)
+					or(next, table, ((g << 8) + v) * words);
+			}
+		}
+	}
+
+	private void stepByStates(int[][] targets, long[] conf, long[] next) {
+		Arrays.fill(next, 0);
+		for (int w = 0; w < words; w++)
+			for (long bits = conf[w]; bits != 0; bits &= bits - 1)
+				for (int to : targets[(w << 6) + Long.numberOfTrailingZeros(bits)])
+					set(next, 0, to);
+	}
+
+	// the entry for a subset of a group is the entry of the subset without
+	// its lowest state, plus the successors of that state
+	private long[] buildGroupTable(int[][] targets, int groups) {
+		long[] table = new long[groups * 256 * words];
+		for (int g = 0; g < groups; g++)
+			for (int v = 1; v < 256; v++) {
+				int low = Integer.numberOfTrailingZeros(v);
+				int q = (g << 3) + low;
+				if (q >= stateCount)
+					continue;
+				int to = ((g << 8) + v) * words;
+				System.arraycopy(table, ((g << 8) + (v & (v - 1))) * words, table, to, words);
+				for (int t : targets[q])
+					set(table, to, t);
+			}
+		return table;
+	}
+
+	// the class of el, memoized since finding it requires solver calls
+	private int classOf(S el) throws TimeoutException {
+		Integer c = classMemo.get(el);
+		if (c == null) {
+			c = 0;
+			while (c < classes.size() - 1 && !ba.HasModel(classes.get(c), el))
+				c++;
+			if (classMemo.size() >= MAX_MEMO_SIZE)
+				classMemo.clear();
+			classMemo.put(el, c);
+		}
+		return c;
+	}
+
+	private static void set(long[] bits, int offset, int i) {
+		bits[offset + (i >>> 6)] |= 1L << (i & 63);
+	}
+
+	private void or(long[] into, long[] from, int offset) {
+		for (int w = 0; w < words; w++)
+			into[w] |= from[offset + w];
+	}
+}
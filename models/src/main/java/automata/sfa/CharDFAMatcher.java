@@ -0,0 +1,243 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPartition;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+/**
+ * A deterministic SFA over characters compiled into a flat transition table.
+ * The guards of the automaton induce a {@link CharPartition} of the characters
+ * into classes, every state is renamed to 0..n-1, and the transition function
+ * is stored as an <code>int[]</code> indexed by
+ * <code>state * classes + class</code>.
+ * Matching a string then only requires array lookups.
+ */
+public class CharDFAMatcher {
+
+	// the dead state, also used for states that cannot reach a final state
+	private static final int DEAD = -1;
+
+	private final CharPartition partition;
+	// delta[s * classCount + c] is the target of s on class c or DEAD
+	private final int[] delta;
+	private final boolean[] isFinal;
+	private final int classCount;
+	private final int initialState;
+
+	private CharDFAMatcher(CharPartition partition, int[] delta, boolean[] isFinal, int initialState) {
+		this.partition = partition;
+		this.classCount = partition.classCount();
+		this.delta = delta;
+		this.isFinal = isFinal;
+		this.initialState = initialState;
+	}
+
+	/**
+	 * Compiles <code>aut</code> into a matcher, determinizing it first if
+	 * necessary
+	 *
+	 * @throws TimeoutException
+	 */
+	public static CharDFAMatcher compile(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+		return compile(aut, ba, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Compiles <code>aut</code> into a matcher, determinizing it first if
+	 * necessary
+	 *
+	 * @throws TimeoutException
+	 */
+	public static CharDFAMatcher compile(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba, long timeout)
+			throws TimeoutException {
+
+		SFA<CharPred, Character> dfa = aut;
+		if (!aut.isDeterministic(ba))
+			dfa = aut.determinize(ba, timeout);
+
+		List<SFAInputMove<CharPred, Character>> moves = new ArrayList<SFAInputMove<CharPred, Character>>(
+				dfa.getInputMovesFrom(dfa.getStates()));
+		List<CharPred> guards = new ArrayList<CharPred>();
+		for (SFAInputMove<CharPred, Character> move : moves)
+			guards.add(move.guard);
+		CharPartition partition = CharPartition.of(guards);
+		int classCount = partition.classCount();
+
+		// Rename states densely, the initial state gets id 0
+		Map<Integer, Integer> stateId = new HashMap<Integer, Integer>();
+		stateId.put(dfa.getInitialState(), 0);
+		for (Integer st : dfa.getStates())
+			if (!stateId.containsKey(st))
+				stateId.put(st, stateId.size());
+		int stateCount = stateId.size();
+
+		int[] delta = new int[stateCount * classCount];
+		Arrays.fill(delta, DEAD);
+		for (SFAInputMove<CharPred, Character> move : moves) {
+			int base = stateId.get(move.from) * classCount;
+			int to = stateId.get(move.to);
+			BitSet classes = partition.toClasses(move.guard);
+			for (int c = classes.nextSetBit(0); c >= 0; c = classes.nextSetBit(c + 1))
+				delta[base + c] = to;
+		}
+
+		boolean[] isFinal = new boolean[stateCount];
+		for (Integer st : dfa.getFinalStates())
+			isFinal[stateId.get(st)] = true;
+
+		pruneDeadStates(delta, isFinal, classCount);
+
+		return new CharDFAMatcher(partition, delta, isFinal, 0);
+	}
+
+	// Redirects to DEAD every transition into a state that cannot reach a
+	// final state, so that scanning stops as early as possible
+	private static void pruneDeadStates(int[] delta, boolean[] isFinal, int classCount) {
+		int stateCount = isFinal.length;
+		boolean[] alive = isFinal.clone();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int s = 0; s < stateCount; s++) {
+				if (alive[s])
+					continue;
+				for (int c = s * classCount, end = c + classCount; c < end; c++)
+					if (delta[c] != DEAD && alive[delta[c]]) {
+						alive[s] = true;
+						changed = true;
+						break;
+					}
+			}
+		}
+		for (int i = 0; i < delta.length; i++)
+			if (delta[i] != DEAD && !alive[delta[i]])
+				delta[i] = DEAD;
+	}
+
+	// ------------------------------------------------------
+	// Matching
+	// ------------------------------------------------------
+
+	/**
+	 * @return true iff the whole <code>input</code> is accepted
+	 */
+	public boolean matches(CharSequence input) {
+		int state = initialState;
+		for (int i = 0, len = input.length(); i < len; i++) {
+			state = delta[state * classCount + partition.classOf(input.charAt(i))];
+			if (state == DEAD)
+				return false;
+		}
+		return isFinal[state];
+	}
+
+	/**
+	 * Scans <code>input</code> once from <code>from</code>, following at the
+	 * same time the runs started at every index. Runs that reach the same
+	 * state behave the same from then on, so only the one with the least start
+	 * is kept, and the runs are stepped in order of start, at most one per
+	 * state.
+	 * 
+	 * @return the first index <code>i &gt;= from</code> such that some prefix
+	 *         of <code>input[i..]</code> is accepted, -1 if there is none
+	 */
+	public int find(CharSequence input, int from) {
+		int len = input.length();
+		int start = Math.max(from, 0);
+		if (start > len)
+			return -1;
+		if (isFinal[initialState])
+			return start;
+
+		int stateCount = isFinal.length;
+		// states of the runs by increasing start, and their starts
+		int[] states = new int[stateCount];
+		int[] starts = new int[stateCount];
+		int[] nextStates = new int[stateCount];
+		int[] nextStarts = new int[stateCount];
+		// position + 1 at which every state was last reached by a run
+		int[] reached = new int[stateCount];
+		int runs = 0;
+		int found = -1;
+		for (int i = start; i < len; i++) {
+			// a new run starts at i unless an earlier one is in the initial
+			// state, or a match was found and only earlier starts matter
+			if (found < 0 && reached[initialState] != i + 1) {
+				states[runs] = initialState;
+				starts[runs++] = i;
+			}
+
+			int c = partition.classOf(input.charAt(i));
+			int nextRuns = 0;
+			for (int r = 0; r < runs; r++) {
+				int next = delta[states[r] * classCount + c];
+				if (next == DEAD || reached[next] == i + 2)
+					continue;
+				reached[next] = i + 2;
+				if (isFinal[next]) {
+					// the later runs cannot start before this one
+					found = starts[r];
+					break;
+				}
+				nextStates[nextRuns] = next;
+				nextStarts[nextRuns++] = starts[r];
+			}
+
+			int[] tmp = states;
+			states = nextStates;
+			nextStates = tmp;
+			tmp = starts;
+			starts = nextStarts;
+			nextStarts = tmp;
+			runs = nextRuns;
+			if (found >= 0 && runs == 0)
+				return found;
+		}
+		return found;
+	}
+
+	/**
+	 * @return the end (exclusive) of the longest accepted prefix of
+	 *         <code>input[from..]</code>, -1 if no prefix is accepted
+	 */
+	public int matchEnd(CharSequence input, int from) {
+		int state = initialState;
+		int end = isFinal[state] ? from : -1;
+		for (int i = from, len = input.length(); i < len; i++) {
+			state = delta[state * classCount + partition.classOf(input.charAt(i))];
+			if (state == DEAD)
+				break;
+			if (isFinal[state])
+				end = i + 1;
+		}
+		return end;
+	}
+
+	// ------------------------------------------------------
+	// Properties
+	// ------------------------------------------------------
+
+	/**
+	 * @return number of states of the compiled automaton
+	 */
+	public int stateCount() {
+		return isFinal.length;
+	}
+
+	/**
+	 * @return number of character classes induced by the guards
+	 */
+	public int classCount() {
+		return classCount;
+	}
+}
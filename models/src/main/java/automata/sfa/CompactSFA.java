@@ -0,0 +1,357 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * An immutable, compact representation of an SFA with states renamed to
+ * 0..n-1, where 0 is the initial state. Transitions are stored in compressed
+ * sparse row form: the input moves leaving state <code>q</code> have ids
+ * <code>moveStart(q)..moveEnd(q)-1</code>, and for each move id the arrays
+ * store its source, target and guard. Moves entering a state and epsilon
+ * moves are indexed in the same way. None of the accessors allocate.
+ */
+public class CompactSFA<P, S> {
+
+	private final int stateCount;
+	// dense id to state of the original automaton
+	private final int[] originalState;
+	private final BitSet finalStates;
+
+	// input moves sorted by source
+	private final int[] moveOffsets;
+	private final int[] moveSources;
+	private final int[] moveTargets;
+	private final Object[] moveGuards;
+	// ids of the input moves sorted by target
+	private final int[] inOffsets;
+	private final int[] inMoves;
+
+	// epsilon moves by source and by target
+	private final int[] epsOffsets;
+	private final int[] epsTargets;
+	private final int[] epsInOffsets;
+	private final int[] epsSources;
+
+	private CompactSFA(SFA<P, S> aut) {
+		// rename the states, the initial state gets id 0
+		Map<Integer, Integer> stateId = new HashMap<Integer, Integer>();
+		stateId.put(aut.getInitialState(), 0);
+		for (Integer st : new TreeSet<Integer>(aut.getStates()))
+			if (!stateId.containsKey(st))
+				stateId.put(st, stateId.size());
+		stateCount = stateId.size();
+		originalState = new int[stateCount];
+		for (Map.Entry<Integer, Integer> entry : stateId.entrySet())
+			originalState[entry.getValue()] = entry.getKey();
+
+		finalStates = new BitSet(stateCount);
+		for (Integer st : aut.getFinalStates())
+			finalStates.set(stateId.get(st));
+
+		// input moves
+		List<SFAInputMove<P, S>> moves = new ArrayList<SFAInputMove<P, S>>();
+		moveOffsets = new int[stateCount + 1];
+		for (int q = 0; q < stateCount; q++) {
+			moves.addAll(aut.getInputMovesFrom(originalState[q]));
+			moveOffsets[q + 1] = moves.size();
+		}
+		moveSources = new int[moves.size()];
+		moveTargets = new int[moves.size()];
+		moveGuards = new Object[moves.size()];
+		for (int m = 0; m < moves.size(); m++) {
+			moveSources[m] = stateId.get(moves.get(m).from);
+			moveTargets[m] = stateId.get(moves.get(m).to);
+			moveGuards[m] = moves.get(m).guard;
+		}
+		inOffsets = new int[stateCount + 1];
+		inMoves = invert(moveTargets, inOffsets);
+
+		// epsilon moves
+		List<SFAEpsilon<P, S>> epsilons = new ArrayList<SFAEpsilon<P, S>>();
+		epsOffsets = new int[stateCount + 1];
+		for (int q = 0; q < stateCount; q++) {
+			epsilons.addAll(aut.getEpsilonFrom(originalState[q]));
+			epsOffsets[q + 1] = epsilons.size();
+		}
+		epsTargets = new int[epsilons.size()];
+		int[] sources = new int[epsilons.size()];
+		for (int e = 0; e < epsilons.size(); e++) {
+			sources[e] = stateId.get(epsilons.get(e).from);
+			epsTargets[e] = stateId.get(epsilons.get(e).to);
+		}
+		epsInOffsets = new int[stateCount + 1];
+		int[] epsIn = invert(epsTargets, epsInOffsets);
+		epsSources = new int[epsIn.length];
+		for (int i = 0; i < epsIn.length; i++)
+			epsSources[i] = sources[epsIn[i]];
+	}
+
+	/**
+	 * @return the compact representation of <code>aut</code>
+	 */
+	public static <A, B> CompactSFA<A, B> of(SFA<A, B> aut) {
+		return new CompactSFA<A, B>(checkNotNull(aut));
+	}
+
+	// Counting sort of the ids 0..keys.length-1 by key, fills offsets
+	private int[] invert(int[] keys, int[] offsets) {
+		for (int key : keys)
+			offsets[key + 1]++;
+		for (int q = 0; q < stateCount; q++)
+			offsets[q + 1] += offsets[q];
+		int[] next = offsets.clone();
+		int[] ids = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			ids[next[keys[i]]++] = i;
+		return ids;
+	}
+
+	// ------------------------------------------------------
+	// States
+	// ------------------------------------------------------
+
+	/**
+	 * @return number of states, the states are 0..stateCount()-1
+	 */
+	public int stateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return the initial state, always 0
+	 */
+	public int getInitialState() {
+		return 0;
+	}
+
+	/**
+	 * @return true if <code>state</code> is final
+	 */
+	public boolean isFinalState(int state) {
+		return finalStates.get(state);
+	}
+
+	/**
+	 * @return the state of the original automaton renamed to
+	 *         <code>state</code>
+	 */
+	public int getOriginalState(int state) {
+		return originalState[state];
+	}
+
+	// ------------------------------------------------------
+	// Input moves
+	// ------------------------------------------------------
+
+	/**
+	 * @return number of input moves
+	 */
+	public int moveCount() {
+		return moveTargets.length;
+	}
+
+	/**
+	 * @return the id of the first input move leaving <code>state</code>
+	 */
+	public int moveStart(int state) {
+		return moveOffsets[state];
+	}
+
+	/**
+	 * @return one plus the id of the last input move leaving
+	 *         <code>state</code>
+	 */
+	public int moveEnd(int state) {
+		return moveOffsets[state + 1];
+	}
+
+	/**
+	 * @return the source of the input move <code>move</code>
+	 */
+	public int getSource(int move) {
+		return moveSources[move];
+	}
+
+	/**
+	 * @return the target of the input move <code>move</code>
+	 */
+	public int getTarget(int move) {
+		return moveTargets[move];
+	}
+
+	/**
+	 * @return the guard of the input move <code>move</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public P getGuard(int move) {
+		return (P) moveGuards[move];
+	}
+
+	/**
+	 * @return the start of the range of {@link #getIncomingMove(int)}
+	 *         containing the input moves entering <code>state</code>
+	 */
+	public int incomingStart(int state) {
+		return inOffsets[state];
+	}
+
+	/**
+	 * @return the end (exclusive) of the range of
+	 *         {@link #getIncomingMove(int)} containing the input moves
+	 *         entering <code>state</code>
+	 */
+	public int incomingEnd(int state) {
+		return inOffsets[state + 1];
+	}
+
+	/**
+	 * @return the id of the <code>i</code>-th input move, sorted by target
+	 */
+	public int getIncomingMove(int i) {
+		return inMoves[i];
+	}
+
+	// ------------------------------------------------------
+	// Epsilon moves
+	// ------------------------------------------------------
+
+	/**
+	 * @return true if there are no epsilon moves
+	 */
+	public boolean isEpsilonFree() {
+		return epsTargets.length == 0;
+	}
+
+	/**
+	 * @return the start of the range of {@link #getEpsilonTarget(int)}
+	 *         for the epsilon moves leaving <code>state</code>
+	 */
+	public int epsilonStart(int state) {
+		return epsOffsets[state];
+	}
+
+	/**
+	 * @return the end (exclusive) of the range of
+	 *         {@link #getEpsilonTarget(int)} for the epsilon moves leaving
+	 *         <code>state</code>
+	 */
+	public int epsilonEnd(int state) {
+		return epsOffsets[state + 1];
+	}
+
+	/**
+	 * @return the target of the <code>i</code>-th epsilon move, sorted by
+	 *         source
+	 */
+	public int getEpsilonTarget(int i) {
+		return epsTargets[i];
+	}
+
+	/**
+	 * @return the start of the range of {@link #getEpsilonSource(int)} for
+	 *         the epsilon moves entering <code>state</code>
+	 */
+	public int epsilonIncomingStart(int state) {
+		return epsInOffsets[state];
+	}
+
+	/**
+	 * @return the end (exclusive) of the range of
+	 *         {@link #getEpsilonSource(int)} for the epsilon moves entering
+	 *         <code>state</code>
+	 */
+	public int epsilonIncomingEnd(int state) {
+		return epsInOffsets[state + 1];
+	}
+
+	/**
+	 * @return the source of the <code>i</code>-th epsilon move, sorted by
+	 *         target
+	 */
+	public int getEpsilonSource(int i) {
+		return epsSources[i];
+	}
+
+	// ------------------------------------------------------
+	// Operations
+	// ------------------------------------------------------
+
+	/**
+	 * @return true if the automaton accepts <code>input</code>
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(List<S> input, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		// configurations are kept as stacks of states, the stamp of a state
+		// tells whether it is already in the current configuration
+		int[] curr = new int[stateCount];
+		int[] next = new int[stateCount];
+		int[] stamp = new int[stateCount];
+		int step = 1;
+
+		curr[0] = 0;
+		stamp[0] = step;
+		int currSize = epsilonClosure(curr, 1, stamp, step);
+		for (S el : input) {
+			step++;
+			int nextSize = 0;
+			for (int i = 0; i < currSize; i++)
+				for (int m = moveOffsets[curr[i]], end = moveOffsets[curr[i] + 1]; m < end; m++)
+					if (stamp[moveTargets[m]] != step && ba.HasModel(getGuard(m), el)) {
+						stamp[moveTargets[m]] = step;
+						next[nextSize++] = moveTargets[m];
+					}
+			if (nextSize == 0)
+				return false;
+			currSize = epsilonClosure(next, nextSize, stamp, step);
+
+			int[] tmp = curr;
+			curr = next;
+			next = tmp;
+		}
+
+		for (int i = 0; i < currSize; i++)
+			if (finalStates.get(curr[i]))
+				return true;
+		return false;
+	}
+
+	// Adds to conf[0..size) the states reachable with epsilon moves
+	private int epsilonClosure(int[] conf, int size, int[] stamp, int step) {
+		for (int i = 0; i < size; i++)
+			for (int e = epsOffsets[conf[i]], end = epsOffsets[conf[i] + 1]; e < end; e++)
+				if (stamp[epsTargets[e]] != step) {
+					stamp[epsTargets[e]] = step;
+					conf[size++] = epsTargets[e];
+				}
+		return size;
+	}
+
+	/**
+	 * @return an SFA with the same states and moves
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> toSFA(BooleanAlgebra<P, S> ba) throws TimeoutException {
+		Collection<SFAMove<P, S>> transitions = new ArrayList<SFAMove<P, S>>();
+		for (int m = 0; m < moveTargets.length; m++)
+			transitions.add(new SFAInputMove<P, S>(moveSources[m], moveTargets[m], getGuard(m)));
+		for (int q = 0; q < stateCount; q++)
+			for (int e = epsOffsets[q]; e < epsOffsets[q + 1]; e++)
+				transitions.add(new SFAEpsilon<P, S>(q, epsTargets[e]));
+		Collection<Integer> finals = new ArrayList<Integer>();
+		for (int q = finalStates.nextSetBit(0); q >= 0; q = finalStates.nextSetBit(q + 1))
+			finals.add(q);
+		return SFA.MkSFA(transitions, 0, finals, ba, false, false, true);
+	}
+}
@@ -0,0 +1,157 @@
+package automata.sfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.CongruenceClosure;
+import utilities.Pair;
+import utilities.Timers;
+
+/**
+ * Language equivalence of nondeterministic SFAs with bisimulation up to
+ * congruence (Bonchi and Pous, POPL13). Pairs of macro-states of the disjoint
+ * union of the two automata are explored as in Hopcroft-Karp, with moves
+ * labelled by the minterms of the guards leaving the pair, but a pair is
+ * skipped as soon as it is in the congruence closure of the pairs visited or
+ * still to visit, which avoids most of the subset construction.
+ */
+class CongruenceEquivalence<A, B> {
+
+	// A pair of macro-states, with its index in the relation and the guard of
+	// the move from its parent
+	private static final class Node<A> {
+		final BitSet left;
+		final BitSet right;
+		final int index;
+		final Node<A> parent;
+		final A guard;
+
+		Node(BitSet left, BitSet right, int index, Node<A> parent, A guard) {
+			this.left = left;
+			this.right = right;
+			this.index = index;
+			this.parent = parent;
+			this.guard = guard;
+		}
+	}
+
+	// the states of the union, those of aut2 are shifted by the states of aut1
+	private final CompactSFA<A, B> aut1;
+	private final CompactSFA<A, B> aut2;
+	private final int offset;
+	private final BooleanAlgebra<A, B> ba;
+
+	private CongruenceEquivalence(CompactSFA<A, B> aut1, CompactSFA<A, B> aut2, BooleanAlgebra<A, B> ba) {
+		this.aut1 = aut1;
+		this.aut2 = aut2;
+		this.offset = aut1.stateCount();
+		this.ba = ba;
+	}
+
+	/**
+	 * @return true and null if <code>aut1</code> and <code>aut2</code> are
+	 *         equivalent, false and a word accepted by only one of them
+	 *         otherwise
+	 * @throws TimeoutException
+	 */
+	static <A, B> Pair<Boolean, List<B>> check(SFA<A, B> aut1, SFA<A, B> aut2, BooleanAlgebra<A, B> ba,
+			long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		Timers.setForCongruence();
+		Timers.startFull();
+		try {
+			CompactSFA<A, B> c1 = (aut1.isEpsilonFree() ? aut1 : aut1.removeEpsilonMoves(ba)).compact();
+			CompactSFA<A, B> c2 = (aut2.isEpsilonFree() ? aut2 : aut2.removeEpsilonMoves(ba)).compact();
+			return new CongruenceEquivalence<A, B>(c1, c2, ba).explore(startTime, timeout);
+		} finally {
+			Timers.stopFull();
+		}
+	}
+
+	private Pair<Boolean, List<B>> explore(long startTime, long timeout) throws TimeoutException {
+		// the pairs visited or still to visit, a pair is skipped, and removed,
+		// if it is in the congruence closure of all the others
+		CongruenceClosure relation = new CongruenceClosure();
+		ArrayDeque<Node<A>> toVisit = new ArrayDeque<Node<A>>();
+
+		BitSet left = new BitSet();
+		left.set(aut1.getInitialState());
+		BitSet right = new BitSet();
+		right.set(aut2.getInitialState() + offset);
+		toVisit.add(new Node<A>(left, right, relation.add(left, right), null, null));
+
+		while (!toVisit.isEmpty()) {
+			Timers.assertFullTO(timeout);
+			Node<A> curr = toVisit.poll();
+
+			Timers.startSubsumption();
+			boolean congruent = relation.areCongruent(curr.left, curr.right, curr.index);
+			Timers.stopSubsumption();
+			if (congruent) {
+				relation.remove(curr.index);
+				Timers.oneMoreSub();
+				continue;
+			}
+			Timers.oneMoreState();
+
+			if (isFinal(curr.left) != isFinal(curr.right))
+				return new Pair<Boolean, List<B>>(false, witness(curr));
+
+			// moves leaving both macro-states, the targets of the moves of
+			// aut2 are shifted as well
+			ArrayList<Integer> targets = new ArrayList<Integer>();
+			ArrayList<Boolean> fromLeft = new ArrayList<Boolean>();
+			ArrayList<A> guards = new ArrayList<A>();
+			collectMoves(curr.left, true, targets, fromLeft, guards);
+			collectMoves(curr.right, false, targets, fromLeft, guards);
+
+			Timers.startSolver();
+			Collection<Pair<A, ArrayList<Integer>>> minterms = ba.GetMinterms(guards,
+					timeout - (System.currentTimeMillis() - startTime));
+			Timers.stopSolver();
+
+			for (Pair<A, ArrayList<Integer>> minterm : minterms) {
+				BitSet toLeft = new BitSet();
+				BitSet toRight = new BitSet();
+				for (int i = 0; i < targets.size(); i++)
+					if (minterm.second.get(i) == 1)
+						(fromLeft.get(i) ? toLeft : toRight).set(targets.get(i));
+				toVisit.add(new Node<A>(toLeft, toRight, relation.add(toLeft, toRight), curr, minterm.first));
+			}
+		}
+		return new Pair<Boolean, List<B>>(true, null);
+	}
+
+	private void collectMoves(BitSet macro, boolean isLeft, List<Integer> targets, List<Boolean> fromLeft,
+			List<A> guards) {
+		CompactSFA<A, B> aut = isLeft ? aut1 : aut2;
+		int shift = isLeft ? 0 : offset;
+		for (int q = macro.nextSetBit(0); q >= 0; q = macro.nextSetBit(q + 1))
+			for (int m = aut.moveStart(q - shift); m < aut.moveEnd(q - shift); m++) {
+				targets.add(aut.getTarget(m) + shift);
+				fromLeft.add(isLeft);
+				guards.add(aut.getGuard(m));
+			}
+	}
+
+	private boolean isFinal(BitSet macro) {
+		for (int q = macro.nextSetBit(0); q >= 0; q = macro.nextSetBit(q + 1))
+			if (q < offset ? aut1.isFinalState(q) : aut2.isFinalState(q - offset))
+				return true;
+		return false;
+	}
+
+	private List<B> witness(Node<A> node) throws TimeoutException {
+		LinkedList<B> witness = new LinkedList<B>();
+		for (; node.parent != null; node = node.parent)
+			witness.addFirst(ba.generateWitness(node.guard));
+		return witness;
+	}
+}
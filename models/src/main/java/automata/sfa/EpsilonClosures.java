@@ -0,0 +1,195 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * The epsilon closures of the states of an SFA. The strongly connected
+ * components of the graph of epsilon moves are computed with Tarjan's
+ * algorithm, which lists them so that every component comes after the ones
+ * it reaches. The closure of every component is then the union of its states
+ * and of the closures of its successors, computed once as a bitset over the
+ * states and shared by all the states in the component.
+ */
+class EpsilonClosures {
+
+	// dense index of every state and back
+	private final Map<Integer, Integer> index;
+	private final int[] states;
+
+	// component of every state, and closure of every component, which is null
+	// for the components of a single state without epsilon moves
+	private final int[] component;
+	private final BitSet[] closures;
+	// a state of every component
+	private final int[] roots;
+
+	<P, S> EpsilonClosures(SFA<P, S> aut) {
+		int n = aut.getStates().size();
+		index = new HashMap<Integer, Integer>(n * 2);
+		states = new int[n];
+		for (Integer state : aut.getStates()) {
+			states[index.size()] = state;
+			index.put(state, index.size());
+		}
+
+		// epsilon successors of every state
+		int[][] successors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			Collection<SFAEpsilon<P, S>> moves = aut.epsilonFrom.get(states[i]);
+			successors[i] = new int[moves == null ? 0 : moves.size()];
+			if (moves != null) {
+				int k = 0;
+				for (SFAEpsilon<P, S> move : moves)
+					successors[i][k++] = index.get(move.to);
+			}
+		}
+
+		component = new int[n];
+		roots = new int[n];
+		closures = new BitSet[n];
+		tarjan(successors);
+	}
+
+	/**
+	 * @return the component of <code>state</code>, -1 if it is not a state of
+	 *         the SFA
+	 */
+	int getComponent(Integer state) {
+		Integer i = index.get(state);
+		return i == null ? -1 : component[i];
+	}
+
+	/**
+	 * @return the states in the epsilon closure of the component
+	 *         <code>c</code>
+	 */
+	Collection<Integer> getClosureOfComponent(int c) {
+		if (closures[c] == null) {
+			Collection<Integer> result = new HashSet<Integer>(2);
+			result.add(states[roots[c]]);
+			return result;
+		}
+		return toStates(closures[c]);
+	}
+
+	/**
+	 * @return the states reachable from <code>frontier</code> with epsilon
+	 *         moves, including the states in <code>frontier</code>
+	 */
+	Collection<Integer> getClosure(Collection<Integer> frontier) {
+		BitSet closure = new BitSet(states.length);
+		Collection<Integer> others = null;
+		for (Integer state : frontier) {
+			Integer i = index.get(state);
+			if (i != null)
+				addClosure(closure, i);
+			else {
+				if (others == null)
+					others = new ArrayList<Integer>(1);
+				others.add(state);
+			}
+		}
+		Collection<Integer> result = toStates(closure);
+		if (others != null)
+			result.addAll(others);
+		return result;
+	}
+
+	// Adds the closure of the state i to closure
+	private void addClosure(BitSet closure, int i) {
+		BitSet other = closures[component[i]];
+		if (other == null)
+			closure.set(i);
+		else
+			closure.or(other);
+	}
+
+	private Collection<Integer> toStates(BitSet closure) {
+		Collection<Integer> result = new HashSet<Integer>(closure.cardinality() * 2);
+		for (int i = closure.nextSetBit(0); i >= 0; i = closure.nextSetBit(i + 1))
+			result.add(states[i]);
+		return result;
+	}
+
+	// Iterative version of Tarjan's algorithm that sets component and sets
+	// the closure of every component as soon as it is complete
+	private void tarjan(int[][] successors) {
+		int n = successors.length;
+		int[] order = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		// call stack of states and of the next successor to explore
+		int[] callState = new int[n];
+		int[] callNext = new int[n];
+		int counter = 0;
+		int components = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (order[root] != 0)
+				continue;
+			int depth = 0;
+			callState[0] = root;
+			callNext[0] = 0;
+			order[root] = low[root] = ++counter;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth >= 0) {
+				int v = callState[depth];
+				if (callNext[depth] < successors[v].length) {
+					int w = successors[v][callNext[depth]++];
+					if (order[w] == 0) {
+						order[w] = low[w] = ++counter;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						depth++;
+						callState[depth] = w;
+						callNext[depth] = 0;
+					} else if (onStack[w])
+						low[v] = Math.min(low[v], order[w]);
+					continue;
+				}
+
+				if (low[v] == order[v]) {
+					// v is the root of a component, whose successors outside
+					// it are all in components that are already complete
+					int c = components++;
+					roots[c] = v;
+					if (stack[stackSize - 1] == v && successors[v].length == 0) {
+						// no closure is stored for a single state without
+						// epsilon moves, so that they take no space
+						onStack[v] = false;
+						component[v] = c;
+						stackSize--;
+					} else {
+						// grows to the highest state in the closure
+						BitSet closure = new BitSet();
+						int w;
+						int top = stackSize;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							component[w] = c;
+							closure.set(w);
+						} while (w != v);
+						for (int i = stackSize; i < top; i++)
+							for (int succ : successors[stack[i]])
+								if (!closure.get(succ))
+									addClosure(closure, succ);
+						closures[c] = closure;
+					}
+				}
+				depth--;
+				if (depth >= 0)
+					low[callState[depth]] = Math.min(low[callState[depth]], low[v]);
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package automata.sfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Symbolic Hopcroft minimization (D'Antoni and Veanes, POPL14) over the
+ * array-based representation of a total deterministic SFA. Blocks are
+ * contiguous ranges of an array of states, so moving a state to a new block
+ * takes constant time, the worklist has constant-time membership, and the
+ * predecessors of a splitter are found through the incoming-move index of
+ * {@link CompactSFA}.
+ */
+class HopcroftMinimizer<A, B> {
+
+	private final CompactSFA<A, B> aut;
+	private final BooleanAlgebra<A, B> ba;
+	private final int n;
+
+	// the states of block b are elems[first[b]..end[b])
+	private final int[] elems;
+	private final int[] pos;
+	private final int[] blockOf;
+	private final int[] first;
+	private final int[] end;
+	private int blockCount;
+
+	private final ArrayDeque<Integer> worklist = new ArrayDeque<Integer>();
+	private final boolean[] inWorklist;
+
+	// disjunction of the guards from a state into the current splitter
+	private final Object[] predInto;
+
+	private HopcroftMinimizer(CompactSFA<A, B> aut, BooleanAlgebra<A, B> ba) {
+		this.aut = aut;
+		this.ba = ba;
+		n = aut.stateCount();
+		elems = new int[n];
+		pos = new int[n];
+		blockOf = new int[n];
+		first = new int[n];
+		end = new int[n];
+		inWorklist = new boolean[n];
+		predInto = new Object[n];
+	}
+
+	/**
+	 * @return the minimal automaton equivalent to the total deterministic
+	 *         <code>totalAut</code>
+	 * @throws TimeoutException
+	 */
+	static <A, B> SFA<A, B> minimize(SFA<A, B> totalAut, BooleanAlgebra<A, B> ba) throws TimeoutException {
+		HopcroftMinimizer<A, B> minimizer = new HopcroftMinimizer<A, B>(totalAut.compact(), ba);
+		minimizer.refine();
+		return minimizer.quotient();
+	}
+
+	// Splits the states into final and non-final and refines the partition
+	// until it is stable
+	private void refine() throws TimeoutException {
+		int k = 0;
+		for (int q = 0; q < n; q++)
+			if (aut.isFinalState(q))
+				place(q, k++);
+		int finalCount = k;
+		for (int q = 0; q < n; q++)
+			if (!aut.isFinalState(q))
+				place(q, k++);
+
+		if (finalCount > 0)
+			newBlock(0, finalCount);
+		if (finalCount < n)
+			newBlock(finalCount, n);
+		if (blockCount == 2)
+			push(finalCount <= n - finalCount ? 0 : 1);
+		else
+			push(0);
+
+		while (!worklist.isEmpty()) {
+			int splitter = worklist.poll();
+			inWorklist[splitter] = false;
+			split(splitter);
+		}
+	}
+
+	// Splits every block by the predicates leading into splitter
+	@SuppressWarnings("unchecked")
+	private void split(int splitter) throws TimeoutException {
+		// predecessors of the splitter, grouped by block
+		Map<Integer, List<Integer>> touched = new LinkedHashMap<Integer, List<Integer>>();
+		for (int i = first[splitter]; i < end[splitter]; i++) {
+			int q = elems[i];
+			for (int j = aut.incomingStart(q); j < aut.incomingEnd(q); j++) {
+				int m = aut.getIncomingMove(j);
+				int p = aut.getSource(m);
+				if (predInto[p] == null) {
+					predInto[p] = aut.getGuard(m);
+					List<Integer> states = touched.get(blockOf[p]);
+					if (states == null) {
+						states = new ArrayList<Integer>();
+						touched.put(blockOf[p], states);
+					}
+					states.add(p);
+				} else
+					predInto[p] = ba.MkOr((A) predInto[p], aut.getGuard(m));
+			}
+		}
+
+		for (Map.Entry<Integer, List<Integer>> entry : touched.entrySet()) {
+			int block = entry.getKey();
+			List<Integer> states = entry.getValue();
+
+			// states with equivalent predicates cannot be told apart by the
+			// splitter, the others must be separated
+			List<List<Integer>> groups = groupByPredicate(states);
+			int untouched = size(block) - states.size();
+			if (untouched == 0 && groups.size() == 1)
+				continue;
+
+			// if every state was touched, the largest group keeps the block
+			if (untouched == 0) {
+				int largest = 0;
+				for (int g = 1; g < groups.size(); g++)
+					if (groups.get(g).size() > groups.get(largest).size())
+						largest = g;
+				groups.remove(largest);
+			}
+
+			List<Integer> parts = new ArrayList<Integer>();
+			parts.add(block);
+			for (List<Integer> group : groups)
+				parts.add(splitOff(block, group));
+
+			if (inWorklist[block]) {
+				for (int b : parts)
+					push(b);
+			} else {
+				int largest = block;
+				for (int b : parts)
+					if (size(b) > size(largest))
+						largest = b;
+				for (int b : parts)
+					if (b != largest)
+						push(b);
+			}
+		}
+
+		for (List<Integer> states : touched.values())
+			for (int p : states)
+				predInto[p] = null;
+	}
+
+	// Groups the states by equivalence of their predicate into the splitter
+	@SuppressWarnings("unchecked")
+	private List<List<Integer>> groupByPredicate(List<Integer> states) throws TimeoutException {
+		// equal predicates are equivalent, so the solver is only asked about
+		// distinct representatives
+		Map<A, List<Integer>> byPred = new LinkedHashMap<A, List<Integer>>();
+		for (int p : states) {
+			List<Integer> group = byPred.get(predInto[p]);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				byPred.put((A) predInto[p], group);
+			}
+			group.add(p);
+		}
+
+		List<A> reps = new ArrayList<A>();
+		List<List<Integer>> groups = new ArrayList<List<Integer>>();
+		for (Map.Entry<A, List<Integer>> entry : byPred.entrySet()) {
+			int g = 0;
+			while (g < reps.size() && !ba.AreEquivalent(reps.get(g), entry.getKey()))
+				g++;
+			if (g < reps.size())
+				groups.get(g).addAll(entry.getValue());
+			else {
+				reps.add(entry.getKey());
+				groups.add(entry.getValue());
+			}
+		}
+		return groups;
+	}
+
+	// Moves states from block to a new block and returns it
+	private int splitOff(int block, List<Integer> states) {
+		int start = first[block];
+		for (int q : states) {
+			int other = elems[first[block]];
+			elems[pos[q]] = other;
+			pos[other] = pos[q];
+			elems[first[block]] = q;
+			pos[q] = first[block];
+			first[block]++;
+		}
+		int b = newBlock(start, first[block]);
+		return b;
+	}
+
+	private void place(int q, int i) {
+		elems[i] = q;
+		pos[q] = i;
+	}
+
+	private int newBlock(int from, int to) {
+		int b = blockCount++;
+		first[b] = from;
+		end[b] = to;
+		for (int i = from; i < to; i++)
+			blockOf[elems[i]] = b;
+		return b;
+	}
+
+	private int size(int block) {
+		return end[block] - first[block];
+	}
+
+	private void push(int block) {
+		if (!inWorklist[block]) {
+			inWorklist[block] = true;
+			worklist.add(block);
+		}
+	}
+
+	// Builds the automaton with one state per block
+	private SFA<A, B> quotient() throws TimeoutException {
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		for (int b = 0; b < blockCount; b++) {
+			// the states of a block have equivalent moves
+			int q = elems[first[b]];
+			for (int m = aut.moveStart(q); m < aut.moveEnd(q); m++)
+				transitions.add(new SFAInputMove<A, B>(b, blockOf[aut.getTarget(m)], aut.getGuard(m)));
+			if (aut.isFinalState(q))
+				finalStates.add(b);
+		}
+		return SFA.MkSFA(transitions, blockOf[aut.getInitialState()], finalStates, ba, false, true);
+	}
+}
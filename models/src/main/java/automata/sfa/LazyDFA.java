@@ -0,0 +1,191 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * A deterministic view of an SFA built on the fly. The subset states and
+ * their minterm transitions are only computed when the input reaches them,
+ * and are kept in a cache of bounded size. When the cache is full it is
+ * flushed, and if flushes happen too often while scanning an input the
+ * rest of that input is processed by a {@link BitNFA} simulation of the
+ * nondeterministic automaton.
+ */
+public class LazyDFA<P, S> {
+
+	// default maximum number of subset states kept in the cache
+	public static final int DEFAULT_MAX_STATES = 10000;
+
+	// if fewer than this many symbols per cached state were read since the
+	// last flush, the cache is considered to be thrashing
+	private static final int MIN_SYMBOLS_PER_STATE = 10;
+
+	// A subset state, its transitions are computed the first time it is left
+	private final class DState {
+		final Set<Integer> states;
+		final boolean isFinal;
+		// the cache generation the state belongs to
+		final int generation;
+		ArrayList<P> guards;
+		ArrayList<Set<Integer>> targets;
+		ArrayList<DState> next;
+
+		DState(Set<Integer> states) {
+			this.states = states;
+			this.isFinal = aut.isFinalConfiguration(states);
+			this.generation = flushes;
+		}
+	}
+
+	private final SFA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final int maxStates;
+	private final Set<Integer> initialStates;
+	private final Map<Set<Integer>, DState> cache = new HashMap<Set<Integer>, DState>();
+	// simulation of aut used when the cache thrashes, built the first time
+	private BitNFA<P, S> nfa;
+
+	// number of flushes, states created before the last flush are stale
+	private int flushes;
+	private long symbolsSinceFlush;
+	private boolean thrashing;
+	// number of inputs finished by the NFA simulation
+	private int fallbacks;
+
+	public LazyDFA(SFA<P, S> aut, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		this(aut, ba, DEFAULT_MAX_STATES);
+	}
+
+	/**
+	 * A lazy determinization of <code>aut</code> caching at most
+	 * <code>maxStates</code> subset states
+	 *
+	 * @throws TimeoutException
+	 */
+	public LazyDFA(SFA<P, S> aut, BooleanAlgebra<P, S> ba, int maxStates) throws TimeoutException {
+		checkArgument(maxStates > 0);
+		this.ba = checkNotNull(ba);
+		this.aut = checkNotNull(aut).isEpsilonFree() ? aut : aut.removeEpsilonMoves(ba);
+		this.maxStates = maxStates;
+		initialStates = new HashSet<Integer>();
+		initialStates.add(this.aut.getInitialState());
+	}
+
+	/**
+	 * @return true if <code>input</code> is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(List<S> input) throws TimeoutException {
+		thrashing = false;
+		DState curr = getState(initialStates);
+		for (int i = 0; i < input.size(); i++) {
+			symbolsSinceFlush++;
+			curr = step(curr, input.get(i));
+			if (curr == null)
+				return false;
+			if (thrashing) {
+				if (nfa == null)
+					nfa = new BitNFA<P, S>(aut, ba);
+				fallbacks++;
+				return nfa.accepts(curr.states, input.subList(i + 1, input.size()));
+			}
+		}
+		return curr.isFinal;
+	}
+
+	/**
+	 * @return the number of subset states currently cached
+	 */
+	public int cachedStates() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the number of times the cache was flushed
+	 */
+	public int flushes() {
+		return flushes;
+	}
+
+	/**
+	 * @return the number of inputs whose scan fell back to the NFA simulation
+	 *         because the cache was thrashing
+	 */
+	public int fallbacks() {
+		return fallbacks;
+	}
+
+	// ------------------------------------------------------
+	// Auxiliary functions
+	// ------------------------------------------------------
+
+	// The successor of curr on el, null if it is the empty set
+	private DState step(DState curr, S el) throws TimeoutException {
+		if (curr.guards == null)
+			expand(curr);
+
+		for (int i = 0; i < curr.guards.size(); i++)
+			if (ba.HasModel(curr.guards.get(i), el)) {
+				DState to = curr.next.get(i);
+				// the target may have been dropped by a flush
+				if (to == null || to.generation != flushes) {
+					to = getState(curr.targets.get(i));
+					curr.next.set(i, to);
+				}
+				return to;
+			}
+		return null;
+	}
+
+	// Computes the minterm transitions of state, as in SFA.determinize
+	private void expand(DState state) throws TimeoutException {
+		ArrayList<SFAInputMove<P, S>> moves = new ArrayList<SFAInputMove<P, S>>(
+				aut.getInputMovesFrom(state.states));
+		ArrayList<P> predicates = new ArrayList<P>();
+		for (SFAInputMove<P, S> move : moves)
+			predicates.add(move.guard);
+
+		state.guards = new ArrayList<P>();
+		state.targets = new ArrayList<Set<Integer>>();
+		state.next = new ArrayList<DState>();
+		for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(predicates, Long.MAX_VALUE)) {
+			Set<Integer> toState = new HashSet<Integer>();
+			for (int moveIndex = 0; moveIndex < minterm.second.size(); moveIndex++)
+				if (minterm.second.get(moveIndex) == 1)
+					toState.add(moves.get(moveIndex).to);
+			if (!toState.isEmpty()) {
+				state.guards.add(minterm.first);
+				state.targets.add(toState);
+				state.next.add(null);
+			}
+		}
+	}
+
+	// The cached state for states, flushing the cache if it is full
+	private DState getState(Set<Integer> states) {
+		DState state = cache.get(states);
+		if (state == null) {
+			if (cache.size() >= maxStates) {
+				cache.clear();
+				flushes++;
+				thrashing = symbolsSinceFlush < (long) MIN_SYMBOLS_PER_STATE * maxStates;
+				symbolsSinceFlush = 0;
+			}
+			state = new DState(states);
+			cache.put(states, state);
+		}
+		return state;
+	}
+}
@@ -0,0 +1,132 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Emptiness of the intersection of several SFAs, exploring their product
+ * breadth-first without building it. Product states are arrays with one state
+ * per automaton, a move of the product is only created if the conjunction of
+ * the guards picked so far is satisfiable, and the exploration stops at the
+ * first product state that is final in every automaton, so the witness found
+ * is a shortest one.
+ */
+class LazyIntersection<A, B> {
+
+	private final List<CompactSFA<A, B>> auts;
+	private final BooleanAlgebra<A, B> ba;
+	private final long startTime;
+	private final long timeout;
+
+	// the explored product states, for the i-th of them its predecessor and
+	// the guard of the move from the predecessor
+	private final List<int[]> tuples = new ArrayList<int[]>();
+	private final List<Integer> parents = new ArrayList<Integer>();
+	private final List<A> guards = new ArrayList<A>();
+	private final Set<Tuple> reached = new HashSet<Tuple>();
+
+	private LazyIntersection(List<CompactSFA<A, B>> auts, BooleanAlgebra<A, B> ba, long timeout) {
+		this.auts = auts;
+		this.ba = ba;
+		this.startTime = System.currentTimeMillis();
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return a shortest word accepted by all the automata in
+	 *         <code>auts</code>, <code>null</code> if there is none
+	 * @throws TimeoutException
+	 */
+	static <A, B> List<B> witness(List<SFA<A, B>> auts, BooleanAlgebra<A, B> ba, long timeout)
+			throws TimeoutException {
+		List<CompactSFA<A, B>> compact = new ArrayList<CompactSFA<A, B>>();
+		for (SFA<A, B> aut : auts) {
+			if (aut.isEmpty())
+				return null;
+			compact.add((aut.isEpsilonFree() ? aut : aut.removeEpsilonMoves(ba)).compact());
+		}
+		return new LazyIntersection<A, B>(compact, ba, timeout).explore();
+	}
+
+	private List<B> explore() throws TimeoutException {
+		// every compact automaton has initial state 0
+		int found = add(new int[auts.size()], -1, null);
+		for (int next = 0; found < 0 && next < tuples.size(); next++)
+			found = expand(next, 0, new int[auts.size()], ba.True());
+		if (found < 0)
+			return null;
+
+		LinkedList<B> witness = new LinkedList<B>();
+		for (int i = found; parents.get(i) >= 0; i = parents.get(i))
+			witness.addFirst(ba.generateWitness(guards.get(i)));
+		return witness;
+	}
+
+	// Picks a move of the k-th automaton from the k-th state of the product
+	// state from, for all the combinations whose guards are satisfiable
+	// together. Returns the index of a final product state if one is found,
+	// -1 otherwise
+	private int expand(int from, int k, int[] to, A guard) throws TimeoutException {
+		if (System.currentTimeMillis() - startTime > timeout)
+			throw new TimeoutException();
+
+		if (k == auts.size())
+			return add(to.clone(), from, guard);
+
+		CompactSFA<A, B> aut = auts.get(k);
+		int q = tuples.get(from)[k];
+		for (int m = aut.moveStart(q); m < aut.moveEnd(q); m++) {
+			A conj = k == 0 ? aut.getGuard(m) : ba.MkAnd(guard, aut.getGuard(m));
+			if (ba.IsSatisfiable(conj)) {
+				to[k] = aut.getTarget(m);
+				int found = expand(from, k + 1, to, conj);
+				if (found >= 0)
+					return found;
+			}
+		}
+		return -1;
+	}
+
+	// Adds tuple if it was not reached before, returns its index if it is
+	// final and -1 otherwise
+	private int add(int[] tuple, int parent, A guard) {
+		if (!reached.add(new Tuple(tuple)))
+			return -1;
+		tuples.add(tuple);
+		parents.add(parent);
+		guards.add(guard);
+		for (int k = 0; k < tuple.length; k++)
+			if (!auts.get(k).isFinalState(tuple[k]))
+				return -1;
+		return tuples.size() - 1;
+	}
+
+	// An array of states usable as a hash key
+	private static final class Tuple {
+		final int[] states;
+		final int hash;
+
+		Tuple(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Tuple && Arrays.equals(states, ((Tuple) other).states);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package automata.sfa;
+
+/**
+ * The algorithms available to minimize an SFA
+ */
+public enum MinimizationAlgorithm {
+	/**
+	 * Symbolic partition refinement of D'Antoni and Veanes (POPL14), as
+	 * originally implemented in {@link SFA#getMinimalOf(SFA, theory.BooleanAlgebra)}
+	 */
+	STANDARD,
+	/**
+	 * Symbolic Hopcroft with array-based blocks and a predecessor index
+	 */
+	INDEXED_HOPCROFT,
+	/**
+	 * Symbolic Moore, refining all blocks by the signatures of their states
+	 * in rounds, with the signatures computed in parallel when the algebra is
+	 * thread-safe
+	 */
+	MOORE,
+	/**
+	 * Brzozowski, determinizing the reverse of the reverse of the determinized
+	 * reverse automaton
+	 */
+	BRZOZOWSKI
+}
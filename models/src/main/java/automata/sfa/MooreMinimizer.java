@@ -0,0 +1,219 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.TimeoutAction;
+
+/**
+ * Symbolic Moore minimization of a total deterministic SFA. Every round
+ * computes, for each state, its signature: the disjunction of the guards
+ * leading into each block of the current partition. Two states stay in the
+ * same block if they were in the same block and their signatures are
+ * equivalent, and the rounds stop when no block is split. The signatures of
+ * different states are independent, so they are computed in parallel when the
+ * algebra is thread-safe.
+ */
+class MooreMinimizer<A, B> {
+
+	// minimum number of states for which signatures are computed in parallel
+	private static final int PARALLEL_THRESHOLD = 512;
+	// ranges with at most this many states are handled by a single task
+	private static final int SEQUENTIAL_CUTOFF = 128;
+
+	private final CompactSFA<A, B> aut;
+	private final BooleanAlgebra<A, B> ba;
+	private final int n;
+	private final boolean parallel;
+	private final long startTime;
+	private final long timeout;
+
+	private int[] blockOf;
+	private int blockCount;
+
+	// sigBlocks[q] are the blocks reached from q in increasing order and
+	// sigPreds[q][i] the disjunction of the guards from q into sigBlocks[q][i]
+	private final int[][] sigBlocks;
+	private final Object[][] sigPreds;
+
+	private MooreMinimizer(CompactSFA<A, B> aut, BooleanAlgebra<A, B> ba, long timeout) {
+		this.aut = aut;
+		this.ba = ba;
+		this.timeout = timeout;
+		startTime = System.currentTimeMillis();
+		n = aut.stateCount();
+		parallel = n >= PARALLEL_THRESHOLD && ba.isThreadSafe();
+		blockOf = new int[n];
+		sigBlocks = new int[n][];
+		sigPreds = new Object[n][];
+	}
+
+	/**
+	 * @return the minimal automaton equivalent to the total deterministic
+	 *         <code>totalAut</code>
+	 * @throws TimeoutException
+	 *             if it takes more than <code>timeout</code> milliseconds
+	 */
+	static <A, B> SFA<A, B> minimize(SFA<A, B> totalAut, BooleanAlgebra<A, B> ba, long timeout)
+			throws TimeoutException {
+		MooreMinimizer<A, B> minimizer = new MooreMinimizer<A, B>(totalAut.compact(), ba, timeout);
+		minimizer.refine();
+		return minimizer.quotient();
+	}
+
+	// Splits the states into final and non-final and refines the partition
+	// until a round does not split any block
+	private void refine() throws TimeoutException {
+		boolean hasFinal = false;
+		boolean hasNonFinal = false;
+		for (int q = 0; q < n; q++)
+			if (aut.isFinalState(q))
+				hasFinal = true;
+			else
+				hasNonFinal = true;
+		for (int q = 0; q < n; q++)
+			blockOf[q] = aut.isFinalState(q) || !hasFinal ? 0 : 1;
+		blockCount = hasFinal && hasNonFinal ? 2 : 1;
+
+		while (true) {
+			computeSignatures();
+			int[] newBlockOf = new int[n];
+			int newBlockCount = split(newBlockOf);
+			blockOf = newBlockOf;
+			if (newBlockCount == blockCount)
+				return;
+			blockCount = newBlockCount;
+		}
+	}
+
+	private void computeSignatures() throws TimeoutException {
+		SignatureTask task = new SignatureTask(0, n);
+		if (parallel)
+			task.invokeInCommonPool();
+		else
+			task.run();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void computeSignatures(int from, int to) throws TimeoutException {
+		for (int q = from; q < to; q++) {
+			TreeMap<Integer, A> predInto = new TreeMap<Integer, A>();
+			for (int m = aut.moveStart(q); m < aut.moveEnd(q); m++) {
+				int b = blockOf[aut.getTarget(m)];
+				A pred = predInto.get(b);
+				predInto.put(b, pred == null ? aut.getGuard(m) : ba.MkOr(pred, aut.getGuard(m)));
+			}
+			int[] blocks = new int[predInto.size()];
+			Object[] preds = new Object[predInto.size()];
+			int i = 0;
+			for (Map.Entry<Integer, A> entry : predInto.entrySet()) {
+				blocks[i] = entry.getKey();
+				preds[i++] = entry.getValue();
+			}
+			sigBlocks[q] = blocks;
+			sigPreds[q] = preds;
+		}
+	}
+
+	// Assigns the new blocks to newBlockOf and returns their number
+	private int split(int[] newBlockOf) throws TimeoutException {
+		// states can only have equivalent signatures if they are in the same
+		// block and reach the same blocks, the solver is only asked about them
+		Map<List<Integer>, List<Integer>> candidates = new HashMap<List<Integer>, List<Integer>>();
+		int count = 0;
+		for (int q = 0; q < n; q++) {
+			List<Integer> key = new ArrayList<Integer>(sigBlocks[q].length + 1);
+			key.add(blockOf[q]);
+			for (int b : sigBlocks[q])
+				key.add(b);
+			List<Integer> reps = candidates.get(key);
+			if (reps == null) {
+				reps = new ArrayList<Integer>();
+				candidates.put(key, reps);
+			}
+			int r = 0;
+			while (r < reps.size() && !sameSignature(reps.get(r), q))
+				r++;
+			if (r < reps.size())
+				newBlockOf[q] = newBlockOf[reps.get(r)];
+			else {
+				reps.add(q);
+				newBlockOf[q] = count++;
+			}
+		}
+		return count;
+	}
+
+	// p and q reach the same blocks, checks that they do it with equivalent
+	// predicates
+	@SuppressWarnings("unchecked")
+	private boolean sameSignature(int p, int q) throws TimeoutException {
+		for (int i = 0; i < sigPreds[p].length; i++) {
+			A pp = (A) sigPreds[p][i];
+			A pq = (A) sigPreds[q][i];
+			if (!pp.equals(pq) && !ba.AreEquivalent(pp, pq))
+				return false;
+		}
+		return true;
+	}
+
+	// Builds the automaton with one state per block
+	private SFA<A, B> quotient() throws TimeoutException {
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		boolean[] done = new boolean[blockCount];
+		for (int q = 0; q < n; q++) {
+			int b = blockOf[q];
+			if (done[b])
+				continue;
+			done[b] = true;
+			// the states of a block have equivalent moves
+			for (int m = aut.moveStart(q); m < aut.moveEnd(q); m++)
+				transitions.add(new SFAInputMove<A, B>(b, blockOf[aut.getTarget(m)], aut.getGuard(m)));
+			if (aut.isFinalState(q))
+				finalStates.add(b);
+		}
+		return SFA.MkSFA(transitions, blockOf[aut.getInitialState()], finalStates, ba, false, true);
+	}
+
+	// Computes the signatures of the states from..to-1, splitting the range
+	// until it is small and checking the timeout before every small range
+	@SuppressWarnings("serial")
+	private class SignatureTask extends TimeoutAction {
+		final int from;
+		final int to;
+
+		SignatureTask(int from, int to) {
+			super(MooreMinimizer.this.startTime, MooreMinimizer.this.timeout);
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void run() throws TimeoutException {
+			if (to - from <= SEQUENTIAL_CUTOFF) {
+				if (isTimedOut())
+					throw new TimeoutException("Minimization timeout");
+				computeSignatures(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			SignatureTask low = new SignatureTask(from, mid);
+			SignatureTask high = new SignatureTask(mid, to);
+			if (parallel)
+				invokeAll(low, high);
+			else {
+				low.run();
+				high.run();
+			}
+		}
+	}
+}
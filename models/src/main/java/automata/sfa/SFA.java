@@ -6,6 +6,9 @@
  */
 package automata.sfa;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -15,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.Function;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -101,6 +105,9 @@ public class SFA<P, S> extends Automaton<P, S> {
 	private Integer maxStateId;
 	private Integer transitionCount;
 
+	// computed the first time they are needed, reset by addTransition
+	private EpsilonClosures epsilonClosures;
+
 	/**
 	 * @return the maximum state id
 	 */
@@ -239,6 +246,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 			if (transition.to == transition.from)
 				return;
 			isEpsilonFree = false;
+			epsilonClosures = null;
 		}
 
 		if (skipSatCheck || transition.isSatisfiable(ba)) {
@@ -250,8 +258,11 @@ public class SFA<P, S> extends Automaton<P, S> {
 			if (transition.to > maxStateId)
 				maxStateId = transition.to;
 
-			states.add(transition.from);
-			states.add(transition.to);
+			// a new state has no component in the cached epsilon closures
+			boolean newState = states.add(transition.from);
+			newState |= states.add(transition.to);
+			if (newState)
+				epsilonClosures = null;
 
 			if (!transition.isEpsilonTransition()) {
 				getInputMovesFrom(transition.from).add((SFAInputMove<P, S>) transition);
@@ -362,6 +373,31 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba);
 	}
 
+	/**
+	 * Checks whether the intersection of <code>auts</code> is empty without
+	 * building the product, stopping at the first reachable tuple of final
+	 * states
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> boolean isIntersectionEmpty(List<SFA<A, B>> auts, BooleanAlgebra<A, B> ba, long timeout)
+			throws TimeoutException {
+		return getIntersectionWitness(auts, ba, timeout) == null;
+	}
+
+	/**
+	 * @return a shortest word accepted by all the automata in
+	 *         <code>auts</code>, or <code>null</code> if their intersection is
+	 *         empty. The product is explored lazily as in
+	 *         {@link #isIntersectionEmpty(List, BooleanAlgebra, long)}
+	 * @throws TimeoutException
+	 */
+	public static <A, B> List<B> getIntersectionWitness(List<SFA<A, B>> auts, BooleanAlgebra<A, B> ba, long timeout)
+			throws TimeoutException {
+		checkArgument(!auts.isEmpty());
+		return LazyIntersection.witness(auts, checkNotNull(ba), timeout);
+	}
+
 	/**
 	 * Computes <code>this</code> minus <code>aut</code> as a new SFA
 	 * 
@@ -522,6 +558,39 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(newMoves, autTotal.initialState, autTotal.finalStates, ba, false);
 	}
 
+	/**
+	 * @return a copy of <code>aut</code> over the algebra <code>ba</code> in
+	 *         which every guard <code>g</code> is replaced by
+	 *         <code>f(g)</code>. <code>f</code> must preserve the Boolean
+	 *         structure of the guards (e.g. a change of representation)
+	 * @throws TimeoutException
+	 */
+	public static <A, B, C> SFA<C, B> mapGuards(SFA<A, B> aut, Function<A, C> f, BooleanAlgebra<C, B> ba)
+			throws TimeoutException {
+
+		Collection<SFAMove<C, B>> transitions = new ArrayList<SFAMove<C, B>>();
+		for (SFAInputMove<A, B> t : aut.getInputMovesFrom(aut.states))
+			transitions.add(new SFAInputMove<C, B>(t.from, t.to, f.apply(t.guard)));
+		for (SFAEpsilon<A, B> t : aut.getEpsilonFrom(aut.states))
+			transitions.add(new SFAEpsilon<C, B>(t.from, t.to));
+
+		SFA<C, B> mapped = MkSFA(transitions, aut.initialState, new HashSet<Integer>(aut.finalStates), ba, false,
+				false, true);
+		mapped.states.addAll(aut.states);
+		mapped.isDeterministic = aut.isDeterministic;
+		mapped.isTotal = aut.isTotal;
+		mapped.isEmpty = aut.isEmpty;
+		return mapped;
+	}
+
+	/**
+	 * @return an immutable copy of the automaton with states renamed to
+	 *         0..n-1 and moves stored in arrays
+	 */
+	public CompactSFA<P, S> compact() {
+		return CompactSFA.of(this);
+	}
+
 	// ------------------------------------------------------
 	// Other automata operations
 	// ------------------------------------------------------
@@ -548,47 +617,42 @@ public class SFA<P, S> extends Automaton<P, S> {
 		Integer initialState = 0;
 		Collection<Integer> finalStates = new ArrayList<Integer>();
 
-		HashMap<Collection<Integer>, Integer> reachedStates = new HashMap<Collection<Integer>, Integer>();
-		LinkedList<Collection<Integer>> toVisitStates = new LinkedList<Collection<Integer>>();
+		// The new states are the strongly connected components of epsilon
+		// moves, whose closures are all distinct
+		EpsilonClosures closures = aut.getEpsilonClosures();
+		HashMap<Integer, Integer> reachedStates = new HashMap<Integer, Integer>();
+		LinkedList<Integer> toVisitStates = new LinkedList<Integer>();
 
 		// Add initial state
-		Collection<Integer> reachableFromInit = aut.getEpsClosure(aut.initialState, ba);
-
-		reachedStates.put(reachableFromInit, 0);
-		toVisitStates.add(reachableFromInit);
+		int initialComponent = closures.getComponent(aut.initialState);
+		reachedStates.put(initialComponent, 0);
+		toVisitStates.add(initialComponent);
 
 		while (!toVisitStates.isEmpty()) {
-			Collection<Integer> currState = toVisitStates.removeFirst();
-			int currStateId = reachedStates.get(currState);
-
-			for (SFAMove<A, B> t1 : aut.getTransitionsFrom(currState)) {
-				if (!t1.isEpsilonTransition()) {
-					Collection<Integer> nextState = aut.getEpsClosure(t1.to, ba);
-
-					int nextStateId = 0;
-
-					if (!reachedStates.containsKey(nextState)) {
-						int index = reachedStates.size();
-						reachedStates.put(nextState, index);
-						toVisitStates.add(nextState);
-						nextStateId = index;
-					} else {
-						nextStateId = reachedStates.get(nextState);
-					}
+			int currComponent = toVisitStates.removeFirst();
+			int currStateId = reachedStates.get(currComponent);
+			Collection<Integer> currState = closures.getClosureOfComponent(currComponent);
 
-					SFAMove<A, B> tnew = (SFAMove<A, B>) t1.clone();
-					tnew.from = currStateId;
-					tnew.to = nextStateId;
+			if (aut.isFinalConfiguration(currState))
+				finalStates.add(currStateId);
 
-					transitions.add(tnew);
+			for (SFAInputMove<A, B> t1 : aut.getInputMovesFrom(currState)) {
+				int nextComponent = closures.getComponent(t1.to);
+
+				Integer nextStateId = reachedStates.get(nextComponent);
+				if (nextStateId == null) {
+					nextStateId = reachedStates.size();
+					reachedStates.put(nextComponent, nextStateId);
+					toVisitStates.add(nextComponent);
 				}
-			}
 
-		}
+				SFAMove<A, B> tnew = (SFAMove<A, B>) t1.clone();
+				tnew.from = currStateId;
+				tnew.to = nextStateId;
 
-		for (Collection<Integer> stSet : reachedStates.keySet())
-			if (aut.isFinalConfiguration(stSet))
-				finalStates.add(reachedStates.get(stSet));
+				transitions.add(tnew);
+			}
+		}
 
 		return MkSFA(transitions, initialState, finalStates, ba, false);
 	}
@@ -665,6 +729,49 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba, false);
 	}
 
+	/**
+	 * Checks whether the language of <code>aut</code> is included in the
+	 * language of the automaton, using antichains instead of determinizing
+	 * 
+	 * @throws TimeoutException
+	 */
+	public boolean includes(SFA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		return getInclusionCounterexample(aut, ba, timeout, false) == null;
+	}
+
+	/**
+	 * @return a word accepted by <code>aut</code> and rejected by the
+	 *         automaton, or <code>null</code> if the language of
+	 *         <code>aut</code> is included in the language of the automaton.
+	 *         If <code>useSimulation</code> is true the antichains are pruned
+	 *         with the forward simulation of the automaton
+	 * @throws TimeoutException
+	 */
+	public List<S> getInclusionCounterexample(SFA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout,
+			boolean useSimulation) throws TimeoutException {
+		return AntichainInclusion.counterexample(this, checkNotNull(aut), checkNotNull(ba), useSimulation, timeout);
+	}
+
+	/**
+	 * Checks whether the automaton accepts every word, using antichains
+	 * instead of determinizing
+	 * 
+	 * @throws TimeoutException
+	 */
+	public boolean isUniversal(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		return getUniversalityCounterexample(ba, timeout, false) == null;
+	}
+
+	/**
+	 * @return a word rejected by the automaton, or <code>null</code> if it
+	 *         accepts every word
+	 * @throws TimeoutException
+	 */
+	public List<S> getUniversalityCounterexample(BooleanAlgebra<P, S> ba, long timeout, boolean useSimulation)
+			throws TimeoutException {
+		return getInclusionCounterexample(getFullSFA(ba), ba, timeout, useSimulation);
+	}
+
 	/**
 	 * Checks whether the automaton accepts the same language as aut
 	 * 
@@ -1057,6 +1164,30 @@ public class SFA<P, S> extends Automaton<P, S> {
         return true;
     }
 
+	/**
+	 * Checks whether the automaton accepts the same language as aut using
+	 * bisimulation up to congruence, the automata can be nondeterministic
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean isCongruenceEquivalentTo(SFA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout)
+			throws TimeoutException {
+		return areCongruenceEquivalentPlusWitness(this, aut, ba, timeout).first;
+	}
+
+	/**
+	 * Checks whether aut1 is equivalent to aut2 using bisimulation up to
+	 * congruence and returns a concrete witness if not. Second element is null
+	 * if equivalent. The number of pairs of macro-states explored and of pairs
+	 * skipped by the congruence are counted in {@link Timers}
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <A, B> Pair<Boolean, List<B>> areCongruenceEquivalentPlusWitness(SFA<A, B> aut1,
+			SFA<A, B> aut2, BooleanAlgebra<A, B> ba, long timeout) throws TimeoutException {
+		return CongruenceEquivalence.check(checkNotNull(aut1), checkNotNull(aut2), checkNotNull(ba), timeout);
+	}
+
 
 	/**
 	 * concatenation with aut
@@ -1180,8 +1311,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 		// the initial state is the set {aut.initialState}
 		Collection<Integer> detInitialState = new HashSet<Integer>();
-		detInitialState.add(initialState);
-		initialState = 0;
+		detInitialState.add(autChecked.initialState);
 
 		reachedStates.put(detInitialState, 0);
 		toVisitStates.add(detInitialState);
@@ -1311,21 +1441,152 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return getMinimalOf(this, ba);
 	}
 
+	/**
+	 * @return a minimized copy of the SFA computed with <code>algorithm</code>
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> minimize(BooleanAlgebra<P, S> ba, MinimizationAlgorithm algorithm) throws TimeoutException {
+		return getMinimalOf(this, ba, algorithm);
+	}
+
+	/**
+	 * @return a minimized copy of the SFA computed with <code>algorithm</code>
+	 * @throws TimeoutException
+	 *             if the determinizations or the Moore refinement take more
+	 *             than <code>timeout</code> milliseconds
+	 */
+	public SFA<P, S> minimize(BooleanAlgebra<P, S> ba, MinimizationAlgorithm algorithm, long timeout)
+			throws TimeoutException {
+		return getMinimalOf(this, ba, algorithm, timeout);
+	}
+
 	/**
 	 * @return a minimized copy of <code>aut<code>
 	 * @throws TimeoutException
 	 */
 	public static <A, B> SFA<A, B> getMinimalOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba) throws TimeoutException {
+		return getMinimalOf(aut, ba, MinimizationAlgorithm.STANDARD);
+	}
+
+	/**
+	 * @return a minimized copy of <code>aut<code> computed with
+	 *         <code>algorithm</code>
+	 * @throws TimeoutException
+	 */
+	public static <A, B> SFA<A, B> getMinimalOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba,
+			MinimizationAlgorithm algorithm) throws TimeoutException {
+		return getMinimalOf(aut, ba, algorithm, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return a minimized copy of <code>aut<code> computed with
+	 *         <code>algorithm</code>
+	 * @throws TimeoutException
+	 *             if the determinizations or the Moore refinement take more
+	 *             than <code>timeout</code> milliseconds
+	 */
+	public static <A, B> SFA<A, B> getMinimalOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba,
+			MinimizationAlgorithm algorithm, long timeout) throws TimeoutException {
+
+		long startTime = System.currentTimeMillis();
 
 		if (aut.isEmpty)
 			return getEmptySFA(ba);
 
+		// Brzozowski does not need a deterministic input: the subset
+		// construction of the reverse of an accessible deterministic automaton
+		// is minimal
+		if (algorithm == MinimizationAlgorithm.BRZOZOWSKI) {
+			SFA<A, B> reverse = getDeterminizedReverseOf(aut, ba, timeout);
+			long left = timeout - (System.currentTimeMillis() - startTime);
+			return getDeterminizedReverseOf(reverse, ba, left).mkTotal(ba);
+		}
+
 		SFA<A, B> totalAut = aut;
 		if (!aut.isDeterministic)
-			totalAut = aut.determinize(ba);
+			totalAut = aut.determinize(ba, timeout);
 
 		totalAut = totalAut.mkTotal(ba);
 
+		switch (algorithm) {
+		case INDEXED_HOPCROFT:
+			return HopcroftMinimizer.minimize(totalAut, ba);
+		case MOORE:
+			return MooreMinimizer.minimize(totalAut, ba, timeout - (System.currentTimeMillis() - startTime));
+		default:
+			return getMinimalOfTotal(totalAut, ba);
+		}
+	}
+
+	// The subset construction of the automaton accepting the reversed words of
+	// aut, the initial subset is the set of final states of aut
+	private static <A, B> SFA<A, B> getDeterminizedReverseOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba,
+			long timeout) throws TimeoutException {
+
+		long startTime = System.currentTimeMillis();
+
+		SFA<A, B> autChecked = aut;
+		if (!aut.isEpsilonFree)
+			autChecked = aut.removeEpsilonMoves(ba);
+
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+
+		HashMap<Collection<Integer>, Integer> reachedStates = new HashMap<Collection<Integer>, Integer>();
+		LinkedList<Collection<Integer>> toVisitStates = new LinkedList<Collection<Integer>>();
+
+		Collection<Integer> detInitialState = new HashSet<Integer>(autChecked.finalStates);
+		reachedStates.put(detInitialState, 0);
+		toVisitStates.add(detInitialState);
+
+		long availableMemory = Runtime.getRuntime().totalMemory();
+
+		while (!toVisitStates.isEmpty()) {
+
+			long freeMemory = Runtime.getRuntime().freeMemory();
+			if (freeMemory < 0.1 * availableMemory)
+				throw new TimeoutException("Out of memory");
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+
+			Collection<Integer> currentState = toVisitStates.removeFirst();
+			int currentStateId = reachedStates.get(currentState);
+
+			if (currentState.contains(autChecked.initialState))
+				finalStates.add(currentStateId);
+
+			// the moves entering the subset, followed backwards
+			ArrayList<SFAInputMove<A, B>> movesToCurrState = new ArrayList<SFAInputMove<A, B>>(
+					autChecked.getInputMovesTo(currentState));
+			ArrayList<A> predicatesOfMoves = new ArrayList<A>();
+			for (SFAInputMove<A, B> inter : movesToCurrState)
+				predicatesOfMoves.add(inter.guard);
+
+			for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(predicatesOfMoves,
+					timeout - (System.currentTimeMillis() - startTime))) {
+				ArrayList<Integer> moveBits = minterm.second;
+				Collection<Integer> toState = new HashSet<Integer>();
+				for (int moveIndex = 0; moveIndex < moveBits.size(); moveIndex++)
+					if (moveBits.get(moveIndex) == 1)
+						toState.add(movesToCurrState.get(moveIndex).from);
+
+				if (toState.size() > 0) {
+					int toStateId = getStateId(toState, reachedStates, toVisitStates);
+					transitions.add(new SFAInputMove<A, B>(currentStateId, toStateId, minterm.first));
+				}
+			}
+		}
+
+		SFA<A, B> determinized = MkSFA(transitions, 0, finalStates, ba, false);
+		determinized.isDeterministic = true;
+		return determinized;
+	}
+
+	// Minimizes a total deterministic automaton
+	private static <A, B> SFA<A, B> getMinimalOfTotal(SFA<A, B> totalAut, BooleanAlgebra<A, B> ba)
+			throws TimeoutException {
+
 		// This algorithm is presented the POPL14 paper by D'Antoni and Veanes
 		// Minimization of symbolic automata
 
@@ -1495,9 +1756,21 @@ public class SFA<P, S> extends Automaton<P, S> {
 	// Automata properties
 	// ------------------------------------------------------
 
+	/**
+	 * Returns a sampler drawing accepted words of length at most
+	 * <code>maxLength</code> uniformly at random. The algebra must support
+	 * {@link BooleanAlgebra#getCardinality} and
+	 * {@link BooleanAlgebra#generateRandomWitness}
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFASampler<P, S> getSampler(BooleanAlgebra<P, S> ba, int maxLength) throws TimeoutException {
+		return new SFASampler<P, S>(this, ba, maxLength);
+	}
+
 	/**
 	 * Checks whether the SFA is ambiguous
-	 * 
+	 *
 	 * @return an ambiguous input if the automaton is ambiguous,
 	 *         <code>null</code> otherwise
 	 * @throws TimeoutException
@@ -1978,6 +2251,24 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return states;
 	}
 
+	// The closures are computed once per strongly connected component of
+	// epsilon moves and cached
+	@Override
+	protected Collection<Integer> getEpsClosure(Collection<Integer> fronteer, BooleanAlgebra<P, S> ba) {
+		if (isEpsilonFree)
+			return new HashSet<Integer>(fronteer);
+		return getEpsilonClosures().getClosure(fronteer);
+	}
+
+	EpsilonClosures getEpsilonClosures() {
+		EpsilonClosures closures = epsilonClosures;
+		if (closures == null) {
+			closures = new EpsilonClosures(this);
+			epsilonClosures = closures;
+		}
+		return closures;
+	}
+
 	@Override
 	public Object clone() {
 		SFA<P, S> cl = new SFA<P, S>();
@@ -1999,6 +2290,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 		cl.epsilonFrom = new HashMap<Integer, Collection<SFAEpsilon<P, S>>>(epsilonFrom);
 		cl.epsilonTo = new HashMap<Integer, Collection<SFAEpsilon<P, S>>>(epsilonTo);
+		cl.epsilonClosures = epsilonClosures;
 
 		return cl;
 	}
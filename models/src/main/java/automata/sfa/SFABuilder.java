@@ -0,0 +1,203 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * Builds an SFA one move at a time. Adding a move takes amortized constant
+ * time plus one satisfiability check: the guards of the moves between the
+ * same two states are only collected, and their disjunction is computed once
+ * by {@link #build()}. The states reachable from the initial state and the
+ * states that reach a final state are maintained incrementally, every state
+ * being visited at most once in each direction, so {@link #build()} removes
+ * dead and unreachable states in a single linear pass instead of rebuilding
+ * the automaton as {@link SFA#MkSFA} does with normalization and
+ * unreachable state removal. A builder can be reused after building.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class SFABuilder<P, S> {
+
+	private final BooleanAlgebra<P, S> ba;
+	private final Integer initialState;
+	private final Set<Integer> finalStates = new LinkedHashSet<Integer>();
+	private int maxStateId;
+
+	// guards of the input moves between every two states, merged by build
+	private final Map<Pair<Integer, Integer>, List<P>> guards = new LinkedHashMap<Pair<Integer, Integer>, List<P>>();
+	private final Set<Pair<Integer, Integer>> epsilons = new LinkedHashSet<Pair<Integer, Integer>>();
+
+	// states connected by at least one move, without repetitions
+	private final Set<Pair<Integer, Integer>> edges = new HashSet<Pair<Integer, Integer>>();
+	private final Map<Integer, List<Integer>> successors = new HashMap<Integer, List<Integer>>();
+	private final Map<Integer, List<Integer>> predecessors = new HashMap<Integer, List<Integer>>();
+
+	private final Set<Integer> reachable = new HashSet<Integer>();
+	private final Set<Integer> reachingFinal = new HashSet<Integer>();
+
+	public SFABuilder(Integer initialState, BooleanAlgebra<P, S> ba) {
+		this.initialState = checkNotNull(initialState);
+		this.ba = checkNotNull(ba);
+		this.maxStateId = initialState;
+		reachable.add(initialState);
+	}
+
+	/**
+	 * @return a state that does not appear in the automaton
+	 */
+	public Integer newState() {
+		return ++maxStateId;
+	}
+
+	/**
+	 * Adds <code>move</code>, unless it has an unsatisfiable guard or it is an
+	 * epsilon loop
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFABuilder<P, S> addTransition(SFAMove<P, S> move) throws TimeoutException {
+		Pair<Integer, Integer> fromTo = new Pair<Integer, Integer>(move.from, move.to);
+		if (move.isEpsilonTransition()) {
+			if (move.from.equals(move.to))
+				return this;
+			epsilons.add(fromTo);
+		} else {
+			if (!move.isSatisfiable(ba))
+				return this;
+			P guard = ((SFAInputMove<P, S>) move).guard;
+			List<P> fromToGuards = guards.get(fromTo);
+			if (fromToGuards == null) {
+				fromToGuards = new ArrayList<P>(1);
+				guards.put(fromTo, fromToGuards);
+			}
+			fromToGuards.add(guard);
+		}
+
+		maxStateId = Math.max(maxStateId, Math.max(move.from, move.to));
+		if (edges.add(fromTo)) {
+			adjacent(successors, move.from).add(move.to);
+			adjacent(predecessors, move.to).add(move.from);
+			if (reachable.contains(move.from))
+				visit(move.to, successors, reachable);
+			if (reachingFinal.contains(move.to))
+				visit(move.from, predecessors, reachingFinal);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds all the moves in <code>moves</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFABuilder<P, S> addTransitions(Collection<? extends SFAMove<P, S>> moves) throws TimeoutException {
+		for (SFAMove<P, S> move : moves)
+			addTransition(move);
+		return this;
+	}
+
+	/**
+	 * Makes <code>state</code> final
+	 */
+	public SFABuilder<P, S> addFinalState(Integer state) {
+		if (finalStates.add(checkNotNull(state))) {
+			maxStateId = Math.max(maxStateId, state);
+			visit(state, predecessors, reachingFinal);
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if <code>state</code> is reachable from the initial state
+	 */
+	public boolean isReachable(Integer state) {
+		return reachable.contains(state);
+	}
+
+	/**
+	 * @return true if a final state is reachable from <code>state</code>
+	 */
+	public boolean isReachingFinal(Integer state) {
+		return reachingFinal.contains(state);
+	}
+
+	/**
+	 * @return the SFA with the moves added so far between states that are
+	 *         reachable from the initial state and reach a final state, where
+	 *         the input moves between every two states are merged into one
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> build() throws TimeoutException {
+		Collection<Integer> finals = new HashSet<Integer>();
+		for (Integer state : finalStates)
+			if (isAlive(state))
+				finals.add(state);
+		if (finals.isEmpty())
+			return SFA.getEmptySFA(ba);
+
+		Collection<SFAMove<P, S>> transitions = new ArrayList<SFAMove<P, S>>();
+		for (Map.Entry<Pair<Integer, Integer>, List<P>> entry : guards.entrySet()) {
+			Pair<Integer, Integer> fromTo = entry.getKey();
+			if (isAlive(fromTo.first) && isAlive(fromTo.second)) {
+				List<P> fromToGuards = entry.getValue();
+				P guard = fromToGuards.get(0);
+				for (int i = 1; i < fromToGuards.size(); i++)
+					guard = ba.MkOr(guard, fromToGuards.get(i));
+				transitions.add(new SFAInputMove<P, S>(fromTo.first, fromTo.second, guard));
+			}
+		}
+		for (Pair<Integer, Integer> fromTo : epsilons)
+			if (isAlive(fromTo.first) && isAlive(fromTo.second))
+				transitions.add(new SFAEpsilon<P, S>(fromTo.first, fromTo.second));
+
+		// guards are satisfiable and states are alive, nothing left to clean
+		return SFA.MkSFA(transitions, initialState, finals, ba, false, false, false);
+	}
+
+	private boolean isAlive(Integer state) {
+		return reachable.contains(state) && reachingFinal.contains(state);
+	}
+
+	private static List<Integer> adjacent(Map<Integer, List<Integer>> adjacency, Integer state) {
+		List<Integer> states = adjacency.get(state);
+		if (states == null) {
+			states = new ArrayList<Integer>(2);
+			adjacency.put(state, states);
+		}
+		return states;
+	}
+
+	// Adds to visited the states reachable from state in adjacency that are
+	// not visited yet
+	private static void visit(Integer state, Map<Integer, List<Integer>> adjacency, Set<Integer> visited) {
+		if (!visited.add(state))
+			return;
+		ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+		toVisit.push(state);
+		while (!toVisit.isEmpty()) {
+			List<Integer> next = adjacency.get(toVisit.pop());
+			if (next != null)
+				for (Integer s : next)
+					if (visited.add(s))
+						toVisit.push(s);
+		}
+	}
+}
@@ -57,6 +57,11 @@ public class SFAInputMove<P,S> extends SFAMove<P, S>{
 		return String.format("%s -> %s [label=\"%s\"]\n", from,to,guard);
 	}
 
+	@Override
+	public String toLabel() {
+		return guard.toString();
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		if (other instanceof SFAInputMove<?, ?>) {
@@ -0,0 +1,115 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Draws words of a given length uniformly at random among the words accepted
+ * by an SFA. The automaton is determinized once, so that words and paths
+ * coincide, and for every state q and length l up to a bound the number of
+ * words of length l accepted from q is computed, weighting every move by the
+ * number of elements of its guard. A word is then drawn in time linear in its
+ * length by choosing every move with probability proportional to the words it
+ * leads to, and an element of its guard uniformly. The counts are never
+ * modified after construction, so a sampler can be shared by several threads
+ * as long as each one uses its own {@link Random}.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class SFASampler<P, S> {
+
+	private final CompactSFA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final int maxLength;
+
+	// number of elements of the guard of each move
+	private final BigInteger[] moveSize;
+	// count[l][q] is the number of words of length l accepted from q
+	private final BigInteger[][] count;
+
+	SFASampler(SFA<P, S> aut, BooleanAlgebra<P, S> ba, int maxLength) throws TimeoutException {
+		checkArgument(maxLength >= 0, "maxLength must be non-negative");
+		this.aut = aut.determinize(ba).compact();
+		this.ba = ba;
+		this.maxLength = maxLength;
+
+		moveSize = new BigInteger[this.aut.moveCount()];
+		for (int m = 0; m < moveSize.length; m++)
+			moveSize[m] = ba.getCardinality(this.aut.getGuard(m));
+
+		int n = this.aut.stateCount();
+		count = new BigInteger[maxLength + 1][n];
+		for (int q = 0; q < n; q++)
+			count[0][q] = this.aut.isFinalState(q) ? BigInteger.ONE : BigInteger.ZERO;
+		for (int l = 1; l <= maxLength; l++)
+			for (int q = 0; q < n; q++) {
+				BigInteger words = BigInteger.ZERO;
+				for (int m = this.aut.moveStart(q); m < this.aut.moveEnd(q); m++)
+					words = words.add(moveSize[m].multiply(count[l - 1][this.aut.getTarget(m)]));
+				count[l][q] = words;
+			}
+	}
+
+	/**
+	 * @return the largest length of the words that can be sampled
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @return the number of accepted words of length <code>length</code>
+	 */
+	public BigInteger count(int length) {
+		checkArgument(length >= 0 && length <= maxLength, "length must be between 0 and %s", maxLength);
+		return count[length][aut.getInitialState()];
+	}
+
+	/**
+	 * @return an accepted word of length <code>length</code> drawn uniformly
+	 *         at random from <code>random</code>, null if no word of that
+	 *         length is accepted
+	 * @throws TimeoutException
+	 */
+	public List<S> sample(int length, Random random) throws TimeoutException {
+		if (count(length).signum() == 0)
+			return null;
+
+		List<S> word = new ArrayList<S>(length);
+		int state = aut.getInitialState();
+		for (int l = length; l > 0; l--) {
+			// the words of length l from state are split among the moves
+			BigInteger index = uniform(count[l][state], random);
+			int move = aut.moveStart(state);
+			for (;; move++) {
+				BigInteger words = moveSize[move].multiply(count[l - 1][aut.getTarget(move)]);
+				if (index.compareTo(words) < 0)
+					break;
+				index = index.subtract(words);
+			}
+			word.add(ba.generateRandomWitness(aut.getGuard(move), random));
+			state = aut.getTarget(move);
+		}
+		return word;
+	}
+
+	// a number between 0 and bound - 1
+	private static BigInteger uniform(BigInteger bound, Random random) {
+		BigInteger result;
+		do
+			result = new BigInteger(bound.bitLength(), random);
+		while (result.compareTo(bound) >= 0);
+		return result;
+	}
+}
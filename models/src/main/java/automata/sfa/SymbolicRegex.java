@@ -0,0 +1,126 @@
+package automata.sfa;
+
+import java.util.Collections;
+import java.util.List;
+
+import utilities.Pair;
+
+/**
+ * A regular expression over predicates. Terms are hash-consed by the
+ * {@link SymbolicRegexFactory} that creates them: structurally equal terms of
+ * the same factory are the same object, and every term has a distinct id.
+ *
+ * @param <P>
+ *            set of predicates
+ */
+public final class SymbolicRegex<P> {
+
+	/**
+	 * The kinds of terms
+	 */
+	public enum Kind {
+		EMPTY, EPSILON, PREDICATE, CONCAT, UNION, STAR
+	}
+
+	final Kind kind;
+	final P guard;
+	final List<SymbolicRegex<P>> children;
+	final boolean nullable;
+	int id;
+
+	// pairs (guard, continuation) such that the words of the term starting
+	// with an element of guard are followed by a word of continuation, set the
+	// first time it is asked to the factory
+	List<Pair<P, SymbolicRegex<P>>> linearForm;
+
+	private final int hash;
+
+	SymbolicRegex(Kind kind, P guard, List<SymbolicRegex<P>> children, boolean nullable) {
+		this.kind = kind;
+		this.guard = guard;
+		this.children = Collections.unmodifiableList(children);
+		this.nullable = nullable;
+
+		int h = kind.hashCode() * 31 + (guard == null ? 0 : guard.hashCode());
+		for (SymbolicRegex<P> child : children)
+			h = h * 31 + child.id;
+		this.hash = h;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the predicate of a {@link Kind#PREDICATE} term, null otherwise
+	 */
+	public P getGuard() {
+		return guard;
+	}
+
+	/**
+	 * @return the operands of a concatenation, union or star
+	 */
+	public List<SymbolicRegex<P>> getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return true if the term accepts the empty word
+	 */
+	public boolean isNullable() {
+		return nullable;
+	}
+
+	/**
+	 * @return the id of the term in its factory
+	 */
+	public int getId() {
+		return id;
+	}
+
+	// children are hash-consed, so they are compared by identity
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof SymbolicRegex<?>))
+			return false;
+		SymbolicRegex<?> term = (SymbolicRegex<?>) other;
+		if (hash != term.hash || kind != term.kind || children.size() != term.children.size())
+			return false;
+		if (guard == null ? term.guard != null : !guard.equals(term.guard))
+			return false;
+		for (int i = 0; i < children.size(); i++)
+			if (children.get(i) != term.children.get(i))
+				return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case EMPTY:
+			return "[]";
+		case EPSILON:
+			return "()";
+		case PREDICATE:
+			return guard.toString();
+		case STAR:
+			return "(" + children.get(0) + ")*";
+		default:
+			StringBuilder sb = new StringBuilder("(");
+			for (int i = 0; i < children.size(); i++) {
+				if (i > 0 && kind == Kind.UNION)
+					sb.append('|');
+				sb.append(children.get(i));
+			}
+			return sb.append(')').toString();
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package automata.sfa;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SymbolicRegex.Kind;
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * Creates hash-consed {@link SymbolicRegex} terms and compiles them to SFAs
+ * with Antimirov partial derivatives lifted to predicates. The states of the
+ * SFA are the distinct partial derivatives of the regex, of which there are
+ * at most one more than the number of predicates in it, and its moves are
+ * read from the linear form of every derivative, so the SFA is epsilon-free
+ * and no intermediate automaton is built. Terms are simplified when they are
+ * created (the empty language and the empty word are units or zeros,
+ * concatenations are right-associated, unions are flattened, sorted and
+ * deduplicated) and linear forms are computed once per term, so compiling is
+ * linear in the number of distinct derivatives.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class SymbolicRegexFactory<P, S> {
+
+	private final BooleanAlgebra<P, S> ba;
+	private final Map<SymbolicRegex<P>, SymbolicRegex<P>> terms = new HashMap<SymbolicRegex<P>, SymbolicRegex<P>>();
+	private final SymbolicRegex<P> empty;
+	private final SymbolicRegex<P> epsilon;
+
+	public SymbolicRegexFactory(BooleanAlgebra<P, S> ba) {
+		this.ba = checkNotNull(ba);
+		List<SymbolicRegex<P>> none = Collections.emptyList();
+		empty = intern(new SymbolicRegex<P>(Kind.EMPTY, null, none, false));
+		epsilon = intern(new SymbolicRegex<P>(Kind.EPSILON, null, none, true));
+	}
+
+	/**
+	 * @return the regex accepting no word
+	 */
+	public SymbolicRegex<P> empty() {
+		return empty;
+	}
+
+	/**
+	 * @return the regex accepting only the empty word
+	 */
+	public SymbolicRegex<P> epsilon() {
+		return epsilon;
+	}
+
+	/**
+	 * @return the regex accepting the elements of <code>guard</code>
+	 */
+	public SymbolicRegex<P> predicate(P guard) {
+		List<SymbolicRegex<P>> none = Collections.emptyList();
+		return intern(new SymbolicRegex<P>(Kind.PREDICATE, checkNotNull(guard), none, false));
+	}
+
+	/**
+	 * @return the concatenation of <code>first</code> and <code>second</code>
+	 */
+	public SymbolicRegex<P> concat(SymbolicRegex<P> first, SymbolicRegex<P> second) {
+		if (first == empty || second == empty)
+			return empty;
+		if (first == epsilon)
+			return second;
+		if (second == epsilon)
+			return first;
+		if (first.kind == Kind.CONCAT)
+			return concat(first.children.get(0), concat(first.children.get(1), second));
+		return intern(new SymbolicRegex<P>(Kind.CONCAT, null, Arrays.asList(first, second),
+				first.nullable && second.nullable));
+	}
+
+	/**
+	 * @return the concatenation of <code>regexes</code>, the empty word if
+	 *         there are none
+	 */
+	public SymbolicRegex<P> concat(List<SymbolicRegex<P>> regexes) {
+		SymbolicRegex<P> result = epsilon;
+		for (int i = regexes.size() - 1; i >= 0; i--)
+			result = concat(regexes.get(i), result);
+		return result;
+	}
+
+	/**
+	 * @return the union of <code>first</code> and <code>second</code>
+	 */
+	public SymbolicRegex<P> union(SymbolicRegex<P> first, SymbolicRegex<P> second) {
+		return union(Arrays.asList(first, second));
+	}
+
+	/**
+	 * @return the union of <code>regexes</code>, the empty language if there
+	 *         are none
+	 */
+	public SymbolicRegex<P> union(List<SymbolicRegex<P>> regexes) {
+		// the operands without nested unions, duplicates or the empty language,
+		// sorted by id
+		TreeMap<Integer, SymbolicRegex<P>> operands = new TreeMap<Integer, SymbolicRegex<P>>();
+		for (SymbolicRegex<P> regex : regexes)
+			if (regex.kind == Kind.UNION)
+				for (SymbolicRegex<P> child : regex.children)
+					operands.put(child.id, child);
+			else if (regex != empty)
+				operands.put(regex.id, regex);
+
+		if (operands.isEmpty())
+			return empty;
+		if (operands.size() == 1)
+			return operands.firstEntry().getValue();
+		boolean nullable = false;
+		for (SymbolicRegex<P> operand : operands.values())
+			nullable |= operand.nullable;
+		return intern(new SymbolicRegex<P>(Kind.UNION, null, new ArrayList<SymbolicRegex<P>>(operands.values()),
+				nullable));
+	}
+
+	/**
+	 * @return the Kleene star of <code>regex</code>
+	 */
+	public SymbolicRegex<P> star(SymbolicRegex<P> regex) {
+		if (regex == empty || regex == epsilon)
+			return epsilon;
+		if (regex.kind == Kind.STAR)
+			return regex;
+		return intern(new SymbolicRegex<P>(Kind.STAR, null, Collections.singletonList(regex), true));
+	}
+
+	/**
+	 * @return the union of <code>regex</code> and the empty word
+	 */
+	public SymbolicRegex<P> optional(SymbolicRegex<P> regex) {
+		return union(regex, epsilon);
+	}
+
+	/**
+	 * @return the number of distinct terms created so far
+	 */
+	public int size() {
+		return terms.size();
+	}
+
+	/**
+	 * @return an epsilon-free SFA accepting the language of
+	 *         <code>regex</code>, whose states are its partial derivatives
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> toSFA(SymbolicRegex<P> regex) throws TimeoutException {
+		// states are numbered in breadth-first order
+		Map<SymbolicRegex<P>, Integer> states = new HashMap<SymbolicRegex<P>, Integer>();
+		ArrayDeque<SymbolicRegex<P>> toVisit = new ArrayDeque<SymbolicRegex<P>>();
+		states.put(regex, 0);
+		toVisit.add(regex);
+
+		SFABuilder<P, S> builder = new SFABuilder<P, S>(0, ba);
+		while (!toVisit.isEmpty()) {
+			SymbolicRegex<P> derivative = toVisit.poll();
+			Integer from = states.get(derivative);
+			if (derivative.nullable)
+				builder.addFinalState(from);
+			for (Pair<P, SymbolicRegex<P>> move : getLinearForm(derivative)) {
+				Integer to = states.get(move.second);
+				if (to == null) {
+					to = states.size();
+					states.put(move.second, to);
+					toVisit.add(move.second);
+				}
+				builder.addTransition(new SFAInputMove<P, S>(from, to, move.first));
+			}
+		}
+		return builder.build();
+	}
+
+	// The pairs (guard, continuation) such that the words of regex are the
+	// elements of guard followed by the words of continuation, plus the empty
+	// word if regex is nullable
+	private List<Pair<P, SymbolicRegex<P>>> getLinearForm(SymbolicRegex<P> regex) {
+		if (regex.linearForm != null)
+			return regex.linearForm;
+
+		Set<Pair<P, SymbolicRegex<P>>> linearForm = new LinkedHashSet<Pair<P, SymbolicRegex<P>>>();
+		switch (regex.kind) {
+		case EMPTY:
+		case EPSILON:
+			break;
+		case PREDICATE:
+			linearForm.add(new Pair<P, SymbolicRegex<P>>(regex.guard, epsilon));
+			break;
+		case UNION:
+			for (SymbolicRegex<P> child : regex.children)
+				linearForm.addAll(getLinearForm(child));
+			break;
+		case CONCAT:
+			SymbolicRegex<P> first = regex.children.get(0);
+			SymbolicRegex<P> second = regex.children.get(1);
+			for (Pair<P, SymbolicRegex<P>> move : getLinearForm(first))
+				linearForm.add(new Pair<P, SymbolicRegex<P>>(move.first, concat(move.second, second)));
+			if (first.nullable)
+				linearForm.addAll(getLinearForm(second));
+			break;
+		case STAR:
+			for (Pair<P, SymbolicRegex<P>> move : getLinearForm(regex.children.get(0)))
+				linearForm.add(new Pair<P, SymbolicRegex<P>>(move.first, concat(move.second, regex)));
+			break;
+		}
+		regex.linearForm = new ArrayList<Pair<P, SymbolicRegex<P>>>(linearForm);
+		return regex.linearForm;
+	}
+
+	private SymbolicRegex<P> intern(SymbolicRegex<P> term) {
+		SymbolicRegex<P> existing = terms.get(term);
+		if (existing != null)
+			return existing;
+		term.id = terms.size();
+		terms.put(term, term);
+		return term;
+	}
+}
@@ -28,6 +28,20 @@ public class Call<U,S> extends SVPAMove<U,S> {
 		this.guard=guard;
 		this.stackState = stackState;
 	}
+
+	/**
+	 * @return the guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
+
+	/**
+	 * @return the state pushed on the stack
+	 */
+	public Integer getStackState() {
+		return stackState;
+	}
 	
 	public boolean isDisjointFrom(SVPAMove<U,S> t, BooleanAlgebra<U,S> ba) throws TimeoutException{
 		if(t instanceof Call)
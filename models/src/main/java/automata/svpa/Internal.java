@@ -27,6 +27,13 @@ public class Internal<U, S> extends SVPAMove<U, S> {
 		this.guard = guard;
 	}
 
+	/**
+	 * @return the guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
+
 	public boolean isDisjointFrom(SVPAMove<U, S> t, BooleanAlgebra<U, S> ba) throws TimeoutException {
 		if (t instanceof Internal)
 			if (from.equals(t.from)) {
@@ -30,6 +30,20 @@ public class Return<U, S> extends SVPAMove<U, S> {
 		this.stackState = stackState;
 	}
 
+	/**
+	 * @return the guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
+
+	/**
+	 * @return the state popped from the stack
+	 */
+	public Integer getStackState() {
+		return stackState;
+	}
+
 	public boolean isDisjointFrom(SVPAMove<U, S> t, BooleanAlgebra<U, S> ba) throws TimeoutException {
 		if (t instanceof Return)
 			if (from.equals(t.from) && stackState.equals(((Return<U, S>) t).stackState)){
@@ -6,13 +6,19 @@
  */
 package theory;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.sat4j.specs.TimeoutException;
 
 import utilities.Pair;
+import utilities.TimeoutAction;
 
 /**
  * BooleanAlgebra over the domain <code>S</code>
@@ -126,6 +132,25 @@ public abstract class BooleanAlgebra<P, S> {
         return true;
     }
 
+    /**
+     * @return the number of elements satisfying <code>p</code>
+     * @throws UnsupportedOperationException
+     *             if the algebra cannot count the models of its predicates
+     */
+    public BigInteger getCardinality(P p) throws TimeoutException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * @return an element satisfying <code>p</code> drawn uniformly at random
+     *         from <code>random</code>, null if <code>p</code> is unsatisfiable
+     * @throws UnsupportedOperationException
+     *             if the algebra cannot sample the models of its predicates
+     */
+    public S generateRandomWitness(P p, Random random) throws TimeoutException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
 	/**
 	 * Given a set of <code>predicates</code>, returns all the satisfiable
 	 * Boolean combinations
@@ -137,7 +162,7 @@ public abstract class BooleanAlgebra<P, S> {
 	public Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
 			ArrayList<P> predicates) {
 		try {
-			return GetMinterms(predicates, True(), Long.MAX_VALUE);
+			return GetMinterms(predicates, Long.MAX_VALUE);
 		} catch (TimeoutException e) {			
 			e.printStackTrace();
 			System.out.println("Minterm construction timeout");
@@ -155,11 +180,26 @@ public abstract class BooleanAlgebra<P, S> {
 	 */
 	public Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
 			ArrayList<P> predicates, long timeout) throws TimeoutException {
+		return EnumerateMinterms(predicates, timeout);
+	}
+
+	/**
+	 * Computes the minterms by exploring the Boolean combinations of the
+	 * <code>predicates</code> and pruning the unsatisfiable ones. This is the
+	 * default implementation of {@link #GetMinterms(ArrayList, long)}
+	 * 
+	 * @throws TimeoutException 
+	 */
+	protected Collection<Pair<P, ArrayList<Integer>>> EnumerateMinterms(
+			ArrayList<P> predicates, long timeout) throws TimeoutException {
 		return GetMinterms(predicates, True(), timeout);
 	}
 	
 	private Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
 			ArrayList<P> predicates, P startPred, long timeout) throws TimeoutException {
+		if (isThreadSafe() && predicates.size() >= PARALLEL_MINTERMS_THRESHOLD)
+			return GetMintermsParallel(predicates, startPred, timeout);
+
 		HashSet<Pair<P, ArrayList<Integer>>> minterms = new HashSet<Pair<P, ArrayList<Integer>>>();
 		GetMintermsRec(predicates, 0, startPred, new ArrayList<Integer>(),
 				minterms, System.currentTimeMillis(), timeout);
@@ -168,7 +208,7 @@ public abstract class BooleanAlgebra<P, S> {
 
 	private void GetMintermsRec(ArrayList<P> predicates, int n, P currPred,
 			ArrayList<Integer> setBits,
-			HashSet<Pair<P, ArrayList<Integer>>> minterms, long startime, long timeout) throws TimeoutException {
+			Collection<Pair<P, ArrayList<Integer>>> minterms, long startime, long timeout) throws TimeoutException {
 		
 		if(System.currentTimeMillis() - startime > timeout || n>2500)
 			throw new TimeoutException("Minterm construction timeout");
@@ -192,6 +232,82 @@ public abstract class BooleanAlgebra<P, S> {
 					minterms, startime, timeout);
 		}
 	}
+
+	// ------------------------------------------------------
+	// Parallel minterm generation
+	// ------------------------------------------------------
+
+	// minimum number of predicates for which minterms are computed in parallel
+	private static final int PARALLEL_MINTERMS_THRESHOLD = 8;
+	// subtrees with at most this many predicates left are explored sequentially
+	private static final int SEQUENTIAL_MINTERMS_CUTOFF = 4;
+
+	/**
+	 * @return true if the operations of the algebra can be invoked
+	 *         concurrently. Algebras returning true compute minterms with a
+	 *         fork-join exploration of the Boolean combinations, and can be
+	 *         used by automata algorithms working on several states at once
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	private Collection<Pair<P, ArrayList<Integer>>> GetMintermsParallel(
+			ArrayList<P> predicates, P startPred, long timeout) throws TimeoutException {
+		Set<Pair<P, ArrayList<Integer>>> minterms = Collections
+				.newSetFromMap(new ConcurrentHashMap<Pair<P, ArrayList<Integer>>, Boolean>());
+		new MintermTask(predicates, 0, startPred, new ArrayList<Integer>(), minterms, System.currentTimeMillis(),
+				timeout).invokeInCommonPool();
+		return new HashSet<Pair<P, ArrayList<Integer>>>(minterms);
+	}
+
+	// Explores the combinations of predicates[n..] below currPred, forking
+	// the positive and negative branches until few predicates are left
+	@SuppressWarnings("serial")
+	private class MintermTask extends TimeoutAction {
+		final ArrayList<P> predicates;
+		final int n;
+		final P currPred;
+		final ArrayList<Integer> setBits;
+		final Collection<Pair<P, ArrayList<Integer>>> minterms;
+
+		MintermTask(ArrayList<P> predicates, int n, P currPred, ArrayList<Integer> setBits,
+				Collection<Pair<P, ArrayList<Integer>>> minterms, long startime, long timeout) {
+			super(startime, timeout);
+			this.predicates = predicates;
+			this.n = n;
+			this.currPred = currPred;
+			this.setBits = setBits;
+			this.minterms = minterms;
+		}
+
+		@Override
+		protected void run() throws TimeoutException {
+			if (predicates.size() - n <= SEQUENTIAL_MINTERMS_CUTOFF) {
+				GetMintermsRec(predicates, n, currPred, setBits, minterms, startTime, timeout);
+				return;
+			}
+
+			if (isTimedOut() || n > 2500)
+				throw new TimeoutException("Minterm construction timeout");
+
+			if (!IsSatisfiable(currPred))
+				return;
+
+			ArrayList<Integer> posList = new ArrayList<Integer>(setBits);
+			posList.add(1);
+			P pn = predicates.get(n);
+			MintermTask pos = new MintermTask(predicates, n + 1, MkAnd(currPred, pn), posList, minterms,
+					startTime, timeout);
+
+			ArrayList<Integer> negList = new ArrayList<Integer>(setBits);
+			negList.add(0);
+			MintermTask neg = new MintermTask(predicates, n + 1, MkAnd(currPred, MkNot(pn)), negList,
+					minterms, startTime, timeout);
+
+			invokeAll(pos, neg);
+		}
+	}
 	
 	/**
 	 * Returns a list of disjoint predicates [p1,...,pn] that has union equal to true that accepts the elements of the predicates [g1...gn] given
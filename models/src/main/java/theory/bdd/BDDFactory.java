@@ -57,8 +57,8 @@ public abstract class BDDFactory {
     /**
      * <p>Initializes a BDD factory of the given type with the given initial
      * node table size and operation cache size.  The type is a string that
-     * can be "buddy", "cudd", "cal", "j", "java", "jdd", "test", "typed", or
-     * a name of a class that has an init() method that returns a BDDFactory.
+     * can be "buddy", "cudd", "cal", "j", "java", "jdd", "concurrent", "offheap",
+     * "test", "typed", or a name of a class that has an init() method that returns a BDDFactory.
      * If it fails, it falls back to the "java" factory.</p>
      * 
      * @param bddpackage BDD package string identifier
@@ -74,6 +74,10 @@ public abstract class BDDFactory {
                 return MicroFactory.init(nodenum, cachesize);
             if (bddpackage.equals("jdd"))
                 return JDDFactory.init(nodenum, cachesize);
+            if (bddpackage.equals("concurrent"))
+                return ConcurrentFactory.init(nodenum, cachesize);
+            if (bddpackage.equals("offheap"))
+                return OffHeapFactory.init(nodenum, cachesize);
             if (bddpackage.equals("test"))
                 return TestBDDFactory.init(nodenum, cachesize);
         } catch (LinkageError e) {
@@ -260,6 +264,16 @@ public abstract class BDDFactory {
      */
     public abstract boolean isInitialized();
 
+    /**
+     * <p>Returns true if BDDs of this factory can be created, combined and
+     * freed by several threads at the same time, false otherwise.</p>
+     * 
+     * @return  true if this BDD factory is thread-safe
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * <p>Reset the BDD factory to its initial state.  Everything
      * is reallocated from scratch.  This is like calling done()
@@ -798,6 +812,18 @@ public abstract class BDDFactory {
      */
     public abstract int getReorderTimes();
     
+    /**
+     * <p>Sets the number of nodes in use below which no automatic reordering
+     * happens.  Automatic reordering is tried when the node table is full,
+     * and after each reordering the factory waits until at least twice as
+     * many nodes are in use, or this threshold if it is larger.  Factories
+     * without automatic reordering ignore it.</p>
+     *
+     * @param nodenum minimum number of nodes in use
+     */
+    public void setReorderThreshold(int nodenum) {
+    }
+    
     /**
      * <p>Disable automatic reordering until enableReorder is called.  Reordering
      * is enabled by default as soon as any variable blocks have been defined.</p>
@@ -0,0 +1,128 @@
+// BDDFactoryPool.java
+// Licensed under the terms of the GNU LGPL; see COPYING for details.
+package theory.bdd;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * <p>A pool of BDD factories for short-lived uses, such as the relations
+ * and expression factories built for every SAFA equivalence check.  A
+ * released factory is reset and kept for the next lease, so its node table
+ * and caches are reused instead of being allocated again.</p>
+ *
+ * <p>Factories are sized from the node tables that leased factories ended
+ * up needing: a new factory starts with the peak size observed so far, which
+ * decays by a quarter at every release, and an idle factory more than four
+ * times larger than that peak is dropped instead of being leased.  Factories
+ * whose package cannot reset (see {@link BDDFactory#reset()}) are dropped on
+ * release.</p>
+ *
+ * <p>Leasing and releasing are thread-safe; a leased factory belongs to its
+ * lessee, and neither it nor its BDDs may be used after it is released.</p>
+ *
+ * @see theory.bdd.BDDFactory
+ */
+public class BDDFactoryPool {
+
+    private static final int MIN_NODENUM = 10000;
+    private static final int CACHE_RATIO = 4;
+
+    private static final BDDFactoryPool shared =
+        new BDDFactoryPool(BDDFactory.getProperty("bddpool", "j"),
+                           Runtime.getRuntime().availableProcessors());
+
+    private final String bddpackage;
+    private final int maxIdle;
+    private final ArrayDeque<BDDFactory> idle = new ArrayDeque<BDDFactory>();
+    private int peakNodeNum = MIN_NODENUM;
+
+    /**
+     * <p>Creates a pool of factories of the given package (see
+     * {@link BDDFactory#init(String, int, int)}) keeping at most maxIdle
+     * released factories.</p>
+     *
+     * @param bddpackage BDD package string identifier
+     * @param maxIdle maximum number of idle factories
+     */
+    public BDDFactoryPool(String bddpackage, int maxIdle) {
+        this.bddpackage = bddpackage;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * <p>Returns the pool shared by the whole program, whose factories are
+     * of the package given by the "bddpool" property, JFactory by default.</p>
+     *
+     * @return the shared pool
+     */
+    public static BDDFactoryPool getShared() {
+        return shared;
+    }
+
+    /**
+     * <p>Leases a factory without variables, with an empty node table at
+     * least as large as the peak observed by this pool.</p>
+     *
+     * @return a factory to give back with {@link #release(BDDFactory)}
+     */
+    public BDDFactory lease() {
+        int nodenum;
+        synchronized (this) {
+            for (Iterator<BDDFactory> i = idle.iterator(); i.hasNext(); ) {
+                BDDFactory f = i.next();
+                i.remove();
+                if (f.getNodeTableSize() <= 4 * peakNodeNum)
+                    return f;
+                f.done();
+            }
+            nodenum = peakNodeNum;
+        }
+        return BDDFactory.init(bddpackage, nodenum, nodenum / CACHE_RATIO);
+    }
+
+    /**
+     * <p>Gives back a factory leased from this pool, whose BDDs must not be
+     * used anymore.</p>
+     *
+     * @param f the leased factory
+     */
+    public void release(BDDFactory f) {
+        int nodenum = f.getNodeTableSize();
+        synchronized (this) {
+            if (idle.contains(f))
+                throw new IllegalArgumentException("factory released twice");
+            peakNodeNum = Math.max(Math.max(nodenum, peakNodeNum - peakNodeNum / 4), MIN_NODENUM);
+            if (idle.size() >= maxIdle)
+                return;
+        }
+        try {
+            f.reset();
+        } catch (BDDException e) {
+            // this package cannot reset, the factory is dropped
+            return;
+        }
+        synchronized (this) {
+            if (idle.size() < maxIdle)
+                idle.push(f);
+        }
+    }
+
+    /**
+     * <p>Returns the node table size that new factories start with.</p>
+     *
+     * @return the decayed peak node table size
+     */
+    public synchronized int getPeakNodeNum() {
+        return peakNodeNum;
+    }
+
+    /**
+     * <p>Returns the number of released factories waiting to be leased.</p>
+     *
+     * @return number of idle factories
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,1508 @@
+// ConcurrentFactory.java
+// Licensed under the terms of the GNU LGPL; see COPYING for details.
+package theory.bdd;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * <p>A BDD factory whose BDDs can be built and combined by several threads at
+ * the same time.</p>
+ *
+ * <p>Nodes are packed into a single long (level, low and high child) in an
+ * atomic array, and made unique by an open addressing table in which new
+ * nodes are inserted with a compare-and-set, so two threads building the same
+ * node always get the same index.  Operation results are memoized in lossy
+ * caches of immutable entries, where a concurrent write can only overwrite an
+ * entry, never corrupt it.  Operations run in parallel under the read side of
+ * a read-write lock; when the node table runs out of free nodes, the
+ * operation is abandoned, and garbage collection and resizing run alone under
+ * the write side before the operation is restarted.</p>
+ *
+ * <p>Variables are never reordered, so levels and variables coincide, and
+ * the operations that JDDFactory does not support are not supported either.
+ * A BDDPairing must not be changed while other threads use it.</p>
+ *
+ * @see theory.bdd.BDDFactory
+ */
+public class ConcurrentFactory extends BDDFactory {
+
+    private static final int LEVEL_BITS = 12;
+    private static final int INDEX_BITS = 26;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int MAX_VARNUM = (1 << LEVEL_BITS) - 1;
+    private static final int MAX_NODENUM = 1 << INDEX_BITS;
+
+    // operation ids of the cache, after the ids of BDDOp
+    private static final int OP_NOT = 10;
+    private static final int OP_ITE = 11;
+    private static final int OP_EXIST = 12;
+    private static final int OP_FORALL = 13;
+    private static final int OP_RESTRICT = 14;
+    private static final int OP_REPLACE = 15;
+
+    /* Operator results - entry = left<<1 | right  (left,right in {0,1}) */
+    private static final int[][] oprres = JFactory.oprres;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Changed only under the write lock
+    private AtomicLongArray nodes;
+    private AtomicIntegerArray refcounts;
+    private AtomicIntegerArray unique;
+    private AtomicReferenceArray<CacheEntry> cache;
+    private int[] freeList;
+    private int freeNum;
+    private int[] vars = new int[0];
+    private volatile int varnum;
+    private volatile int gbcCount;
+
+    private final AtomicInteger freePos = new AtomicInteger();
+    private final AtomicInteger pairingIds = new AtomicInteger();
+
+    private int maxNodeNum;
+    private double minFreeNodes = 0.20;
+    private int maxNodeIncrease = 50000;
+    private double increaseFactor = 2;
+
+    private ConcurrentFactory(int nodenum, int cachesize) {
+        int size = Math.max(Math.min(nodenum, MAX_NODENUM), 16);
+        nodes = new AtomicLongArray(size);
+        refcounts = new AtomicIntegerArray(size);
+        unique = new AtomicIntegerArray(tableSize(size));
+        cache = new AtomicReferenceArray<CacheEntry>(powerOfTwo(Math.max(cachesize, 16)));
+        freeList = new int[size];
+        rebuild(new boolean[size]);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#init(int, int)
+     */
+    public static BDDFactory init(int nodenum, int cachesize) {
+        return new ConcurrentFactory(nodenum, cachesize);
+    }
+
+    /**
+     * Thrown when the node table has no free node left, to abandon the
+     * current operation.
+     */
+    private static final class NodeTableFull extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final NodeTableFull NODE_TABLE_FULL = new NodeTableFull();
+
+    private static final class CacheEntry {
+        final int op, a, b, c, res;
+
+        CacheEntry(int op, int a, int b, int c, int res) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.res = res;
+        }
+    }
+
+    /**
+     * Wrapper for the BDD index number used internally in the representation.
+     */
+    private class bdd extends BDD {
+        int _index;
+
+        static final int INVALID_BDD = -1;
+
+        // index must already be referenced
+        bdd(int index) {
+            this._index = index;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#getFactory()
+         */
+        public BDDFactory getFactory() {
+            return ConcurrentFactory.this;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#isZero()
+         */
+        public boolean isZero() {
+            return _index == 0;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#isOne()
+         */
+        public boolean isOne() {
+            return _index == 1;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#var()
+         */
+        public int var() {
+            final int x = _index;
+            if (x < 2)
+                throw new BDDException("cannot get the variable of a terminal node");
+            return read(() -> ConcurrentFactory.this.level(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#high()
+         */
+        public BDD high() {
+            final int x = _index;
+            if (x < 2)
+                throw new BDDException("cannot get the high branch of a terminal node");
+            return run(() -> ConcurrentFactory.this.high(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#low()
+         */
+        public BDD low() {
+            final int x = _index;
+            if (x < 2)
+                throw new BDDException("cannot get the low branch of a terminal node");
+            return run(() -> ConcurrentFactory.this.low(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#id()
+         */
+        public BDD id() {
+            final int x = _index;
+            return run(() -> x);
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#not()
+         */
+        public BDD not() {
+            final int x = _index;
+            return run(() -> ConcurrentFactory.this.not(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#ite(net.sf.javabdd.BDD, net.sf.javabdd.BDD)
+         */
+        public BDD ite(BDD thenBDD, BDD elseBDD) {
+            final int x = _index;
+            final int y = ((bdd) thenBDD)._index;
+            final int z = ((bdd) elseBDD)._index;
+            return run(() -> ConcurrentFactory.this.ite(x, y, z));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#relprod(net.sf.javabdd.BDD, net.sf.javabdd.BDD)
+         */
+        public BDD relprod(BDD that, BDD var) {
+            return applyEx(that, and, var);
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#compose(net.sf.javabdd.BDD, int)
+         */
+        public BDD compose(BDD g, int var) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#veccompose(net.sf.javabdd.BDDPairing)
+         */
+        public BDD veccompose(BDDPairing pair) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#constrain(net.sf.javabdd.BDD)
+         */
+        public BDD constrain(BDD that) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#exist(net.sf.javabdd.BDD)
+         */
+        public BDD exist(BDD var) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            return run(() -> quant(x, y, true));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#forAll(net.sf.javabdd.BDD)
+         */
+        public BDD forAll(BDD var) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            return run(() -> quant(x, y, false));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#unique(net.sf.javabdd.BDD)
+         */
+        public BDD unique(BDD var) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#restrict(net.sf.javabdd.BDD)
+         */
+        public BDD restrict(BDD var) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            return run(() -> ConcurrentFactory.this.restrict(x, y));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#restrictWith(net.sf.javabdd.BDD)
+         */
+        public BDD restrictWith(BDD that) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            int a = compute(() -> ConcurrentFactory.this.restrict(x, y));
+            deref(x);
+            if (this != that)
+                that.free();
+            this._index = a;
+            return this;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#simplify(net.sf.javabdd.BDD)
+         */
+        public BDD simplify(BDD d) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#support()
+         */
+        public BDD support() {
+            final int x = _index;
+            return run(() -> ConcurrentFactory.this.support(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#apply(net.sf.javabdd.BDD, net.sf.javabdd.BDDFactory.BDDOp)
+         */
+        public BDD apply(BDD that, BDDOp opr) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = opr.id;
+            return run(() -> ConcurrentFactory.this.apply(x, y, z));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#applyWith(net.sf.javabdd.BDD, net.sf.javabdd.BDDFactory.BDDOp)
+         */
+        public BDD applyWith(BDD that, BDDOp opr) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = opr.id;
+            int a = compute(() -> ConcurrentFactory.this.apply(x, y, z));
+            deref(x);
+            if (this != that)
+                that.free();
+            this._index = a;
+            return this;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#applyAll(net.sf.javabdd.BDD, net.sf.javabdd.BDDFactory.BDDOp, net.sf.javabdd.BDD)
+         */
+        public BDD applyAll(BDD that, BDDOp opr, BDD var) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = opr.id;
+            final int v = ((bdd) var)._index;
+            return run(() -> quant(ConcurrentFactory.this.apply(x, y, z), v, false));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#applyEx(net.sf.javabdd.BDD, net.sf.javabdd.BDDFactory.BDDOp, net.sf.javabdd.BDD)
+         */
+        public BDD applyEx(BDD that, BDDOp opr, BDD var) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = opr.id;
+            final int v = ((bdd) var)._index;
+            return run(() -> quant(ConcurrentFactory.this.apply(x, y, z), v, true));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#applyUni(net.sf.javabdd.BDD, net.sf.javabdd.BDDFactory.BDDOp, net.sf.javabdd.BDD)
+         */
+        public BDD applyUni(BDD that, BDDOp opr, BDD var) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#satOne()
+         */
+        public BDD satOne() {
+            final int x = _index;
+            return run(() -> ConcurrentFactory.this.satOne(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#fullSatOne()
+         */
+        public BDD fullSatOne() {
+            final int x = _index;
+            return run(() -> ConcurrentFactory.this.fullSatOne(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#satOne(net.sf.javabdd.BDD, boolean)
+         */
+        public BDD satOne(BDD var, boolean pol) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#allsat()
+         */
+        @SuppressWarnings("rawtypes")
+        public List allsat() {
+            final int x = _index;
+            return read(() -> ConcurrentFactory.this.allsat(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#replace(net.sf.javabdd.BDDPairing)
+         */
+        public BDD replace(BDDPairing pair) {
+            final int x = _index;
+            final bddPairing p = (bddPairing) pair;
+            return run(() -> ConcurrentFactory.this.replace(x, p));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#replaceWith(net.sf.javabdd.BDDPairing)
+         */
+        public BDD replaceWith(BDDPairing pair) {
+            final int x = _index;
+            final bddPairing p = (bddPairing) pair;
+            int a = compute(() -> ConcurrentFactory.this.replace(x, p));
+            deref(x);
+            this._index = a;
+            return this;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#nodeCount()
+         */
+        public int nodeCount() {
+            final int[] x = { _index };
+            return read(() -> ConcurrentFactory.this.nodeCount(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#pathCount()
+         */
+        public double pathCount() {
+            final int x = _index;
+            return read(() -> ConcurrentFactory.this.pathCount(x, new HashMap<Integer, Double>()));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#satCount()
+         */
+        public double satCount() {
+            final int x = _index;
+            return read(() -> Math.pow(2.0, ConcurrentFactory.this.level(x)) * ConcurrentFactory.this.satCount(x, new HashMap<Integer, Double>()));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#varProfile()
+         */
+        public int[] varProfile() {
+            final int x = _index;
+            return read(() -> ConcurrentFactory.this.varProfile(x));
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#equals(net.sf.javabdd.BDD)
+         */
+        public boolean equals(BDD that) {
+            return this._index == ((bdd) that)._index;
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDD#hashCode()
+         */
+        public int hashCode() {
+            return _index;
+        }
+
+        /**
+         * @see theory.bdd.BDD#free()
+         */
+        public void free() {
+            deref(_index);
+            _index = INVALID_BDD;
+        }
+    }
+
+    private class bddPairing extends BDDPairing {
+
+        // level of every level after the replacement, last level replaced,
+        // and a new id after every change to tell the cache entries apart
+        private int[] map;
+        private int last;
+        private int id;
+
+        private bddPairing() {
+            reset();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDDPairing#set(int, int)
+         */
+        public void set(int oldvar, int newvar) {
+            if (oldvar < 0 || oldvar >= varnum || newvar < 0 || newvar >= varnum)
+                throw new BDDException("invalid variable");
+            if (map.length < varnum) {
+                int oldlength = map.length;
+                map = Arrays.copyOf(map, varnum);
+                for (int i = oldlength; i < varnum; ++i)
+                    map[i] = i;
+            }
+            map[oldvar] = newvar;
+            last = Math.max(last, oldvar);
+            id = pairingIds.incrementAndGet();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDDPairing#set(int, net.sf.javabdd.BDD)
+         */
+        public void set(int oldvar, BDD newvar) {
+            throw new BDDException();
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDDPairing#reset()
+         */
+        public void reset() {
+            map = new int[0];
+            last = -1;
+            id = pairingIds.incrementAndGet();
+        }
+    }
+
+    // Runs operation under the read lock, and again after a garbage
+    // collection as long as the node table is full; returns its result, which
+    // is referenced before the lock is released
+    private int compute(IntSupplier operation) {
+        boolean grow = false;
+        while (true) {
+            lock.readLock().lock();
+            int count = gbcCount;
+            try {
+                int res = operation.getAsInt();
+                ref(res);
+                return res;
+            } catch (NodeTableFull e) {
+                // collected below, once the read lock is released
+            } finally {
+                lock.readLock().unlock();
+            }
+            // other threads may take the collected nodes, so an operation
+            // failing again grows the table
+            if (!gbc(count, grow))
+                throw new BDDException("BDD node table is full");
+            grow = true;
+        }
+    }
+
+    private BDD run(IntSupplier operation) {
+        return new bdd(compute(operation));
+    }
+
+    // Runs operation, which creates no node, under the read lock
+    private <T> T read(Supplier<T> operation) {
+        lock.readLock().lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ref(int r) {
+        if (r >= 2)
+            refcounts.incrementAndGet(r);
+    }
+
+    private void deref(int r) {
+        if (r < 2)
+            return;
+        lock.readLock().lock();
+        try {
+            refcounts.decrementAndGet(r);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int level(int r) {
+        return r < 2 ? varnum : (int) (nodes.get(r) >>> (2 * INDEX_BITS));
+    }
+
+    private int low(int r) {
+        return (int) ((nodes.get(r) >>> INDEX_BITS) & INDEX_MASK);
+    }
+
+    private int high(int r) {
+        return (int) (nodes.get(r) & INDEX_MASK);
+    }
+
+    private static long pack(int level, int low, int high) {
+        return (long) level << (2 * INDEX_BITS) | (long) low << INDEX_BITS | high;
+    }
+
+    private static int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(int op, int a, int b, int c) {
+        int h = ((op * 0x9E3779B1 + a) * 0x9E3779B1 + b) * 0x9E3779B1 + c;
+        return h ^ (h >>> 16);
+    }
+
+    private static int powerOfTwo(int n) {
+        return n >= (1 << 30) ? 1 << 30 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // the unique table is kept at most half full
+    private static int tableSize(int nodenum) {
+        return powerOfTwo(2 * nodenum);
+    }
+
+    private int makenode(int level, int low, int high) {
+        if (low == high)
+            return low;
+        long key = pack(level, low, high);
+        AtomicIntegerArray table = unique;
+        int mask = table.length() - 1;
+        int created = 0;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            int n = table.get(i);
+            while (n == 0) {
+                if (created == 0) {
+                    int pos = freePos.getAndIncrement();
+                    if (pos >= freeNum)
+                        throw NODE_TABLE_FULL;
+                    created = freeList[pos];
+                    nodes.set(created, key);
+                }
+                if (table.compareAndSet(i, 0, created))
+                    return created;
+                n = table.get(i);
+            }
+            // a node created in vain is reclaimed by the next collection
+            if (nodes.get(n) == key)
+                return n;
+        }
+    }
+
+    private int cacheLookup(int op, int a, int b, int c) {
+        AtomicReferenceArray<CacheEntry> entries = cache;
+        CacheEntry e = entries.get(hash(op, a, b, c) & (entries.length() - 1));
+        if (e != null && e.op == op && e.a == a && e.b == b && e.c == c)
+            return e.res;
+        return -1;
+    }
+
+    private int cacheStore(int op, int a, int b, int c, int res) {
+        AtomicReferenceArray<CacheEntry> entries = cache;
+        entries.set(hash(op, a, b, c) & (entries.length() - 1), new CacheEntry(op, a, b, c, res));
+        return res;
+    }
+
+    private int not(int r) {
+        if (r < 2)
+            return 1 - r;
+        int res = cacheLookup(OP_NOT, r, 0, 0);
+        if (res >= 0)
+            return res;
+        res = makenode(level(r), not(low(r)), not(high(r)));
+        return cacheStore(OP_NOT, r, 0, 0, res);
+    }
+
+    private int apply(int l, int r, int op) {
+        switch (op) {
+            case 0: /* and */
+                if (l == r) return l;
+                if (l == 0 || r == 0) return 0;
+                if (l == 1) return r;
+                if (r == 1) return l;
+                break;
+            case 1: /* xor */
+                if (l == r) return 0;
+                if (l == 0) return r;
+                if (r == 0) return l;
+                break;
+            case 2: /* or */
+                if (l == r) return l;
+                if (l == 1 || r == 1) return 1;
+                if (l == 0) return r;
+                if (r == 0) return l;
+                break;
+            case 3: /* nand */
+                if (l == 0 || r == 0) return 1;
+                break;
+            case 4: /* nor */
+                if (l == 1 || r == 1) return 0;
+                break;
+            case 5: /* implication */
+                if (l == 0 || r == 1) return 1;
+                if (l == 1) return r;
+                break;
+            case 7: /* difference */
+                if (l == r || l == 0 || r == 1) return 0;
+                if (r == 0) return l;
+                break;
+            case 8: /* less than */
+                if (l == r || l == 1 || r == 0) return 0;
+                if (l == 0) return r;
+                break;
+            default:
+                break;
+        }
+        if (l < 2 && r < 2)
+            return oprres[op][l << 1 | r];
+        if (l > r && (op <= 4 || op == 6)) {
+            // commutative operator, one cache entry for both orders
+            int t = l;
+            l = r;
+            r = t;
+        }
+
+        int res = cacheLookup(op, l, r, 0);
+        if (res >= 0)
+            return res;
+        int ll = level(l), lr = level(r);
+        if (ll == lr)
+            res = makenode(ll, apply(low(l), low(r), op), apply(high(l), high(r), op));
+        else if (ll < lr)
+            res = makenode(ll, apply(low(l), r, op), apply(high(l), r, op));
+        else
+            res = makenode(lr, apply(l, low(r), op), apply(l, high(r), op));
+        return cacheStore(op, l, r, 0, res);
+    }
+
+    private int ite(int f, int g, int h) {
+        if (f == 1)
+            return g;
+        if (f == 0)
+            return h;
+        if (g == h)
+            return g;
+        if (g == 1 && h == 0)
+            return f;
+        if (g == 0 && h == 1)
+            return not(f);
+
+        int res = cacheLookup(OP_ITE, f, g, h);
+        if (res >= 0)
+            return res;
+        int level = Math.min(level(f), Math.min(level(g), level(h)));
+        int low = ite(cofactor(f, level, false), cofactor(g, level, false), cofactor(h, level, false));
+        int high = ite(cofactor(f, level, true), cofactor(g, level, true), cofactor(h, level, true));
+        res = makenode(level, low, high);
+        return cacheStore(OP_ITE, f, g, h, res);
+    }
+
+    private int cofactor(int r, int level, boolean high) {
+        if (level(r) != level)
+            return r;
+        return high ? high(r) : low(r);
+    }
+
+    // The quantified levels of a cube of positive variables
+    private boolean[] varset(int cube) {
+        boolean[] varset = new boolean[varnum];
+        for (int n = cube; n >= 2; n = high(n)) {
+            if (low(n) != 0)
+                throw new BDDException("not a variable set");
+            varset[level(n)] = true;
+        }
+        return varset;
+    }
+
+    private int quant(int r, int cube, boolean exist) {
+        if (cube < 2)
+            return r;
+        boolean[] varset = varset(cube);
+        int last = varset.length - 1;
+        while (!varset[last])
+            last--;
+        return quant(r, cube, exist ? OP_EXIST : OP_FORALL, varset, last);
+    }
+
+    private int quant(int r, int cube, int op, boolean[] varset, int last) {
+        if (r < 2 || level(r) > last)
+            return r;
+        int res = cacheLookup(op, r, cube, 0);
+        if (res >= 0)
+            return res;
+        int low = quant(low(r), cube, op, varset, last);
+        int high = quant(high(r), cube, op, varset, last);
+        if (varset[level(r)])
+            res = apply(low, high, op == OP_EXIST ? or.id : and.id);
+        else
+            res = makenode(level(r), low, high);
+        return cacheStore(op, r, cube, 0, res);
+    }
+
+    private int restrict(int r, int cube) {
+        if (cube < 2)
+            return r;
+        // 1 if the level is restricted to true, -1 to false
+        int[] polarity = new int[varnum];
+        int last = 0;
+        for (int n = cube; n >= 2;) {
+            last = level(n);
+            if (low(n) == 0) {
+                polarity[last] = 1;
+                n = high(n);
+            } else {
+                polarity[last] = -1;
+                n = low(n);
+            }
+        }
+        return restrict(r, cube, polarity, last);
+    }
+
+    private int restrict(int r, int cube, int[] polarity, int last) {
+        if (r < 2 || level(r) > last)
+            return r;
+        int res = cacheLookup(OP_RESTRICT, r, cube, 0);
+        if (res >= 0)
+            return res;
+        int level = level(r);
+        if (polarity[level] > 0)
+            res = restrict(high(r), cube, polarity, last);
+        else if (polarity[level] < 0)
+            res = restrict(low(r), cube, polarity, last);
+        else
+            res = makenode(level, restrict(low(r), cube, polarity, last), restrict(high(r), cube, polarity, last));
+        return cacheStore(OP_RESTRICT, r, cube, 0, res);
+    }
+
+    private int replace(int r, bddPairing pair) {
+        if (r < 2 || level(r) > pair.last)
+            return r;
+        int res = cacheLookup(OP_REPLACE, r, pair.id, 0);
+        if (res >= 0)
+            return res;
+        int low = replace(low(r), pair);
+        int high = replace(high(r), pair);
+        res = ite(vars[pair.map[level(r)]], high, low);
+        return cacheStore(OP_REPLACE, r, pair.id, 0, res);
+    }
+
+    private int support(int r) {
+        boolean[] levels = new boolean[varnum];
+        boolean[] visited = new boolean[nodes.length()];
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = r;
+        while (size > 0) {
+            int n = stack[--size];
+            if (n < 2 || visited[n])
+                continue;
+            visited[n] = true;
+            levels[level(n)] = true;
+            if (size + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[size++] = low(n);
+            stack[size++] = high(n);
+        }
+        int res = 1;
+        for (int level = levels.length - 1; level >= 0; level--)
+            if (levels[level])
+                res = makenode(level, 0, res);
+        return res;
+    }
+
+    private int satOne(int r) {
+        if (r < 2)
+            return r;
+        if (low(r) == 0)
+            return makenode(level(r), 0, satOne(high(r)));
+        return makenode(level(r), satOne(low(r)), 0);
+    }
+
+    private int fullSatOne(int r) {
+        if (r == 0)
+            return 0;
+        int res = fullSatOneRec(r);
+        for (int v = level(r) - 1; v >= 0; v--)
+            res = makenode(v, res, 0);
+        return res;
+    }
+
+    private int fullSatOneRec(int r) {
+        if (r < 2)
+            return r;
+        boolean low = low(r) != 0;
+        int next = low ? low(r) : high(r);
+        int res = fullSatOneRec(next);
+        for (int v = level(next) - 1; v > level(r); v--)
+            res = makenode(v, res, 0);
+        return low ? makenode(level(r), res, 0) : makenode(level(r), 0, res);
+    }
+
+    private List<byte[]> allsat(int r) {
+        List<byte[]> result = new LinkedList<byte[]>();
+        byte[] profile = new byte[varnum];
+        for (int v = level(r) - 1; v >= 0; --v)
+            profile[v] = -1;
+        allsat(r, profile, result);
+        return result;
+    }
+
+    private void allsat(int r, byte[] profile, List<byte[]> result) {
+        if (r == 1) {
+            result.add(profile.clone());
+            return;
+        }
+        if (r == 0)
+            return;
+        for (int branch = 0; branch < 2; branch++) {
+            int next = branch == 0 ? low(r) : high(r);
+            if (next == 0)
+                continue;
+            profile[level(r)] = (byte) branch;
+            for (int v = level(next) - 1; v > level(r); --v)
+                profile[v] = -1;
+            allsat(next, profile, result);
+        }
+    }
+
+    private double satCount(int r, Map<Integer, Double> counts) {
+        if (r < 2)
+            return r;
+        Double count = counts.get(r);
+        if (count != null)
+            return count;
+        int level = level(r);
+        double size = Math.pow(2.0, level(low(r)) - level - 1) * satCount(low(r), counts)
+                + Math.pow(2.0, level(high(r)) - level - 1) * satCount(high(r), counts);
+        counts.put(r, size);
+        return size;
+    }
+
+    private double pathCount(int r, Map<Integer, Double> counts) {
+        if (r < 2)
+            return r;
+        Double count = counts.get(r);
+        if (count != null)
+            return count;
+        double size = pathCount(low(r), counts) + pathCount(high(r), counts);
+        counts.put(r, size);
+        return size;
+    }
+
+    // The internal nodes reachable from roots
+    private int[] reachable(int[] roots) {
+        boolean[] visited = new boolean[nodes.length()];
+        int[] found = new int[16];
+        int count = 0;
+        int[] stack = Arrays.copyOf(roots, Math.max(roots.length, 64));
+        int size = roots.length;
+        while (size > 0) {
+            int n = stack[--size];
+            if (n < 2 || visited[n])
+                continue;
+            visited[n] = true;
+            if (count == found.length)
+                found = Arrays.copyOf(found, count * 2);
+            found[count++] = n;
+            if (size + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[size++] = low(n);
+            stack[size++] = high(n);
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private int nodeCount(int[] roots) {
+        return reachable(roots).length;
+    }
+
+    private int[] varProfile(int r) {
+        int[] profile = new int[varnum];
+        for (int n : reachable(new int[] { r }))
+            profile[level(n)]++;
+        return profile;
+    }
+
+    // Collects garbage and grows the node table if grow is set or too few
+    // nodes are free, unless another thread collected since count; returns
+    // false if the table had to grow and could not
+    private boolean gbc(int count, boolean grow) {
+        lock.writeLock().lock();
+        try {
+            if (gbcCount != count)
+                return true;
+            gbcCount++;
+
+            int size = nodes.length();
+            boolean[] marked = mark();
+            int live = 0;
+            for (boolean m : marked)
+                if (m)
+                    live++;
+            boolean grown = false;
+            if (grow || size - live < minFreeNodes * size) {
+                int newsize = (int) Math.min((long) (size * Math.max(increaseFactor, 1.5)), MAX_NODENUM);
+                if (maxNodeIncrease > 0)
+                    newsize = Math.min(newsize, size + maxNodeIncrease);
+                if (maxNodeNum > 0)
+                    newsize = Math.min(newsize, maxNodeNum);
+                if (newsize > size) {
+                    resize(newsize);
+                    marked = Arrays.copyOf(marked, newsize);
+                    grown = true;
+                }
+            }
+            rebuild(marked);
+            cache = new AtomicReferenceArray<CacheEntry>(cache.length());
+            return grown || !grow;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The nodes reachable from referenced nodes
+    private boolean[] mark() {
+        int size = nodes.length();
+        boolean[] marked = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        for (int n = 2; n < size; n++) {
+            if (marked[n] || refcounts.get(n) <= 0)
+                continue;
+            marked[n] = true;
+            stack[top++] = n;
+            while (top > 0) {
+                int m = stack[--top];
+                int low = low(m), high = high(m);
+                if (low >= 2 && !marked[low]) {
+                    marked[low] = true;
+                    stack[top++] = low;
+                }
+                if (high >= 2 && !marked[high]) {
+                    marked[high] = true;
+                    stack[top++] = high;
+                }
+            }
+        }
+        return marked;
+    }
+
+    private void resize(int newsize) {
+        int size = nodes.length();
+        AtomicLongArray newnodes = new AtomicLongArray(newsize);
+        AtomicIntegerArray newrefcounts = new AtomicIntegerArray(newsize);
+        for (int n = 0; n < size; n++) {
+            newnodes.set(n, nodes.get(n));
+            newrefcounts.set(n, refcounts.get(n));
+        }
+        nodes = newnodes;
+        refcounts = newrefcounts;
+        freeList = new int[newsize];
+    }
+
+    // Rebuilds the unique table with the marked nodes and frees the others
+    private void rebuild(boolean[] marked) {
+        int size = nodes.length();
+        AtomicIntegerArray table = new AtomicIntegerArray(tableSize(size));
+        int mask = table.length() - 1;
+        freeNum = 0;
+        for (int n = 2; n < size; n++) {
+            if (marked[n]) {
+                int i = hash(nodes.get(n)) & mask;
+                while (table.get(i) != 0)
+                    i = (i + 1) & mask;
+                table.set(i, n);
+            } else {
+                nodes.set(n, 0);
+                freeList[freeNum++] = n;
+            }
+        }
+        unique = table;
+        freePos.set(0);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#isThreadSafe()
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#zero()
+     */
+    public BDD zero() {
+        return new bdd(0);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#one()
+     */
+    public BDD one() {
+        return new bdd(1);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#initialize(int, int)
+     */
+    protected void initialize(int nodenum, int cachesize) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#isInitialized()
+     */
+    public boolean isInitialized() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#done()
+     */
+    public void done() {
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setError(int)
+     */
+    public void setError(int code) {
+        // TODO Implement this.
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#clearError()
+     */
+    public void clearError() {
+        // TODO Implement this.
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setMaxNodeNum(int)
+     */
+    public int setMaxNodeNum(int size) {
+        int old = maxNodeNum;
+        maxNodeNum = size;
+        return old;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setMinFreeNodes(double)
+     */
+    public double setMinFreeNodes(double x) {
+        double old = minFreeNodes;
+        minFreeNodes = x;
+        return old;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setIncreaseFactor(double)
+     */
+    public double setIncreaseFactor(double x) {
+        double old = increaseFactor;
+        increaseFactor = x;
+        return old;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setMaxIncrease(int)
+     */
+    public int setMaxIncrease(int x) {
+        int old = maxNodeIncrease;
+        maxNodeIncrease = x;
+        return old;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setCacheRatio(double)
+     */
+    public double setCacheRatio(double x) {
+        // TODO Implement this.
+        return 0;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setNodeTableSize(int)
+     */
+    public int setNodeTableSize(int size) {
+        lock.writeLock().lock();
+        try {
+            int old = nodes.length();
+            size = Math.min(size, MAX_NODENUM);
+            if (size > old) {
+                boolean[] marked = Arrays.copyOf(mark(), size);
+                resize(size);
+                rebuild(marked);
+                gbcCount++;
+            }
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setCacheSize(int)
+     */
+    public int setCacheSize(int size) {
+        lock.writeLock().lock();
+        try {
+            int old = cache.length();
+            cache = new AtomicReferenceArray<CacheEntry>(powerOfTwo(Math.max(size, 16)));
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getCacheSize()
+     */
+    public int getCacheSize() {
+        return read(() -> cache.length());
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#varNum()
+     */
+    public int varNum() {
+        return varnum;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setVarNum(int)
+     */
+    public int setVarNum(int num) {
+        if (num < 1 || num > MAX_VARNUM)
+            throw new BDDException("invalid number of variables: " + num);
+        boolean grow = false;
+        while (true) {
+            lock.writeLock().lock();
+            int count = gbcCount;
+            try {
+                int old = varnum;
+                if (num < old)
+                    throw new BDDException("cannot decrease the number of variables");
+                if (num == old)
+                    return old;
+                if (freeNum - freePos.get() >= num - old) {
+                    int[] newvars = Arrays.copyOf(vars, num);
+                    for (int v = old; v < num; v++) {
+                        newvars[v] = freeList[freePos.getAndIncrement()];
+                        nodes.set(newvars[v], pack(v, 0, 1));
+                        // never collected
+                        refcounts.set(newvars[v], Integer.MAX_VALUE / 2);
+                    }
+                    // nodes are unique only once the table is rebuilt with them
+                    boolean[] marked = mark();
+                    for (int v = old; v < num; v++)
+                        marked[newvars[v]] = true;
+                    vars = newvars;
+                    varnum = num;
+                    rebuild(marked);
+                    cache = new AtomicReferenceArray<CacheEntry>(cache.length());
+                    gbcCount++;
+                    return old;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!gbc(count, grow))
+                throw new BDDException("BDD node table is full");
+            grow = true;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#duplicateVar(int)
+     */
+    public int duplicateVar(int var) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#ithVar(int)
+     */
+    public BDD ithVar(final int var) {
+        if (var < 0 || var >= varnum)
+            throw new BDDException("invalid variable: " + var);
+        return run(() -> vars[var]);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#nithVar(int)
+     */
+    public BDD nithVar(final int var) {
+        if (var < 0 || var >= varnum)
+            throw new BDDException("invalid variable: " + var);
+        return run(() -> not(vars[var]));
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#printAll()
+     */
+    public void printAll() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#printTable(net.sf.javabdd.BDD)
+     */
+    public void printTable(BDD b) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#level2Var(int)
+     */
+    public int level2Var(int level) {
+        return level;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#var2Level(int)
+     */
+    public int var2Level(int var) {
+        return var;
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#reorder(net.sf.javabdd.BDDFactory.ReorderMethod)
+     */
+    public void reorder(ReorderMethod m) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#autoReorder(net.sf.javabdd.BDDFactory.ReorderMethod)
+     */
+    public void autoReorder(ReorderMethod method) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#autoReorder(net.sf.javabdd.BDDFactory.ReorderMethod, int)
+     */
+    public void autoReorder(ReorderMethod method, int max) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getReorderMethod()
+     */
+    public ReorderMethod getReorderMethod() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getReorderTimes()
+     */
+    public int getReorderTimes() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#disableReorder()
+     */
+    public void disableReorder() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#enableReorder()
+     */
+    public void enableReorder() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#reorderVerbose(int)
+     */
+    public int reorderVerbose(int v) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#setVarOrder(int[])
+     */
+    public void setVarOrder(int[] neworder) {
+        for (int i = 0; i < neworder.length; ++i)
+            if (neworder[i] != i)
+                throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#addVarBlock(net.sf.javabdd.BDD, boolean)
+     */
+    public void addVarBlock(BDD var, boolean fixed) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#addVarBlock(int, int, boolean)
+     */
+    public void addVarBlock(int first, int last, boolean fixed) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#varBlockAll()
+     */
+    public void varBlockAll() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#clearVarBlocks()
+     */
+    public void clearVarBlocks() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#printOrder()
+     */
+    public void printOrder() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#nodeCount(java.util.Collection)
+     */
+    @SuppressWarnings("rawtypes")
+    public int nodeCount(Collection r) {
+        final int[] roots = new int[r.size()];
+        int i = 0;
+        for (Object o : r)
+            roots[i++] = ((bdd) o)._index;
+        return read(() -> nodeCount(roots));
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getNodeTableSize()
+     */
+    public int getNodeTableSize() {
+        return read(() -> nodes.length());
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getNodeNum()
+     */
+    public int getNodeNum() {
+        return read(() -> nodes.length() - 2 - Math.max(freeNum - freePos.get(), 0));
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#reorderGain()
+     */
+    public int reorderGain() {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#printStat()
+     */
+    public void printStat() {
+        System.out.println("Node table size: " + getNodeTableSize());
+        System.out.println("Nodes in use:    " + getNodeNum());
+        System.out.println("Cache size:      " + getCacheSize());
+        System.out.println("Collections:     " + gbcCount);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#makePair()
+     */
+    public BDDPairing makePair() {
+        return new bddPairing();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#swapVar(int, int)
+     */
+    public void swapVar(int v1, int v2) {
+        throw new BDDException();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#createDomain(int, BigInteger)
+     */
+    protected BDDDomain createDomain(int a, BigInteger b) {
+        return new bddDomain(a, b);
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#createBitVector(int)
+     */
+    protected BDDBitVector createBitVector(int a) {
+        return new bddBitVector(a);
+    }
+
+    private class bddDomain extends BDDDomain {
+
+        private bddDomain(int a, BigInteger b) {
+            super(a, b);
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDDBitVector#getFactory()
+         */
+        public BDDFactory getFactory() { return ConcurrentFactory.this; }
+
+    }
+
+    private class bddBitVector extends BDDBitVector {
+
+        private bddBitVector(int a) {
+            super(a);
+        }
+
+        /* (non-Javadoc)
+         * @see net.sf.javabdd.BDDBitVector#getFactory()
+         */
+        public BDDFactory getFactory() { return ConcurrentFactory.this; }
+
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#getVersion()
+     */
+    public String getVersion() {
+        return "ConcurrentFactory";
+    }
+}
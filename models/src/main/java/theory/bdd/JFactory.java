@@ -38,7 +38,7 @@ public class JFactory extends BDDFactory {
         return "JFactory "+REVISION.substring(11, REVISION.length()-2);
     }
     
-    private JFactory() { }
+    JFactory() { }
     
     /* (non-Javadoc)
      * @see net.sf.javabdd.BDDFactory#init(int, int)
@@ -504,96 +504,134 @@ public class JFactory extends BDDFactory {
     static final int offset__next = 4;
     static final int __node_size = 5;
     
+    /* Word i of the node table, where node n takes the words
+     * n*__node_size to (n+1)*__node_size-1.  Subclasses may keep the table
+     * elsewhere than in bddnodes, see OffHeapFactory. */
+    int NODEWORD(int i) {
+        return bddnodes[i];
+    }
+
+    void SETNODEWORD(int i, int v) {
+        bddnodes[i] = v;
+    }
+
+    /* Makes room for newsize nodes, keeping the oldsize first ones */
+    void nodes_resize(int oldsize, int newsize) {
+        int[] newnodes = new int[newsize*__node_size];
+        if (oldsize > 0)
+            System.arraycopy(bddnodes, 0, newnodes, 0, oldsize*__node_size);
+        bddnodes = newnodes;
+    }
+
+    /* Sets every word of the node table to zero */
+    void nodes_clear() {
+        Arrays.fill(bddnodes, 0);
+    }
+
+    /* Releases the node table */
+    void nodes_free() {
+        free(bddnodes);
+        bddnodes = null;
+    }
+
     private final boolean HASREF(int node) {
-        boolean r = (bddnodes[node*__node_size + offset__refcou_and_level] & REF_MASK) != 0;
+        boolean r = (NODEWORD(node*__node_size + offset__refcou_and_level) & REF_MASK) != 0;
         return r;
     }
 
     private final void SETMAXREF(int node) {
-        bddnodes[node*__node_size + offset__refcou_and_level] |= REF_MASK;
+        int i = node*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, NODEWORD(i) | REF_MASK);
     }
 
     private final void CLEARREF(int node) {
-        bddnodes[node*__node_size + offset__refcou_and_level] &= ~REF_MASK;
+        int i = node*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, NODEWORD(i) & ~REF_MASK);
     }
 
     private final void INCREF(int node) {
-        if ((bddnodes[node*__node_size + offset__refcou_and_level] & REF_MASK) != REF_MASK)
-            bddnodes[node*__node_size + offset__refcou_and_level] += REF_INC;
+        int i = node*__node_size + offset__refcou_and_level;
+        int w = NODEWORD(i);
+        if ((w & REF_MASK) != REF_MASK)
+            SETNODEWORD(i, w + REF_INC);
     }
 
     private final void DECREF(int node) {
-        int rc = bddnodes[node*__node_size + offset__refcou_and_level] & REF_MASK;
+        int i = node*__node_size + offset__refcou_and_level;
+        int w = NODEWORD(i);
+        int rc = w & REF_MASK;
         if (rc != REF_MASK && rc != 0)
-            bddnodes[node*__node_size + offset__refcou_and_level] -= REF_INC;
+            SETNODEWORD(i, w - REF_INC);
     }
 
     private final int GETREF(int node) {
-        return bddnodes[node*__node_size + offset__refcou_and_level] >>> 22;
+        return NODEWORD(node*__node_size + offset__refcou_and_level) >>> 22;
     }
 
     private final int LEVEL(int node) {
-        return bddnodes[node*__node_size + offset__refcou_and_level] & LEV_MASK;
+        return NODEWORD(node*__node_size + offset__refcou_and_level) & LEV_MASK;
     }
 
     private final int LEVELANDMARK(int node) {
-        return bddnodes[node*__node_size + offset__refcou_and_level] & (LEV_MASK | MARK_MASK);
+        return NODEWORD(node*__node_size + offset__refcou_and_level) & (LEV_MASK | MARK_MASK);
     }
 
     private final void SETLEVEL(int node, int val) {
         if (VERIFY_ASSERTIONS) _assert(val == (val & LEV_MASK));
-        bddnodes[node*__node_size + offset__refcou_and_level] &= ~LEV_MASK;
-        bddnodes[node*__node_size + offset__refcou_and_level] |= val;
+        int i = node*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, (NODEWORD(i) & ~LEV_MASK) | val);
     }
 
     private final void SETLEVELANDMARK(int node, int val) {
         if (VERIFY_ASSERTIONS) _assert(val == (val & (LEV_MASK | MARK_MASK)));
-        bddnodes[node*__node_size + offset__refcou_and_level] &= ~(LEV_MASK | MARK_MASK);
-        bddnodes[node*__node_size + offset__refcou_and_level] |= val;
+        int i = node*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, (NODEWORD(i) & ~(LEV_MASK | MARK_MASK)) | val);
     }
 
     private final void SETMARK(int n) {
-        bddnodes[n*__node_size + offset__refcou_and_level] |= MARK_MASK;
+        int i = n*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, NODEWORD(i) | MARK_MASK);
     }
     
     private final void UNMARK(int n) {
-        bddnodes[n*__node_size + offset__refcou_and_level] &= ~MARK_MASK;
+        int i = n*__node_size + offset__refcou_and_level;
+        SETNODEWORD(i, NODEWORD(i) & ~MARK_MASK);
     }
     
     private final boolean MARKED(int n) {
-        return (bddnodes[n*__node_size + offset__refcou_and_level] & MARK_MASK) != 0;
+        return (NODEWORD(n*__node_size + offset__refcou_and_level) & MARK_MASK) != 0;
     }
 
     private final int LOW(int r) {
-        return bddnodes[r*__node_size + offset__low];
+        return NODEWORD(r*__node_size + offset__low);
     }
 
     private final void SETLOW(int r, int v) {
-        bddnodes[r*__node_size + offset__low] = v;
+        SETNODEWORD(r*__node_size + offset__low, v);
     }
     
     private final int HIGH(int r) {
-        return bddnodes[r*__node_size + offset__high];
+        return NODEWORD(r*__node_size + offset__high);
     }
 
     private final void SETHIGH(int r, int v) {
-        bddnodes[r*__node_size + offset__high] = v;
+        SETNODEWORD(r*__node_size + offset__high, v);
     }
     
     private final int HASH(int r) {
-        return bddnodes[r*__node_size + offset__hash];
+        return NODEWORD(r*__node_size + offset__hash);
     }
     
     private final void SETHASH(int r, int v) {
-        bddnodes[r*__node_size + offset__hash] = v;
+        SETNODEWORD(r*__node_size + offset__hash, v);
     }
     
     private final int NEXT(int r) {
-        return bddnodes[r*__node_size + offset__next];
+        return NODEWORD(r*__node_size + offset__next);
     }
     
     private final void SETNEXT(int r, int v) {
-        bddnodes[r*__node_size + offset__next] = v;
+        SETNODEWORD(r*__node_size + offset__next, v);
     }
     
     private final int VARr(int n) {
@@ -707,6 +745,7 @@ public class JFactory extends BDDFactory {
     int cachesize; /* Size of the operator caches */
     long gbcclock; /* Clock ticks used in GBC */
     int usednodes_nextreorder; /* When to do reorder next time */
+    int usednodes_minreorder; /* Never reorder with fewer nodes in use */
 
     static final int BDD_MEMORY = (-1); /* Out of memory */
     static final int BDD_VAR = (-2); /* Unknown variable */
@@ -3206,11 +3245,8 @@ public class JFactory extends BDDFactory {
         
         resize_handler(oldsize, newsize);
         
-        int[] newnodes;
         int n;
-        newnodes = new int[newsize*__node_size];
-        System.arraycopy(bddnodes, 0, newnodes, 0, bddnodes.length);
-        bddnodes = newnodes;
+        nodes_resize(oldsize, newsize);
         bddnodesize = newsize;
 
         if (doRehash)
@@ -3247,7 +3283,7 @@ public class JFactory extends BDDFactory {
 
         bddnodesize = bdd_prime_gte(initnodesize);
 
-        bddnodes = new int[bddnodesize*__node_size];
+        nodes_resize(0, bddnodesize);
 
         bddresized = false;
 
@@ -3786,6 +3822,9 @@ public class JFactory extends BDDFactory {
             usednodes_nextreorder
                 += (usednodes_nextreorder * (20 - bdd_reorder_gain()))
                 / 20;
+
+        usednodes_nextreorder =
+            Math.max(usednodes_nextreorder, usednodes_minreorder);
     }
 
     boolean bdd_reorder_ready() {
@@ -4353,6 +4392,7 @@ public class JFactory extends BDDFactory {
             int v;
 
             /* Accumulate number of nodes for each block */
+            p[n] = new sizePair();
             p[n].val = 0;
             for (v = dis.first; v <= dis.last; v++)
                 p[n].val -= levels[v].nodenum;
@@ -4516,6 +4556,64 @@ public class JFactory extends BDDFactory {
         return this.bddrunning;
     }
 
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#reset()
+     */
+    public void reset() {
+        if (!bddrunning) {
+            super.reset();
+            return;
+        }
+        domain = null;
+        fdvarnum = 0;
+        firstbddvar = 0;
+        gc_callbacks = reorder_callbacks = resize_callbacks = null;
+        bdd_reset();
+    }
+
+    /* Empties the node table and the caches in place, keeping their size */
+    void bdd_reset() {
+        int n;
+
+        bdd_pairs_done();
+
+        nodes_clear();
+        for (n = 0; n < bddnodesize; n++) {
+            SETLOW(n, INVALID_BDD);
+            SETNEXT(n, n+1);
+        }
+        SETNEXT(bddnodesize-1, 0);
+
+        SETMAXREF(0);
+        SETMAXREF(1);
+        SETLOW(0, 0); SETHIGH(0, 0);
+        SETLOW(1, 1); SETHIGH(1, 1);
+
+        bdd_operator_reset();
+        quantvarsetID = 0;
+        quantvarset = null;
+        supportSet = null;
+
+        bddvarset = null;
+        bddlevel2var = null;
+        bddvar2level = null;
+        bddrefstack = null;
+        bddrefstacktop = 0;
+
+        bddfreepos = 2;
+        bddfreenum = bddnodesize - 2;
+        bddvarnum = 0;
+        bddproduced = 0;
+        gbcollectnum = 0;
+        gbcclock = 0;
+        usednodes_nextreorder = bddnodesize;
+        usednodes_minreorder = 0;
+        bdderrorcond = 0;
+
+        bdd_pairs_init();
+        bdd_reorder_init();
+    }
+
     /* (non-Javadoc)
      * @see net.sf.javabdd.BDDFactory#done()
      */
@@ -4529,13 +4627,12 @@ public class JFactory extends BDDFactory {
         //bdd_reorder_done();
         bdd_pairs_done();
 
-        free(bddnodes);
+        nodes_free();
         free(bddrefstack);
         free(bddvarset);
         free(bddvar2level);
         free(bddlevel2var);
 
-        bddnodes = null;
         bddrefstack = null;
         bddvarset = null;
         bddvar2level = null;
@@ -4917,6 +5014,14 @@ public class JFactory extends BDDFactory {
         return bddreordertimes;
     }
 
+    /* (non-Javadoc)
+     * @see theory.bdd.BDDFactory#setReorderThreshold(int)
+     */
+    public void setReorderThreshold(int nodenum) {
+        usednodes_minreorder = nodenum;
+        usednodes_nextreorder = nodenum;
+    }
+
     /* (non-Javadoc)
      * @see net.sf.javabdd.BDDFactory#disableReorder()
      */
@@ -5183,7 +5288,7 @@ public class JFactory extends BDDFactory {
                 int hash2;
 
                 hash2 = NODEHASH2(VARr(n), LOW(n), HIGH(n));
-                SETNEXT(n, hash2);
+                SETNEXT(n, HASH(hash2));
                 SETHASH(hash2, n);
             } else {
                 SETNEXT(n, bddfreepos);
@@ -6598,12 +6703,14 @@ public class JFactory extends BDDFactory {
         INSTANCE.cachesize = this.cachesize;
         INSTANCE.gbcclock = this.gbcclock;
         INSTANCE.usednodes_nextreorder = this.usednodes_nextreorder;
+        INSTANCE.usednodes_minreorder = this.usednodes_minreorder;
         
         INSTANCE.bddrefstacktop = this.bddrefstacktop;
         INSTANCE.bddresized = this.bddresized;
         INSTANCE.minfreenodes = this.minfreenodes;
-        INSTANCE.bddnodes = new int[this.bddnodes.length];
-        System.arraycopy(this.bddnodes, 0, INSTANCE.bddnodes, 0, this.bddnodes.length);
+        INSTANCE.nodes_resize(0, this.bddnodesize);
+        for (int i = 0; i < this.bddnodesize*__node_size; ++i)
+            INSTANCE.SETNODEWORD(i, this.NODEWORD(i));
         INSTANCE.bddrefstack = new int[this.bddrefstack.length];
         System.arraycopy(this.bddrefstack, 0, INSTANCE.bddrefstack, 0, this.bddrefstack.length);
         INSTANCE.bddvar2level = new int[this.bddvar2level.length];
@@ -0,0 +1,121 @@
+// OffHeapFactory.java
+// Licensed under the terms of the GNU LGPL; see COPYING for details.
+package theory.bdd;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>A JFactory whose node table is kept in native memory, out of the Java
+ * heap, so that tables of tens of millions of nodes neither make the heap
+ * larger nor lengthen garbage collection pauses.</p>
+ *
+ * <p>The table is split into direct buffers of CHUNK_WORDS words, and
+ * growing it only allocates new buffers, without copying the existing ones.
+ * The native memory belongs to the factory until {@link #done()}, which
+ * frees it at once where the platform allows it (Java 9 and later), and
+ * otherwise leaves it to be freed when the buffers are collected; no BDD of
+ * the factory may be used afterwards.  The operator caches stay on the heap,
+ * their size is the cache size the factory is initialized with.</p>
+ *
+ * @see theory.bdd.JFactory
+ */
+public class OffHeapFactory extends JFactory {
+
+    static final int CHUNK_SHIFT = 18;
+    static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    private static final int[] ZEROS = new int[CHUNK_WORDS];
+
+    /* sun.misc.Unsafe and its invokeCleaner method, null before Java 9 */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private ByteBuffer[] buffers = new ByteBuffer[0];
+    private IntBuffer[] chunks = new IntBuffer[0];
+
+    OffHeapFactory() { }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#init(int, int)
+     */
+    public static BDDFactory init(int nodenum, int cachesize) {
+        BDDFactory f = new OffHeapFactory();
+        f.initialize(nodenum, cachesize);
+        return f;
+    }
+
+    /**
+     * <p>Returns the number of bytes of native memory held by the node
+     * table.</p>
+     *
+     * @return size of the node table in bytes
+     */
+    public long getNativeMemory() {
+        return (long) buffers.length * CHUNK_WORDS * 4;
+    }
+
+    int NODEWORD(int i) {
+        return chunks[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK);
+    }
+
+    void SETNODEWORD(int i, int v) {
+        chunks[i >>> CHUNK_SHIFT].put(i & CHUNK_MASK, v);
+    }
+
+    void nodes_resize(int oldsize, int newsize) {
+        int oldnum = buffers.length;
+        int newnum = (int) (((long) newsize * __node_size + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (newnum <= oldnum)
+            return;
+        buffers = Arrays.copyOf(buffers, newnum);
+        chunks = Arrays.copyOf(chunks, newnum);
+        for (int n = oldnum; n < newnum; n++) {
+            // direct buffers start zeroed, as new arrays do
+            buffers[n] = ByteBuffer.allocateDirect(CHUNK_WORDS * 4).order(ByteOrder.nativeOrder());
+            chunks[n] = buffers[n].asIntBuffer();
+        }
+    }
+
+    void nodes_clear() {
+        for (int n = 0; n < chunks.length; n++) {
+            chunks[n].clear();
+            chunks[n].put(ZEROS);
+        }
+    }
+
+    void nodes_free() {
+        if (INVOKE_CLEANER != null) {
+            for (int n = 0; n < buffers.length; n++) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffers[n]);
+                } catch (Exception e) {
+                    // freed when collected
+                }
+            }
+        }
+        buffers = new ByteBuffer[0];
+        chunks = new IntBuffer[0];
+    }
+}
@@ -0,0 +1,240 @@
+package theory.bddalgebra;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+
+/**
+ * The models of a BDD, as assignments to all the variables of its factory.
+ * The nodes of the BDD are copied once to arrays, where the models are then
+ * enumerated, counted and sampled without any BDD operation. A model is a
+ * boolean array with the value of every variable. The copy stays valid as
+ * long as the variables keep their order, and can be shared between threads.
+ */
+class BDDModels {
+
+	private final int numVars;
+	private final int[] levelVar;
+
+	// nodes in post-order: 0 and 1 are the terminals, which are at level
+	// numVars, and the children of a node come before it
+	private int[] level = new int[16];
+	private int[] low = new int[16];
+	private int[] high = new int[16];
+	private int size;
+	private final int root;
+
+	// number of models of every node over the variables at its level and
+	// below, computed when first needed
+	private BigInteger[] counts;
+
+	BDDModels(BDD bdd) {
+		BDDFactory factory = bdd.getFactory();
+		numVars = factory.varNum();
+		levelVar = new int[numVars];
+		for (int l = 0; l < numVars; l++)
+			levelVar[l] = factory.level2Var(l);
+		level[0] = level[1] = numVars;
+		size = 2;
+
+		if (bdd.isZero())
+			root = 0;
+		else if (bdd.isOne())
+			root = 1;
+		else {
+			Map<BDD, Integer> nodes = new HashMap<BDD, Integer>();
+			root = copy(bdd, nodes);
+			// the other keys are children created by the copy
+			for (BDD node : nodes.keySet())
+				if (node != bdd)
+					node.free();
+		}
+	}
+
+	/**
+	 * @return true if the variables of <code>factory</code> are still in the
+	 *         order of the copy, which then still has the nodes of the BDD
+	 */
+	boolean isCurrent(BDDFactory factory) {
+		if (factory.varNum() != numVars)
+			return false;
+		for (int l = 0; l < numVars; l++)
+			if (factory.level2Var(l) != levelVar[l])
+				return false;
+		return true;
+	}
+
+	// Index of the copy of the inner node bdd, which becomes a key of nodes
+	private int copy(BDD bdd, Map<BDD, Integer> nodes) {
+		int lo = copyChild(bdd.low(), nodes);
+		int hi = copyChild(bdd.high(), nodes);
+		if (size == level.length) {
+			level = Arrays.copyOf(level, size * 2);
+			low = Arrays.copyOf(low, size * 2);
+			high = Arrays.copyOf(high, size * 2);
+		}
+		level[size] = bdd.getFactory().var2Level(bdd.var());
+		low[size] = lo;
+		high[size] = hi;
+		nodes.put(bdd, size);
+		return size++;
+	}
+
+	// Index of the copy of the child, which is freed unless it becomes a key
+	private int copyChild(BDD child, Map<BDD, Integer> nodes) {
+		Integer node = child.isZero() ? Integer.valueOf(0) : child.isOne() ? Integer.valueOf(1) : nodes.get(child);
+		if (node == null)
+			return copy(child, nodes);
+		child.free();
+		return node;
+	}
+
+	/**
+	 * @return the number of models
+	 */
+	synchronized BigInteger count() {
+		if (counts == null) {
+			counts = new BigInteger[size];
+			counts[0] = BigInteger.ZERO;
+			counts[1] = BigInteger.ONE;
+			for (int n = 2; n < size; n++)
+				counts[n] = weight(n, low[n]).add(weight(n, high[n]));
+		}
+		return counts[root].shiftLeft(level[root]);
+	}
+
+	// Number of models of child over the variables below the level of node
+	private BigInteger weight(int node, int child) {
+		return counts[child].shiftLeft(level[child] - level[node] - 1);
+	}
+
+	/**
+	 * @return the greatest model if <code>value</code> is true, the least one
+	 *         otherwise, in the lexicographic order of the levels, null if
+	 *         there is none
+	 */
+	boolean[] first(boolean value) {
+		if (root == 0)
+			return null;
+		boolean[] model = new boolean[numVars];
+		int node = root;
+		for (int l = 0; l < numVars; l++) {
+			boolean v = child(node, l, value) != 0 ? value : !value;
+			model[levelVar[l]] = v;
+			node = child(node, l, v);
+		}
+		return model;
+	}
+
+	/**
+	 * @return a model drawn uniformly at random, null if there is none
+	 */
+	boolean[] sample(Random random) {
+		BigInteger total = count();
+		if (total.signum() == 0)
+			return null;
+		// the models are numbered from 0 to total - 1 and r is read as the
+		// choices leading to model number r
+		BigInteger r;
+		do {
+			r = new BigInteger(total.bitLength(), random);
+		} while (r.compareTo(total) >= 0);
+
+		boolean[] model = new boolean[numVars];
+		r = assignFree(model, 0, level[root], r);
+		int node = root;
+		while (node > 1) {
+			BigInteger lowWeight = weight(node, low[node]);
+			boolean v = r.compareTo(lowWeight) >= 0;
+			if (v)
+				r = r.subtract(lowWeight);
+			model[levelVar[level[node]]] = v;
+			int child = v ? high[node] : low[node];
+			r = assignFree(model, level[node] + 1, level[child], r);
+			node = child;
+		}
+		return model;
+	}
+
+	// Assigns the low bits of r to the variables at the levels from..to-1,
+	// which the model does not depend on, and returns the other bits
+	private BigInteger assignFree(boolean[] model, int from, int to, BigInteger r) {
+		for (int l = from; l < to; l++) {
+			model[levelVar[l]] = r.testBit(0);
+			r = r.shiftRight(1);
+		}
+		return r;
+	}
+
+	/**
+	 * @return the models in the lexicographic order of the levels, each in a
+	 *         new array
+	 */
+	Iterator<boolean[]> iterator() {
+		return new Iterator<boolean[]>() {
+			// values of the levels in the next model, and nodes reached above
+			// every level
+			final boolean[] values = new boolean[numVars];
+			final int[] nodes = new int[numVars + 1];
+			boolean hasNext = root != 0;
+
+			{
+				nodes[0] = root;
+				if (hasNext)
+					descend(0);
+			}
+
+			// the least values of the levels from l on
+			private void descend(int l) {
+				for (; l < numVars; l++) {
+					values[l] = child(nodes[l], l, false) == 0;
+					nodes[l + 1] = child(nodes[l], l, values[l]);
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return hasNext;
+			}
+
+			@Override
+			public boolean[] next() {
+				if (!hasNext)
+					throw new NoSuchElementException();
+				boolean[] model = new boolean[numVars];
+				for (int l = 0; l < numVars; l++)
+					model[levelVar[l]] = values[l];
+
+				// the deepest level that can still be set to true
+				hasNext = false;
+				for (int l = numVars - 1; l >= 0 && !hasNext; l--)
+					if (!values[l] && child(nodes[l], l, true) != 0) {
+						values[l] = true;
+						nodes[l + 1] = child(nodes[l], l, true);
+						descend(l + 1);
+						hasNext = true;
+					}
+				return model;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	// Node reached from node by giving value to the variable at level l
+	private int child(int node, int l, boolean value) {
+		if (level[node] != l)
+			return node;
+		return value ? high[node] : low[node];
+	}
+}
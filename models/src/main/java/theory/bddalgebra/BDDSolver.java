@@ -7,11 +7,29 @@
  */
 package theory.bddalgebra;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringTokenizer;
 
 import java.lang.UnsupportedOperationException;
 import theory.BooleanAlgebra;
 import theory.bdd.BDD;
+import theory.bdd.BDDException;
 import theory.bdd.BDDFactory;
 import utilities.Pair;
 
@@ -21,6 +39,25 @@ import utilities.Pair;
 public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 
 	public BDDFactory factory;
+
+	// reorderings counted since first listened to, and whether the variables
+	// are in blocks, as the factory only reorders blocks
+	private ReorderCounter reorders = NO_REORDERS;
+	private boolean varBlocks;
+
+	// array copies of the predicates whose models were asked for last, least
+	// recently used first, keyed by references keeping their nodes alive
+	private static final int MODELS_CACHE_SIZE = 16;
+	@SuppressWarnings("serial")
+	private final LinkedHashMap<BDD, BDDModels> models = new LinkedHashMap<BDD, BDDModels>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BDD, BDDModels> eldest) {
+			if (size() <= MODELS_CACHE_SIZE)
+				return false;
+			eldest.getKey().free();
+			return true;
+		}
+	};
 	
 	public BDDSolver(int numVars) {
 		super();		
@@ -34,6 +71,258 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		factory.setVarNum(numVars);
 	}
 
+	/**
+	 * Solver over the BDDs of <code>factory</code>, for instance one created
+	 * with <code>BDDFactory.init("concurrent", numNodes, cacheSize)</code> to
+	 * share the solver between threads
+	 */
+	public BDDSolver(BDDFactory factory, int numVars) {
+		super();
+		this.factory = factory;
+		if (factory.varNum() < numVars)
+			factory.setVarNum(numVars);
+	}
+
+	// as thread-safe as the factory of the BDDs
+	@Override
+	public boolean isThreadSafe() {
+		return factory.isThreadSafe();
+	}
+
+	/**
+	 * Enables the automatic reordering of the variables with
+	 * <code>method</code>, which happens when the node table is full and at
+	 * least <code>minNodes</code> nodes are in use, at most
+	 * <code>maxReorders</code> times. Every variable is sifted on its own.
+	 * 
+	 * @throws BDDException
+	 *             if the factory cannot reorder, as the default one, but a
+	 *             factory created with <code>BDDFactory.init("j", ...)</code>
+	 *             can
+	 */
+	public void enableAutoReorder(BDDFactory.ReorderMethod method, int minNodes, int maxReorders) {
+		checkArgument(minNodes >= 0 && maxReorders >= 0);
+		factory.autoReorder(method, maxReorders);
+		listenToReorders();
+		if (!varBlocks) {
+			factory.varBlockAll();
+			varBlocks = true;
+		}
+		factory.setReorderThreshold(minNodes);
+	}
+
+	/**
+	 * Enables the automatic sifting of the variables whenever the node table
+	 * is full
+	 */
+	public void enableAutoReorder() {
+		enableAutoReorder(BDDFactory.REORDER_SIFT, 0, Integer.MAX_VALUE);
+	}
+
+	public void disableAutoReorder() {
+		factory.autoReorder(BDDFactory.REORDER_NONE);
+	}
+
+	/**
+	 * @return the number of reorderings of the variables since
+	 *         {@link #enableAutoReorder} or {@link #setVarOrder} was first
+	 *         called
+	 */
+	public int getReorderCount() {
+		return reorders.count;
+	}
+
+	/**
+	 * @return the time in milliseconds spent reordering the variables, counted
+	 *         as in {@link #getReorderCount}
+	 */
+	public long getReorderTime() {
+		return reorders.time;
+	}
+
+	/**
+	 * @return the nodes in use before and after the last reordering
+	 */
+	public BDDFactory.ReorderStats getReorderStats() {
+		return factory.getReorderStats();
+	}
+
+	/**
+	 * @return the variables from the top level of the BDDs to the bottom one
+	 */
+	public int[] getVarOrder() {
+		int[] order = new int[factory.varNum()];
+		for (int level = 0; level < order.length; level++)
+			order[level] = factory.level2Var(level);
+		return order;
+	}
+
+	/**
+	 * Moves the variables to the levels given by <code>order</code>, a
+	 * permutation of the variables from the top level to the bottom one such
+	 * as the ones learnt by {@link #learnVarOrder}, keeping the existing BDDs
+	 */
+	public void setVarOrder(int[] order) {
+		checkArgument(order.length == factory.varNum(), "the order must have one level per variable");
+		listenToReorders();
+		// the factory only sets orders without variable blocks
+		if (varBlocks)
+			factory.clearVarBlocks();
+		factory.setVarOrder(order);
+		if (varBlocks)
+			factory.varBlockAll();
+	}
+
+	/**
+	 * Learns a variable order from a sample of the guards of a workload: the
+	 * guards are copied to a scratch factory that starts from the current
+	 * order, and their variables are sifted until the guards stop shrinking.
+	 * This solver is left unchanged, the order can be applied with
+	 * {@link #setVarOrder} and kept for later runs with {@link #saveVarOrder}.
+	 * 
+	 * @return the learnt order, from the top level to the bottom one
+	 */
+	public int[] learnVarOrder(Collection<BDD> sample) {
+		BDDFactory scratch = BDDFactory.init("j", 10000, 2500);
+		try {
+			scratch.setVarNum(factory.varNum());
+			scratch.registerReorderCallback(new ReorderCounter(), REORDERED);
+			scratch.setVarOrder(getVarOrder());
+
+			Map<BDD, BDD> copies = new HashMap<BDD, BDD>();
+			List<BDD> guards = new ArrayList<BDD>(sample.size());
+			try {
+				for (BDD guard : sample)
+					guards.add(copy(guard, scratch, copies).id());
+			} finally {
+				// only the guards are sifted, and the nodes of the sample are
+				// released in this factory
+				for (Map.Entry<BDD, BDD> entry : copies.entrySet()) {
+					entry.getKey().free();
+					entry.getValue().free();
+				}
+			}
+
+			scratch.varBlockAll();
+			int size;
+			do {
+				size = scratch.nodeCount(guards);
+				scratch.reorder(BDDFactory.REORDER_SIFT);
+			} while (scratch.nodeCount(guards) < size);
+
+			int[] order = new int[scratch.varNum()];
+			for (int level = 0; level < order.length; level++)
+				order[level] = scratch.level2Var(level);
+			return order;
+		} finally {
+			scratch.done();
+		}
+	}
+
+	// Copy of bdd in the factory to, with the copies of its nodes in copies,
+	// whose keys are references to the nodes that the caller must free
+	private static BDD copy(BDD bdd, BDDFactory to, Map<BDD, BDD> copies) {
+		if (bdd.isZero())
+			return to.zero();
+		if (bdd.isOne())
+			return to.one();
+		BDD copy = copies.get(bdd);
+		if (copy == null) {
+			// high and low add references to the children
+			BDD high = bdd.high();
+			BDD low = bdd.low();
+			try {
+				copy = to.ithVar(bdd.var()).ite(copy(high, to, copies), copy(low, to, copies));
+			} finally {
+				high.free();
+				low.free();
+			}
+			copies.put(bdd.id(), copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Writes <code>order</code> to the file <code>filename</code>, one line
+	 * with the variables from the top level to the bottom one
+	 */
+	public static void saveVarOrder(int[] order, String filename) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(filename));
+		try {
+			for (int level = 0; level < order.length; level++) {
+				if (level > 0)
+					out.write(' ');
+				out.write(Integer.toString(order[level]));
+			}
+			out.newLine();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the order written to the file <code>filename</code> by
+	 *         {@link #saveVarOrder}
+	 * @throws BDDException
+	 *             if the file does not contain a permutation of the variables
+	 */
+	public static int[] loadVarOrder(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			String line = in.readLine();
+			StringTokenizer tokens = new StringTokenizer(line == null ? "" : line);
+			int[] order = new int[tokens.countTokens()];
+			boolean[] seen = new boolean[order.length];
+			for (int level = 0; level < order.length; level++) {
+				try {
+					order[level] = Integer.parseInt(tokens.nextToken());
+				} catch (NumberFormatException e) {
+					throw new BDDException("bad variable order in " + filename);
+				}
+				if (order[level] < 0 || order[level] >= order.length || seen[order[level]])
+					throw new BDDException("bad variable order in " + filename);
+				seen[order[level]] = true;
+			}
+			return order;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void listenToReorders() {
+		if (reorders == NO_REORDERS) {
+			reorders = new ReorderCounter();
+			factory.registerReorderCallback(reorders, REORDERED);
+		}
+	}
+
+	// Counts the reorderings of a factory, which calls reordered before and
+	// after each of them. Being registered also keeps the factory from
+	// printing them.
+	private static final class ReorderCounter {
+		int count;
+		long time;
+
+		public void reordered(Integer starting, BDDFactory.ReorderStats stats) {
+			if (starting.intValue() == 0) {
+				count++;
+				time += stats.time;
+			}
+		}
+	}
+
+	private static final ReorderCounter NO_REORDERS = new ReorderCounter();
+	private static final Method REORDERED;
+
+	static {
+		try {
+			REORDERED = ReorderCounter.class.getMethod("reordered", Integer.class, BDDFactory.ReorderStats.class);
+			REORDERED.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
 	@Override
 	public BDD MkNot(BDD p) {
 		return p.not();
@@ -96,46 +385,108 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		throw new UnsupportedOperationException();
 	}
 
-	private BDD extractWitness(BDD p) {
-		BDD res = factory.one();
-		BDD copy = p;
-		//res = res.and(factory.ithVar(0));
-		//res.and(factory.ithVar(1));
-		//res.printDot();
-		//factory.ithVar(1).and(factory.ithVar(0)).printDot();
-		Integer index = 0;
-		res = factory.one();
-		for (int i = 0; i < factory.varNum(); i++) {
-			if (!factory.ithVar(i).and(copy).equals(factory.zero())) {
-				res = res.and(factory.ithVar(index));			;
-				copy = copy.and(factory.ithVar(index));
-			} else {
-				res = res.and(factory.nithVar(index));
-				copy = copy.and(factory.nithVar(index));
+	/**
+	 * @return a model of <code>p</code>, with the value of every variable,
+	 *         setting the variables to true whenever possible from the top
+	 *         level down, null if <code>p</code> is unsatisfiable
+	 */
+	public boolean[] satOne(BDD p) {
+		return satOne(p, true);
+	}
+
+	// The model setting the variables to value whenever possible from the top
+	// level down, read from the cached copy of p
+	private boolean[] satOne(BDD p, boolean value) {
+		if (p.isZero())
+			return null;
+		return modelsOf(p).first(value);
+	}
+
+	/**
+	 * @return the models of <code>p</code>, each with the value of every
+	 *         variable in a new array, enumerated without BDD operations
+	 */
+	public Iterator<boolean[]> allSat(BDD p) {
+		return modelsOf(p).iterator();
+	}
+
+	/**
+	 * @return the exact number of models of <code>p</code> over all the
+	 *         variables
+	 */
+	public BigInteger satCount(BDD p) {
+		return modelsOf(p).count();
+	}
+
+	/**
+	 * @return a model of <code>p</code> drawn uniformly at random from
+	 *         <code>random</code>, null if <code>p</code> is unsatisfiable.
+	 *         The nodes and model counts of the last predicates sampled are
+	 *         kept, so drawing again from one of them allocates only the model
+	 */
+	public boolean[] sample(BDD p, Random random) {
+		return modelsOf(p).sample(random);
+	}
+
+	// The cached copy of p, made again if the variables were reordered since
+	private BDDModels modelsOf(BDD p) {
+		synchronized (models) {
+			BDDModels m = models.get(p);
+			if (m == null || !m.isCurrent(factory)) {
+				m = new BDDModels(p);
+				if (models.containsKey(p))
+					models.put(p, m);
+				else
+					models.put(p.id(), m);
 			}
-			index ++;
+			return m;
 		}
-		return res;
 	}
-	
+
+	/**
+	 * @return the minterm of <code>model</code>, built from the bottom level
+	 *         up so that every conjunction only adds a node on top
+	 */
+	public BDD toBDD(boolean[] model) {
+		checkArgument(model.length == factory.varNum(), "the model must have a value per variable");
+		BDD minterm = factory.one();
+		for (int level = model.length - 1; level >= 0; level--) {
+			int var = factory.level2Var(level);
+			minterm = (model[var] ? factory.ithVar(var) : factory.nithVar(var)).andWith(minterm);
+		}
+		return minterm;
+	}
+
 	@Override
 	public BDD generateWitness(BDD p1) {
-		BDD sat = extractWitness(p1);//p1.satOne();
-		/*
-		sat.not().printDot();
-		if (!sat.not().and(p1).equals(factory.zero())) {
-			throw new AssertionError("Witness is buggy 1");
-		}
-		if (sat.and(p1).equals(factory.zero())) {
-			throw new AssertionError("Witness is buggy 2");
-		}*/		
-		return sat;
+		boolean[] model = satOne(p1);
+		return model == null ? null : toBDD(model);
 	}
 
+	// BDD predicates are unary, a pair witness is made of two models of p1,
+	// which are distinct if it has more than one
 	@Override
 	public Pair<BDD, BDD> generateWitnesses(BDD p1) {
-		// TODO Auto-generated method stub
-		throw new UnsupportedOperationException();
+		boolean[] greatest = satOne(p1, true);
+		if (greatest == null)
+			return null;
+		return new Pair<BDD, BDD>(toBDD(greatest), toBDD(satOne(p1, false)));
+	}
+
+	@Override
+	public boolean hasNDistinctWitnesses(BDD predicate, Integer numOfWitnesses) {
+		return satCount(predicate).compareTo(BigInteger.valueOf(numOfWitnesses)) >= 0;
+	}
+
+	@Override
+	public BigInteger getCardinality(BDD p) {
+		return satCount(p);
+	}
+
+	@Override
+	public BDD generateRandomWitness(BDD p, Random random) {
+		boolean[] model = sample(p, random);
+		return model == null ? null : toBDD(model);
 	}
 
 	@Override
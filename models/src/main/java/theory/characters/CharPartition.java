@@ -0,0 +1,127 @@
+package theory.characters;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * CharPartition: the coarsest partition of the characters into classes
+ * (contiguous intervals) such that every predicate in a given set is a union
+ * of classes. Classes are numbered 0..classCount()-1 in increasing order of
+ * characters.
+ */
+public class CharPartition {
+
+	// number of characters for which the class is stored in a direct table
+	private static final int DIRECT_CLASSES = 256;
+
+	// classStart[i] is the smallest character of the i-th class
+	private final char[] classStart;
+	// class of the characters 0..DIRECT_CLASSES-1
+	private final int[] directClass;
+
+	private CharPartition(char[] classStart) {
+		this.classStart = classStart;
+		directClass = new int[DIRECT_CLASSES];
+		for (int c = 0; c < DIRECT_CLASSES; c++)
+			directClass[c] = searchClass((char) c);
+	}
+
+	/**
+	 * @return the partition induced by <code>predicates</code>
+	 */
+	public static CharPartition of(Collection<CharPred> predicates) {
+		// The class boundaries are the left ends of the intervals and the
+		// successors of their right ends
+		TreeSet<Character> bounds = new TreeSet<Character>();
+		bounds.add(CharPred.MIN_CHAR);
+		for (CharPred p : checkNotNull(predicates))
+			for (ImmutablePair<Character, Character> interval : p.intervals) {
+				bounds.add(interval.left);
+				if (interval.right < CharPred.MAX_CHAR)
+					bounds.add((char) (interval.right + 1));
+			}
+
+		char[] classStart = new char[bounds.size()];
+		int i = 0;
+		for (Character c : bounds)
+			classStart[i++] = c;
+		return new CharPartition(classStart);
+	}
+
+	/**
+	 * @return the number of classes
+	 */
+	public int classCount() {
+		return classStart.length;
+	}
+
+	/**
+	 * @return the class containing <code>c</code>
+	 */
+	public int classOf(char c) {
+		if (c < DIRECT_CLASSES)
+			return directClass[c];
+		return searchClass(c);
+	}
+
+	/**
+	 * @return the smallest character of class <code>id</code>
+	 */
+	public char getMinChar(int id) {
+		return classStart[id];
+	}
+
+	/**
+	 * @return the largest character of class <code>id</code>
+	 */
+	public char getMaxChar(int id) {
+		return id + 1 < classStart.length ? (char) (classStart[id + 1] - 1) : CharPred.MAX_CHAR;
+	}
+
+	/**
+	 * @return the set of classes whose union is <code>p</code>
+	 * @throws IllegalArgumentException
+	 *             if <code>p</code> is not a union of classes
+	 */
+	public BitSet toClasses(CharPred p) {
+		BitSet classes = new BitSet(classStart.length);
+		for (ImmutablePair<Character, Character> interval : checkNotNull(p).intervals) {
+			int first = classOf(interval.left);
+			int last = classOf(interval.right);
+			checkArgument(classStart[first] == interval.left && getMaxChar(last) == interval.right,
+					"predicate is not a union of classes");
+			classes.set(first, last + 1);
+		}
+		return classes;
+	}
+
+	/**
+	 * @return the predicate accepting the characters of <code>classes</code>
+	 */
+	public CharPred toCharPred(BitSet classes) {
+		List<ImmutablePair<Character, Character>> intervals = new ArrayList<ImmutablePair<Character, Character>>();
+		for (int first = classes.nextSetBit(0); first >= 0 && first < classStart.length;) {
+			int last = Math.min(classes.nextClearBit(first), classStart.length) - 1;
+			intervals.add(ImmutablePair.of(classStart[first], getMaxChar(last)));
+			first = classes.nextSetBit(last + 1);
+		}
+		return new CharPred(ImmutableList.copyOf(intervals));
+	}
+
+	// index of the last class starting at or before c
+	private int searchClass(char c) {
+		int pos = Arrays.binarySearch(classStart, c);
+		return pos >= 0 ? pos : -pos - 2;
+	}
+}
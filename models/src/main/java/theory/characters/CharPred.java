@@ -13,12 +13,12 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
@@ -83,10 +83,52 @@ public class CharPred extends ICharPred{
 		}
 
 		this.intervals = sortIntervals(checkNotNull(intervals));
+		this.bounds = pack(this.intervals);
+		this.hash = Arrays.hashCode(bounds);
 		if(isReturn)
 			setAsReturn();
 	}
 
+	/**
+	 * The set of intervals packed in <code>bounds</code>, which must be
+	 * sorted, disjoint and non-adjacent
+	 */
+	CharPred(char[] bounds) {
+		ImmutableList.Builder<ImmutablePair<Character, Character>> intervals = ImmutableList.builder();
+		for (int i = 0; i < bounds.length; i += 2)
+			intervals.add(ImmutablePair.of(bounds[i], bounds[i + 1]));
+		this.intervals = intervals.build();
+		this.bounds = bounds;
+		this.hash = Arrays.hashCode(bounds);
+	}
+
+	private CharPred(ImmutableList<ImmutablePair<Character, Character>> intervals, char[] bounds, int hash,
+			boolean isReturn) {
+		this.intervals = intervals;
+		this.bounds = bounds;
+		this.hash = hash;
+		if (isReturn)
+			setAsReturn();
+	}
+
+	// Lookup key for the hash-consing table of CharPredCache, it has no
+	// intervals and must never escape
+	static CharPred probe(char[] bounds) {
+		return new CharPred(ImmutableList.<ImmutablePair<Character, Character>>of(), bounds,
+				Arrays.hashCode(bounds), false);
+	}
+
+	/**
+	 * @return this predicate if it is a return predicate, otherwise a copy of
+	 *         it marked as return. Predicates produced by a solver can be
+	 *         shared and should not be modified with {@link #setAsReturn()}
+	 */
+	public CharPred asReturn() {
+		if (isReturn())
+			return this;
+		return new CharPred(intervals, bounds, hash, true);
+	}
+
 	private static ImmutableList<ImmutablePair<Character, Character>> sortIntervals(
 			ImmutableList<ImmutablePair<Character, Character>> intervals) {
 		for (ImmutablePair<Character, Character> interval : checkNotNull(intervals)) {
@@ -148,12 +190,17 @@ public class CharPred extends ICharPred{
         }
 
 	public boolean isSatisfiedBy(char c) {
-		for (ImmutablePair<Character, Character> interval : intervals) {
-			if (interval.left <= c && c <= interval.right) {
-				return true;
-			}
+		// binary search for the last interval starting at or before c
+		int lo = 0, hi = bounds.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (bounds[2 * mid] <= c) {
+				if (c <= bounds[2 * mid + 1])
+					return true;
+				lo = mid + 1;
+			} else
+				hi = mid - 1;
 		}
-
 		return false;
 	}
 
@@ -177,8 +224,11 @@ public class CharPred extends ICharPred{
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
 		if (obj instanceof CharPred) {
-			return Objects.equals(intervals, ((CharPred)obj).intervals);
+			CharPred other = (CharPred) obj;
+			return hash == other.hash && Arrays.equals(bounds, other.bounds);
 		} else {
 			return false;
 		}
@@ -186,14 +236,95 @@ public class CharPred extends ICharPred{
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(CharPred.class, intervals);
+		return hash;
 	}
 
 	public final ImmutableList<ImmutablePair<Character, Character>> intervals;
 
+	// the intervals packed as [left_0, right_0, left_1, right_1, ...]
+	final char[] bounds;
+	private final int hash;
+
 	public static final char MIN_CHAR = Character.MIN_VALUE;
     public static final char MAX_CHAR = Character.MAX_VALUE;
 
+	// ------------------------------------------------------
+	// Operations on packed intervals
+	// ------------------------------------------------------
+
+	private static char[] pack(ImmutableList<ImmutablePair<Character, Character>> intervals) {
+		char[] bounds = new char[2 * intervals.size()];
+		for (int i = 0; i < intervals.size(); i++) {
+			bounds[2 * i] = intervals.get(i).left;
+			bounds[2 * i + 1] = intervals.get(i).right;
+		}
+		return bounds;
+	}
+
+	// intersection of two packed interval sets
+	static char[] and(char[] b1, char[] b2) {
+		char[] out = new char[b1.length + b2.length];
+		int n = 0;
+		for (int i = 0, j = 0; i < b1.length && j < b2.length;) {
+			char lo = (char) Math.max(b1[i], b2[j]);
+			char hi = (char) Math.min(b1[i + 1], b2[j + 1]);
+			if (lo <= hi) {
+				out[n++] = lo;
+				out[n++] = hi;
+			}
+			if (b1[i + 1] == hi)
+				i += 2;
+			else
+				j += 2;
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+
+	// union of two packed interval sets, merging adjacent intervals
+	static char[] or(char[] b1, char[] b2) {
+		char[] out = new char[b1.length + b2.length];
+		int n = 0;
+		for (int i = 0, j = 0; i < b1.length || j < b2.length;) {
+			char lo, hi;
+			if (j >= b2.length || (i < b1.length && b1[i] <= b2[j])) {
+				lo = b1[i];
+				hi = b1[i + 1];
+				i += 2;
+			} else {
+				lo = b2[j];
+				hi = b2[j + 1];
+				j += 2;
+			}
+			if (n > 0 && lo <= out[n - 1] + 1) {
+				if (hi > out[n - 1])
+					out[n - 1] = hi;
+			} else {
+				out[n++] = lo;
+				out[n++] = hi;
+			}
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+
+	// complement of a packed interval set
+	static char[] not(char[] b) {
+		char[] out = new char[b.length + 2];
+		int n = 0;
+		int next = MIN_CHAR;
+		for (int i = 0; i < b.length; i += 2) {
+			if (next < b[i]) {
+				out[n++] = (char) next;
+				out[n++] = (char) (b[i] - 1);
+			}
+			next = b[i + 1] + 1;
+		}
+		if (next <= MAX_CHAR) {
+			out[n++] = (char) next;
+			out[n++] = MAX_CHAR;
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+
 	// Only prints readable chars, otherwise print unicode
 	public static String printChar(char c) {
 		Map<Character, String> unescapeMap = new HashMap<Character, String>();
@@ -0,0 +1,151 @@
+package theory.characters;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * CharPredCache: hash-consed Boolean operations over {@link CharPred}. The
+ * predicates computed by the cache are interned, so structurally equal results
+ * are the same instance, and the results of <code>and</code>,
+ * <code>or</code> and <code>not</code> are memoized in bounded, lossy tables
+ * keyed by the identity of the operands. The cache is safe to use from
+ * multiple threads.
+ */
+public class CharPredCache {
+
+	// Hash-consing table shared by all caches. Entries disappear when the
+	// predicate is no longer referenced.
+	private static final Map<CharPred, WeakReference<CharPred>> table = Collections
+			.synchronizedMap(new WeakHashMap<CharPred, WeakReference<CharPred>>());
+
+	static {
+		intern(StdCharPred.TRUE);
+		intern(StdCharPred.FALSE);
+	}
+
+	// An immutable cache line: op(left, right) = result
+	private static final class Entry {
+		final CharPred left;
+		final CharPred right;
+		final CharPred result;
+
+		Entry(CharPred left, CharPred right, CharPred result) {
+			this.left = left;
+			this.right = right;
+			this.result = result;
+		}
+	}
+
+	private final Entry[] andCache;
+	private final Entry[] orCache;
+	private final Entry[] notCache;
+	private final int mask;
+
+	/**
+	 * A cache with <code>size</code> lines per operation, <code>size</code>
+	 * must be a power of 2
+	 */
+	public CharPredCache(int size) {
+		checkArgument(size > 0 && Integer.bitCount(size) == 1, "size must be a power of 2");
+		andCache = new Entry[size];
+		orCache = new Entry[size];
+		notCache = new Entry[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * @return the canonical instance structurally equal to <code>p</code>
+	 */
+	public static CharPred intern(CharPred p) {
+		// return predicates are never interned since they can be modified
+		if (checkNotNull(p).isReturn())
+			return p;
+		synchronized (table) {
+			WeakReference<CharPred> ref = table.get(p);
+			CharPred canonical = ref == null ? null : ref.get();
+			if (canonical != null)
+				return canonical;
+			table.put(p, new WeakReference<CharPred>(p));
+			return p;
+		}
+	}
+
+	// Interns the predicate packed in bounds, allocating it only if new
+	private static CharPred intern(char[] bounds) {
+		synchronized (table) {
+			WeakReference<CharPred> ref = table.get(CharPred.probe(bounds));
+			CharPred canonical = ref == null ? null : ref.get();
+			if (canonical != null)
+				return canonical;
+			CharPred p = new CharPred(bounds);
+			table.put(p, new WeakReference<CharPred>(p));
+			return p;
+		}
+	}
+
+	/**
+	 * @return the intersection of <code>p1</code> and <code>p2</code>
+	 */
+	public CharPred and(CharPred p1, CharPred p2) {
+		int index = symmetricIndex(checkNotNull(p1), checkNotNull(p2));
+		Entry e = andCache[index];
+		if (e != null && ((e.left == p1 && e.right == p2) || (e.left == p2 && e.right == p1)))
+			return e.result;
+
+		CharPred result = intern(CharPred.and(p1.bounds, p2.bounds));
+		andCache[index] = new Entry(p1, p2, result);
+		return result;
+	}
+
+	/**
+	 * @return the union of <code>p1</code> and <code>p2</code>
+	 */
+	public CharPred or(CharPred p1, CharPred p2) {
+		int index = symmetricIndex(checkNotNull(p1), checkNotNull(p2));
+		Entry e = orCache[index];
+		if (e != null && ((e.left == p1 && e.right == p2) || (e.left == p2 && e.right == p1)))
+			return e.result;
+
+		CharPred result = intern(CharPred.or(p1.bounds, p2.bounds));
+		orCache[index] = new Entry(p1, p2, result);
+		return result;
+	}
+
+	/**
+	 * @return the complement of <code>p</code>
+	 */
+	public CharPred not(CharPred p) {
+		int index = System.identityHashCode(checkNotNull(p)) & mask;
+		Entry e = notCache[index];
+		if (e != null && e.left == p)
+			return e.result;
+
+		CharPred result = intern(CharPred.not(p.bounds));
+		notCache[index] = new Entry(p, null, result);
+		// the complement of the result is p
+		if (!p.isReturn())
+			notCache[System.identityHashCode(result) & mask] = new Entry(result, null, p);
+		return result;
+	}
+
+	/**
+	 * Empties the memoization tables
+	 */
+	public void clear() {
+		for (int i = 0; i <= mask; i++) {
+			andCache[i] = null;
+			orCache[i] = null;
+			notCache[i] = null;
+		}
+	}
+
+	private int symmetricIndex(CharPred p1, CharPred p2) {
+		int h = System.identityHashCode(p1) ^ System.identityHashCode(p2);
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
@@ -0,0 +1,204 @@
+package theory.intervals;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import theory.characters.CharPartition;
+import utilities.Pair;
+
+/**
+ * CharClassSolver: a solver whose predicates are sets of classes of a fixed
+ * {@link CharPartition}, represented as bitsets. All the Boolean operations
+ * are bitwise operations on the class ids. Predicates returned by the solver
+ * must not be modified.
+ */
+public class CharClassSolver extends BooleanAlgebra<BitSet, Character> {
+
+	private final CharPartition partition;
+	private final int classCount;
+	private final BitSet truePred;
+	private final BitSet falsePred;
+
+	public CharClassSolver(CharPartition partition) {
+		this.partition = checkNotNull(partition);
+		this.classCount = partition.classCount();
+		truePred = new BitSet(classCount);
+		truePred.set(0, classCount);
+		falsePred = new BitSet(classCount);
+	}
+
+	/**
+	 * @return the partition the classes refer to
+	 */
+	public CharPartition getPartition() {
+		return partition;
+	}
+
+	/**
+	 * @return the class containing <code>s</code>. This is the smallest
+	 *         predicate accepting <code>s</code>, but it may accept other
+	 *         characters
+	 */
+	@Override
+	public BitSet MkAtom(Character s) {
+		BitSet atom = new BitSet(classCount);
+		atom.set(partition.classOf(checkNotNull(s)));
+		return atom;
+	}
+
+	@Override
+	public BitSet MkNot(BitSet p) {
+		BitSet not = (BitSet) truePred.clone();
+		not.andNot(checkNotNull(p));
+		return not;
+	}
+
+	@Override
+	public BitSet MkOr(Collection<BitSet> pset) {
+		BitSet or = new BitSet(classCount);
+		for (BitSet p : pset)
+			or.or(p);
+		return or;
+	}
+
+	@Override
+	public BitSet MkOr(BitSet p1, BitSet p2) {
+		BitSet or = (BitSet) checkNotNull(p1).clone();
+		or.or(checkNotNull(p2));
+		return or;
+	}
+
+	@Override
+	public BitSet MkAnd(Collection<BitSet> pset) {
+		BitSet and = (BitSet) truePred.clone();
+		for (BitSet p : pset)
+			and.and(p);
+		return and;
+	}
+
+	@Override
+	public BitSet MkAnd(BitSet p1, BitSet p2) {
+		BitSet and = (BitSet) checkNotNull(p1).clone();
+		and.and(checkNotNull(p2));
+		return and;
+	}
+
+	@Override
+	public BitSet True() {
+		return truePred;
+	}
+
+	@Override
+	public BitSet False() {
+		return falsePred;
+	}
+
+	@Override
+	public boolean AreEquivalent(BitSet p1, BitSet p2) {
+		return checkNotNull(p1).equals(checkNotNull(p2));
+	}
+
+	@Override
+	public boolean IsSatisfiable(BitSet p) {
+		return !checkNotNull(p).isEmpty();
+	}
+
+	@Override
+	public boolean HasModel(BitSet p, Character el) {
+		return checkNotNull(p).get(partition.classOf(checkNotNull(el)));
+	}
+
+	@Override
+	public boolean HasModel(BitSet p, Character el1, Character el2) {
+		throw new UnsupportedOperationException("Not supported yet.");
+	}
+
+	@Override
+	public Character generateWitness(BitSet p) {
+		int id = checkNotNull(p).nextSetBit(0);
+		if (id < 0)
+			return null;
+		return partition.getMinChar(id);
+	}
+
+	@Override
+	public BigInteger getCardinality(BitSet p) {
+		long size = 0;
+		for (int id = checkNotNull(p).nextSetBit(0); id >= 0; id = p.nextSetBit(id + 1))
+			size += partition.getMaxChar(id) - partition.getMinChar(id) + 1;
+		return BigInteger.valueOf(size);
+	}
+
+	@Override
+	public Character generateRandomWitness(BitSet p, Random random) {
+		int size = getCardinality(p).intValue();
+		if (size == 0)
+			return null;
+		int index = random.nextInt(size);
+		for (int id = p.nextSetBit(0); id >= 0; id = p.nextSetBit(id + 1)) {
+			int length = partition.getMaxChar(id) - partition.getMinChar(id) + 1;
+			if (index < length)
+				return (char) (partition.getMinChar(id) + index);
+			index -= length;
+		}
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public Pair<Character, Character> generateWitnesses(BitSet p) {
+		throw new UnsupportedOperationException("Not supported yet.");
+	}
+
+	/**
+	 * Computes the minterms by grouping the classes that are contained in
+	 * exactly the same predicates, without enumerating Boolean combinations
+	 */
+	@Override
+	public Collection<Pair<BitSet, ArrayList<Integer>>> GetMinterms(ArrayList<BitSet> predicates, long timeout)
+			throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		// signature of a class: the set of predicates containing it
+		BitSet[] signatures = new BitSet[classCount];
+		for (int c = 0; c < classCount; c++)
+			signatures[c] = new BitSet(predicates.size());
+		for (int i = 0; i < predicates.size(); i++) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException("Minterm construction timeout");
+
+			BitSet p = predicates.get(i);
+			for (int c = p.nextSetBit(0); c >= 0 && c < classCount; c = p.nextSetBit(c + 1))
+				signatures[c].set(i);
+		}
+
+		Map<BitSet, BitSet> signatureToClasses = new LinkedHashMap<BitSet, BitSet>();
+		for (int c = 0; c < classCount; c++) {
+			BitSet classes = signatureToClasses.get(signatures[c]);
+			if (classes == null) {
+				classes = new BitSet(classCount);
+				signatureToClasses.put(signatures[c], classes);
+			}
+			classes.set(c);
+		}
+
+		Collection<Pair<BitSet, ArrayList<Integer>>> minterms = new ArrayList<Pair<BitSet, ArrayList<Integer>>>();
+		for (Map.Entry<BitSet, BitSet> entry : signatureToClasses.entrySet()) {
+			ArrayList<Integer> bits = new ArrayList<Integer>(predicates.size());
+			for (int i = 0; i < predicates.size(); i++)
+				bits.add(entry.getKey().get(i) ? 1 : 0);
+			minterms.add(new Pair<BitSet, ArrayList<Integer>>(entry.getValue(), bits));
+		}
+		return minterms;
+	}
+
+}
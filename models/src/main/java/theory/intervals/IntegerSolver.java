@@ -7,6 +7,7 @@ import org.sat4j.specs.TimeoutException;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -206,4 +207,36 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 		return out;
 	}
 
+	/**
+	 * Computes the minterms with a sweep over the interval endpoints
+	 */
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates, long timeout)
+			throws TimeoutException {
+		// integers are cut before each of them, the segment [l,r+1) is the
+		// interval [l,r] and unbounded intervals extend to the int extremes
+		final long min = Integer.MIN_VALUE;
+		final long max = Integer.MAX_VALUE + 1L;
+		List<List<Pair<Long, Long>>> segments = new ArrayList<List<Pair<Long, Long>>>();
+		for (IntPred p : predicates) {
+			List<Pair<Long, Long>> pSegments = new ArrayList<Pair<Long, Long>>();
+			for (ImmutablePair<Integer, Integer> interval : checkNotNull(p).intervals)
+				pSegments.add(new Pair<Long, Long>(interval.left == null ? min : interval.left,
+						interval.right == null ? max : interval.right + 1L));
+			segments.add(pSegments);
+		}
+
+		Collection<Pair<IntPred, ArrayList<Integer>>> minterms = new ArrayList<Pair<IntPred, ArrayList<Integer>>>();
+		for (Pair<BitSet, List<Pair<Long, Long>>> minterm : IntervalSweep.sweep(segments, min, max,
+				timeout)) {
+			ImmutableList.Builder<ImmutablePair<Integer, Integer>> intervals = ImmutableList.builder();
+			for (Pair<Long, Long> segment : minterm.second)
+				intervals.add(ImmutablePair.of(segment.first == min ? null : (int) (long) segment.first,
+						segment.second == max ? null : (int) (segment.second - 1)));
+			minterms.add(new Pair<IntPred, ArrayList<Integer>>(new IntPred(intervals.build()),
+					IntervalSweep.toBits(minterm.first, predicates.size())));
+		}
+		return minterms;
+	}
+
 }
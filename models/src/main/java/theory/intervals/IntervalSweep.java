@@ -0,0 +1,112 @@
+package theory.intervals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import utilities.Pair;
+
+/**
+ * IntervalSweep: computes the minterms of a list of interval predicates with a
+ * single sweep over their endpoints. Each predicate is given as a list of
+ * half-open segments <code>[start,end)</code> between cuts of the domain, the
+ * sweep splits the domain at every cut and groups the elementary segments that
+ * are contained in exactly the same predicates. This takes
+ * <code>O(m log m + k)</code> for <code>m</code> endpoints and <code>k</code>
+ * elementary segments, instead of up to <code>2^n</code> satisfiability checks.
+ */
+class IntervalSweep {
+
+	private IntervalSweep() {
+	}
+
+	/**
+	 * @param segments
+	 *            for every predicate, its segments <code>[start,end)</code>
+	 * @param min
+	 *            the smallest cut of the domain
+	 * @param max
+	 *            the largest cut of the domain, no segment ends after it
+	 * @return for every satisfiable combination of the predicates, the set of
+	 *         predicates used positively and the maximal segments of the
+	 *         domain satisfying the combination, sorted by start
+	 * @throws TimeoutException
+	 */
+	static <C extends Comparable<? super C>> List<Pair<BitSet, List<Pair<C, C>>>> sweep(
+			List<List<Pair<C, C>>> segments, C min, C max, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		// an event (cut, i) adds predicate i when i >= 0 and removes predicate
+		// -i-1 otherwise
+		List<Pair<C, Integer>> events = new ArrayList<Pair<C, Integer>>();
+		for (int i = 0; i < segments.size(); i++)
+			for (Pair<C, C> segment : segments.get(i))
+				if (segment.first.compareTo(segment.second) < 0) {
+					events.add(new Pair<C, Integer>(segment.first, i));
+					events.add(new Pair<C, Integer>(segment.second, -i - 1));
+				}
+		Collections.sort(events, new Comparator<Pair<C, Integer>>() {
+			public int compare(Pair<C, Integer> e1, Pair<C, Integer> e2) {
+				return e1.first.compareTo(e2.first);
+			}
+		});
+
+		// the segments of a predicate can touch, so we count how many of them
+		// contain the current point
+		int[] active = new int[segments.size()];
+		BitSet signature = new BitSet(segments.size());
+		Map<BitSet, List<Pair<C, C>>> minterms = new LinkedHashMap<BitSet, List<Pair<C, C>>>();
+
+		C pos = min;
+		int next = 0;
+		while (pos.compareTo(max) < 0) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException("Minterm construction timeout");
+
+			for (; next < events.size() && events.get(next).first.compareTo(pos) <= 0; next++) {
+				int i = events.get(next).second;
+				if (i >= 0) {
+					if (active[i]++ == 0)
+						signature.set(i);
+				} else if (--active[-i - 1] == 0)
+					signature.clear(-i - 1);
+			}
+			C end = next < events.size() ? events.get(next).first : max;
+
+			List<Pair<C, C>> minterm = minterms.get(signature);
+			if (minterm == null) {
+				minterm = new ArrayList<Pair<C, C>>();
+				minterms.put((BitSet) signature.clone(), minterm);
+			}
+			// merge with the previous segment if they touch
+			Pair<C, C> last = minterm.isEmpty() ? null : minterm.get(minterm.size() - 1);
+			if (last != null && last.second.compareTo(pos) == 0)
+				minterm.set(minterm.size() - 1, new Pair<C, C>(last.first, end));
+			else
+				minterm.add(new Pair<C, C>(pos, end));
+			pos = end;
+		}
+
+		List<Pair<BitSet, List<Pair<C, C>>>> result = new ArrayList<Pair<BitSet, List<Pair<C, C>>>>();
+		for (Map.Entry<BitSet, List<Pair<C, C>>> entry : minterms.entrySet())
+			result.add(new Pair<BitSet, List<Pair<C, C>>>(entry.getKey(), entry.getValue()));
+		return result;
+	}
+
+	/**
+	 * @return the 0/1 list describing which of the <code>n</code> predicates
+	 *         are in <code>signature</code>
+	 */
+	static ArrayList<Integer> toBits(BitSet signature, int n) {
+		ArrayList<Integer> bits = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++)
+			bits.add(signature.get(i) ? 1 : 0);
+		return bits;
+	}
+}
@@ -7,6 +7,7 @@ import org.sat4j.specs.TimeoutException;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -248,4 +249,57 @@ public class RealSolver extends BooleanAlgebra<RealPred, Double> {
 		return out;
 	}
 
+	/**
+	 * Computes the minterms with a sweep over the interval endpoints
+	 */
+	@Override
+	public Collection<Pair<RealPred, ArrayList<Integer>>> GetMinterms(ArrayList<RealPred> predicates, long timeout)
+			throws TimeoutException {
+		List<List<Pair<Cut, Cut>>> segments = new ArrayList<List<Pair<Cut, Cut>>>();
+		for (RealPred p : predicates) {
+			List<Pair<Cut, Cut>> pSegments = new ArrayList<Pair<Cut, Cut>>();
+			for (Quadruple<Double, Boolean, Double, Boolean> interval : checkNotNull(p).intervals)
+				pSegments.add(new Pair<Cut, Cut>(
+						interval.first == null ? Cut.MIN : new Cut(interval.first, interval.second),
+						interval.third == null ? Cut.MAX : new Cut(interval.third, !interval.fourth)));
+			segments.add(pSegments);
+		}
+
+		Collection<Pair<RealPred, ArrayList<Integer>>> minterms = new ArrayList<Pair<RealPred, ArrayList<Integer>>>();
+		for (Pair<BitSet, List<Pair<Cut, Cut>>> minterm : IntervalSweep.sweep(segments, Cut.MIN, Cut.MAX,
+				timeout)) {
+			ImmutableList.Builder<Quadruple<Double, Boolean, Double, Boolean>> intervals = ImmutableList.builder();
+			for (Pair<Cut, Cut> segment : minterm.second) {
+				Cut lo = segment.first;
+				Cut hi = segment.second;
+				intervals.add(new Quadruple<Double, Boolean, Double, Boolean>(lo == Cut.MIN ? null : lo.value,
+						lo == Cut.MIN || lo.after, hi == Cut.MAX ? null : hi.value, hi == Cut.MAX || !hi.after));
+			}
+			minterms.add(new Pair<RealPred, ArrayList<Integer>>(new RealPred(intervals.build()),
+					IntervalSweep.toBits(minterm.first, predicates.size())));
+		}
+		return minterms;
+	}
+
+	// A cut of the reals, right before or right after a value
+	private static class Cut implements Comparable<Cut> {
+		static final Cut MIN = new Cut(Double.NEGATIVE_INFINITY, false);
+		static final Cut MAX = new Cut(Double.POSITIVE_INFINITY, true);
+
+		final double value;
+		final boolean after;
+
+		Cut(double value, boolean after) {
+			this.value = value;
+			this.after = after;
+		}
+
+		public int compareTo(Cut o) {
+			int c = Double.compare(value, o.value);
+			if (c != 0)
+				return c;
+			return after == o.after ? 0 : (after ? 1 : -1);
+		}
+	}
+
 }
@@ -9,12 +9,15 @@ package theory.intervals;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
 
 import com.google.common.collect.ImmutableList;
 
@@ -27,38 +30,32 @@ import utilities.Pair;
  */
 public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharFunc, Character> {
 
-	@Override
-	public CharPred MkNot(CharPred u) {
-		List<ImmutablePair<Character,Character>> newIntervals =
-				new ArrayList<ImmutablePair<Character, Character>>();
-
-		if(checkNotNull(u).intervals.isEmpty()) {
-			return StdCharPred.TRUE;
-		}
+	// default number of lines of each memoization table
+	private static final int DEFAULT_CACHE_SIZE = 1 << 12;
 
-		Character curBot = u.intervals.get(0).left;
-		if(CharPred.MIN_CHAR < curBot) {
-			newIntervals.add(ImmutablePair.of(CharPred.MIN_CHAR, (char)(curBot - 1)));
-		}
+	private final CharPredCache cache;
 
-		char prevTop = u.intervals.get(0).right;
-		for(int i = 1; i < u.intervals.size(); i++) {
-			ImmutablePair<Character,Character> curr = u.intervals.get(i);
-			curBot = curr.left;
-			char newIntLo = (char)(prevTop + 1);
-			char newIntHi = (char)(curBot - 1);
-			if (newIntLo <= newIntHi) {
-				newIntervals.add(ImmutablePair.of(newIntLo, newIntHi));
-			}
+	public UnaryCharIntervalSolver() {
+		this(DEFAULT_CACHE_SIZE);
+	}
 
-			prevTop = curr.right;
-		}
+	/**
+	 * A solver memoizing the last <code>cacheSize</code> results of each
+	 * Boolean operation, <code>cacheSize</code> must be a power of 2
+	 */
+	public UnaryCharIntervalSolver(int cacheSize) {
+		cache = new CharPredCache(cacheSize);
+	}
 
-		if(prevTop < CharPred.MAX_CHAR) {
-			newIntervals.add(ImmutablePair.of((char)(prevTop + 1), CharPred.MAX_CHAR));
-		}
+	// predicates are immutable and the cache is thread-safe
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 
-		return new CharPred(ImmutableList.copyOf(newIntervals));
+	@Override
+	public CharPred MkNot(CharPred u) {
+		return cache.not(checkNotNull(u));
 	}
 
 	@Override
@@ -72,7 +69,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public CharPred MkOr(CharPred u1, CharPred u2) {
-		return MkNot(MkAnd(MkNot(u1), MkNot(u2)));
+		return cache.or(checkNotNull(u1), checkNotNull(u2));
 	}
 
 	@Override
@@ -86,31 +83,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public CharPred MkAnd(CharPred u1, CharPred u2) {
-		if(checkNotNull(u1).intervals.isEmpty() || checkNotNull(u2).intervals.isEmpty()) {
-			return False();
-		}
-
-		List<ImmutablePair<Character,Character>> newIntervals =
-				new ArrayList<ImmutablePair<Character, Character>>();
-
-		for (int i = 0, j = 0; i < u1.intervals.size() && j < u2.intervals.size(); ) {
-			ImmutablePair<Character, Character> cur1 = u1.intervals.get(i);
-			ImmutablePair<Character, Character> cur2 = u2.intervals.get(j);
-
-			char lo = (char)Math.max(cur1.left, cur2.left);
-			char hi = (char)Math.min(cur1.right, cur2.right);
-			if (lo <= hi) {
-				newIntervals.add(ImmutablePair.of(lo, hi));
-			}
-
-			if (cur1.right == hi) {
-				i++;
-			} else {
-				j++;
-			}
-		}
-
-		return new CharPred(ImmutableList.copyOf(newIntervals));
+		return cache.and(checkNotNull(u1), checkNotNull(u2));
 	}
 
 	@Override
@@ -128,9 +101,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 		checkNotNull(u1);
 		checkNotNull(u2);
 
-		boolean nonEquivalent = IsSatisfiable(MkAnd(u1, MkNot(u2))) ||
-				IsSatisfiable(MkAnd(MkNot(u1),u2));
-		return !nonEquivalent;
+		return u1.equals(u2);
 	}
 
 	@Override
@@ -162,11 +133,63 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 		}
 	}
 
+	@Override
+	public BigInteger getCardinality(CharPred u) {
+		long size = 0;
+		for (ImmutablePair<Character, Character> interval : checkNotNull(u).intervals)
+			size += interval.right - interval.left + 1;
+		return BigInteger.valueOf(size);
+	}
+
+	@Override
+	public Character generateRandomWitness(CharPred u, Random random) {
+		int size = getCardinality(u).intValue();
+		if (size == 0)
+			return null;
+		int index = random.nextInt(size);
+		for (ImmutablePair<Character, Character> interval : u.intervals) {
+			int length = interval.right - interval.left + 1;
+			if (index < length)
+				return (char) (interval.left + index);
+			index -= length;
+		}
+		throw new IllegalStateException();
+	}
+
 	@Override
 	public Pair<Character, Character> generateWitnesses(CharPred u) {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
 
+	/**
+	 * Computes the minterms with a sweep over the interval endpoints
+	 */
+	@Override
+	public Collection<Pair<CharPred, ArrayList<Integer>>> GetMinterms(ArrayList<CharPred> predicates, long timeout)
+			throws TimeoutException {
+		// characters are cut before each of them, the segment [l,r+1) is the
+		// interval [l,r]
+		List<List<Pair<Integer, Integer>>> segments = new ArrayList<List<Pair<Integer, Integer>>>();
+		for (CharPred p : predicates) {
+			List<Pair<Integer, Integer>> pSegments = new ArrayList<Pair<Integer, Integer>>();
+			for (ImmutablePair<Character, Character> interval : checkNotNull(p).intervals)
+				pSegments.add(new Pair<Integer, Integer>((int) interval.left, interval.right + 1));
+			segments.add(pSegments);
+		}
+
+		Collection<Pair<CharPred, ArrayList<Integer>>> minterms = new ArrayList<Pair<CharPred, ArrayList<Integer>>>();
+		for (Pair<BitSet, List<Pair<Integer, Integer>>> minterm : IntervalSweep.sweep(segments,
+				(int) CharPred.MIN_CHAR, CharPred.MAX_CHAR + 1, timeout)) {
+			ImmutableList.Builder<ImmutablePair<Character, Character>> intervals = ImmutableList.builder();
+			for (Pair<Integer, Integer> segment : minterm.second)
+				intervals.add(ImmutablePair.of((char) (int) segment.first, (char) (segment.second - 1)));
+			CharPred p = CharPredCache.intern(new CharPred(intervals.build()));
+			minterms.add(new Pair<CharPred, ArrayList<Integer>>(p,
+					IntervalSweep.toBits(minterm.first, predicates.size())));
+		}
+		return minterms;
+	}
+
 	@Override
 	public CharFunc MkSubstFuncFunc(CharFunc f1, CharFunc f2) {
 		return checkNotNull(f2).substIn(checkNotNull(f1));
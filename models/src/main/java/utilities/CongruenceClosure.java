@@ -0,0 +1,132 @@
+package utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The congruence closure of a relation between sets of integers, with respect
+ * to union (Bonchi and Pous, POPL13). Every pair (X,Y) added to the relation
+ * becomes the rewriting rules X -> X+Y and Y -> X+Y; two sets are in the
+ * congruence closure iff they have the same normal form, the largest set
+ * obtained by applying the rules. Normal forms are computed by counting, for
+ * each rule, how many states of its left side are still missing, so the cost
+ * is linear in the total size of the rules.
+ */
+public class CongruenceClosure {
+
+	// lhs[r] are the states of the left side of rule r and rhs[r] the states
+	// added when it fires
+	private final List<int[]> lhs = new ArrayList<int[]>();
+	private final List<BitSet> rhs = new ArrayList<BitSet>();
+	// occurs.get(q) are the rules with q in their left side
+	private final List<List<Integer>> occurs = new ArrayList<List<Integer>>();
+	// rules with an empty left side
+	private final List<Integer> always = new ArrayList<Integer>();
+	// pairs removed from the relation, their rules never fire
+	private final BitSet removed = new BitSet();
+
+	/**
+	 * Adds the pair (<code>x</code>,<code>y</code>) to the relation
+	 *
+	 * @return the index of the pair, pairs are numbered from 0
+	 */
+	public int add(BitSet x, BitSet y) {
+		BitSet union = (BitSet) x.clone();
+		union.or(y);
+		addRule(x, union);
+		addRule(y, union);
+		return size() - 1;
+	}
+
+	/**
+	 * Removes the pair with index <code>pair</code> from the relation
+	 */
+	public void remove(int pair) {
+		removed.set(pair);
+	}
+
+	/**
+	 * @return true if <code>x</code> and <code>y</code> are related by the
+	 *         congruence closure of the relation
+	 */
+	public boolean areCongruent(BitSet x, BitSet y) {
+		return areCongruent(x, y, -1);
+	}
+
+	/**
+	 * @return true if <code>x</code> and <code>y</code> are related by the
+	 *         congruence closure of the relation without the pair with index
+	 *         <code>except</code>
+	 */
+	public boolean areCongruent(BitSet x, BitSet y, int except) {
+		return x.equals(y) || normalForm(x, except).equals(normalForm(y, except));
+	}
+
+	/**
+	 * @return the largest set obtained from <code>x</code> by the rewriting
+	 *         rules of the relation
+	 */
+	public BitSet normalForm(BitSet x) {
+		return normalForm(x, -1);
+	}
+
+	// the rules of the pair except are never fired
+	private BitSet normalForm(BitSet x, int except) {
+		BitSet result = (BitSet) x.clone();
+		int[] missing = new int[lhs.size()];
+		for (int r = 0; r < lhs.size(); r++)
+			missing[r] = r / 2 == except || removed.get(r / 2) ? -1 : lhs.get(r).length;
+
+		ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+		for (int q = x.nextSetBit(0); q >= 0; q = x.nextSetBit(q + 1))
+			toVisit.add(q);
+		for (int r : always)
+			if (r / 2 != except && !removed.get(r / 2))
+				fire(r, result, toVisit);
+
+		while (!toVisit.isEmpty()) {
+			int q = toVisit.poll();
+			if (q >= occurs.size())
+				continue;
+			for (int r : occurs.get(q))
+				if (--missing[r] == 0)
+					fire(r, result, toVisit);
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of pairs added to the relation, including the removed
+	 *         ones
+	 */
+	public int size() {
+		return lhs.size() / 2;
+	}
+
+	private void fire(int r, BitSet result, ArrayDeque<Integer> toVisit) {
+		BitSet added = rhs.get(r);
+		for (int s = added.nextSetBit(0); s >= 0; s = added.nextSetBit(s + 1))
+			if (!result.get(s)) {
+				result.set(s);
+				toVisit.add(s);
+			}
+	}
+
+	private void addRule(BitSet left, BitSet right) {
+		int r = lhs.size();
+		int[] states = new int[left.cardinality()];
+		int i = 0;
+		for (int q = left.nextSetBit(0); q >= 0; q = left.nextSetBit(q + 1)) {
+			states[i++] = q;
+			while (occurs.size() <= q)
+				occurs.add(new ArrayList<Integer>());
+			occurs.get(q).add(r);
+		}
+		lhs.add(states);
+		rhs.add(right);
+		if (states.length == 0)
+			always.add(r);
+	}
+}
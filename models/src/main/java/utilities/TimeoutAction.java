@@ -0,0 +1,74 @@
+package utilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * A fork-join action of a computation that can time out. Every action of the
+ * computation shares its start time and timeout, and a TimeoutException
+ * thrown by any of them is carried out of the pool and rethrown by
+ * {@link #invokeInCommonPool()}.
+ */
+@SuppressWarnings("serial")
+public abstract class TimeoutAction extends RecursiveAction {
+
+	protected final long startTime;
+	protected final long timeout;
+
+	protected TimeoutAction(long startTime, long timeout) {
+		this.startTime = startTime;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * The work of the action, which may fork other actions
+	 *
+	 * @throws TimeoutException
+	 */
+	protected abstract void run() throws TimeoutException;
+
+	/**
+	 * @return true if more than <code>timeout</code> milliseconds passed since
+	 *         the start of the computation
+	 */
+	protected boolean isTimedOut() {
+		return System.currentTimeMillis() - startTime > timeout;
+	}
+
+	@Override
+	protected final void compute() {
+		try {
+			run();
+		} catch (TimeoutException e) {
+			throw new Timeout(e);
+		}
+	}
+
+	/**
+	 * Runs the action in the common fork-join pool and waits for it
+	 *
+	 * @throws TimeoutException
+	 *             if an action of the computation timed out
+	 */
+	public void invokeInCommonPool() throws TimeoutException {
+		try {
+			ForkJoinPool.commonPool().invoke(this);
+		} catch (Timeout e) {
+			throw e.getCause();
+		}
+	}
+
+	// Carries a TimeoutException out of the pool
+	private static class Timeout extends RuntimeException {
+		Timeout(TimeoutException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized TimeoutException getCause() {
+			return (TimeoutException) super.getCause();
+		}
+	}
+}
@@ -3,6 +3,9 @@ package SAFA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -12,6 +15,9 @@ import java.util.List;
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.AutomataException;
+import automata.io.AutomataSerializer;
+import automata.io.CharPredCodec;
 import automata.safa.BooleanExpressionFactory;
 import automata.safa.SAFA;
 import automata.safa.SAFAInputMove;
@@ -47,6 +53,19 @@ public class SAFAUnitTest {
 	}
 
 
+	@Test
+	public void testBinaryFormat() throws TimeoutException, IOException, AutomataException {
+		SAFA<CharPred, Character> intersection = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AutomataSerializer.writeSAFA(intersection, new CharPredCodec(), bytes);
+		SAFA<CharPred, Character> read = AutomataSerializer.readSAFA(ByteBuffer.wrap(bytes.toByteArray()),
+				new CharPredCodec(), ba);
+
+		assertTrue(read.getTransitionCount().equals(intersection.getTransitionCount()));
+		for (List<Character> l : Arrays.asList(la, lb, lab, lnot))
+			assertTrue(read.accepts(l, ba) == intersection.accepts(l, ba));
+	}
+
 	@Test
 	public void testUnion() throws TimeoutException {
 		SAFA<CharPred, Character> union = atLeastOneAlpha.unionWith(atLeastOneNum, ba);
@@ -1,26 +1,53 @@
 package SFA;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.AutomataException;
+import automata.WitnessGenerator;
+import automata.io.AutomataLibrary;
+import automata.io.AutomataSerializer;
+import automata.io.AutomatonExporter;
+import automata.io.CharPredCodec;
+import automata.sfa.BitNFA;
+import automata.sfa.CharDFAMatcher;
+import automata.sfa.CompactSFA;
+import automata.sfa.LazyDFA;
+import automata.sfa.MinimizationAlgorithm;
 import automata.sfa.SFA;
+import automata.sfa.SFABuilder;
 import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
+import automata.sfa.SFASampler;
+import automata.sfa.SymbolicRegex;
+import automata.sfa.SymbolicRegexFactory;
+import theory.characters.CharPartition;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
+import theory.intervals.CharClassSolver;
 import theory.intervals.UnaryCharIntervalSolver;
 import utilities.Pair;
+import utilities.Timers;
 
 public class SFAUnitTest {
 
@@ -332,6 +359,542 @@ public class SFAUnitTest {
 		assertFalse(sfaPlusMA.isEmpty());
 	}
 
+	@Test
+	public void testCompiledMatcher() throws TimeoutException {
+		SFA<CharPred, Character> autAB = autA.unionWith(autB, ba);
+		CharDFAMatcher mA = CharDFAMatcher.compile(autA, ba);
+		CharDFAMatcher mAB = CharDFAMatcher.compile(autAB, ba);
+
+		for (String s : Arrays.asList("", "aa", "a3", "a", "44", "zz9", "a\u2200")) {
+			assertTrue(mA.matches(s) == autA.accepts(lOfS(s), ba));
+			assertTrue(mAB.matches(s) == autAB.accepts(lOfS(s), ba));
+		}
+
+		CharDFAMatcher mb = CharDFAMatcher.compile(getSFAb(ba), ba);
+		assertTrue(mb.find("44a3", 0) == 2);
+		assertTrue(mb.find("44a3", 3) == -1);
+		assertTrue(mb.matchEnd("a34x", 0) == 3);
+		assertTrue(mb.matchEnd("4", 0) == -1);
+
+		// find scans once, and agrees with trying every start in turn
+		CharDFAMatcher mK = CharDFAMatcher.compile(getSFAkFromEnd(ba, 3), ba);
+		Random r = new Random(3);
+		for (int i = 0; i < 200; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = r.nextInt(12); j > 0; j--)
+				sb.append("ab3 ".charAt(r.nextInt(4)));
+			String s = sb.toString();
+			for (CharDFAMatcher m : Arrays.asList(mA, mAB, mb, mK))
+				for (int from = 0; from <= s.length() + 1; from++) {
+					int first = -1;
+					for (int start = from; start <= s.length() && first < 0; start++)
+						if (m.matchEnd(s, start) >= 0)
+							first = start;
+					assertTrue(m.find(s, from) == first);
+				}
+		}
+	}
+
+	@Test
+	public void testLazyDeterminization() throws TimeoutException {
+		SFA<CharPred, Character> autAB = autA.unionWith(autB, ba);
+		LazyDFA<CharPred, Character> lazyAB = new LazyDFA<CharPred, Character>(autAB, ba);
+		for (List<Character> l : Arrays.asList(la, lb, lab, lnot))
+			assertTrue(lazyAB.accepts(l) == autAB.accepts(l, ba));
+		assertTrue(lazyAB.fallbacks() == 0);
+
+		// the determinization of this automaton has 2^7 states, so the small
+		// cache is flushed and the scan falls back to the NFA
+		SFA<CharPred, Character> autK = getSFAkFromEnd(ba, 6);
+		LazyDFA<CharPred, Character> lazyK = new LazyDFA<CharPred, Character>(autK, ba, 8);
+		for (String s : Arrays.asList("", "a", "abbbbbb", "bbbbbbb", "aababbabbbabbbbbbabbbbab",
+				"bbbbbbbbbbbbbbbbbbabbbbbb", "abababababababababab"))
+			assertTrue(lazyK.accepts(lOfS(s)) == autK.accepts(lOfS(s), ba));
+		assertTrue(lazyK.flushes() > 0);
+		assertTrue(lazyK.fallbacks() > 0);
+		assertTrue(lazyK.cachedStates() <= 8);
+	}
+
+	@Test
+	public void testBitParallelSimulation() throws TimeoutException {
+		SFA<CharPred, Character> autAB = autA.unionWith(autB, ba);
+		BitNFA<CharPred, Character> nfaAB = new BitNFA<CharPred, Character>(autAB, ba);
+		for (List<Character> l : Arrays.asList(la, lb, lab, lnot))
+			assertTrue(nfaAB.accepts(l) == autAB.accepts(l, ba));
+
+		// configurations are states of the simulated SFA
+		SFA<CharPred, Character> epsFreeA = autA.removeEpsilonMoves(ba);
+		BitNFA<CharPred, Character> nfaA = new BitNFA<CharPred, Character>(epsFreeA, ba);
+		assertTrue(nfaA.accepts(Arrays.asList(epsFreeA.getInitialState()), la));
+		boolean unknownState = false;
+		try {
+			nfaA.accepts(Arrays.asList(epsFreeA.getMaxStateId() + 1), la);
+		} catch (IllegalArgumentException e) {
+			unknownState = true;
+		}
+		assertTrue(unknownState);
+		boolean renamedStates = false;
+		try {
+			nfaAB.accepts(Arrays.asList(autAB.getInitialState()), la);
+		} catch (IllegalStateException e) {
+			renamedStates = true;
+		}
+		assertTrue(autAB.isEpsilonFree() != renamedStates);
+
+		// configurations spanning several words
+		SFA<CharPred, Character> autK = getSFAkFromEnd(ba, 70);
+		BitNFA<CharPred, Character> nfaK = new BitNFA<CharPred, Character>(autK, ba);
+		Random r = new Random(7);
+		for (int i = 0; i < 20; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = r.nextInt(100); j > 0; j--)
+				sb.append(r.nextBoolean() ? 'a' : 'b');
+			List<Character> l = lOfS(sb.toString());
+			assertTrue(nfaK.accepts(l) == autK.accepts(l, ba));
+		}
+
+		// too many states for the group tables
+		int k = 2100;
+		StringBuilder bs = new StringBuilder();
+		for (int j = 0; j < k; j++)
+			bs.append('b');
+		BitNFA<CharPred, Character> nfaLarge = new BitNFA<CharPred, Character>(getSFAkFromEnd(ba, k), ba);
+		assertTrue(nfaLarge.accepts(lOfS("ba" + bs)));
+		assertFalse(nfaLarge.accepts(lOfS("b" + bs)));
+		assertFalse(nfaLarge.accepts(lOfS("a" + bs.substring(1))));
+	}
+
+	@Test
+	public void testCompactSFA() throws TimeoutException {
+		SFA<CharPred, Character> autAB = autA.unionWith(autB, ba);
+		CompactSFA<CharPred, Character> cAB = autAB.compact();
+		assertTrue(cAB.stateCount() == autAB.stateCount());
+		assertTrue(cAB.moveCount() == autAB.getInputMovesFrom(autAB.getStates()).size());
+		assertTrue(cAB.getOriginalState(cAB.getInitialState()) == autAB.getInitialState());
+		for (List<Character> l : Arrays.asList(la, lb, lab, lnot))
+			assertTrue(cAB.accepts(l, ba) == autAB.accepts(l, ba));
+		assertTrue(cAB.toSFA(ba).isEquivalentTo(autAB, ba));
+
+		for (int q = 0; q < cAB.stateCount(); q++) {
+			for (int m = cAB.moveStart(q); m < cAB.moveEnd(q); m++)
+				assertTrue(cAB.getSource(m) == q);
+			for (int i = cAB.incomingStart(q); i < cAB.incomingEnd(q); i++)
+				assertTrue(cAB.getTarget(cAB.getIncomingMove(i)) == q);
+			for (int i = cAB.epsilonIncomingStart(q); i < cAB.epsilonIncomingEnd(q); i++) {
+				int from = cAB.getEpsilonSource(i);
+				boolean found = false;
+				for (int e = cAB.epsilonStart(from); e < cAB.epsilonEnd(from); e++)
+					found |= cAB.getEpsilonTarget(e) == q;
+				assertTrue(found);
+			}
+		}
+	}
+
+	@Test
+	public void testIndexedHopcroftMinimization() throws TimeoutException {
+		List<SFA<CharPred, Character>> auts = new ArrayList<SFA<CharPred, Character>>(
+				Arrays.asList(autA, autB, getSFAtoMin2(ba), getSFAkFromEnd(ba, 4), getEmptySFA(), getFullSFA()));
+		Random r = new Random(11);
+		for (int i = 0; i < 20; i++)
+			auts.add(getRandomSFA(ba, r, 25));
+
+		for (SFA<CharPred, Character> aut : auts) {
+			SFA<CharPred, Character> std = aut.minimize(ba);
+			SFA<CharPred, Character> hop = aut.minimize(ba, MinimizationAlgorithm.INDEXED_HOPCROFT);
+			assertTrue(hop.stateCount().equals(std.stateCount()));
+			assertTrue(hop.isEquivalentTo(aut, ba));
+		}
+	}
+
+	@Test
+	public void testMooreAndBrzozowskiMinimization() throws TimeoutException {
+		List<SFA<CharPred, Character>> auts = new ArrayList<SFA<CharPred, Character>>(
+				Arrays.asList(autA, autB, getSFAtoMin2(ba), getSFAkFromEnd(ba, 4), getEmptySFA(), getFullSFA()));
+		// the reverse of a random automaton can have exponentially many
+		// subset states, so Brzozowski is only run on small ones
+		Random r = new Random(12);
+		for (int i = 0; i < 10; i++)
+			auts.add(getRandomSFA(ba, r, 8));
+
+		for (SFA<CharPred, Character> aut : auts) {
+			SFA<CharPred, Character> std = aut.minimize(ba);
+			for (MinimizationAlgorithm algorithm : Arrays.asList(MinimizationAlgorithm.MOORE,
+					MinimizationAlgorithm.BRZOZOWSKI)) {
+				SFA<CharPred, Character> min = aut.minimize(ba, algorithm);
+				assertTrue(min.stateCount().equals(std.stateCount()));
+				assertTrue(min.isEquivalentTo(aut, ba));
+			}
+		}
+
+		// large enough for the signatures to be computed in parallel
+		SFA<CharPred, Character> large = getRandomSFA(ba, r, 600);
+		SFA<CharPred, Character> moore = large.minimize(ba, MinimizationAlgorithm.MOORE);
+		assertTrue(moore.stateCount().equals(large.minimize(ba, MinimizationAlgorithm.INDEXED_HOPCROFT).stateCount()));
+		assertTrue(moore.isEquivalentTo(large, ba));
+
+		// both give up once the timeout has passed
+		for (MinimizationAlgorithm algorithm : Arrays.asList(MinimizationAlgorithm.MOORE,
+				MinimizationAlgorithm.BRZOZOWSKI)) {
+			boolean timedOut = false;
+			try {
+				large.minimize(ba, algorithm, -1);
+			} catch (TimeoutException e) {
+				timedOut = true;
+			}
+			assertTrue(timedOut);
+		}
+	}
+
+	@Test
+	public void testLazyIntersectionEmptiness() throws TimeoutException {
+		assertFalse(SFA.isIntersectionEmpty(Arrays.asList(autA, autB), ba, Long.MAX_VALUE));
+		assertTrue(SFA.isIntersectionEmpty(Arrays.asList(autA, autB, autA.complement(ba)), ba, Long.MAX_VALUE));
+		assertTrue(SFA.isIntersectionEmpty(Arrays.asList(autA, getEmptySFA()), ba, Long.MAX_VALUE));
+
+		// the shortest words in [a-z]*a[a-z]{3}, [a-z]*a[a-z]{2} and
+		// [a-z]*a[a-z]{1} are aaa followed by a letter
+		List<SFA<CharPred, Character>> kFromEnd = Arrays.asList(getSFAkFromEnd(ba, 3), getSFAkFromEnd(ba, 2),
+				getSFAkFromEnd(ba, 1));
+		List<Character> witness = SFA.getIntersectionWitness(kFromEnd, ba, Long.MAX_VALUE);
+		assertTrue(witness.size() == 4 && witness.subList(0, 3).equals(Arrays.asList('a', 'a', 'a')));
+		for (SFA<CharPred, Character> aut : kFromEnd)
+			assertTrue(aut.accepts(witness, ba));
+
+		Random r = new Random(13);
+		for (int i = 0; i < 20; i++) {
+			List<SFA<CharPred, Character>> auts = new ArrayList<SFA<CharPred, Character>>();
+			for (int j = 0; j < 2 + i % 4; j++)
+				auts.add(getRandomSFA(ba, r, 6));
+
+			SFA<CharPred, Character> product = auts.get(0);
+			for (int j = 1; j < auts.size(); j++)
+				product = product.intersectionWith(auts.get(j), ba);
+
+			List<Character> w = SFA.getIntersectionWitness(auts, ba, Long.MAX_VALUE);
+			assertTrue((w == null) == product.isEmpty());
+			if (w != null) {
+				for (SFA<CharPred, Character> aut : auts)
+					assertTrue(aut.accepts(w, ba));
+				assertTrue(w.size() == product.getWitness(ba).size());
+			}
+		}
+	}
+
+	@Test
+	public void testAntichainInclusion() throws TimeoutException {
+		SFA<CharPred, Character> inters = autA.intersectionWith(autB, ba);
+		assertTrue(autA.includes(inters, ba, Long.MAX_VALUE));
+		assertFalse(autB.includes(autA, ba, Long.MAX_VALUE));
+		List<Character> cex = autB.getInclusionCounterexample(autA, ba, Long.MAX_VALUE, true);
+		assertTrue(autA.accepts(cex, ba) && !autB.accepts(cex, ba));
+
+		assertTrue(SFA.getFullSFA(ba).isUniversal(ba, Long.MAX_VALUE));
+		assertTrue(autA.unionWith(autA.complement(ba), ba).isUniversal(ba, Long.MAX_VALUE));
+		assertFalse(autA.isUniversal(ba, Long.MAX_VALUE));
+		assertFalse(autA.accepts(autA.getUniversalityCounterexample(ba, Long.MAX_VALUE, false), ba));
+
+		// nondeterministic unions of random automata, compared with minus
+		Random r = new Random(14);
+		for (int i = 0; i < 20; i++) {
+			SFA<CharPred, Character> big = getRandomSFA(ba, r, 6).unionWith(getRandomSFA(ba, r, 6), ba);
+			SFA<CharPred, Character> small = i % 2 == 0 ? getRandomSFA(ba, r, 6)
+					: big.intersectionWith(getRandomSFA(ba, r, 6), ba);
+			boolean included = small.minus(big, ba).isEmpty();
+			for (boolean useSimulation : Arrays.asList(false, true)) {
+				List<Character> w = big.getInclusionCounterexample(small, ba, Long.MAX_VALUE, useSimulation);
+				assertTrue((w == null) == included);
+				if (w != null)
+					assertTrue(small.accepts(w, ba) && !big.accepts(w, ba));
+			}
+		}
+	}
+
+	@Test
+	public void testCongruenceEquivalence() throws TimeoutException {
+		SFA<CharPred, Character> cA = autA.complement(ba);
+		assertTrue(autA.isCongruenceEquivalentTo(cA.complement(ba), ba, Long.MAX_VALUE));
+		assertTrue(autA.unionWith(cA, ba).isCongruenceEquivalentTo(SFA.getFullSFA(ba), ba, Long.MAX_VALUE));
+		Pair<Boolean, List<Character>> res = SFA.areCongruenceEquivalentPlusWitness(autA, autB, ba, Long.MAX_VALUE);
+		assertFalse(res.first);
+		assertTrue(autA.accepts(res.second, ba) != autB.accepts(res.second, ba));
+
+		// [a-z]*a[a-z]{k} has 2^(k+1) deterministic states, the congruence
+		// only explores a few pairs to show it equal to a copy of itself
+		SFA<CharPred, Character> kFromEnd = getSFAkFromEnd(ba, 8);
+		assertTrue(kFromEnd.isCongruenceEquivalentTo(getSFAkFromEnd(ba, 8), ba, Long.MAX_VALUE));
+		assertTrue(Timers.exploredStates < 1 << 9);
+
+		Random r = new Random(15);
+		for (int i = 0; i < 20; i++) {
+			SFA<CharPred, Character> aut1 = getRandomSFA(ba, r, 5).unionWith(getRandomSFA(ba, r, 5), ba);
+			SFA<CharPred, Character> aut2 = i % 2 == 0 ? getRandomSFA(ba, r, 6) : aut1.determinize(ba).minimize(ba);
+			Pair<Boolean, List<Character>> cong = SFA.areCongruenceEquivalentPlusWitness(aut1, aut2, ba,
+					Long.MAX_VALUE);
+			assertTrue(cong.first == aut1.isEquivalentTo(aut2, ba));
+			if (!cong.first)
+				assertTrue(aut1.accepts(cong.second, ba) != aut2.accepts(cong.second, ba));
+		}
+	}
+
+	@Test
+	public void testWitnessGenerator() throws TimeoutException {
+		SFA<CharPred, Character> kFromEnd = getSFAkFromEnd(ba, 3);
+		assertTrue(kFromEnd.getWitness(ba).size() == 4);
+
+		WitnessGenerator<CharPred, Character> gen = new WitnessGenerator<CharPred, Character>(kFromEnd, ba);
+		HashSet<List<Character>> seen = new HashSet<List<Character>>();
+		int length = 0;
+		for (int i = 0; i < 30; i++) {
+			List<Character> w = gen.next();
+			assertTrue(w.size() >= length);
+			assertTrue(kFromEnd.accepts(w, ba));
+			assertTrue(seen.add(w));
+			length = w.size();
+		}
+
+		gen = new WitnessGenerator<CharPred, Character>(kFromEnd, ba, 5, 6);
+		int count = 0;
+		for (List<Character> w = gen.next(); w != null; w = gen.next(), count++)
+			assertTrue(w.size() >= 5 && w.size() <= 6 && kFromEnd.accepts(w, ba));
+		assertTrue(count > 0);
+		assertNull(kFromEnd.getWitnesses(ba, 5, 3));
+		assertTrue(getEmptySFA().getWitness(ba) == null);
+
+		// a chain of 1000 states where every state also loops
+		List<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		int n = 1000;
+		for (int q = 0; q < n; q++) {
+			transitions.add(new SFAInputMove<CharPred, Character>(q, q + 1, a));
+			transitions.add(new SFAInputMove<CharPred, Character>(q, q, num));
+		}
+		SFA<CharPred, Character> chain = SFA.MkSFA(transitions, 0, Arrays.asList(n), ba, false, false);
+		HashSet<List<Character>> witnesses = chain.getWitnesses(ba, 10);
+		assertTrue(witnesses.size() == 10);
+		for (List<Character> w : witnesses)
+			assertTrue(w.size() <= n + 1 && chain.accepts(w, ba));
+
+		// two states per level, each reading a to both states of the next
+		// level, so a word of length k has 2^(k+1) accepting paths
+		transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		int levels = 60;
+		for (int q = 0; q < 2 * levels; q++)
+			for (int next = 0; next < 2; next++)
+				transitions.add(new SFAInputMove<CharPred, Character>(q, 2 * (q / 2 + 1) + next, a));
+		transitions.add(new SFAEpsilon<CharPred, Character>(0, 1));
+		SFA<CharPred, Character> ambiguous = SFA.MkSFA(transitions, 0,
+				Arrays.asList(2 * levels, 2 * levels + 1), ba, false, false);
+		witnesses = ambiguous.getWitnesses(ba, 2);
+		assertTrue(witnesses.size() == 1);
+		assertTrue(witnesses.iterator().next().size() == levels);
+	}
+
+	@Test
+	public void testBinaryLibrary() throws TimeoutException, IOException, AutomataException {
+		SFA<CharPred, Character> kFromEnd = getSFAkFromEnd(ba, 5);
+		File file = File.createTempFile("automata", ".lib");
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			new AutomataLibrary.Builder().addSFA("a", autA, new CharPredCodec())
+					.addSFA("kFromEnd", kFromEnd, new CharPredCodec()).writeTo(out);
+		}
+
+		AutomataLibrary library = AutomataLibrary.open(file);
+		assertTrue(library.getNames().equals(new HashSet<String>(Arrays.asList("a", "kFromEnd"))));
+		SFA<CharPred, Character> readA = library.getSFA("a", new CharPredCodec(), ba);
+		SFA<CharPred, Character> readK = library.getSFA("kFromEnd", new CharPredCodec(), ba);
+		assertTrue(readA.stateCount() == autA.stateCount());
+		assertTrue(readA.getTransitionCount() == autA.getTransitionCount());
+		assertTrue(readA.isEquivalentTo(autA, ba));
+		assertTrue(readK.isEquivalentTo(kFromEnd, ba));
+		assertTrue(library.getSFA("b", new CharPredCodec(), ba) == null);
+
+		// truncated input is rejected
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AutomataSerializer.writeSFA(kFromEnd, new CharPredCodec(), bytes);
+		byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+		boolean rejected = false;
+		try {
+			AutomataSerializer.readSFA(ByteBuffer.wrap(truncated), new CharPredCodec(), ba);
+		} catch (AutomataException e) {
+			rejected = true;
+		}
+		assertTrue(rejected);
+	}
+
+	@Test
+	public void testSampler() throws TimeoutException {
+		// [a-z]*a[a-z] accepts 26 words of length 2 and 26*26 of length 3
+		SFASampler<CharPred, Character> sampler = getSFAkFromEnd(ba, 1).getSampler(ba, 40);
+		assertTrue(sampler.count(1).signum() == 0);
+		assertTrue(sampler.count(2).intValue() == 26);
+		assertTrue(sampler.count(3).intValue() == 26 * 26);
+		assertTrue(sampler.sample(1, new Random(0)) == null);
+
+		Random r = new Random(3);
+		int[] second = new int[26];
+		for (int i = 0; i < 2600; i++) {
+			List<Character> w = sampler.sample(2, r);
+			assertTrue(w.size() == 2 && w.get(0) == 'a');
+			second[w.get(1) - 'a']++;
+		}
+		for (int c : second)
+			assertTrue(c > 50 && c < 150);
+
+		for (int i = 0; i < 100; i++) {
+			List<Character> w = sampler.sample(40, r);
+			assertTrue(w.size() == 40 && getSFAkFromEnd(ba, 1).accepts(w, ba));
+		}
+
+		// the sampler counts words, not paths of the nondeterministic automaton
+		SFA<CharPred, Character> twice = autA.unionWith(autA, ba);
+		assertTrue(twice.getSampler(ba, 3).count(3).equals(autA.getSampler(ba, 3).count(3)));
+	}
+
+	@Test
+	public void testExporters() throws TimeoutException, IOException {
+		StringWriter dot = new StringWriter();
+		new AutomatonExporter(AutomatonExporter.Format.DOT).export(autA, "a", dot);
+		assertTrue(dot.toString().startsWith("digraph a{"));
+		assertTrue(dot.toString().contains("peripheries=2"));
+		assertFalse(dot.toString().contains("truncated"));
+
+		StringWriter json = new StringWriter();
+		new AutomatonExporter(AutomatonExporter.Format.JSON).export(autA, "a\"", json);
+		assertTrue(json.toString().startsWith("{\"name\":\"a\\\"\""));
+		assertTrue(json.toString().endsWith("\"truncated\":false}"));
+
+		// a chain of 1000 states truncated to 10 states and 5 moves
+		SFA<CharPred, Character> chain = getSFAkFromEnd(ba, 999);
+		StringWriter graphml = new StringWriter();
+		new AutomatonExporter(AutomatonExporter.Format.GRAPHML).limitStates(10).limitMoves(5).export(chain,
+				"<chain>", graphml);
+		String xml = graphml.toString();
+		assertTrue(xml.contains("id=\"&lt;chain&gt;\""));
+		assertTrue(xml.split("<node ").length - 1 == 10);
+		assertTrue(xml.split("<edge ").length - 1 == 5);
+		assertTrue(xml.contains("<!-- truncated -->"));
+		assertTrue(xml.endsWith("</graphml>\n"));
+	}
+
+	@Test
+	public void testSFABuilder() throws TimeoutException {
+		// [a-c]*d with a dead state 3, an unreachable state 4 and split guards
+		SFABuilder<CharPred, Character> builder = new SFABuilder<CharPred, Character>(0, ba);
+		builder.addTransition(new SFAInputMove<CharPred, Character>(0, 0, new CharPred('a')));
+		builder.addTransition(new SFAInputMove<CharPred, Character>(0, 0, new CharPred('b', 'c')));
+		builder.addTransition(new SFAInputMove<CharPred, Character>(0, 3, new CharPred('e')));
+		builder.addTransition(new SFAInputMove<CharPred, Character>(4, 1, new CharPred('f')));
+		builder.addTransition(new SFAInputMove<CharPred, Character>(0, 2, ba.False()));
+		assertFalse(builder.isReachingFinal(0));
+		builder.addFinalState(1);
+		assertTrue(builder.isReachingFinal(4) && !builder.isReachable(4));
+		assertFalse(builder.isReachable(1));
+		builder.addTransition(new SFAEpsilon<CharPred, Character>(0, 5));
+		builder.addTransition(new SFAInputMove<CharPred, Character>(5, 1, new CharPred('d')));
+		assertTrue(builder.isReachable(1) && builder.isReachingFinal(0));
+		assertFalse(builder.isReachingFinal(3) || builder.isReachable(2));
+		assertTrue(builder.newState() == 6);
+
+		SFA<CharPred, Character> built = builder.build();
+		assertTrue(built.stateCount() == 3);
+		assertTrue(built.getTransitionCount() == 3);
+
+		List<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 0, new CharPred('a', 'c')));
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('d')));
+		assertTrue(built.isEquivalentTo(SFA.MkSFA(transitions, 0, Arrays.asList(1), ba), ba));
+
+		// a builder without reachable final states builds the empty SFA
+		assertTrue(new SFABuilder<CharPred, Character>(0, ba).addFinalState(1).build().isEmpty());
+	}
+
+	@Test
+	public void testSymbolicRegex() throws TimeoutException {
+		SymbolicRegexFactory<CharPred, Character> factory = new SymbolicRegexFactory<CharPred, Character>(ba);
+		SymbolicRegex<CharPred> anyChar = factory.predicate(alpha);
+
+		// terms are hash-consed and simplified
+		assertTrue(factory.concat(anyChar, factory.star(anyChar)) == factory.concat(anyChar, factory.star(anyChar)));
+		assertTrue(factory.union(anyChar, factory.predicate(a)) == factory.union(factory.predicate(a), anyChar));
+		assertTrue(factory.star(factory.star(anyChar)) == factory.star(anyChar));
+		assertTrue(factory.concat(factory.empty(), anyChar) == factory.empty());
+
+		// [a-z]*a[a-z]{k} has k + 2 partial derivatives
+		int k = 6;
+		List<SymbolicRegex<CharPred>> kFromEnd = new ArrayList<SymbolicRegex<CharPred>>();
+		kFromEnd.add(factory.star(anyChar));
+		kFromEnd.add(factory.predicate(a));
+		for (int i = 0; i < k; i++)
+			kFromEnd.add(anyChar);
+		SFA<CharPred, Character> sfa = factory.toSFA(factory.concat(kFromEnd));
+		assertTrue(sfa.isEpsilonFree());
+		assertTrue(sfa.stateCount() == k + 2);
+		assertTrue(sfa.isEquivalentTo(getSFAkFromEnd(ba, k), ba));
+
+		// (ab|a)*b? with an empty class [] in a dead branch
+		SymbolicRegex<CharPred> ab = factory.concat(factory.predicate(a), factory.predicate(new CharPred('b')));
+		SymbolicRegex<CharPred> regex = factory.concat(factory.star(factory.union(ab, factory.predicate(a))),
+				factory.optional(factory.union(factory.predicate(new CharPred('b')),
+						factory.concat(factory.predicate(ba.False()), anyChar))));
+		sfa = factory.toSFA(regex);
+		assertTrue(sfa.accepts(lOfS("aabab"), ba));
+		assertTrue(sfa.accepts(lOfS("abb"), ba));
+		assertTrue(sfa.accepts(lOfS(""), ba));
+		assertFalse(sfa.accepts(lOfS("bb"), ba));
+		assertFalse(sfa.accepts(lOfS("abbb"), ba));
+		assertTrue(sfa.isEpsilonFree());
+	}
+
+	@Test
+	public void testEpsilonClosures() throws TimeoutException {
+		// n states in an epsilon cycle, state i reads i mod 10 to a chain of
+		// epsilon moves ending in the final state
+		int n = 500;
+		List<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		for (int i = 0; i < n; i++) {
+			transitions.add(new SFAEpsilon<CharPred, Character>(i, (i + 1) % n));
+			transitions.add(new SFAInputMove<CharPred, Character>(i, n + i, new CharPred((char) ('0' + i % 10))));
+			transitions.add(new SFAEpsilon<CharPred, Character>(n + i, i == n - 1 ? 2 * n : n + i + 1));
+		}
+		SFA<CharPred, Character> sfa = SFA.MkSFA(transitions, 0, Arrays.asList(2 * n), ba, false, false);
+		assertFalse(sfa.isEpsilonFree());
+		assertTrue(sfa.accepts(lOfS("7"), ba));
+		assertFalse(sfa.accepts(lOfS(""), ba));
+		assertFalse(sfa.accepts(lOfS("77"), ba));
+
+		SFA<CharPred, Character> epsFree = sfa.removeEpsilonMoves(ba);
+		assertTrue(epsFree.isEpsilonFree());
+		// one state for the cycle and one for every chain suffix
+		assertTrue(epsFree.stateCount() == n + 1);
+		assertTrue(epsFree.accepts(lOfS("3"), ba));
+		assertFalse(epsFree.accepts(lOfS("a"), ba));
+		assertTrue(epsFree.isEquivalentTo(SFA.MkSFA(Arrays.<SFAMove<CharPred, Character>> asList(
+				new SFAInputMove<CharPred, Character>(0, 1, num)), 0, Arrays.asList(1), ba), ba));
+	}
+
+	@Test
+	public void testCharClassPartition() throws TimeoutException {
+		CharPartition partition = CharPartition.of(Arrays.asList(alpha, num, allAlpha));
+		CharClassSolver cba = new CharClassSolver(partition);
+
+		SFA<BitSet, Character> cA = SFA.mapGuards(autA, partition::toClasses, cba);
+		SFA<BitSet, Character> cB = SFA.mapGuards(autB, partition::toClasses, cba);
+		SFA<BitSet, Character> cInt = cA.intersectionWith(cB, cba);
+		SFA<BitSet, Character> cMin = cA.determinize(cba).minimize(cba);
+
+		for (List<Character> l : Arrays.asList(la, lb, lab, lnot)) {
+			assertTrue(cA.accepts(l, cba) == autA.accepts(l, ba));
+			assertTrue(cB.accepts(l, cba) == autB.accepts(l, ba));
+			assertTrue(cInt.accepts(l, cba) == (autA.accepts(l, ba) && autB.accepts(l, ba)));
+			assertTrue(cMin.accepts(l, cba) == autA.accepts(l, ba));
+		}
+		assertFalse(cA.isEquivalentTo(cB, cba));
+		assertTrue(cMin.isEquivalentTo(cA, cba));
+
+		SFA<CharPred, Character> back = SFA.mapGuards(cMin, partition::toCharPred, ba);
+		assertTrue(back.isEquivalentTo(autA, ba));
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
@@ -488,6 +1051,35 @@ public class SFAUnitTest {
 		return null;
 	}
 
+	// [a-z]*a[a-z]{k}
+	private SFA<CharPred, Character> getSFAkFromEnd(UnaryCharIntervalSolver ba, int k) throws TimeoutException {
+
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 0, alpha));
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		for (int i = 1; i <= k; i++)
+			transitions.add(new SFAInputMove<CharPred, Character>(i, i + 1, alpha));
+		return SFA.MkSFA(transitions, 0, Arrays.asList(k + 1), ba);
+	}
+
+	// random deterministic automaton with n states over the characters a-f
+	private SFA<CharPred, Character> getRandomSFA(UnaryCharIntervalSolver ba, Random r, int n)
+			throws TimeoutException {
+
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		for (int q = 0; q < n; q++) {
+			for (char lo = 'a'; lo <= 'f';) {
+				char hi = (char) (lo + r.nextInt('f' - lo + 1));
+				transitions.add(new SFAInputMove<CharPred, Character>(q, r.nextInt(n), new CharPred(lo, hi)));
+				lo = (char) (hi + 1);
+			}
+			if (r.nextInt(3) == 0)
+				finalStates.add(q);
+		}
+		return SFA.MkSFA(transitions, 0, finalStates, ba);
+	}
+
 	// -------------------------
 	// Auxiliary methods
 	// -------------------------
@@ -3,9 +3,11 @@ package SVPA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -18,6 +20,8 @@ import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
 import automata.AutomataException;
+import automata.io.AutomataSerializer;
+import automata.io.ICharPredCodec;
 import automata.svpa.Call;
 import automata.svpa.ImportCharSVPA;
 import automata.svpa.Internal;
@@ -95,6 +99,21 @@ public class SVPAUnitTest {
 		assertFalse(inters.accepts(notanotb, ba));
 	}
 
+	@Test
+	public void testBinaryFormat() throws TimeoutException, IOException, AutomataException {
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB)) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			AutomataSerializer.writeSVPA(aut, new ICharPredCodec(), bytes);
+			SVPA<ICharPred, Character> read = AutomataSerializer
+					.readSVPA(ByteBuffer.wrap(bytes.toByteArray()), new ICharPredCodec(), ba);
+
+			assertTrue(read.stateCount == aut.stateCount);
+			assertTrue(read.transitionCount == aut.transitionCount);
+			for (List<TaggedSymbol<Character>> l : Arrays.asList(ab, anotb, notab, notanotb))
+				assertTrue(read.accepts(l, ba) == aut.accepts(l, ba));
+		}
+	}
+
 	@Test
 	public void testMkTotal() throws TimeoutException {
 
@@ -1,13 +1,61 @@
 package Theory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
 
+import automata.AutomataException;
+import automata.io.BDDCodec;
+import automata.io.CharPredCodec;
+import automata.safa.booleanexpression.BDDExpressionFactory;
 import theory.BooleanAlgebra;
+import theory.bdd.BDD;
+import theory.bdd.BDDException;
+import theory.bdd.BDDFactory;
+import theory.bdd.BDDFactoryPool;
+import theory.bdd.BDDPairing;
+import theory.bdd.ConcurrentFactory;
+import theory.bdd.JFactory;
+import theory.bdd.OffHeapFactory;
+import theory.bdd.TestBDDFactory;
+import theory.bddalgebra.BDDSolver;
+import theory.characters.CharPartition;
 import theory.characters.CharPred;
+import theory.characters.StdCharPred;
+import theory.intervals.CharClassSolver;
+import theory.intervals.IntPred;
+import theory.intervals.IntegerSolver;
+import theory.intervals.RealPred;
+import theory.intervals.RealSolver;
 import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
+
+import com.google.common.collect.ImmutableList;
 
 public class TestBooleanAlgebra {
 
@@ -25,4 +73,506 @@ public class TestBooleanAlgebra {
         assertTrue(ba.hasNDistinctWitnesses(integers, 10));
         assertFalse(ba.hasNDistinctWitnesses(integers, 11));
     }
+
+    @Test
+    public void testGuardCodecs() throws IOException, AutomataException, NoSuchMethodException {
+        BDDSolver bdds = new BDDSolver(6);
+        BDD x0 = bdds.factory.ithVar(0);
+        BDD x3 = bdds.factory.ithVar(3);
+        BDD x5 = bdds.factory.ithVar(5);
+        BDD guard = x0.and(x3).or(x5.not().and(x3.not()));
+        for (BDD b : Arrays.asList(guard, bdds.True(), bdds.False())) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new BDDCodec(bdds.factory).write(b, new DataOutputStream(bytes));
+            BDDSolver other = new BDDSolver(6);
+            BDD read = new BDDCodec(other.factory).read(ByteBuffer.wrap(bytes.toByteArray()));
+            assertEquals(b.satCount(), read.satCount(), 0);
+            assertEquals(b.nodeCount(), read.nodeCount());
+        }
+
+        // the codec keeps no references to the nodes it writes and reads,
+        // which are collected at the next reordering
+        BDDFactory f = JFactory.init(1000, 250);
+        f.setVarNum(6);
+        f.registerReorderCallback(this, getClass().getMethod("reordered"));
+        f.reorder(BDDFactory.REORDER_SIFT);
+        int nodes = f.getNodeNum();
+        BDD written = f.ithVar(0).andWith(f.ithVar(3)).orWith(f.nithVar(5).andWith(f.nithVar(3)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BDDCodec(f).write(written, new DataOutputStream(out));
+        BDD read = new BDDCodec(f).read(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(written, read);
+        written.free();
+        read.free();
+        f.reorder(BDDFactory.REORDER_SIFT);
+        assertEquals(nodes, f.getNodeNum());
+
+        CharPred pred = ba.MkOr(new CharPred('0', '9'), new CharPred('\uFFF0', '\uFFFF'));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new CharPredCodec().write(pred, new DataOutputStream(bytes));
+        assertEquals(pred, new CharPredCodec().read(ByteBuffer.wrap(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testCharClassMinterms() throws TimeoutException {
+        ArrayList<CharPred> preds = new ArrayList<>(Arrays.asList(
+                new CharPred('0', '9'), new CharPred('a', 'z'), new CharPred('5', 'c')));
+        CharPartition partition = CharPartition.of(preds);
+        CharClassSolver cba = new CharClassSolver(partition);
+
+        ArrayList<BitSet> classPreds = new ArrayList<>();
+        for (CharPred p : preds)
+            classPreds.add(partition.toClasses(p));
+
+        Collection<Pair<CharPred, ArrayList<Integer>>> expected = ba.GetMinterms(preds);
+        Collection<Pair<BitSet, ArrayList<Integer>>> actual = cba.GetMinterms(classPreds);
+        assertEquals(expected.size(), actual.size());
+        for (Pair<BitSet, ArrayList<Integer>> m : actual)
+            assertTrue(expected.contains(new Pair<>(partition.toCharPred(m.first), m.second)));
+    }
+
+    // Computes the minterms by enumerating the combinations of predicates
+    static class EnumeratingCharSolver extends UnaryCharIntervalSolver {
+        final boolean parallel;
+
+        EnumeratingCharSolver(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return parallel;
+        }
+
+        @Override
+        public Collection<Pair<CharPred, ArrayList<Integer>>> GetMinterms(ArrayList<CharPred> predicates,
+                long timeout) throws TimeoutException {
+            return EnumerateMinterms(predicates, timeout);
+        }
+    }
+
+    static ArrayList<CharPred> overlappingPreds() {
+        ArrayList<CharPred> preds = new ArrayList<>();
+        for (char c = 'a'; c < 'a' + 12; c++)
+            preds.add(new CharPred(c, (char) (c + 3)));
+        preds.add(new CharPred('0', '9'));
+        preds.add(new CharPred('e', 'z'));
+        return preds;
+    }
+
+    @Test
+    public void testParallelMinterms() throws TimeoutException {
+        ArrayList<CharPred> preds = overlappingPreds();
+        Collection<Pair<CharPred, ArrayList<Integer>>> parallel = new EnumeratingCharSolver(true).GetMinterms(preds,
+                Long.MAX_VALUE);
+        assertEquals(new EnumeratingCharSolver(false).GetMinterms(preds, Long.MAX_VALUE), parallel);
+        assertEquals(18, parallel.size());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testParallelMintermsTimeout() throws TimeoutException {
+        new EnumeratingCharSolver(true).GetMinterms(overlappingPreds(), -1);
+    }
+
+    @Test
+    public void testSweepMinterms() throws TimeoutException {
+        ArrayList<CharPred> preds = overlappingPreds();
+        preds.add(new CharPred(CharPred.MIN_CHAR, 'b'));
+        preds.add(StdCharPred.FALSE);
+        preds.add(ba.MkOr(new CharPred('x'), new CharPred(CharPred.MAX_CHAR)));
+        assertEquals(new HashSet<>(new EnumeratingCharSolver(false).GetMinterms(preds, Long.MAX_VALUE)),
+                new HashSet<>(ba.GetMinterms(preds, Long.MAX_VALUE)));
+
+        IntegerSolver ints = new IntegerSolver();
+        ArrayList<IntPred> intPreds = new ArrayList<>(Arrays.asList(new IntPred(null, 10), new IntPred(5, null),
+                new IntPred(ImmutableList.of(ImmutablePair.of(0, 3), ImmutablePair.of(8, 20))),
+                new IntPred(-5, 30), new IntPred(7)));
+        Collection<Pair<IntPred, ArrayList<Integer>>> intMinterms = ints.GetMinterms(intPreds, Long.MAX_VALUE);
+        Collection<Pair<IntPred, ArrayList<Integer>>> intExpected = new IntegerSolver() {
+            @Override
+            public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates,
+                    long timeout) throws TimeoutException {
+                return EnumerateMinterms(predicates, timeout);
+            }
+        }.GetMinterms(intPreds, Long.MAX_VALUE);
+        assertEquals(intExpected.size(), intMinterms.size());
+        for (Pair<IntPred, ArrayList<Integer>> minterm : intExpected)
+            assertTrue(containsEquivalent(ints, intMinterms, minterm));
+
+        RealSolver reals = new RealSolver();
+        ArrayList<RealPred> realPreds = new ArrayList<>(Arrays.asList(new RealPred(null, true, 1.0, false),
+                new RealPred(1.0, true, 2.0, true), new RealPred(0.5), new RealPred(1.0, false, null, true)));
+        Collection<Pair<RealPred, ArrayList<Integer>>> realMinterms = reals.GetMinterms(realPreds, Long.MAX_VALUE);
+        Collection<Pair<RealPred, ArrayList<Integer>>> realExpected = new RealSolver() {
+            @Override
+            public Collection<Pair<RealPred, ArrayList<Integer>>> GetMinterms(ArrayList<RealPred> predicates,
+                    long timeout) throws TimeoutException {
+                return EnumerateMinterms(predicates, timeout);
+            }
+        }.GetMinterms(realPreds, Long.MAX_VALUE);
+        assertEquals(realExpected.size(), realMinterms.size());
+        for (Pair<RealPred, ArrayList<Integer>> minterm : realExpected)
+            assertTrue(containsEquivalent(reals, realMinterms, minterm));
+    }
+
+    // Applies a random operation to bdds and adds its result
+    static BDD randomOperation(BDDFactory factory, List<BDD> bdds, BDD cube, BDD assignment, BDDPairing pairing,
+            Random random) {
+        BDD a = bdds.get(random.nextInt(bdds.size()));
+        BDD b = bdds.get(random.nextInt(bdds.size()));
+        BDD c = bdds.get(random.nextInt(bdds.size()));
+        BDD res;
+        switch (random.nextInt(10)) {
+        case 0:
+            res = a.and(b);
+            break;
+        case 1:
+            res = a.or(b);
+            break;
+        case 2:
+            res = a.xor(b);
+            break;
+        case 3:
+            res = a.apply(b, BDDFactory.diff);
+            break;
+        case 4:
+            res = a.not();
+            break;
+        case 5:
+            res = a.ite(b, c);
+            break;
+        case 6:
+            res = a.exist(cube);
+            break;
+        case 7:
+            res = a.relprod(b, cube);
+            break;
+        case 8:
+            res = a.restrict(assignment);
+            break;
+        default:
+            res = a.replace(pairing);
+        }
+        bdds.add(res);
+        return res;
+    }
+
+    // Checks every operation of f against JFactory, f should have a node
+    // table small enough to be collected and grown many times
+    private static void checkAgainstJFactory(BDDFactory f) {
+        BDDFactory checked = new TestBDDFactory(JFactory.init(1000, 1000), f);
+        checked.setVarNum(8);
+        List<BDD> bdds = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            bdds.add(checked.ithVar(i));
+        BDD cube = checked.ithVar(1).and(checked.ithVar(4)).and(checked.ithVar(6));
+        BDD assignment = checked.ithVar(2).and(checked.nithVar(5));
+        BDDPairing pairing = checked.makePair();
+        pairing.set(new int[] { 0, 3 }, new int[] { 3, 0 });
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            BDD res = randomOperation(checked, bdds, cube, assignment, pairing, random);
+            res.satCount();
+            res.pathCount();
+            res.nodeCount();
+            res.satOne().free();
+            res.fullSatOne().free();
+            res.support().forAll(cube).free();
+            if (bdds.size() > 40)
+                bdds.remove(8 + random.nextInt(bdds.size() - 8)).free();
+        }
+    }
+
+    @Test
+    public void testConcurrentBDDFactory() throws Exception {
+        checkAgainstJFactory(ConcurrentFactory.init(64, 64));
+
+        BDDFactory concurrent = BDDFactory.init("concurrent", 64, 64);
+        assertTrue(concurrent.isThreadSafe());
+        BDDFactory sequential = JFactory.init(1000, 1000);
+        assertFalse(sequential.isThreadSafe());
+        concurrent.setVarNum(16);
+        sequential.setVarNum(16);
+        BDD expected = sequential.ithVar(3).xor(sequential.ithVar(9)).or(sequential.nithVar(12));
+        BDD actual = concurrent.ithVar(3).xor(concurrent.ithVar(9)).or(concurrent.nithVar(12));
+        List<?> expectedSat = expected.allsat();
+        List<?> actualSat = actual.allsat();
+        assertEquals(expectedSat.size(), actualSat.size());
+        for (int i = 0; i < expectedSat.size(); i++)
+            assertTrue(Arrays.equals((byte[]) expectedSat.get(i), (byte[]) actualSat.get(i)));
+
+        // threads share the concurrent factory, each checking its results
+        // against its own JFactory
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final long seed = t;
+            futures.add(executor.submit(() -> {
+                BDDFactory own = JFactory.init(1000, 1000);
+                own.setVarNum(16);
+                List<BDD> mine = new ArrayList<>(), theirs = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    mine.add(own.ithVar(i));
+                    theirs.add(concurrent.ithVar(i));
+                }
+                BDD ownCube = own.ithVar(2).and(own.ithVar(7)), cubeT = concurrent.ithVar(2).and(concurrent.ithVar(7));
+                BDD ownAssignment = own.nithVar(5), assignmentT = concurrent.nithVar(5);
+                BDDPairing ownPairing = own.makePair(), pairingT = concurrent.makePair();
+                ownPairing.set(new int[] { 1, 11 }, new int[] { 11, 1 });
+                pairingT.set(new int[] { 1, 11 }, new int[] { 11, 1 });
+                Random r1 = new Random(seed), r2 = new Random(seed);
+                for (int i = 0; i < 400; i++) {
+                    BDD m = randomOperation(own, mine, ownCube, ownAssignment, ownPairing, r1);
+                    BDD o = randomOperation(concurrent, theirs, cubeT, assignmentT, pairingT, r2);
+                    assertEquals(m.toString(), o.toString());
+                    assertEquals(m.satCount(), o.satCount(), 0);
+                    if (mine.size() > 40) {
+                        int k = 16 + r1.nextInt(mine.size() - 16);
+                        r2.nextInt(mine.size() - 16);
+                        mine.remove(k).free();
+                        theirs.remove(k).free();
+                    }
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> f : futures)
+            f.get();
+
+        BDDSolver solver = new BDDSolver(concurrent, 16);
+        assertTrue(solver.isThreadSafe());
+        assertFalse(new BDDSolver(16, 1000, 1000).isThreadSafe());
+        BDDSolver sequentialSolver = new BDDSolver(sequential, 16);
+        ArrayList<BDD> preds = new ArrayList<>(), sequentialPreds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            preds.add(concurrent.ithVar(i).or(concurrent.ithVar(i + 1)));
+            sequentialPreds.add(sequential.ithVar(i).or(sequential.ithVar(i + 1)));
+        }
+        assertEquals(sequentialSolver.GetMinterms(sequentialPreds).size(), solver.GetMinterms(preds).size());
+    }
+
+    @Test
+    public void testBDDModels() {
+        BDDSolver natural = new BDDSolver(6);
+        BDDSolver reordered = new BDDSolver(JFactory.init(1000, 1000), 6);
+        reordered.setVarOrder(new int[] { 5, 2, 0, 4, 1, 3 });
+        for (BDDSolver solver : Arrays.asList(natural, reordered)) {
+            BDDFactory f = solver.factory;
+            BDD p = f.ithVar(0).and(f.nithVar(2)).or(f.ithVar(3).xor(f.ithVar(5)));
+
+            // every model is enumerated once and satisfies p
+            HashSet<String> models = new HashSet<>();
+            for (Iterator<boolean[]> i = solver.allSat(p); i.hasNext(); ) {
+                BDD minterm = solver.toBDD(i.next());
+                assertTrue(models.add(minterm.toString()));
+                assertEquals(minterm, minterm.and(p));
+            }
+            assertEquals(40, models.size());
+            assertEquals(BigInteger.valueOf(40), solver.satCount(p));
+            assertEquals(BigInteger.valueOf(40), solver.getCardinality(p));
+            assertEquals(BigInteger.valueOf(64), solver.satCount(f.one()));
+            assertTrue(solver.hasNDistinctWitnesses(p, 40));
+            assertFalse(solver.hasNDistinctWitnesses(p, 41));
+
+            BDD witness = solver.generateWitness(p);
+            assertEquals(1, witness.satCount(), 0);
+            assertEquals(witness, witness.and(p));
+            Pair<BDD, BDD> witnesses = solver.generateWitnesses(p);
+            assertFalse(witnesses.first.equals(witnesses.second));
+            assertEquals(witnesses.second, witnesses.second.and(p));
+            witnesses = solver.generateWitnesses(witness);
+            assertEquals(witness, witnesses.first);
+            assertEquals(witness, witnesses.second);
+
+            assertEquals(null, solver.generateWitness(f.zero()));
+            assertEquals(null, solver.generateWitnesses(f.zero()));
+            assertFalse(solver.allSat(f.zero()).hasNext());
+            assertEquals(BigInteger.ZERO, solver.satCount(f.zero()));
+            assertEquals(null, solver.generateRandomWitness(f.zero(), new Random(0)));
+
+            // the 48 models of x1 or x4 are drawn about 100 times each
+            BDD q = f.ithVar(1).or(f.ithVar(4));
+            HashMap<String, Integer> draws = new HashMap<>();
+            Random random = new Random(1);
+            for (int i = 0; i < 4800; i++) {
+                BDD sample = solver.generateRandomWitness(q, random);
+                assertEquals(sample, sample.and(q));
+                Integer n = draws.get(sample.toString());
+                draws.put(sample.toString(), n == null ? 1 : n + 1);
+            }
+            assertEquals(48, draws.size());
+            for (int n : draws.values())
+                assertTrue(n > 50 && n < 150);
+        }
+        // the witness is the greatest model, as the solver always gave
+        BDDFactory f = natural.factory;
+        BDD p = f.ithVar(0).and(f.nithVar(2)).or(f.ithVar(3).xor(f.ithVar(5)));
+        assertEquals(f.ithVar(0).and(f.ithVar(1)).and(f.ithVar(2)).and(f.ithVar(3)).and(f.ithVar(4)).and(f.nithVar(5)),
+                natural.generateWitness(p));
+
+        // the copy kept for sampling is made again after a reordering
+        Random random = new Random(2);
+        natural.generateRandomWitness(p, random);
+        natural.setVarOrder(new int[] { 3, 5, 1, 0, 2, 4 });
+        for (int i = 0; i < 100; i++) {
+            BDD sample = natural.generateRandomWitness(p, random);
+            assertEquals(sample, sample.and(p));
+        }
+        assertEquals(BigInteger.valueOf(40), natural.satCount(p));
+    }
+
+    @Test
+    public void testOffHeapFactory() throws NoSuchMethodException {
+        checkAgainstJFactory(OffHeapFactory.init(50, 50));
+
+        // a table of several buffers, reordered, reset and freed
+        BDDFactory natural = JFactory.init(1000, 1000);
+        BDD pairs = pairsFunction(natural);
+        OffHeapFactory f = (OffHeapFactory) BDDFactory.init("offheap", 1000, 1000);
+        long memory = f.getNativeMemory();
+        f.setNodeTableSize(100000);
+        assertTrue(f.getNativeMemory() > memory);
+        BDD offHeapPairs = pairsFunction(f);
+        assertEquals(pairs.nodeCount(), offHeapPairs.nodeCount());
+        assertEquals(pairs.satCount(), offHeapPairs.satCount(), 0);
+        f.registerReorderCallback(this, getClass().getMethod("reordered"));
+        f.varBlockAll();
+        f.reorder(BDDFactory.REORDER_SIFT);
+        assertTrue(offHeapPairs.nodeCount() < pairs.nodeCount() / 10);
+        assertEquals(pairs.satCount(), offHeapPairs.satCount(), 0);
+        f.reset();
+        assertEquals(0, f.varNum());
+        assertEquals(pairs.nodeCount(), pairsFunction(f).nodeCount());
+        f.done();
+        assertEquals(0, f.getNativeMemory());
+    }
+
+    // Reorder callback, which keeps the factory from printing reorderings
+    public void reordered() {
+    }
+
+    // A function whose BDD has thousands of nodes with the natural order
+    static BDD pairsFunction(BDDFactory f) {
+        if (f.varNum() < 26)
+            f.setVarNum(26);
+        BDD res = f.zero();
+        for (int i = 0; i < 13; i++)
+            res = res.or(f.ithVar(i).and(f.ithVar(i + 13)));
+        return res;
+    }
+
+    @Test
+    public void testBDDFactoryPool() {
+        BDDFactoryPool pool = new BDDFactoryPool("j", 2);
+        BDDFactory f = pool.lease();
+        assertEquals(0, f.varNum());
+        BDD pairs = pairsFunction(f);
+        double satCount = pairs.satCount();
+        int nodeCount = pairs.nodeCount();
+        int size = f.getNodeTableSize();
+        assertTrue(size > pool.getPeakNodeNum());
+        pool.release(f);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(size, pool.getPeakNodeNum());
+
+        // the factory is reused, empty but as large as it grew
+        BDDFactory g = pool.lease();
+        assertTrue(f == g);
+        assertEquals(0, g.varNum());
+        assertEquals(size, g.getNodeTableSize());
+        pairs = pairsFunction(g);
+        assertEquals(satCount, pairs.satCount(), 0);
+        assertEquals(nodeCount, pairs.nodeCount());
+
+        // new factories start with the peak size
+        BDDFactory h = pool.lease();
+        assertTrue(h != g);
+        assertTrue(h.getNodeTableSize() >= size);
+        pool.release(g);
+        try {
+            pool.release(g);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        pool.release(h);
+        assertEquals(2, pool.getIdleCount());
+
+        // factories that cannot reset are dropped
+        BDDFactoryPool concurrentPool = new BDDFactoryPool("concurrent", 2);
+        concurrentPool.release(concurrentPool.lease());
+        assertEquals(0, concurrentPool.getIdleCount());
+
+        try (BDDExpressionFactory bef = new BDDExpressionFactory(3, pool)) {
+            assertEquals(new HashSet<>(Arrays.asList(0, 2)), bef.MkAnd(bef.MkState(0), bef.MkState(2)).getStates());
+            assertEquals(1, pool.getIdleCount());
+        }
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testVarReordering() throws IOException, NoSuchMethodException {
+        BDDSolver natural = new BDDSolver(26);
+        BDD pairs = pairsFunction(natural.factory);
+        try {
+            natural.enableAutoReorder();
+            fail();
+        } catch (BDDException e) {
+        }
+
+        // sifting kicks in as soon as the small node table is full
+        BDDSolver sifted = new BDDSolver(JFactory.init(1000, 250), 26);
+        sifted.enableAutoReorder(BDDFactory.REORDER_SIFT, 0, 10);
+        BDD siftedPairs = pairsFunction(sifted.factory);
+        assertTrue(sifted.getReorderCount() > 0);
+        assertTrue(sifted.getReorderStats().usednum_after < sifted.getReorderStats().usednum_before);
+        assertTrue(siftedPairs.nodeCount() < pairs.nodeCount() / 10);
+        assertEquals(pairs.satCount(), siftedPairs.satCount(), 0);
+
+        // the order learnt from a sample is kept for the next runs
+        int[] order = natural.learnVarOrder(Arrays.asList(pairs));
+        assertEquals(26, order.length);
+        File file = File.createTempFile("order", ".txt");
+        try {
+            BDDSolver.saveVarOrder(order, file.getPath());
+            assertTrue(Arrays.equals(order, BDDSolver.loadVarOrder(file.getPath())));
+            BDDSolver learnt = new BDDSolver(JFactory.init(1000, 250), 26);
+            learnt.setVarOrder(BDDSolver.loadVarOrder(file.getPath()));
+            assertTrue(Arrays.equals(order, learnt.getVarOrder()));
+            BDD learntPairs = pairsFunction(learnt.factory);
+            assertTrue(learntPairs.nodeCount() < pairs.nodeCount() / 10);
+            assertEquals(pairs.satCount(), learntPairs.satCount(), 0);
+
+            Files.write(file.toPath(), Arrays.asList("0 1 1"));
+            try {
+                BDDSolver.loadVarOrder(file.getPath());
+                fail();
+            } catch (BDDException e) {
+            }
+        } finally {
+            file.delete();
+        }
+
+        // learning an order keeps no references to the nodes of the sample,
+        // which are collected at the next reordering
+        BDDSolver learning = new BDDSolver(JFactory.init(1000, 250), 26);
+        learning.factory.registerReorderCallback(this, getClass().getMethod("reordered"));
+        learning.factory.reorder(BDDFactory.REORDER_SIFT);
+        int nodes = learning.factory.getNodeNum();
+        BDD sample = learning.factory.zero();
+        for (int i = 0; i < 13; i++)
+            sample.orWith(learning.factory.ithVar(i).andWith(learning.factory.ithVar(i + 13)));
+        learning.learnVarOrder(Arrays.asList(sample));
+        sample.free();
+        learning.factory.reorder(BDDFactory.REORDER_SIFT);
+        assertEquals(nodes, learning.factory.getNodeNum());
+    }
+
+    static <P, S> boolean containsEquivalent(BooleanAlgebra<P, S> ba, Collection<Pair<P, ArrayList<Integer>>> minterms,
+            Pair<P, ArrayList<Integer>> minterm) throws TimeoutException {
+        for (Pair<P, ArrayList<Integer>> other : minterms)
+            if (other.second.equals(minterm.second) && ba.AreEquivalent(other.first, minterm.first))
+                return true;
+        return false;
+    }
 }
@@ -10,6 +10,7 @@ import theory.characters.CharPred;
 import theory.characters.ICharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.EqualitySolver;
+import theory.intervals.UnaryCharIntervalSolver;
 
 public class TestCharTheory {
 
@@ -127,4 +128,36 @@ public class TestCharTheory {
         assertFalse(solver.HasModel(p,'\n'));
     }
 
+    @Test
+    public void testHashConsing() {
+        final UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+        final CharPred p1 = new CharPred('a', 'k');
+        final CharPred p2 = new CharPred('f', 'z');
+
+        final CharPred or = ba.MkOr(p1, p2);
+        assertTrue(or.equals(StdCharPred.LOWER_ALPHA));
+        assertTrue(or == ba.MkOr(p2, p1));
+        assertTrue(ba.MkAnd(p1, p2) == ba.MkAnd(ba.MkNot(ba.MkNot(p1)), p2));
+        assertTrue(ba.MkNot(ba.MkNot(or)) == or);
+        assertTrue(ba.MkOr(or, ba.MkNot(or)) == StdCharPred.TRUE);
+        assertTrue(ba.MkAnd(or, ba.MkNot(or)) == StdCharPred.FALSE);
+
+        // the cache must agree with the interval semantics on every character
+        final CharPred[] preds = { p1, p2, StdCharPred.ALPHA_NUM, StdCharPred.PUNCT, StdCharPred.FALSE };
+        for (CharPred a : preds)
+            for (CharPred b : preds) {
+                CharPred and = ba.MkAnd(a, b);
+                CharPred orAB = ba.MkOr(a, b);
+                CharPred notA = ba.MkNot(a);
+                for (char c = 0; c < 256; c++) {
+                    assertTrue(and.isSatisfiedBy(c) == (a.isSatisfiedBy(c) && b.isSatisfiedBy(c)));
+                    assertTrue(orAB.isSatisfiedBy(c) == (a.isSatisfiedBy(c) || b.isSatisfiedBy(c)));
+                    assertTrue(notA.isSatisfiedBy(c) == !a.isSatisfiedBy(c));
+                }
+            }
+
+        final CharPred ret = ba.MkNot(p1).asReturn();
+        assertTrue(ret.isReturn());
+        assertFalse(ba.MkNot(p1).isReturn());
+    }
 }